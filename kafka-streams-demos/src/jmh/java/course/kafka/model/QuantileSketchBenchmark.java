@@ -0,0 +1,73 @@
+package course.kafka.model;
+
+import course.kafka.serialization.QuantileSketchDeserializer;
+import course.kafka.serialization.QuantileSketchSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QuantileSketchBenchmark {
+    private static final String TOPIC = "temperature-quantiles";
+    private static final int NUM_VALUES = 4096;
+
+    // readings per 5 second window of a single sensor, and per day
+    @Param({"100", "100000"})
+    private int sketchSize;
+
+    private double[] values;
+    private int index;
+    private QuantileSketch sketch;
+    private QuantileSketch other;
+    private byte[] serialized;
+    private final QuantileSketchSerializer serializer = new QuantileSketchSerializer();
+    private final QuantileSketchDeserializer deserializer = new QuantileSketchDeserializer();
+
+    @Setup
+    public void setUp() {
+        var rand = new Random(42);
+        values = new double[NUM_VALUES];
+        for (int i = 0; i < NUM_VALUES; i++) {
+            values[i] = 20 + rand.nextGaussian() * 8;
+        }
+        sketch = new QuantileSketch();
+        other = new QuantileSketch();
+        for (int i = 0; i < sketchSize; i++) {
+            sketch.add(values[i % NUM_VALUES]);
+            other.add(values[(i * 7) % NUM_VALUES] + 1);
+        }
+        serialized = serializer.serialize(TOPIC, sketch);
+    }
+
+    @Benchmark
+    public QuantileSketch insert() {
+        index = (index + 1) % NUM_VALUES;
+        return sketch.add(values[index]);
+    }
+
+    @Benchmark
+    public QuantileSketch merge() {
+        return new QuantileSketch().merge(sketch).merge(other);
+    }
+
+    @Benchmark
+    public double quantile() {
+        return sketch.quantile(0.99);
+    }
+
+    @Benchmark
+    public QuantileSketch serializationRoundTrip() {
+        return deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, sketch));
+    }
+
+    @Benchmark
+    public QuantileSketch deserialize() {
+        return deserializer.deserialize(TOPIC, serialized);
+    }
+}
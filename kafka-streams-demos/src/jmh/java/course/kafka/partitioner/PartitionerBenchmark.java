@@ -0,0 +1,74 @@
+package course.kafka.partitioner;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.clients.producer.internals.DefaultPartitioner;
+import org.apache.kafka.common.Cluster;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static course.kafka.model.TemperatureReading.HF_SENSOR_IDS;
+import static course.kafka.partitioner.PartitionSkewAnalyzer.*;
+import static course.kafka.producer.SimpleTemperatureReadingsProducer.HIGH_FREQUENCY_SENSORS;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PartitionerBenchmark {
+    private static final int NUM_RECORDS = 10_000;
+
+    @Param({"TemperatureReadingsPartitioner", "TemperatureReadingsPartitionerBySensorId",
+            "StockPricePartitioner", "DefaultPartitioner"})
+    private String partitionerName;
+
+    @Param({"12", "24", "48"})
+    private int numPartitions;
+
+    private Partitioner partitioner;
+    private Cluster cluster;
+    private SampleRecord[] records;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        List<SampleRecord> samples;
+        switch (partitionerName) {
+            case "TemperatureReadingsPartitioner":
+                partitioner = new TemperatureReadingsPartitioner();
+                samples = temperatureReadings(NUM_RECORDS, HF_READINGS_SHARE, 42);
+                break;
+            case "TemperatureReadingsPartitionerBySensorId":
+                partitioner = new TemperatureReadingsPartitionerBySensorId();
+                samples = timestampedTemperatureReadings(NUM_RECORDS, 42);
+                break;
+            case "StockPricePartitioner":
+                partitioner = new StockPricePartitioner();
+                samples = stockPrices(NUM_RECORDS, 42);
+                break;
+            default:
+                partitioner = new DefaultPartitioner();
+                samples = temperatureReadings(NUM_RECORDS, HF_READINGS_SHARE, 42);
+        }
+        partitioner.configure(Map.of(HIGH_FREQUENCY_SENSORS, String.join(",", HF_SENSOR_IDS)));
+        cluster = mockCluster(TOPIC, numPartitions);
+        records = samples.toArray(new SampleRecord[0]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        partitioner.close();
+    }
+
+    @Benchmark
+    public int partition() {
+        var record = records[index];
+        index = index + 1 == records.length ? 0 : index + 1;
+        return partitioner.partition(TOPIC, record.getKey(), record.getKeyBytes(),
+                record.getValue(), record.getValueBytes(), cluster);
+    }
+}
@@ -0,0 +1,89 @@
+package course.kafka.state;
+
+import course.kafka.model.DoubleStatistics;
+import course.kafka.streams.TemperatureStatistics;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.*;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Windowed statistics aggregation as in the temperature topologies, run through TopologyTestDriver with
+ * caching disabled, so that every reading results in a window store read and write.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WindowStoreBenchmark {
+    private static final String INPUT_TOPIC = "temperature";
+    private static final long WINDOW_SIZE_MS = 5000;
+    private static final int NUM_SENSORS = 100;
+
+    @Param({"ROCKSDB", "OFF_HEAP"})
+    private WindowStoreType storeType;
+
+    private Path stateDir;
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, Double> input;
+    private String[] sensorIds;
+    private Random random;
+    private long timestamp;
+    private int sensor;
+
+    @Setup
+    public void setUp() throws IOException {
+        final StreamsBuilder builder = new StreamsBuilder();
+        builder.stream(INPUT_TOPIC, Consumed.with(Serdes.String(), Serdes.Double()))
+                .groupByKey(Grouped.with(Serdes.String(), Serdes.Double()))
+                .windowedBy(TimeWindows.ofSizeWithNoGrace(Duration.ofMillis(WINDOW_SIZE_MS)))
+                .aggregate(DoubleStatistics::new,
+                        (sensorId, value, stats) -> stats.add(value, 0),
+                        storeType.materialized("temperature-statistics-store", Duration.ofMillis(WINDOW_SIZE_MS),
+                                Serdes.String(), TemperatureStatistics.STATISTICS_SERDE));
+
+        stateDir = Files.createTempDirectory("window-store-benchmark");
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "window-store-benchmark");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        props.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, 0);
+        driver = new TopologyTestDriver(builder.build(), props);
+        input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.Double().serializer());
+
+        sensorIds = new String[NUM_SENSORS];
+        for (int i = 0; i < NUM_SENSORS; i++) {
+            sensorIds[i] = String.format("tSensor-%03d", i);
+        }
+        random = new Random(42);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        driver.close();
+        try (var paths = Files.walk(stateDir)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void aggregateReading() {
+        sensor = (sensor + 1) % NUM_SENSORS;
+        if (sensor == 0) {
+            timestamp++;
+        }
+        input.pipeInput(sensorIds[sensor], 20 + random.nextGaussian() * 5, timestamp);
+    }
+}
@@ -0,0 +1,251 @@
+package course.kafka.streams;
+
+import course.kafka.model.DoubleStatistics;
+import course.kafka.model.TemperatureReading;
+import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.serialization.JsonSerializer;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.*;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.WindowStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Throughput of each demo topology driven through TopologyTestDriver with generated input - one operation is one
+ * input record, so the score is records/sec. Run with {@code -prof gc} for the allocation per record
+ * ({@code gc.alloc.rate.norm}); the state store sizes are printed at the end of each trial.
+ * <p>
+ * Input records are serialized up front, so only the topology's own (de)serialization is measured. Stream time
+ * advances 10 ms and wall clock time 0.1 ms per record, so windows close and wall clock punctuations run.
+ * <p>
+ * TopologyTestDriver commits and checkpoints after every record, which also flushes persistent stores - the scores
+ * of topologies with RocksDB stores are dominated by that, so compare them across revisions of the same topology,
+ * not with the throughput of a deployed application.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TopologyBenchmark {
+    private static final int NUM_RECORDS = 8192; // pre-generated records, piped round robin
+    private static final int NUM_SENSORS = 100;
+    private static final int VOCABULARY_SIZE = 2000;
+    private static final int WORDS_PER_SENTENCE = 8;
+    private static final long RECORD_INTERVAL_MS = 10;
+    private static final int DUPLICATE_INTERVAL = 10;
+    private static final int WALL_CLOCK_ADVANCE_RECORDS = 1000;
+    private static final Duration WALL_CLOCK_ADVANCE = Duration.ofMillis(100);
+
+    public enum DemoTopology {
+        PIPE(Input.SENTENCES, dsl(Pipe::buildTopology)),
+        LINE_SPLIT(Input.SENTENCES, dsl(LineSplit::buildTopology)),
+        WORD_COUNT(Input.SENTENCES, dsl(WordCountDemo::buildTopology)),
+        WORD_COUNT_DSL(Input.SENTENCES, dsl(WordCountDslDemo::buildTopology)),
+        WORD_COUNT_SPLITTING(Input.SENTENCES, dsl(WordCountDslDemoSplitting::buildTopology)),
+        WORD_COUNT_PROCESSOR(Input.SENTENCES, WordCountProcessorDemo::buildTopology),
+        HEAVY_HITTERS(Input.SENTENCES, dsl(HeavyHittersWordCountDemo::buildTopology)),
+        FILTERED_TEMPERATURES(Input.TEMPERATURES, dsl(FilteredTemperatureReadingsDemo::buildTopology)),
+        WINDOWED_COUNTING_01(Input.TEMPERATURES, dsl(WindowedCountingTemperatureReadings01::buildTopology)),
+        WINDOWED_STATISTICS_02(Input.TEMPERATURES, dsl(WindowedStatisticsTemperatureReadings02::buildTopology)),
+        WINDOWED_STATISTICS_EMIT_FINAL_03(Input.TEMPERATURES,
+                dsl(WindowedStatisticsSuppressionTemperatureReadings03::buildTopology)),
+        MERGING_04(Input.STATISTICS, dsl(MergingTemperatureReadingsStreams04::buildTopology)),
+        JOINING_05(Input.STATISTICS, dsl(JoiningTemperatureReadings05::buildTopology)),
+        SLIDING_STATISTICS_06(Input.INTERNAL_TEMPERATURES, SlidingStatisticsTemperatureReadings06::buildTopology),
+        WINDOWED_QUANTILES_07(Input.INTERNAL_TEMPERATURES,
+                dsl(WindowedQuantilesTemperatureReadings07::buildTopology)),
+        TEMPERATURE_STATISTICS_08(Input.TEMPERATURES, dsl(TemperatureStatisticsProducer08::buildTopology)),
+        ALERTS_09(Input.TEMPERATURES_AND_STATISTICS, dsl(TemperatureAlerts09::buildTopology)),
+        ANOMALIES_10(Input.INTERNAL_TEMPERATURES, dsl(TemperatureAnomalies10::buildTopology)),
+        DEDUPLICATION_11(Input.IDENTIFIED_READINGS, dsl(DeduplicatedTemperatureReadings11::buildTopology));
+
+        private final Input input;
+        private final Supplier<Topology> topology;
+
+        DemoTopology(Input input, Supplier<Topology> topology) {
+            this.input = input;
+            this.topology = topology;
+        }
+
+        private static Supplier<Topology> dsl(Consumer<StreamsBuilder> buildTopology) {
+            return () -> {
+                final StreamsBuilder builder = new StreamsBuilder();
+                buildTopology.accept(builder);
+                return builder.build();
+            };
+        }
+    }
+
+    enum Input {
+        /** Lines of words from a skewed vocabulary, as typed into the word count demos. */
+        SENTENCES(List.of("streams-input")),
+        /** JSON temperature readings, alternating between the internal and external temperature topics. */
+        TEMPERATURES(List.of("temperature", "external-temperature")),
+        /** JSON temperature readings of the internal temperature topic only. */
+        INTERNAL_TEMPERATURES(List.of("temperature")),
+        /** Binary 5 second statistics, alternating between the internal and external statistics topics. */
+        STATISTICS(List.of(TemperatureStatisticsProducer08.INTERNAL_STATISTICS_TOPIC,
+                TemperatureStatisticsProducer08.EXTERNAL_STATISTICS_TOPIC)),
+        /** JSON readings of the internal temperature topic, then binary statistics of both statistics topics. */
+        TEMPERATURES_AND_STATISTICS(List.of(TemperatureAlerts09.INTERNAL_TEMP_TOPIC,
+                TemperatureAlerts09.INTERNAL_STATISTICS_TOPIC, TemperatureAlerts09.EXTERNAL_STATISTICS_TOPIC)),
+        /**
+         * JSON readings with unique ids, every tenth one redelivered. Once the generated records are piped again, all
+         * their ids are duplicates within the deduplication horizon.
+         */
+        IDENTIFIED_READINGS(List.of(DeduplicatedTemperatureReadings11.INPUT_TOPIC));
+
+        private final List<String> topics;
+
+        Input(List<String> topics) {
+            this.topics = topics;
+        }
+    }
+
+    @Param
+    private DemoTopology topology;
+
+    @Param({"0", "10485760"})
+    private long cacheMaxBytes;
+
+    @Param({StreamsConfig.AT_LEAST_ONCE, StreamsConfig.EXACTLY_ONCE_V2})
+    private String processingGuarantee;
+
+    private Path stateDir;
+    private TopologyTestDriver driver;
+    private List<TestInputTopic<byte[], byte[]>> inputs;
+    private byte[][] keys;
+    private byte[][] values;
+    private long timestamp;
+    private int record;
+
+    @Setup
+    public void setUp() throws IOException {
+        stateDir = Files.createTempDirectory("topology-benchmark");
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "topology-benchmark");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        props.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, cacheMaxBytes);
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, processingGuarantee);
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        driver = new TopologyTestDriver(topology.topology.get(), props);
+
+        List<String> topics = topology.input.topics;
+        inputs = new ArrayList<>(topics.size());
+        for (String topic : topics) {
+            inputs.add(driver.createInputTopic(topic, new ByteArraySerializer(), new ByteArraySerializer()));
+        }
+        generateInput(new Random(42));
+    }
+
+    private void generateInput(Random random) {
+        keys = new byte[NUM_RECORDS][];
+        values = new byte[NUM_RECORDS][];
+        var readingSerializer = new JsonSerializer<TimestampedTemperatureReading>();
+        var identifiedReadingSerializer = new JsonSerializer<TemperatureReading>();
+        var stringSerializer = Serdes.String().serializer();
+        var statisticsSerializer = TemperatureStatistics.STATISTICS_SERDE.serializer();
+        for (int i = 0; i < NUM_RECORDS; i++) {
+            if (topology.input == Input.SENTENCES) {
+                var sentence = new StringBuilder();
+                for (int w = 0; w < WORDS_PER_SENTENCE; w++) {
+                    // squaring skews the vocabulary towards the first words, like natural language
+                    double u = random.nextDouble();
+                    sentence.append(w == 0 ? "" : " ").append("word").append((int) (u * u * VOCABULARY_SIZE));
+                }
+                keys[i] = stringSerializer.serialize(null, "line-" + i);
+                values[i] = stringSerializer.serialize(null, sentence.toString());
+            } else if (topology.input == Input.STATISTICS
+                    || topology.input == Input.TEMPERATURES_AND_STATISTICS && i % inputs.size() != 0) {
+                String sensorId = String.format("tSensor-%03d", i % NUM_SENSORS);
+                double mean = 20 + random.nextGaussian() * 5;
+                keys[i] = stringSerializer.serialize(null, sensorId);
+                values[i] = statisticsSerializer.serialize(null, new DoubleStatistics(50, mean, 50 * 25,
+                        mean - 10, mean + 10, i * RECORD_INTERVAL_MS));
+            } else if (topology.input == Input.IDENTIFIED_READINGS) {
+                if (i > 0 && i % DUPLICATE_INTERVAL == 0) {
+                    keys[i] = keys[i - 1];
+                    values[i] = values[i - 1];
+                    continue;
+                }
+                String sensorId = String.format("tSensor-%03d", i % NUM_SENSORS);
+                keys[i] = stringSerializer.serialize(null, sensorId);
+                values[i] = identifiedReadingSerializer.serialize(null, new TemperatureReading(
+                        new UUID(random.nextLong(), random.nextLong()).toString(), sensorId,
+                        20 + random.nextGaussian() * 5));
+            } else {
+                String sensorId = String.format("tSensor-%03d", i % NUM_SENSORS);
+                keys[i] = stringSerializer.serialize(null, sensorId);
+                values[i] = readingSerializer.serialize(null, new TimestampedTemperatureReading(sensorId,
+                        20 + random.nextGaussian() * 5, i * RECORD_INTERVAL_MS));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.out.println();
+        for (var store : driver.getAllStateStores().values()) {
+            System.out.printf("State store %s: %d entries%n", store.name(), entries(store));
+        }
+        driver.close();
+        try (var paths = Files.walk(stateDir)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    // the driver keeps every output record until it is read
+    private void drainOutputs() {
+        for (String topic : driver.producedTopicNames()) {
+            driver.createOutputTopic(topic, new ByteArrayDeserializer(), new ByteArrayDeserializer())
+                    .readRecordsToList();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long entries(StateStore store) {
+        if (store instanceof KeyValueStore) {
+            return ((KeyValueStore<Object, Object>) store).approximateNumEntries();
+        }
+        long entries = 0;
+        if (store instanceof WindowStore) {
+            try (var all = ((WindowStore<Object, Object>) store).all()) {
+                for (; all.hasNext(); all.next()) {
+                    entries++;
+                }
+            }
+        }
+        return entries;
+    }
+
+    @Benchmark
+    public void processRecord() {
+        int next = record++ % NUM_RECORDS;
+        timestamp += RECORD_INTERVAL_MS;
+        inputs.get(next % inputs.size()).pipeInput(keys[next], values[next], timestamp);
+        if (record % WALL_CLOCK_ADVANCE_RECORDS == 0) {
+            driver.advanceWallClockTime(WALL_CLOCK_ADVANCE);
+            drainOutputs();
+        }
+    }
+}
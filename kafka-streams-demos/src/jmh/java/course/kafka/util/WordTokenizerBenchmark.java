@@ -0,0 +1,66 @@
+package course.kafka.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WordTokenizerBenchmark {
+    private static final String SENTENCE =
+            "Kafka Streams is a client library for building applications and microservices, where the input " +
+            "and output data are stored in Kafka clusters. It combines the simplicity of writing and deploying " +
+            "standard Java and Scala applications on the client side with the benefits of Kafka's server-side " +
+            "cluster technology. ";
+
+    // a short line and a long document
+    @Param({"1", "50"})
+    private int sentences;
+
+    private String text;
+    private final WordTokenizer tokenizer = new WordTokenizer();
+    private final StringLongHashMap counts = new StringLongHashMap(1024);
+
+    @Setup
+    public void setUp() {
+        text = SENTENCE.repeat(sentences);
+    }
+
+    @Benchmark
+    public void regexSplit(Blackhole blackhole) {
+        for (String word : text.toLowerCase(Locale.getDefault()).split("\\W+")) {
+            blackhole.consume(word);
+        }
+    }
+
+    @Benchmark
+    public void tokenizerView(Blackhole blackhole) {
+        tokenizer.forEachWord(text, blackhole::consume);
+    }
+
+    @Benchmark
+    public void tokenizerWords(Blackhole blackhole) {
+        blackhole.consume(WordTokenizer.words(text));
+    }
+
+    // word counting into a hash map - the view allows counting known words without allocation
+    @Benchmark
+    public void regexSplitCount() {
+        counts.clear();
+        for (String word : text.toLowerCase(Locale.getDefault()).split("\\W+")) {
+            counts.addTo(word, 1);
+        }
+    }
+
+    @Benchmark
+    public void tokenizerCount() {
+        counts.clear();
+        tokenizer.forEachWord(text, word -> counts.addTo(word, 1));
+    }
+}
@@ -0,0 +1,137 @@
+package course.kafka.cep;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The state machine of a compiled {@link Pattern}, run separately for every key. The partial matches (runs) of a
+ * key are its state: the stage reached, the start times, the event count and the previous matched event.
+ * A key holds at most {@link #MAX_RUNS} runs, and once a match completes all runs of the key are discarded, so
+ * overlapping events do not raise the same alert again.
+ */
+public final class Nfa<V> {
+    public static final int MAX_RUNS = 32;
+
+    private final String name;
+    private final List<Pattern.Stage<V>> stages;
+    private final long withinMs;
+
+    enum Step {DROP, KEEP, ADVANCE, MATCH}
+
+    static final class Run<V> {
+        int stage = -1; // the last matched stage
+        boolean satisfied; // a lasting stage has lasted long enough
+        long start;
+        long stageStart;
+        int events;
+        V previous;
+    }
+
+    Nfa(String name, List<Pattern.Stage<V>> stages, long withinMs) {
+        this.name = name;
+        this.stages = stages;
+        this.withinMs = withinMs;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    // advances the runs with the event, returns the completed run, if any
+    Run<V> process(List<Run<V>> runs, V event, long timestamp) {
+        Run<V> matched = null;
+        for (Iterator<Run<V>> iter = runs.iterator(); matched == null && iter.hasNext(); ) {
+            Run<V> run = iter.next();
+            Step step = timestamp - run.start > withinMs ? Step.DROP : advance(run, event, timestamp);
+            if (step == Step.DROP) {
+                iter.remove();
+            } else if (step == Step.MATCH) {
+                matched = run;
+            }
+        }
+        if (matched == null && !inFirstLastingStage(runs)) {
+            Run<V> run = new Run<>();
+            run.start = timestamp;
+            Step step = advance(run, event, timestamp);
+            if (step == Step.MATCH) {
+                matched = run;
+            } else if (step == Step.ADVANCE) {
+                if (runs.size() == MAX_RUNS) runs.remove(0);
+                runs.add(run);
+            }
+        }
+        if (matched != null) runs.clear();
+        return matched;
+    }
+
+    // a run still lasting in the first stage would always match before any run started after it
+    private boolean inFirstLastingStage(List<Run<V>> runs) {
+        return stages.get(0).lastingMs > 0 && runs.stream().anyMatch(run -> run.stage == 0 && !run.satisfied);
+    }
+
+    private Step advance(Run<V> run, V event, long timestamp) {
+        int last = stages.size() - 1;
+        if (run.stage >= 0 && !run.satisfied) { // looping in a lasting stage
+            var stage = stages.get(run.stage);
+            if (!stage.condition.test(run.previous, event)) return Step.DROP;
+            accept(run, event);
+            run.satisfied = timestamp - run.stageStart >= stage.lastingMs;
+            return run.satisfied && run.stage == last ? Step.MATCH : Step.ADVANCE;
+        }
+        var stage = stages.get(run.stage + 1);
+        if (!stage.condition.test(run.previous, event)) return stage.strict ? Step.DROP : Step.KEEP;
+        run.stage++;
+        run.stageStart = timestamp;
+        run.satisfied = stage.lastingMs == 0;
+        accept(run, event);
+        return run.satisfied && run.stage == last ? Step.MATCH : Step.ADVANCE;
+    }
+
+    private static <V> void accept(Run<V> run, V event) {
+        run.previous = event;
+        run.events++;
+    }
+
+    // per run: stage:short | satisfied:byte | start:long | stage start:long | events:int | previous length:int | previous
+    byte[] serialize(List<Run<V>> runs, Serializer<V> serializer, String topic) {
+        List<byte[]> previous = new ArrayList<>(runs.size());
+        int size = 0;
+        for (Run<V> run : runs) {
+            byte[] bytes = serializer.serialize(topic, run.previous);
+            previous.add(bytes);
+            size += Short.BYTES + 1 + 2 * Long.BYTES + 2 * Integer.BYTES + bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < runs.size(); i++) {
+            Run<V> run = runs.get(i);
+            buffer.putShort((short) run.stage).put((byte) (run.satisfied ? 1 : 0))
+                    .putLong(run.start).putLong(run.stageStart).putInt(run.events)
+                    .putInt(previous.get(i).length).put(previous.get(i));
+        }
+        return buffer.array();
+    }
+
+    List<Run<V>> deserialize(byte[] data, Deserializer<V> deserializer, String topic) {
+        List<Run<V>> runs = new ArrayList<>();
+        if (data == null) return runs;
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            Run<V> run = new Run<>();
+            run.stage = buffer.getShort();
+            run.satisfied = buffer.get() == 1;
+            run.start = buffer.getLong();
+            run.stageStart = buffer.getLong();
+            run.events = buffer.getInt();
+            byte[] previous = new byte[buffer.getInt()];
+            buffer.get(previous);
+            run.previous = deserializer.deserialize(topic, previous);
+            runs.add(run);
+        }
+        return runs;
+    }
+}
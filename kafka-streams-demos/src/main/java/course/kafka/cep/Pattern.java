@@ -0,0 +1,105 @@
+package course.kafka.cep;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A sequence of events of one key, declared stage by stage and compiled into an {@link Nfa}:
+ * <pre>{@code
+ * Pattern.<Reading>begin("hot", r -> r.getValue() > 30)
+ *         .next("rising", (previous, r) -> r.getValue() > previous.getValue()).times(4)
+ *         .within(Duration.ofSeconds(60))
+ *         .named("rising-temperature");
+ * }</pre>
+ * Each stage condition sees the previous matched event and the current one. {@link #next} stages must match the
+ * very next event of the key, {@link #followedBy} stages skip the events that do not match. A {@link #lasting}
+ * stage keeps matching consecutive events until its first and last event are the given time apart.
+ */
+public final class Pattern<V> {
+
+    @FunctionalInterface
+    public interface Condition<V> {
+        boolean test(V previous, V current);
+    }
+
+    static final class Stage<V> {
+        final String name;
+        final Condition<V> condition;
+        final boolean strict;
+        long lastingMs;
+
+        Stage(String name, Condition<V> condition, boolean strict, long lastingMs) {
+            this.name = name;
+            this.condition = condition;
+            this.strict = strict;
+            this.lastingMs = lastingMs;
+        }
+    }
+
+    private final List<Stage<V>> stages = new ArrayList<>();
+    private long withinMs = Long.MAX_VALUE;
+    private String name;
+
+    private Pattern(String name) {
+        this.name = name;
+    }
+
+    public static <V> Pattern<V> begin(String name, Predicate<V> condition) {
+        Pattern<V> pattern = new Pattern<>(name);
+        pattern.stages.add(new Stage<>(name, (previous, current) -> condition.test(current), true, 0));
+        return pattern;
+    }
+
+    public Pattern<V> next(String name, Condition<V> condition) {
+        stages.add(new Stage<>(name, condition, true, 0));
+        return this;
+    }
+
+    public Pattern<V> followedBy(String name, Condition<V> condition) {
+        stages.add(new Stage<>(name, condition, false, 0));
+        return this;
+    }
+
+    // the last stage matches the given number of events in total, each one compared with the one before
+    public Pattern<V> times(int times) {
+        if (times < 1) throw new IllegalArgumentException("Times must be positive: " + times);
+        Stage<V> last = lastStage();
+        for (int i = 1; i < times; i++) {
+            stages.add(new Stage<>(last.name, last.condition, last.strict, last.lastingMs));
+        }
+        return this;
+    }
+
+    public Pattern<V> lasting(Duration duration) {
+        if (duration.isZero() || duration.isNegative()) {
+            throw new IllegalArgumentException("Duration must be positive: " + duration);
+        }
+        lastStage().lastingMs = duration.toMillis();
+        return this;
+    }
+
+    // the whole match, from its first to its last event
+    public Pattern<V> within(Duration duration) {
+        withinMs = duration.toMillis();
+        return this;
+    }
+
+    public Pattern<V> named(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Nfa<V> compile() {
+        return new Nfa<>(name, List.copyOf(stages), withinMs);
+    }
+
+    private Stage<V> lastStage() {
+        return stages.get(stages.size() - 1);
+    }
+}
@@ -0,0 +1,19 @@
+package course.kafka.cep;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatternMatch {
+    private String pattern;
+    private long startTimestamp;
+    private long endTimestamp;
+    private int events;
+
+    public long getDurationMs() {
+        return endTimestamp - startTimestamp;
+    }
+}
@@ -0,0 +1,65 @@
+package course.kafka.cep;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.To;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+
+/**
+ * Matches a {@link Pattern} against the events of each key, in the order they arrive, using the record timestamps
+ * as event time. The runs of each key are kept serialized in a key-value store, and every completed match is
+ * forwarded as a {@link PatternMatch} with the timestamp of its last event.
+ */
+@Slf4j
+public class PatternTransformer<K, V> implements Transformer<K, V, KeyValue<K, PatternMatch>> {
+    private final String storeName;
+    private final Serde<V> valueSerde;
+    private final Nfa<V> nfa;
+    private KeyValueStore<K, byte[]> store;
+    private ProcessorContext context;
+
+    public PatternTransformer(String storeName, Serde<V> valueSerde, Pattern<V> pattern) {
+        this.storeName = storeName;
+        this.valueSerde = valueSerde;
+        this.nfa = pattern.compile();
+    }
+
+    public static <K> void addStore(StreamsBuilder builder, String storeName, Serde<K> keySerde) {
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(storeName), keySerde, Serdes.ByteArray()));
+    }
+
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        store = context.getStateStore(storeName);
+    }
+
+    @Override
+    public KeyValue<K, PatternMatch> transform(K key, V value) {
+        if (key == null || value == null) return null;
+        var runs = nfa.deserialize(store.get(key), valueSerde.deserializer(), storeName);
+        var matched = nfa.process(runs, value, context.timestamp());
+        if (runs.isEmpty()) {
+            store.delete(key);
+        } else {
+            store.put(key, nfa.serialize(runs, valueSerde.serializer(), storeName));
+        }
+        if (matched != null) {
+            var match = new PatternMatch(nfa.name(), matched.start, context.timestamp(), matched.events);
+            log.debug("Pattern '{}' matched for key {}: {}", nfa.name(), key, match);
+            context.forward(key, match, To.all().withTimestamp(context.timestamp()));
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+}
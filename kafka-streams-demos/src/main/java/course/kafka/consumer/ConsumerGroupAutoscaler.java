@@ -0,0 +1,203 @@
+package course.kafka.consumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.*;
+import org.apache.kafka.common.metrics.stats.CumulativeCount;
+import org.apache.kafka.common.utils.Time;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds and removes members of a {@link TemperatureConsumerGroup}, following the lag of the group, as
+ * {@link course.kafka.streams.StreamThreadAutoscaler} does for stream threads. A member is added when the total lag
+ * stays above {@code scaleUpLag} and every member has partitions assigned - a member beyond the partition count
+ * would stay idle. A member is removed when the lag stays below {@code scaleDownLag} while the members consume
+ * fewer than {@code scaleDownRate} records per second on average. Both must hold for {@code stableChecks}
+ * consecutive checks, and no decision is taken for {@code cooldown} after a change.
+ * <p>
+ * All samples come from the metrics of the member consumers, which are safe to read from another thread.
+ * Decisions are logged and exported over JMX in the {@value #METRICS_GROUP} group.
+ */
+@Slf4j
+public class ConsumerGroupAutoscaler implements AutoCloseable {
+    public static final String METRICS_GROUP = "consumer-group-autoscaler-metrics";
+    public static final String JMX_PREFIX = "course.kafka.consumer";
+    public static final Duration DEFAULT_CHECK_INTERVAL = Duration.ofSeconds(15);
+    public static final Duration DEFAULT_COOLDOWN = Duration.ofMinutes(1);
+    public static final int DEFAULT_STABLE_CHECKS = 3;
+    public static final long DEFAULT_SCALE_UP_LAG = 10_000;
+    public static final long DEFAULT_SCALE_DOWN_LAG = 1_000;
+    public static final double DEFAULT_SCALE_DOWN_RATE = 100;
+
+    enum Decision {SCALE_UP, SCALE_DOWN, HOLD}
+
+    private final TemperatureConsumerGroup group;
+    private final int minConsumers;
+    private final int maxConsumers;
+    private final Duration checkInterval;
+    private final long scaleUpLag;
+    private final long scaleDownLag;
+    private final double scaleDownRate;
+    private final int stableChecks;
+    private final long cooldownMs;
+    private final Metrics metrics;
+    private final Sensor scaleUpSensor;
+    private final Sensor scaleDownSensor;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "consumer-group-autoscaler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile int members;
+    private volatile long totalLag;
+    private volatile double consumedRate;
+    private volatile int idleMembers;
+    private int aboveChecks;
+    private int belowChecks;
+    private long lastChangeMs = Long.MIN_VALUE / 2;
+
+    public ConsumerGroupAutoscaler(TemperatureConsumerGroup group, int minConsumers, int maxConsumers) {
+        this(group, minConsumers, maxConsumers, DEFAULT_CHECK_INTERVAL, DEFAULT_SCALE_UP_LAG, DEFAULT_SCALE_DOWN_LAG,
+                DEFAULT_SCALE_DOWN_RATE, DEFAULT_STABLE_CHECKS, DEFAULT_COOLDOWN);
+    }
+
+    public ConsumerGroupAutoscaler(TemperatureConsumerGroup group, int minConsumers, int maxConsumers,
+                                   Duration checkInterval, long scaleUpLag, long scaleDownLag, double scaleDownRate,
+                                   int stableChecks, Duration cooldown) {
+        if (minConsumers < 1 || maxConsumers < minConsumers) {
+            throw new IllegalArgumentException("Invalid consumer bounds: " + minConsumers + " to " + maxConsumers);
+        }
+        if (scaleDownLag >= scaleUpLag) {
+            throw new IllegalArgumentException("Scale down lag must be below scale up lag");
+        }
+        this.group = group;
+        this.minConsumers = minConsumers;
+        this.maxConsumers = maxConsumers;
+        this.checkInterval = checkInterval;
+        this.scaleUpLag = scaleUpLag;
+        this.scaleDownLag = scaleDownLag;
+        this.scaleDownRate = scaleDownRate;
+        this.stableChecks = stableChecks;
+        this.cooldownMs = cooldown.toMillis();
+
+        this.metrics = new Metrics(new MetricConfig(), List.of(new JmxReporter()), Time.SYSTEM,
+                new KafkaMetricsContext(JMX_PREFIX));
+        metrics.addMetric(metrics.metricName("member-count", METRICS_GROUP, "Current number of group members"),
+                (Gauge<Integer>) (config, now) -> members);
+        metrics.addMetric(metrics.metricName("total-lag", METRICS_GROUP, "Total consumer lag at the last check"),
+                (Gauge<Long>) (config, now) -> totalLag);
+        metrics.addMetric(metrics.metricName("records-consumed-rate-avg", METRICS_GROUP,
+                "Average records consumed per second by a member at the last check"),
+                (Gauge<Double>) (config, now) -> consumedRate);
+        scaleUpSensor = metrics.sensor("scale-up");
+        scaleUpSensor.add(metrics.metricName("scale-up-total", METRICS_GROUP, "Number of added members"),
+                new CumulativeCount());
+        scaleDownSensor = metrics.sensor("scale-down");
+        scaleDownSensor.add(metrics.metricName("scale-down-total", METRICS_GROUP, "Number of removed members"),
+                new CumulativeCount());
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::check, checkInterval.toMillis(), checkInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    private void check() {
+        try {
+            var consumers = group.members();
+            members = consumers.size();
+            sampleMetrics(consumers);
+            switch (decide(totalLag, consumedRate, members, idleMembers, System.currentTimeMillis())) {
+                case SCALE_UP:
+                    group.addConsumer();
+                    scaleUpSensor.record();
+                    log.info("Added a consumer - total lag {} above {}, now {} members", totalLag, scaleUpLag, members + 1);
+                    break;
+                case SCALE_DOWN:
+                    if (group.removeConsumer()) {
+                        scaleDownSensor.record();
+                        log.info("Removed a consumer - total lag {} below {} at {} records/s, now {} members",
+                                totalLag, scaleDownLag, String.format("%.1f", consumedRate), members - 1);
+                    }
+                    break;
+                default:
+                    log.debug("Keeping {} consumers at total lag {} and {} records/s",
+                            members, totalLag, String.format("%.1f", consumedRate));
+            }
+            members = group.size();
+        } catch (RuntimeException e) {
+            log.error("Consumer group autoscaling check failed", e);
+        }
+    }
+
+    private void sampleMetrics(List<TemperatureIndividualConsumer> consumers) {
+        long lag = 0;
+        double rateSum = 0;
+        int idle = 0;
+        for (TemperatureIndividualConsumer consumer : consumers) {
+            for (Map.Entry<MetricName, ? extends Metric> entry : consumer.metrics().entrySet()) {
+                MetricName name = entry.getKey();
+                if (name.group().equals("consumer-fetch-manager-metrics")) {
+                    if (name.name().equals("records-lag")) { // per partition
+                        lag += toLong(entry.getValue().metricValue());
+                    } else if (name.name().equals("records-consumed-rate") && !name.tags().containsKey("topic")) {
+                        rateSum += toDouble(entry.getValue().metricValue());
+                    }
+                } else if (name.group().equals("consumer-coordinator-metrics")
+                        && name.name().equals("assigned-partitions") && toLong(entry.getValue().metricValue()) == 0) {
+                    idle++;
+                }
+            }
+        }
+        totalLag = lag;
+        consumedRate = consumers.isEmpty() ? 0 : rateSum / consumers.size();
+        idleMembers = idle;
+    }
+
+    private static long toLong(Object value) {
+        return (long) toDouble(value);
+    }
+
+    private static double toDouble(Object value) {
+        return value instanceof Number && !Double.isNaN(((Number) value).doubleValue())
+                ? ((Number) value).doubleValue() : 0;
+    }
+
+    Decision decide(long lag, double consumedRate, int members, int idleMembers, long nowMs) {
+        aboveChecks = lag > scaleUpLag ? aboveChecks + 1 : 0;
+        belowChecks = lag < scaleDownLag && consumedRate < scaleDownRate ? belowChecks + 1 : 0;
+        if (nowMs - lastChangeMs < cooldownMs) return Decision.HOLD;
+        Decision decision = Decision.HOLD;
+        if (members < minConsumers) {
+            decision = Decision.SCALE_UP; // replaces failed members
+        } else if (aboveChecks >= stableChecks && members < maxConsumers && idleMembers == 0) {
+            decision = Decision.SCALE_UP;
+        } else if (belowChecks >= stableChecks && members > minConsumers) {
+            decision = Decision.SCALE_DOWN;
+        }
+        if (decision != Decision.HOLD) {
+            lastChangeMs = nowMs;
+            aboveChecks = 0;
+            belowChecks = 0;
+        }
+        return decision;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        metrics.close();
+    }
+}
@@ -0,0 +1,216 @@
+package course.kafka.consumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processes the records of a consumer on {@code parallelism} worker threads, beyond the partition count, while
+ * the records of a key are still processed one at a time and in order: each key is bound to one single threaded
+ * lane (records without key to the lane of their partition). Workers report completions back to the polling
+ * thread, which tracks them per partition in an {@link OffsetTracker} and commits only the offsets below the
+ * first unfinished record. A partition with {@code maxInFlightPerPartition} unfinished offsets is paused, and
+ * the records beyond that window are fetched again once it is resumed.
+ * <p>
+ * A failed record stops the dispatcher - its offset and all after it stay uncommitted. Revoked partitions are
+ * drained and committed before they are handed over. Lost partitions are already owned by another member, so
+ * their progress is dropped without a commit. Completions are matched to the tracker they were dispatched with, so
+ * records still in flight from a lost or revoked assignment complete unnoticed, also if the partition comes back.
+ */
+@Slf4j
+public class KeyOrderedDispatcher<K, V> implements ConsumerRebalanceListener, AutoCloseable {
+    public static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final Consumer<K, V> consumer;
+    private final java.util.function.Consumer<ConsumerRecord<K, V>> handler;
+    private final int maxInFlightPerPartition;
+    private final ExecutorService[] lanes;
+    private final Map<TopicPartition, OffsetTracker> trackers = new HashMap<>();
+    private final Map<TopicPartition, Long> committed = new HashMap<>();
+    private final Map<TopicPartition, Long> paused = new HashMap<>(); // to the offset to resume at
+    private final BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+    private RuntimeException failure;
+
+    private static final class Completion {
+        final TopicPartition partition;
+        final OffsetTracker tracker; // of the assignment the record was dispatched in
+        final long offset;
+        final RuntimeException failure;
+
+        Completion(TopicPartition partition, OffsetTracker tracker, long offset, RuntimeException failure) {
+            this.partition = partition;
+            this.tracker = tracker;
+            this.offset = offset;
+            this.failure = failure;
+        }
+    }
+
+    public KeyOrderedDispatcher(Consumer<K, V> consumer, java.util.function.Consumer<ConsumerRecord<K, V>> handler,
+                                int parallelism, int maxInFlightPerPartition) {
+        this.consumer = consumer;
+        this.handler = handler;
+        this.maxInFlightPerPartition = maxInFlightPerPartition;
+        this.lanes = new ExecutorService[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            int lane = i;
+            lanes[i] = Executors.newSingleThreadExecutor(task -> new Thread(task, "dispatcher-lane-" + lane));
+        }
+    }
+
+    public void dispatch(ConsumerRecords<K, V> records) {
+        for (TopicPartition partition : records.partitions()) {
+            var tracker = trackers.computeIfAbsent(partition, p -> new OffsetTracker(maxInFlightPerPartition));
+            long nextOffset = -1;
+            for (ConsumerRecord<K, V> record : records.records(partition)) {
+                nextOffset = record.offset();
+                if (!tracker.hasCapacity(nextOffset)) {
+                    consumer.seek(partition, nextOffset); // fetched again after resume
+                    break;
+                }
+                tracker.dispatched(nextOffset++);
+                lanes[lane(record)].execute(() -> process(record, tracker));
+            }
+            if (nextOffset >= 0 && !tracker.hasCapacity(nextOffset) && paused.put(partition, nextOffset) == null) {
+                consumer.pause(List.of(partition));
+            }
+        }
+    }
+
+    // applies the completions: commits the completed offsets and resumes the partitions with free window
+    public void update() {
+        drainCompletions();
+        for (var iter = paused.entrySet().iterator(); iter.hasNext(); ) {
+            var entry = iter.next();
+            var tracker = trackers.get(entry.getKey());
+            if (tracker == null || tracker.hasCapacity(entry.getValue())) {
+                consumer.resume(List.of(entry.getKey()));
+                iter.remove();
+            }
+        }
+        commit(trackers.keySet());
+        if (failure != null) throw failure;
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        awaitInFlight(partitions);
+        commit(partitions);
+        forget(partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Collection<TopicPartition> partitions) {
+        forget(partitions);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService lane : lanes) lane.shutdown();
+        awaitInFlight(trackers.keySet());
+        for (ExecutorService lane : lanes) lane.shutdownNow();
+        try {
+            commit(trackers.keySet());
+        } catch (RuntimeException e) {
+            log.warn("Failed to commit the processed offsets on close", e);
+        }
+    }
+
+    private void process(ConsumerRecord<K, V> record, OffsetTracker tracker) {
+        RuntimeException error = null;
+        try {
+            handler.accept(record);
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        completions.add(new Completion(
+                new TopicPartition(record.topic(), record.partition()), tracker, record.offset(), error));
+    }
+
+    private int lane(ConsumerRecord<K, V> record) {
+        int hash = record.key() == null ? record.topic().hashCode() * 31 + record.partition() : record.key().hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    private void drainCompletions() {
+        for (Completion completion; (completion = completions.poll()) != null; ) {
+            apply(completion);
+        }
+    }
+
+    // completions of records dispatched before the partition was lost or revoked are dropped, even if it is
+    // assigned again - they must not count for the offsets dispatched since
+    private void apply(Completion completion) {
+        var tracker = trackers.get(completion.partition);
+        if (tracker != completion.tracker) {
+            log.debug("Dropping completion of {}-{}@{} from a previous assignment", completion.partition.topic(),
+                    completion.partition.partition(), completion.offset);
+            return;
+        }
+        if (completion.failure != null) {
+            if (failure == null) failure = completion.failure;
+            log.error("Failed to process record {}-{}@{}", completion.partition.topic(),
+                    completion.partition.partition(), completion.offset, completion.failure);
+        }
+        tracker.completed(completion.offset, completion.failure == null);
+    }
+
+    private void awaitInFlight(Collection<TopicPartition> partitions) {
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        try {
+            while (partitions.stream().map(trackers::get)
+                    .anyMatch(tracker -> tracker != null && tracker.inFlight() > 0)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    log.warn("Timed out waiting for the records in flight of {}", partitions);
+                    return;
+                }
+                var completion = completions.poll(remaining, TimeUnit.NANOSECONDS);
+                if (completion != null) apply(completion);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void forget(Collection<TopicPartition> partitions) {
+        partitions.forEach(partition -> {
+            trackers.remove(partition);
+            committed.remove(partition);
+            paused.remove(partition);
+        });
+    }
+
+    private void commit(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            var tracker = trackers.get(partition);
+            if (tracker == null) continue;
+            long offset = tracker.committable();
+            if (offset >= 0 && !Long.valueOf(offset).equals(committed.get(partition))) {
+                offsets.put(partition, new OffsetAndMetadata(offset));
+            }
+        }
+        if (offsets.isEmpty()) return;
+        consumer.commitSync(offsets);
+        offsets.forEach((partition, offset) -> committed.put(partition, offset.offset()));
+    }
+}
@@ -0,0 +1,73 @@
+package course.kafka.consumer;
+
+/**
+ * Offsets of one partition dispatched for processing, and which of them completed - in any order - as a ring
+ * bitmap of {@code window} bits. Only the offsets of the window starting at the lowest uncompleted offset can be
+ * in flight, and the committable offset is the end of the contiguous run of completed offsets. Offsets skipped by
+ * the log (compaction, transaction markers) count as completed. Not thread safe - owned by the polling thread.
+ */
+class OffsetTracker {
+    private final int window;
+    private final long[] completed;
+    private long base = -1; // lowest offset not completed yet
+    private long next = -1; // next offset to be dispatched
+    private int inFlight = 0;
+
+    OffsetTracker(int window) {
+        if (window < 1) throw new IllegalArgumentException("Window must be positive: " + window);
+        this.completed = new long[(window + 63) / 64];
+        this.window = completed.length * 64;
+    }
+
+    boolean hasCapacity(long offset) {
+        if (base < 0) return true;
+        long committable = committable();
+        return committable == next || offset - committable < window;
+    }
+
+    void dispatched(long offset) {
+        if (base < 0 || base == next) {
+            base = offset;
+        } else {
+            for (long gap = next; gap < offset; gap++) set(gap);
+        }
+        next = offset + 1;
+        inFlight++;
+    }
+
+    // a failed offset is no longer in flight, but never completed, so it is never committed;
+    // offsets below the window were not dispatched by this tracker and are ignored
+    void completed(long offset, boolean succeeded) {
+        if (base < 0 || offset < base) return;
+        if (succeeded) set(offset);
+        inFlight--;
+    }
+
+    // the next offset to consume, so all before it completed
+    long committable() {
+        while (base < next && isSet(base)) {
+            clear(base);
+            base++;
+        }
+        return base;
+    }
+
+    int inFlight() {
+        return inFlight;
+    }
+
+    private void set(long offset) {
+        int bit = (int) Math.floorMod(offset, (long) window);
+        completed[bit >>> 6] |= 1L << bit;
+    }
+
+    private void clear(long offset) {
+        int bit = (int) Math.floorMod(offset, (long) window);
+        completed[bit >>> 6] &= ~(1L << bit);
+    }
+
+    private boolean isSet(long offset) {
+        int bit = (int) Math.floorMod(offset, (long) window);
+        return (completed[bit >>> 6] & (1L << bit)) != 0;
+    }
+}
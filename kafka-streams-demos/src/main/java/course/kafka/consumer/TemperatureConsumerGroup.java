@@ -17,7 +17,8 @@ import java.util.concurrent.*;
 public class TemperatureConsumerGroup {
     public static final String TEMPERATURE_TOPIC = "temperature2";
     public static final String CONSUMER_GROUP_NAME = "TemperatureConsumerGroup";
-    public static final int NUM_CONSUMERS = 1;
+    public static final int MIN_CONSUMERS = 1;
+    public static final int MAX_CONSUMERS = 8; // members beyond the partition count stay idle
     public static final String BOOTSTRAP_SERVERS = "localhost:8093";
     public static final String KEY_CLASS = "key.class";
     public static final String VALUE_CLASS = "values.class";
@@ -31,6 +32,7 @@ public class TemperatureConsumerGroup {
     private java.util.function.Consumer<TemperatureReading> temperatureConsumer;
     private List<TemperatureIndividualConsumer> consumers = new ArrayList<>();
     private List<Future<?>> consumerFutures = new ArrayList<>();
+    private ConsumerGroupAutoscaler autoscaler;
 
     public TemperatureConsumerGroup(String consumerGroup, String topic,
                                     java.util.function.Consumer<Throwable> exceptionConsumer,
@@ -48,6 +50,8 @@ public class TemperatureConsumerGroup {
         consumerProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
         consumerProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class.getName());
         consumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        // members join and leave without stopping the others, only the moved partitions are revoked
+        consumerProps.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, CooperativeStickyAssignor.class.getName());
 //        props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, IsolationLevel.READ_COMMITTED.toString().toLowerCase());
         consumerProps.put(KEY_CLASS, String.class.getName());
         consumerProps.put(VALUE_CLASS, TemperatureReading.class.getName());
@@ -74,23 +78,59 @@ public class TemperatureConsumerGroup {
     }
 
     public void startGroup() {
-        for (int i = 0; i < NUM_CONSUMERS; i++) {
-            var consumerInstance = new TemperatureIndividualConsumer(createKafkaConsumer(),
-                    exceptionConsumer, temperatureConsumer, Duration.ofMillis(POLLING_DURATION_MS));
-            consumers.add(consumerInstance);
-            var consumerFuture = executor.submit(() -> consumerInstance.startBySubscribing(topic));
-            consumerFutures.add(consumerFuture);
+        for (int i = 0; i < MIN_CONSUMERS; i++) {
+            addConsumer();
+        }
+        autoscaler = new ConsumerGroupAutoscaler(this, MIN_CONSUMERS, MAX_CONSUMERS);
+        autoscaler.start();
+    }
+
+    public synchronized void addConsumer() {
+        var consumerInstance = new TemperatureIndividualConsumer(createKafkaConsumer(),
+                exceptionConsumer, temperatureConsumer, Duration.ofMillis(POLLING_DURATION_MS));
+        consumers.add(consumerInstance);
+        var consumerFuture = executor.submit(() -> consumerInstance.startBySubscribing(topic));
+        consumerFutures.add(consumerFuture);
+    }
+
+    // stops the newest member, which leaves the group and hands its partitions over
+    public synchronized boolean removeConsumer() {
+        removeStopped();
+        if (consumers.isEmpty()) return false;
+        int last = consumers.size() - 1;
+        consumers.remove(last).stop();
+        consumerFutures.remove(last);
+        return true;
+    }
+
+    public synchronized int size() {
+        removeStopped();
+        return consumers.size();
+    }
+
+    public synchronized List<TemperatureIndividualConsumer> members() {
+        removeStopped();
+        return List.copyOf(consumers);
+    }
+
+    // members stopped by a polling error
+    private void removeStopped() {
+        for (int i = consumers.size() - 1; i >= 0; i--) {
+            if (consumerFutures.get(i).isDone()) {
+                consumers.remove(i);
+                consumerFutures.remove(i);
+            }
         }
-        System.out.println("Hit <Enter> to close.");
-        new Scanner(System.in).nextLine();
     }
 
     public void stopGroup() {
-        for (int i = 0; i < NUM_CONSUMERS; i++) {
-            consumers.get(i).stop();
-            consumerFutures.get(i).cancel(false);
-            shutdownAndAwaitTermination();
+        if (autoscaler != null) autoscaler.close();
+        synchronized (this) {
+            consumers.forEach(TemperatureIndividualConsumer::stop);
+            consumers.clear();
+            consumerFutures.clear();
         }
+        shutdownAndAwaitTermination();
     }
 
     private void shutdownAndAwaitTermination() {
@@ -7,6 +7,8 @@ import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -14,6 +16,7 @@ import org.apache.kafka.common.serialization.StringDeserializer;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
 import java.util.concurrent.ExecutionException;
@@ -28,6 +31,8 @@ public class TemperatureIndividualConsumer {
     private volatile boolean canceled;
 
     private Duration pollingInterval;
+    private int parallelism = 1;
+    private int maxInFlightPerPartition;
 
     public TemperatureIndividualConsumer(Consumer<String, TemperatureReading> consumer,
                                          java.util.function.Consumer<Throwable> exceptionConsumer,
@@ -39,19 +44,44 @@ public class TemperatureIndividualConsumer {
         this.pollingInterval = pollingInterval;
     }
 
+    // parallel mode - the readings of a sensor are still consumed in order, see KeyOrderedDispatcher
+    public TemperatureIndividualConsumer(Consumer<String, TemperatureReading> consumer,
+                                         java.util.function.Consumer<Throwable> exceptionConsumer,
+                                         java.util.function.Consumer<TemperatureReading> temperatureConsumer,
+                                         Duration pollingInterval, int parallelism, int maxInFlightPerPartition) {
+        this(consumer, exceptionConsumer, temperatureConsumer, pollingInterval);
+        this.parallelism = parallelism;
+        this.maxInFlightPerPartition = maxInFlightPerPartition;
+    }
+
     void startBySubscribing(String topic) {
-        consume(() -> consumer.subscribe(Collections.singleton(topic)));
+        consume(dispatcher -> {
+            if (dispatcher == null) {
+                consumer.subscribe(Collections.singleton(topic));
+            } else {
+                consumer.subscribe(Collections.singleton(topic), dispatcher); // drains revoked partitions
+            }
+        });
     }
 
     void startByAssigning(String topic, int partition) {
-        consume(() -> consumer.assign(Collections.singleton(new TopicPartition(topic, partition))));
+        consume(dispatcher -> consumer.assign(Collections.singleton(new TopicPartition(topic, partition))));
     }
 
-    private void consume(Runnable beforePollingTask) {
+    private void consume(java.util.function.Consumer<KeyOrderedDispatcher<String, TemperatureReading>> beforePollingTask) {
+        KeyOrderedDispatcher<String, TemperatureReading> dispatcher = parallelism > 1
+                ? new KeyOrderedDispatcher<>(consumer, record -> temperatureConsumer.accept(record.value()),
+                        parallelism, maxInFlightPerPartition)
+                : null;
         try {
-            beforePollingTask.run();
+            beforePollingTask.accept(dispatcher);
             while (!canceled) {
                 ConsumerRecords<String, TemperatureReading> records = consumer.poll(pollingInterval);
+                if (dispatcher != null) {
+                    dispatcher.dispatch(records);
+                    dispatcher.update();
+                    continue;
+                }
                 StreamSupport.stream(records.spliterator(), false)
                         .map(record -> record.value())
                         .forEach(temperatureConsumer);
@@ -62,10 +92,16 @@ public class TemperatureIndividualConsumer {
         } catch (RuntimeException ex) {
             exceptionConsumer.accept(ex);
         } finally {
+            if (dispatcher != null) dispatcher.close();
             consumer.close();
         }
     }
 
+    // thread safe, unlike the other consumer methods
+    public Map<MetricName, ? extends Metric> metrics() {
+        return consumer.metrics();
+    }
+
     public void stop() {
         canceled = true;
         consumer.wakeup();
@@ -0,0 +1,59 @@
+package course.kafka.listener;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.streams.processor.StateRestoreListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Logs state store restoration progress per changelog partition - restored records, rate and estimated time left.
+ */
+@Slf4j
+public class RestoreProgressListener implements StateRestoreListener {
+    public static final long LOG_INTERVAL_MS = 1000;
+
+    private final Map<TopicPartition, Progress> progress = new ConcurrentHashMap<>();
+
+    @Override
+    public void onRestoreStart(TopicPartition partition, String storeName, long startingOffset, long endingOffset) {
+        progress.put(partition, new Progress(endingOffset));
+        log.info("Restoring store '{}' from {}: offsets {} to {} ({} records)",
+                storeName, partition, startingOffset, endingOffset, endingOffset - startingOffset);
+    }
+
+    @Override
+    public void onBatchRestored(TopicPartition partition, String storeName, long batchEndOffset, long numRestored) {
+        var current = progress.get(partition);
+        if (current == null) return;
+        current.restored += numRestored;
+        long now = System.currentTimeMillis();
+        if (now - current.lastLogMs < LOG_INTERVAL_MS) return;
+        current.lastLogMs = now;
+        double recordsPerSec = current.restored * 1000.0 / Math.max(1, now - current.startMs);
+        long remaining = Math.max(0, current.endingOffset - batchEndOffset);
+        log.info("Restoring store '{}' from {}: {} records restored, {} records/sec, ETA {} s",
+                storeName, partition, current.restored, Math.round(recordsPerSec),
+                recordsPerSec > 0 ? Math.round(remaining / recordsPerSec) : "unknown");
+    }
+
+    @Override
+    public void onRestoreEnd(TopicPartition partition, String storeName, long totalRestored) {
+        var current = progress.remove(partition);
+        long elapsedMs = current == null ? 0 : System.currentTimeMillis() - current.startMs;
+        log.info("Restored store '{}' from {}: {} records in {} ms",
+                storeName, partition, totalRestored, elapsedMs);
+    }
+
+    private static final class Progress {
+        final long startMs = System.currentTimeMillis();
+        final long endingOffset;
+        long restored;
+        long lastLogMs = startMs;
+
+        Progress(long endingOffset) {
+            this.endingOffset = endingOffset;
+        }
+    }
+}
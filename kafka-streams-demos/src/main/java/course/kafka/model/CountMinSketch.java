@@ -0,0 +1,164 @@
+package course.kafka.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Count-Min Sketch (Cormode, Muthukrishnan - J. Algorithms 2005) of item frequencies in a fixed
+ * {@code depth x width} matrix of counters. With width = ceil(e / epsilon) and depth = ceil(ln(1 / delta)) an
+ * estimate never undercounts and overcounts by at most epsilon * total with probability at least 1 - delta,
+ * whatever the number of distinct items. Updates are conservative - only the counters below the new estimate
+ * are raised - which keeps the error well below the bound on skewed data. Sketches of equal dimensions merge
+ * by adding counters, and the merged estimates are still upper bounds of the true frequencies.
+ * <p>
+ * Binary layout (big-endian): width:int | depth:int | total:varlong | counters:varlong*
+ */
+public class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final long[] counters;
+    private long total = 0;
+
+    public CountMinSketch(double epsilon, double delta) {
+        this(width(epsilon), depth(delta));
+    }
+
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1 || (long) width * depth > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Invalid sketch dimensions " + depth + " x " + width);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new long[width * depth];
+    }
+
+    public static int width(double epsilon) {
+        if (epsilon <= 0 || epsilon >= 1) {
+            throw new IllegalArgumentException("Epsilon must be in (0, 1), but was " + epsilon);
+        }
+        return (int) Math.ceil(Math.E / epsilon);
+    }
+
+    public static int depth(double delta) {
+        if (delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("Delta must be in (0, 1), but was " + delta);
+        }
+        return (int) Math.ceil(Math.log(1 / delta));
+    }
+
+    /**
+     * @return the new frequency estimate of the item
+     */
+    public long add(CharSequence item, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count-Min Sketch supports only positive counts, but was " + count);
+        }
+        long hash = hash(item);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(hash, row)]);
+        }
+        estimate += count;
+        for (int row = 0; row < depth; row++) {
+            int i = index(hash, row);
+            if (counters[i] < estimate) counters[i] = estimate;
+        }
+        total += count;
+        return estimate;
+    }
+
+    public long estimate(CharSequence item) {
+        long hash = hash(item);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(hash, row)]);
+        }
+        return estimate;
+    }
+
+    public CountMinSketch merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge sketches of different dimensions: " +
+                    depth + " x " + width + " / " + other.depth + " x " + other.width);
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+        total += other.total;
+        return this;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long memoryBytes() {
+        return (long) counters.length * Long.BYTES;
+    }
+
+    // double hashing (Kirsch, Mitzenmacher) - row i uses h1 + i * h2 of one 64-bit hash
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * width + Math.floorMod(h1 + row * h2, width);
+    }
+
+    // FNV-1a over the chars with a murmur3 finalizer, so that String.hashCode collisions like "Aa" / "BB" do not
+    // collide in every row
+    static long hash(CharSequence item) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < item.length(); i++) {
+            h = (h ^ item.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public int serializedSize() {
+        int size = 2 * Integer.BYTES + VarLongs.size(total);
+        for (long counter : counters) {
+            size += VarLongs.size(counter);
+        }
+        return size;
+    }
+
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(width).putInt(depth);
+        VarLongs.write(buffer, total);
+        for (long counter : counters) {
+            VarLongs.write(buffer, counter);
+        }
+    }
+
+    public static CountMinSketch readFrom(ByteBuffer buffer) {
+        int width = buffer.getInt();
+        int depth = buffer.getInt();
+        // each counter takes at least one byte
+        if ((long) width * depth > buffer.remaining()) {
+            throw new IllegalArgumentException("Sketch of " + depth + " x " + width + " counters exceeds " +
+                    buffer.remaining() + " remaining bytes");
+        }
+        var sketch = new CountMinSketch(width, depth);
+        sketch.total = VarLongs.read(buffer);
+        for (int i = 0; i < sketch.counters.length; i++) {
+            sketch.counters[i] = VarLongs.read(buffer);
+        }
+        return sketch;
+    }
+
+    @Override
+    public String toString() {
+        return "CountMinSketch{" + depth + " x " + width + ", total=" + total + '}';
+    }
+}
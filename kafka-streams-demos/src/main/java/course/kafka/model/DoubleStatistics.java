@@ -1,31 +1,103 @@
 package course.kafka.model;
 
-import lombok.Data;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
-@Data
+import java.nio.ByteBuffer;
+
+/**
+ * Mergeable running statistics - mean and variance are maintained with Welford's online algorithm,
+ * partial aggregates are combined with Chan's parallel update. Binary layout (big-endian, 48 bytes):
+ * count:long | mean:double | m2:double | min:double | max:double | timestamp:long
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@JsonIgnoreProperties(value = {"sum", "average", "variance", "standardDeviation"}, allowGetters = true)
 public class DoubleStatistics {
+   public static final int SERIALIZED_SIZE = 48;
+
    private long count = 0;
-   private double sum = 0;
-   private double average = 0;
-   private double min = Double.MAX_VALUE;
-   private double max = Double.MIN_VALUE;
+   private double mean = 0;
+   // sum of squared deviations from the mean
+   private double m2 = 0;
+   private double min = Double.POSITIVE_INFINITY;
+   private double max = Double.NEGATIVE_INFINITY;
 
    private long timestamp = 0;
 
    public DoubleStatistics() {
    }
 
-   public DoubleStatistics(long count, double sum, double average) {
-      this.count = count;
-      this.sum = sum;
-      this.average = average;
-   }
-
-   public DoubleStatistics(long count, double sum, double average, double min, double max) {
+   public DoubleStatistics(long count, double mean, double m2, double min, double max, long timestamp) {
       this.count = count;
-      this.sum = sum;
-      this.average = average;
+      this.mean = mean;
+      this.m2 = m2;
       this.min = min;
       this.max = max;
+      this.timestamp = timestamp;
+   }
+
+   public DoubleStatistics add(double value, long timestamp) {
+      count++;
+      double delta = value - mean;
+      mean += delta / count;
+      m2 += delta * (value - mean);
+      if (value < min) min = value;
+      if (value > max) max = value;
+      if (timestamp > this.timestamp) this.timestamp = timestamp;
+      return this;
+   }
+
+   public DoubleStatistics merge(DoubleStatistics other) {
+      if (other.count == 0) return this;
+      if (count == 0) {
+         count = other.count;
+         mean = other.mean;
+         m2 = other.m2;
+      } else {
+         long total = count + other.count;
+         double delta = other.mean - mean;
+         mean += delta * other.count / total;
+         m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+         count = total;
+      }
+      if (other.min < min) min = other.min;
+      if (other.max > max) max = other.max;
+      if (other.timestamp > timestamp) timestamp = other.timestamp;
+      return this;
+   }
+
+   public double getSum() {
+      return mean * count;
+   }
+
+   public double getAverage() {
+      return mean;
+   }
+
+   // sample variance
+   public double getVariance() {
+      return count < 2 ? 0 : m2 / (count - 1);
+   }
+
+   public double getStandardDeviation() {
+      return Math.sqrt(getVariance());
+   }
+
+   public void writeTo(ByteBuffer buffer) {
+      buffer.putLong(count)
+            .putDouble(mean)
+            .putDouble(m2)
+            .putDouble(min)
+            .putDouble(max)
+            .putLong(timestamp);
+   }
+
+   public static DoubleStatistics readFrom(ByteBuffer buffer) {
+      return new DoubleStatistics(buffer.getLong(), buffer.getDouble(), buffer.getDouble(),
+            buffer.getDouble(), buffer.getDouble(), buffer.getLong());
    }
 }
@@ -0,0 +1,194 @@
+package course.kafka.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The k most frequent items of a stream in bounded memory: frequencies are estimated by a {@link CountMinSketch}
+ * and the k items with the highest estimates are kept in a min-heap. An item that is not in the heap enters it
+ * only when its estimate exceeds the heap minimum, so the long tail of rare items costs a sketch update and one
+ * comparison - no allocation. Memory is {@code 8 * width * depth} bytes plus k items, independent of the number
+ * of distinct items.
+ * <p>
+ * Merging adds the sketches and re-ranks the union of both candidate sets by the merged estimates. An item that
+ * is frequent overall but in neither candidate set is missed, so merged summaries should be built with a k
+ * somewhat larger than the number of items finally reported.
+ * <p>
+ * Binary layout (big-endian): k:int | sketch | size:int | (word length:int | UTF-8 word | estimate:varlong)*
+ */
+public class HeavyHitters {
+    private final int k;
+    private final CountMinSketch sketch;
+    private final String[] items;
+    private final long[] estimates;
+    private final Map<String, Integer> positions;
+    private int size = 0;
+
+    public HeavyHitters(int k, double epsilon, double delta) {
+        this(k, new CountMinSketch(epsilon, delta));
+    }
+
+    private HeavyHitters(int k, CountMinSketch sketch) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Number of heavy hitters must be positive, but was " + k);
+        }
+        this.k = k;
+        this.sketch = sketch;
+        this.items = new String[k];
+        this.estimates = new long[k];
+        this.positions = new HashMap<>(2 * k);
+    }
+
+    // an empty summary with the same parameters, as a merge target
+    public HeavyHitters emptyCopy() {
+        return new HeavyHitters(k, new CountMinSketch(sketch.getWidth(), sketch.getDepth()));
+    }
+
+    public HeavyHitters add(CharSequence item, long count) {
+        offer(item, sketch.add(item, count));
+        return this;
+    }
+
+    public HeavyHitters merge(HeavyHitters other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException("Cannot merge top " + k + " with top " + other.k);
+        }
+        sketch.merge(other.sketch);
+        Set<String> candidates = new HashSet<>(positions.keySet());
+        candidates.addAll(other.positions.keySet());
+        positions.clear();
+        size = 0;
+        for (String candidate : candidates) {
+            offer(candidate, sketch.estimate(candidate));
+        }
+        return this;
+    }
+
+    /**
+     * @return the heavy hitters with their estimated frequencies, most frequent first
+     */
+    public Map<String, Long> top() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> estimates[i]).reversed()
+                .thenComparing(i -> items[i]));
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (int i : order) {
+            top.put(items[i], estimates[i]);
+        }
+        return top;
+    }
+
+    public long estimate(CharSequence item) {
+        return sketch.estimate(item);
+    }
+
+    public long getTotal() {
+        return sketch.getTotal();
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public long memoryBytes() {
+        return sketch.memoryBytes();
+    }
+
+    private void offer(CharSequence item, long estimate) {
+        if (size == k && estimate <= estimates[0]) return;
+        String word = item.toString();
+        Integer pos = positions.get(word);
+        if (pos != null) {
+            estimates[pos] = estimate;
+            siftDown(pos);
+        } else if (size < k) {
+            set(size, word, estimate);
+            siftUp(size++);
+        } else {
+            positions.remove(items[0]);
+            set(0, word, estimate);
+            siftDown(0);
+        }
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (estimates[parent] <= estimates[i]) return;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && estimates[left] < estimates[smallest]) smallest = left;
+            if (right < size && estimates[right] < estimates[smallest]) smallest = right;
+            if (smallest == i) return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        String item = items[i];
+        long estimate = estimates[i];
+        set(i, items[j], estimates[j]);
+        set(j, item, estimate);
+    }
+
+    private void set(int i, String item, long estimate) {
+        items[i] = item;
+        estimates[i] = estimate;
+        positions.put(item, i);
+    }
+
+    public int serializedSize() {
+        int serializedSize = Integer.BYTES + sketch.serializedSize() + Integer.BYTES;
+        for (int i = 0; i < size; i++) {
+            serializedSize += Integer.BYTES + items[i].getBytes(StandardCharsets.UTF_8).length +
+                    VarLongs.size(estimates[i]);
+        }
+        return serializedSize;
+    }
+
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(k);
+        sketch.writeTo(buffer);
+        buffer.putInt(size);
+        for (int i = 0; i < size; i++) {
+            byte[] bytes = items[i].getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length).put(bytes);
+            VarLongs.write(buffer, estimates[i]);
+        }
+    }
+
+    public static HeavyHitters readFrom(ByteBuffer buffer) {
+        int k = buffer.getInt();
+        var heavyHitters = new HeavyHitters(k, CountMinSketch.readFrom(buffer));
+        int size = buffer.getInt();
+        if (size < 0 || size > k) {
+            throw new IllegalArgumentException("Invalid number of heavy hitters " + size + " for top " + k);
+        }
+        for (int i = 0; i < size; i++) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid heavy hitter length: " + length);
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            heavyHitters.offer(new String(bytes, StandardCharsets.UTF_8), VarLongs.read(buffer));
+        }
+        return heavyHitters;
+    }
+
+    @Override
+    public String toString() {
+        return "HeavyHitters{total=" + getTotal() + ", top=" + top() + '}';
+    }
+}
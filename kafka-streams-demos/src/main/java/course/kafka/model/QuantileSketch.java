@@ -0,0 +1,261 @@
+package course.kafka.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Mergeable quantile sketch after DDSketch (Masson, Rim, Lee - VLDB 2019). Values are counted in logarithmic
+ * bins [gamma^(i-1), gamma^i) with gamma = (1 + a) / (1 - a), separately for positive and negative values,
+ * so any returned quantile q is within relative error a of the exact one: |estimate - x_q| <= a * |x_q|.
+ * The guarantee holds as long as no more than {@code maxBins} bins are needed per sign - beyond that the bins
+ * of the smallest magnitudes are collapsed, which only degrades the quantiles close to zero. Values with
+ * magnitude below {@link #MIN_INDEXABLE_VALUE} are counted as zero. Merging requires equal parameters, and the
+ * result is identical to a sketch of all values added to one sketch.
+ * <p>
+ * Binary layout (big-endian): relative accuracy:double | max bins:int | zero count:varlong | min:double |
+ * max:double | positive bins | negative bins, where bins are first index:int | length:int | counts:varlong*
+ */
+public class QuantileSketch {
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BINS = 2048;
+    public static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final int maxBins;
+    private final double gamma;
+    private final double logGamma;
+    private final Bins positive = new Bins();
+    private final Bins negative = new Bins();
+    private long zeroCount = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BINS);
+    }
+
+    public QuantileSketch(double relativeAccuracy, int maxBins) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1), but was " + relativeAccuracy);
+        }
+        if (maxBins < 2) {
+            throw new IllegalArgumentException("At least 2 bins are required, but was " + maxBins);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.maxBins = maxBins;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public QuantileSketch add(double value) {
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("Cannot add NaN to a quantile sketch");
+        }
+        if (value >= MIN_INDEXABLE_VALUE) {
+            positive.add(index(value), 1, maxBins);
+        } else if (value <= -MIN_INDEXABLE_VALUE) {
+            negative.add(index(-value), 1, maxBins);
+        } else {
+            zeroCount++;
+        }
+        if (value < min) min = value;
+        if (value > max) max = value;
+        return this;
+    }
+
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy || other.maxBins != maxBins) {
+            throw new IllegalArgumentException("Cannot merge sketches with different parameters: accuracy " +
+                    relativeAccuracy + " / " + other.relativeAccuracy + ", bins " + maxBins + " / " + other.maxBins);
+        }
+        positive.merge(other.positive, maxBins);
+        negative.merge(other.negative, maxBins);
+        zeroCount += other.zeroCount;
+        if (other.min < min) min = other.min;
+        if (other.max > max) max = other.max;
+        return this;
+    }
+
+    /**
+     * @param quantile in [0, 1], e.g. 0.95 for the 95th percentile
+     * @return the estimated quantile, or NaN for an empty sketch
+     */
+    public double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be in [0, 1], but was " + quantile);
+        }
+        long count = getCount();
+        if (count == 0) return Double.NaN;
+        if (quantile == 0) return min;
+        if (quantile == 1) return max;
+
+        // values in ascending order: negatives by descending magnitude, zeros, then positives
+        double rank = quantile * (count - 1);
+        long seen = 0;
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank) return clamp(-value(negative.offset + i));
+        }
+        seen += zeroCount;
+        if (seen > rank) return 0;
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank) return clamp(value(positive.offset + i));
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return zeroCount + positive.total + negative.total;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    // the value with equal relative distance to both bin bounds
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public int serializedSize() {
+        return Double.BYTES + Integer.BYTES + VarLongs.size(zeroCount) + 2 * Double.BYTES +
+                positive.serializedSize() + negative.serializedSize();
+    }
+
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putDouble(relativeAccuracy).putInt(maxBins);
+        VarLongs.write(buffer, zeroCount);
+        buffer.putDouble(min).putDouble(max);
+        positive.writeTo(buffer);
+        negative.writeTo(buffer);
+    }
+
+    public static QuantileSketch readFrom(ByteBuffer buffer) {
+        var sketch = new QuantileSketch(buffer.getDouble(), buffer.getInt());
+        sketch.zeroCount = VarLongs.read(buffer);
+        sketch.min = buffer.getDouble();
+        sketch.max = buffer.getDouble();
+        sketch.positive.readFrom(buffer, sketch.maxBins);
+        sketch.negative.readFrom(buffer, sketch.maxBins);
+        return sketch;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch{count=" + getCount() + ", min=" + min + ", p50=" + quantile(0.5) +
+                ", p95=" + quantile(0.95) + ", p99=" + quantile(0.99) + ", max=" + max + '}';
+    }
+
+    // contiguous counts of bin indexes [offset, offset + counts.length)
+    private static final class Bins {
+        private static final int INITIAL_LENGTH = 64;
+
+        private long[] counts = new long[0];
+        private int offset = 0;
+        private long total = 0;
+
+        void add(int index, long count, int maxBins) {
+            if (counts.length == 0) {
+                offset = index - INITIAL_LENGTH / 2;
+                counts = new long[Math.min(INITIAL_LENGTH, maxBins)];
+            }
+            if (index < offset || index >= offset + counts.length) {
+                index = resize(index, maxBins);
+            }
+            counts[index - offset] += count;
+            total += count;
+        }
+
+        void merge(Bins other, int maxBins) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i], maxBins);
+                }
+            }
+        }
+
+        // grows the range to include index, collapsing the lowest bins if more than maxBins would be needed
+        private int resize(int index, int maxBins) {
+            int low = Math.min(index, offset);
+            int high = Math.max(index, offset + counts.length - 1);
+            int span = high - low + 1;
+            int length = Math.min(maxBins, Math.max(2 * span, INITIAL_LENGTH));
+            int newOffset = span >= length ? high - length + 1 : low - (length - span) / 2;
+            var newCounts = new long[length];
+            for (int i = 0; i < counts.length; i++) {
+                newCounts[Math.max(offset + i, newOffset) - newOffset] += counts[i];
+            }
+            counts = newCounts;
+            offset = newOffset;
+            return Math.max(index, newOffset);
+        }
+
+        int serializedSize() {
+            int size = 2 * Integer.BYTES;
+            int from = firstNonEmpty();
+            int to = lastNonEmpty();
+            for (int i = Math.max(from, 0); i <= to; i++) {
+                size += VarLongs.size(counts[i]);
+            }
+            return size;
+        }
+
+        void writeTo(ByteBuffer buffer) {
+            int from = firstNonEmpty();
+            int to = lastNonEmpty();
+            if (from < 0) {
+                buffer.putInt(0).putInt(0);
+                return;
+            }
+            buffer.putInt(offset + from).putInt(to - from + 1);
+            for (int i = from; i <= to; i++) {
+                VarLongs.write(buffer, counts[i]);
+            }
+        }
+
+        void readFrom(ByteBuffer buffer, int maxBins) {
+            int first = buffer.getInt();
+            int length = buffer.getInt();
+            if (length < 0 || length > maxBins) {
+                throw new IllegalArgumentException("Invalid number of bins: " + length);
+            }
+            counts = new long[length];
+            offset = first;
+            total = 0;
+            for (int i = 0; i < length; i++) {
+                counts[i] = VarLongs.read(buffer);
+                total += counts[i];
+            }
+        }
+
+        private int firstNonEmpty() {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) return i;
+            }
+            return -1;
+        }
+
+        private int lastNonEmpty() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] != 0) return i;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package course.kafka.model;
+
+import java.util.Arrays;
+
+/**
+ * Bloom filter over a sliding time horizon, split into {@code generations} filters of {@code generationMs} each.
+ * Items are added to the generation of the current time, and when time moves past the oldest generation its bits
+ * are cleared and reused, so memory stays fixed however many items pass. An item is remembered for at least
+ * {@code (generations - 1) * generationMs} and at most {@code generations * generationMs}.
+ * <p>
+ * A query checks every generation, so each one is sized for {@code fpp / generations} - see {@link #forFpp}.
+ * As in any Bloom filter, a negative answer is certain and a positive one may be false.
+ */
+public class RotatingBloomFilter {
+    private final int bits;
+    private final int hashes;
+    private final long generationMs;
+    private final long[][] filters;
+    private final long[] generationOf; // generation number held by each filter
+    private long current = Long.MIN_VALUE;
+
+    public RotatingBloomFilter(int bits, int hashes, int generations, long generationMs) {
+        if (bits < 64 || hashes < 1 || generations < 2 || generationMs < 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter: " + bits + " bits, " + hashes + " hashes, " +
+                    generations + " generations of " + generationMs + " ms");
+        }
+        this.bits = bits;
+        this.hashes = hashes;
+        this.generationMs = generationMs;
+        this.filters = new long[generations][(bits + 63) / 64];
+        this.generationOf = new long[generations];
+        Arrays.fill(generationOf, Long.MIN_VALUE);
+    }
+
+    // remembers the expected number of items within the horizon with the given overall false positive rate
+    public static RotatingBloomFilter forFpp(long expectedItems, double fpp, int generations, long horizonMs) {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("False positive rate must be in (0, 1), but was " + fpp);
+        }
+        if (generations < 2) throw new IllegalArgumentException("At least 2 generations needed: " + generations);
+        double itemsPerGeneration = Math.max(1, (double) expectedItems / (generations - 1));
+        double generationFpp = fpp / generations;
+        long bits = (long) Math.ceil(-itemsPerGeneration * Math.log(generationFpp) / (Math.log(2) * Math.log(2)));
+        if (bits > Integer.MAX_VALUE - 64) throw new IllegalArgumentException("Bloom filter too large: " + bits);
+        int hashes = Math.max(1, (int) Math.round(bits / itemsPerGeneration * Math.log(2)));
+        long generationMs = Math.max(1, (long) Math.ceil((double) horizonMs / (generations - 1)));
+        return new RotatingBloomFilter((int) Math.max(64, bits), hashes, generations, generationMs);
+    }
+
+    // moves the current generation to the given time, clearing the generations that left the horizon
+    public void advanceTo(long timestamp) {
+        long generation = Math.floorDiv(timestamp, generationMs);
+        if (generation <= current) return;
+        current = generation;
+        for (int i = 0; i < filters.length; i++) {
+            if (generationOf[i] != Long.MIN_VALUE && generationOf[i] <= current - filters.length) {
+                Arrays.fill(filters[i], 0);
+                generationOf[i] = Long.MIN_VALUE;
+            }
+        }
+    }
+
+    public void put(CharSequence item) {
+        int slot = (int) Math.floorMod(current, (long) filters.length);
+        if (generationOf[slot] != current) {
+            Arrays.fill(filters[slot], 0);
+            generationOf[slot] = current;
+        }
+        long[] filter = filters[slot];
+        long hash = CountMinSketch.hash(item);
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(hash, i);
+            filter[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(CharSequence item) {
+        long hash = CountMinSketch.hash(item);
+        for (int slot = 0; slot < filters.length; slot++) {
+            if (generationOf[slot] != Long.MIN_VALUE && contains(filters[slot], hash)) return true;
+        }
+        return false;
+    }
+
+    public long memoryBytes() {
+        return (long) filters.length * filters[0].length * Long.BYTES;
+    }
+
+    private boolean contains(long[] filter, long hash) {
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(hash, i);
+            if ((filter[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    // double hashing (Kirsch, Mitzenmacher), as in CountMinSketch
+    private int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return Math.floorMod(h1 + i * h2, bits);
+    }
+}
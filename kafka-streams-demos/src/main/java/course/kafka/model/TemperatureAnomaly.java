@@ -0,0 +1,21 @@
+package course.kafka.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TemperatureAnomaly {
+    public enum Type {Z_SCORE, RATE_OF_CHANGE}
+
+    private Type type;
+    private String sensorId;
+    private double value;
+    private long timestamp;
+    private double mean; // before the reading
+    private double stdDev;
+    private double zScore;
+    private double ratePerSecond;
+}
@@ -0,0 +1,214 @@
+package course.kafka.partitioner;
+
+import course.kafka.model.StockPrice;
+import course.kafka.model.TemperatureReading;
+import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.serialization.JsonDeserializer;
+import course.kafka.serialization.JsonSerializer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.clients.producer.internals.DefaultPartitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static course.kafka.model.TemperatureReading.HF_SENSOR_IDS;
+import static course.kafka.model.TemperatureReading.NORMAL_SENSOR_IDS;
+import static course.kafka.producer.SimpleTemperatureReadingsProducer.HIGH_FREQUENCY_SENSORS;
+import static course.kafka.service.StockPricesGenerator.STOCKS;
+
+/**
+ * Offline evaluation of {@link Partitioner} implementations: feeds sample records through the partitioner
+ * against a mocked single-broker {@link Cluster} and reports per-partition record and byte skew.
+ * Usage: PartitionSkewAnalyzer [recorded-temperature-readings-file] - one "key TAB json-value" per line.
+ */
+@Slf4j
+public class PartitionSkewAnalyzer {
+    public static final String TOPIC = "partition-skew-analysis";
+    public static final int[] PARTITION_COUNTS = {1, 3, 6, 12, 24, 48};
+    public static final int NUM_SAMPLE_RECORDS = 100_000;
+    public static final int TIMED_ITERATIONS = 5;
+    public static final double HF_READINGS_SHARE = 0.5;
+
+    private static final StringSerializer keySerializer = new StringSerializer();
+    private static final JsonSerializer<Object> valueSerializer = new JsonSerializer<>();
+
+    private final String partitionerName;
+    private final Supplier<Partitioner> partitionerFactory;
+    private final Map<String, ?> partitionerConfigs;
+
+    public PartitionSkewAnalyzer(String partitionerName, Supplier<Partitioner> partitionerFactory,
+                                 Map<String, ?> partitionerConfigs) {
+        this.partitionerName = partitionerName;
+        this.partitionerFactory = partitionerFactory;
+        this.partitionerConfigs = partitionerConfigs;
+    }
+
+    public static Cluster mockCluster(String topic, int numPartitions) {
+        var node = new Node(0, "localhost", 9092);
+        var nodes = new Node[]{node};
+        var partitions = IntStream.range(0, numPartitions)
+                .mapToObj(p -> new PartitionInfo(topic, p, node, nodes, nodes))
+                .collect(Collectors.toList());
+        return new Cluster("partition-skew-cluster", List.of(node), partitions, Set.of(), Set.of());
+    }
+
+    public PartitionSkewReport analyze(List<SampleRecord> records, int numPartitions) {
+        var cluster = mockCluster(TOPIC, numPartitions);
+        var partitioner = partitionerFactory.get();
+        try {
+            partitioner.configure(partitionerConfigs);
+            var recordCounts = new long[numPartitions];
+            var byteCounts = new long[numPartitions];
+            // first pass collects the distribution and warms up the partitioner
+            for (var record : records) {
+                int partition = partition(partitioner, record, cluster);
+                if (partition < 0 || partition >= numPartitions) {
+                    throw new IllegalStateException("Partition " + partition + " is out of range [0, " + numPartitions + ")");
+                }
+                recordCounts[partition]++;
+                byteCounts[partition] += record.getSizeInBytes();
+            }
+            long checksum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < TIMED_ITERATIONS; i++) {
+                for (var record : records) {
+                    checksum += partition(partitioner, record, cluster);
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            log.debug("Partitioner '{}' checksum: {}", partitionerName, checksum);
+            return new PartitionSkewReport(partitionerName, numPartitions, recordCounts, byteCounts,
+                    (double) elapsed / ((long) TIMED_ITERATIONS * records.size()), null);
+        } catch (RuntimeException ex) {
+            return PartitionSkewReport.failed(partitionerName, numPartitions, ex);
+        } finally {
+            partitioner.close();
+        }
+    }
+
+    public List<PartitionSkewReport> analyzeMatrix(List<SampleRecord> records, int... partitionCounts) {
+        return Arrays.stream(partitionCounts)
+                .mapToObj(numPartitions -> analyze(records, numPartitions))
+                .collect(Collectors.toList());
+    }
+
+    private static int partition(Partitioner partitioner, SampleRecord record, Cluster cluster) {
+        return partitioner.partition(TOPIC, record.getKey(), record.getKeyBytes(),
+                record.getValue(), record.getValueBytes(), cluster);
+    }
+
+    public static SampleRecord sampleRecord(Object key, Object value) {
+        return new SampleRecord(key, keySerializer.serialize(TOPIC, key == null ? null : key.toString()),
+                value, valueSerializer.serialize(TOPIC, value));
+    }
+
+    // keyed by reading id, as sent by SimpleTemperatureReadingsProducer
+    public static List<SampleRecord> temperatureReadings(int count, double hfShare, long seed) {
+        var rand = new Random(seed);
+        var records = new ArrayList<SampleRecord>(count);
+        for (int i = 0; i < count; i++) {
+            var sensorId = rand.nextDouble() < hfShare
+                    ? HF_SENSOR_IDS.get(rand.nextInt(HF_SENSOR_IDS.size()))
+                    : NORMAL_SENSOR_IDS.get(rand.nextInt(NORMAL_SENSOR_IDS.size()));
+            var reading = new TemperatureReading(new UUID(rand.nextLong(), rand.nextLong()).toString(),
+                    sensorId, rand.nextDouble() * 40);
+            records.add(sampleRecord(reading.getId(), reading));
+        }
+        return records;
+    }
+
+    // keyed by sensor id, as sent by TimestampedTemperatureReadingsProducer
+    public static List<SampleRecord> timestampedTemperatureReadings(int count, long seed) {
+        var rand = new Random(seed);
+        var records = new ArrayList<SampleRecord>(count);
+        for (int i = 0; i < count; i++) {
+            var sensorId = TimestampedTemperatureReading.NORMAL_SENSOR_IDS
+                    .get(rand.nextInt(TimestampedTemperatureReading.NORMAL_SENSOR_IDS.size()));
+            var reading = new TimestampedTemperatureReading(sensorId, rand.nextDouble() * 40, i);
+            records.add(sampleRecord(sensorId, reading));
+        }
+        return records;
+    }
+
+    // keyed by stock symbol
+    public static List<SampleRecord> stockPrices(int count, long seed) {
+        var rand = new Random(seed);
+        var records = new ArrayList<SampleRecord>(count);
+        for (int i = 0; i < count; i++) {
+            var stock = STOCKS.get(rand.nextInt(STOCKS.size()));
+            var price = new StockPrice((long) i, stock.getSymbol(), stock.getName(), stock.getPrice(), new Date(i));
+            records.add(sampleRecord(price.getSymbol(), price));
+        }
+        return records;
+    }
+
+    // recorded stream - one "key TAB json-value" pair per line
+    public static <V> List<SampleRecord> recorded(Path path, Function<byte[], V> valueDecoder) throws IOException {
+        try (var lines = Files.lines(path, StandardCharsets.UTF_8)) {
+            return lines.filter(line -> !line.isBlank())
+                    .map(line -> {
+                        int tab = line.indexOf('\t');
+                        var key = tab < 0 ? null : line.substring(0, tab);
+                        var valueBytes = line.substring(tab + 1).getBytes(StandardCharsets.UTF_8);
+                        return new SampleRecord(key, key == null ? null : keySerializer.serialize(TOPIC, key),
+                                valueDecoder.apply(valueBytes), valueBytes);
+                    })
+                    .collect(Collectors.toList());
+        }
+    }
+
+    public static void printReports(String title, List<PartitionSkewReport> reports) {
+        var sj = new StringJoiner("\n",
+                "\n" + title + "\n-------------------------------------------------------------------------------------------------------\n" +
+                        String.format("| %-42.42s | %5s | %8s | %7s | %8s | %7s | %5s | %10s |",
+                                "Partitioner", "Parts", "Rec Max/", "Rec", "Byte Max", "Byte", "Empty", "ns/op") +
+                        "\n" + String.format("| %-42.42s | %5s | %8s | %7s | %8s | %7s | %5s | %10s |",
+                        "", "", "Mean", "Gini", "/Mean", "Gini", "", "") + "\n",
+                "\n-------------------------------------------------------------------------------------------------------\n");
+        reports.forEach(report -> sj.add(report.toString()));
+        log.info(sj.toString());
+    }
+
+    private static void analyzeWithBaseline(String title, String partitionerName, Supplier<Partitioner> partitionerFactory,
+                                            Map<String, ?> configs, List<SampleRecord> records) {
+        var reports = new ArrayList<PartitionSkewReport>();
+        reports.addAll(new PartitionSkewAnalyzer(partitionerName, partitionerFactory, configs)
+                .analyzeMatrix(records, PARTITION_COUNTS));
+        // murmur2 hashing of the key bytes, as done by the producer without a custom partitioner
+        reports.addAll(new PartitionSkewAnalyzer(DefaultPartitioner.class.getSimpleName(), DefaultPartitioner::new, configs)
+                .analyzeMatrix(records, PARTITION_COUNTS));
+        printReports(title, reports);
+    }
+
+    public static void main(String[] args) throws IOException {
+        var hfConfig = Map.of(HIGH_FREQUENCY_SENSORS, String.join(",", HF_SENSOR_IDS));
+        var readingDeserializer = new JsonDeserializer<>(TemperatureReading.class);
+
+        List<SampleRecord> readings = args.length > 0
+                ? recorded(Path.of(args[0]), bytes -> readingDeserializer.deserialize(TOPIC, bytes))
+                : temperatureReadings(NUM_SAMPLE_RECORDS, HF_READINGS_SHARE, 42);
+        analyzeWithBaseline("Temperature readings keyed by reading id",
+                TemperatureReadingsPartitioner.class.getSimpleName(), TemperatureReadingsPartitioner::new,
+                hfConfig, readings);
+
+        analyzeWithBaseline("Timestamped temperature readings keyed by sensor id",
+                TemperatureReadingsPartitionerBySensorId.class.getSimpleName(), TemperatureReadingsPartitionerBySensorId::new,
+                Map.of(), timestampedTemperatureReadings(NUM_SAMPLE_RECORDS, 42));
+
+        analyzeWithBaseline("Stock prices keyed by symbol",
+                StockPricePartitioner.class.getSimpleName(), StockPricePartitioner::new,
+                Map.of(), stockPrices(NUM_SAMPLE_RECORDS, 42));
+    }
+}
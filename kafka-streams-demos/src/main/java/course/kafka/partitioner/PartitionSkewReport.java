@@ -0,0 +1,77 @@
+package course.kafka.partitioner;
+
+import lombok.Value;
+
+import java.util.Arrays;
+
+@Value
+public class PartitionSkewReport {
+    private String partitionerName;
+    private int numPartitions;
+    private long[] recordsPerPartition;
+    private long[] bytesPerPartition;
+    private double nanosPerPartitionCall;
+    private String error;
+
+    public static PartitionSkewReport failed(String partitionerName, int numPartitions, Throwable error) {
+        return new PartitionSkewReport(partitionerName, numPartitions, new long[numPartitions],
+                new long[numPartitions], Double.NaN, error.getClass().getSimpleName() + ": " + error.getMessage());
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    public double getRecordsMaxToMean() {
+        return maxToMean(recordsPerPartition);
+    }
+
+    public double getBytesMaxToMean() {
+        return maxToMean(bytesPerPartition);
+    }
+
+    public double getRecordsGini() {
+        return gini(recordsPerPartition);
+    }
+
+    public double getBytesGini() {
+        return gini(bytesPerPartition);
+    }
+
+    public long getEmptyPartitions() {
+        return Arrays.stream(recordsPerPartition).filter(count -> count == 0).count();
+    }
+
+    // 1.0 means perfectly even load, N means all load landed on a single of N partitions
+    static double maxToMean(long[] counts) {
+        long total = Arrays.stream(counts).sum();
+        if (total == 0) return 0;
+        long max = Arrays.stream(counts).max().orElse(0);
+        return max / ((double) total / counts.length);
+    }
+
+    // 0.0 means perfectly even load, (N - 1) / N means all load landed on a single partition
+    static double gini(long[] counts) {
+        long[] sorted = counts.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        double total = 0;
+        double weightedTotal = 0;
+        for (int i = 0; i < n; i++) {
+            total += sorted[i];
+            weightedTotal += (i + 1) * (double) sorted[i];
+        }
+        if (total == 0) return 0;
+        return (2 * weightedTotal) / (n * total) - (n + 1.0) / n;
+    }
+
+    @Override
+    public String toString() {
+        if (isFailed()) {
+            return String.format("| %-42.42s | %5d | %-75.75s |", partitionerName, numPartitions, "FAILED - " + error);
+        }
+        return String.format("| %-42.42s | %5d | %8.3f | %7.4f | %8.3f | %7.4f | %5d | %10.1f |",
+                partitionerName, numPartitions, getRecordsMaxToMean(), getRecordsGini(),
+                getBytesMaxToMean(), getBytesGini(), getEmptyPartitions(), nanosPerPartitionCall);
+    }
+}
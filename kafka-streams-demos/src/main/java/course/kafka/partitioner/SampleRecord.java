@@ -0,0 +1,15 @@
+package course.kafka.partitioner;
+
+import lombok.Value;
+
+@Value
+public class SampleRecord {
+    private Object key;
+    private byte[] keyBytes;
+    private Object value;
+    private byte[] valueBytes;
+
+    public int getSizeInBytes() {
+        return (keyBytes == null ? 0 : keyBytes.length) + (valueBytes == null ? 0 : valueBytes.length);
+    }
+}
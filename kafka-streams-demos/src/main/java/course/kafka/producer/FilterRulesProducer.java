@@ -0,0 +1,62 @@
+package course.kafka.producer;
+
+import course.kafka.rules.FilterRule;
+import course.kafka.rules.FilterRule.Operator;
+import course.kafka.rules.FilterRules;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+
+import static course.kafka.model.TimestampedTemperatureReading.HF_SENSOR_IDS;
+
+// publishes the temperature filter rules, keyed by rule id, to the compacted rules topic
+@Slf4j
+public class FilterRulesProducer {
+    public static final String BOOTSTRAP_SERVERS = "localhost:9093";
+
+    public static void createRulesTopic(Admin admin) throws ExecutionException, InterruptedException {
+        try {
+            admin.createTopics(List.of(new NewTopic(FilterRules.RULES_TOPIC, 1, (short) 1)
+                    .configs(Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT)))).all().get();
+            log.info("Created rules topic '{}'", FilterRules.RULES_TOPIC);
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof TopicExistsException)) throw e;
+        }
+    }
+
+    public static void main(String[] args) throws ExecutionException, InterruptedException {
+        Map<String, FilterRule> rules = new LinkedHashMap<>();
+        rules.put("min-value", new FilterRule(Operator.GT, -15));
+        rules.put("max-value", new FilterRule(Operator.LT, 60));
+        for (String sensorId : HF_SENSOR_IDS) { // the high frequency sensors measure hot water
+            rules.put(sensorId + "-max-value", new FilterRule(Operator.LT, 95, sensorId));
+        }
+
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, BOOTSTRAP_SERVERS))) {
+            createRulesTopic(admin);
+        }
+
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, BOOTSTRAP_SERVERS);
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        try (var producer = new KafkaProducer<>(props, new StringSerializer(), FilterRules.RULE_SERDE.serializer())) {
+            for (var rule : rules.entrySet()) {
+                producer.send(new ProducerRecord<>(FilterRules.RULES_TOPIC, rule.getKey(), rule.getValue())).get();
+                log.info("Published rule {}: {}", rule.getKey(), rule.getValue());
+            }
+        }
+    }
+}
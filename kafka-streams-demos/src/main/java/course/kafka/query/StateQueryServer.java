@@ -0,0 +1,451 @@
+package course.kafka.query;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyQueryMetadata;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.StreamsMetadata;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.errors.UnknownStateStoreException;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.apache.kafka.streams.state.ReadOnlyWindowStore;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded HTTP query layer over the local state stores of a {@link KafkaStreams} instance:
+ * <pre>
+ * GET /stores/{store}/keys/{key}                  point lookup in a key-value store
+ * GET /stores/{store}/keys?from=a&amp;to=b            range scan over all instances (NDJSON)
+ * GET /stores/{store}/windows/{key}?from=t1&amp;to=t2 windows of a key, times in epoch ms (NDJSON)
+ * GET /stores/{store}/windows?from=t1&amp;to=t2       windows of all keys over all instances (NDJSON)
+ * </pre>
+ * Keyed queries are routed to the active instance of the key's partition, range queries fan out to every
+ * instance hosting the store. Results are streamed line by line with chunked encoding, so large ranges are
+ * never held in memory. Point lookup responses are kept in a small TTL cache for hot keys.
+ * <p>
+ * A fan-out contacts all other instances before the response starts: if one is unreachable, times out or fails,
+ * the whole query fails with 502 (503 if that instance is rebalancing). A failure after streaming started ends
+ * the part of that instance with an {@code {"error": ...}} line, so a client never mistakes a partial result
+ * for a complete one.
+ * The instance address must be configured as {@link org.apache.kafka.streams.StreamsConfig#APPLICATION_SERVER_CONFIG}.
+ */
+@Slf4j
+public class StateQueryServer {
+    public static final String LOCAL_ONLY_PARAM = "local";
+    public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+    public static final String JSON_CONTENT_TYPE = "application/json";
+    public static final int QUERY_THREADS = 4;
+    public static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+    public static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10); // until the response headers arrive
+    public static final Duration CACHE_TTL = Duration.ofSeconds(1);
+    public static final int CACHE_MAX_ENTRIES = 10_000;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    static {
+        objectMapper.registerModule(new JavaTimeModule());
+    }
+
+    private final KafkaStreams streams;
+    private final HostInfo self;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(QUERY_THREADS);
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+    private final TtlCache<String, byte[]> cache = new TtlCache<>(CACHE_TTL.toMillis(), CACHE_MAX_ENTRIES);
+
+    public StateQueryServer(KafkaStreams streams, HostInfo self) throws IOException {
+        this.streams = streams;
+        this.self = self;
+        this.server = HttpServer.create(new InetSocketAddress(self.port()), 0);
+        server.createContext("/stores/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        log.info("State query server listening on {}:{}", self.host(), self.port());
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Only GET is supported");
+                return;
+            }
+            // /stores/{store}/{keys|windows}[/{key}]
+            String[] path = exchange.getRequestURI().getRawPath().split("/", 5);
+            if (path.length < 4 || !(path[3].equals("keys") || path[3].equals("windows"))) {
+                sendError(exchange, 404, "Unknown resource: " + exchange.getRequestURI().getPath());
+                return;
+            }
+            String store = decode(path[2]);
+            boolean windowed = path[3].equals("windows");
+            Map<String, String> params = queryParams(exchange.getRequestURI());
+            boolean localOnly = Boolean.parseBoolean(params.get(LOCAL_ONLY_PARAM));
+            if (path.length == 5) {
+                String key = decode(path[4]);
+                if (windowed) {
+                    routeKeyed(exchange, store, key, localOnly,
+                            () -> streamLines(exchange, localWindows(store, key, params)));
+                } else {
+                    lookup(exchange, store, key, localOnly);
+                }
+            } else if (localOnly) {
+                streamLines(exchange, localRange(store, windowed, params));
+            } else {
+                fanOut(exchange, store, windowed, params);
+            }
+        } catch (UnknownStateStoreException e) {
+            sendError(exchange, 404, e.getMessage());
+        } catch (InvalidStateStoreException e) {
+            // e.g. during a rebalance - the client should retry
+            sendError(exchange, 503, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (IOException e) {
+            log.warn("Error serving state query {}", exchange.getRequestURI(), e);
+        } catch (RuntimeException e) {
+            log.error("Error serving state query {}", exchange.getRequestURI(), e);
+            sendError(exchange, 500, "Internal error: " + e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void lookup(HttpExchange exchange, String store, String key, boolean localOnly) throws IOException {
+        String cacheKey = store + '/' + key;
+        byte[] cached = cache.get(cacheKey);
+        if (cached != null) {
+            send(exchange, 200, JSON_CONTENT_TYPE, cached);
+            return;
+        }
+        routeKeyed(exchange, store, key, localOnly, () -> {
+            ReadOnlyKeyValueStore<String, Object> kvStore = streams.store(
+                    StoreQueryParameters.fromNameAndType(store, QueryableStoreTypes.keyValueStore()));
+            Object value = kvStore.get(key);
+            if (value == null) {
+                sendError(exchange, 404, "Key not found: " + key);
+                return;
+            }
+            byte[] body = objectMapper.writeValueAsBytes(keyValue(key, value));
+            cache.put(cacheKey, body);
+            send(exchange, 200, JSON_CONTENT_TYPE, body);
+        });
+    }
+
+    private void routeKeyed(HttpExchange exchange, String store, String key, boolean localOnly,
+                            LocalQuery localQuery) throws IOException {
+        if (localOnly) {
+            localQuery.run();
+            return;
+        }
+        KeyQueryMetadata metadata = streams.queryMetadataForKey(store, key, Serdes.String().serializer());
+        if (metadata == null) {
+            throw new UnknownStateStoreException("Unknown state store: " + store);
+        }
+        if (metadata == KeyQueryMetadata.NOT_AVAILABLE) {
+            throw new InvalidStateStoreException("Metadata of store " + store + " is not available yet");
+        }
+        if (self.equals(metadata.activeHost())) {
+            localQuery.run();
+        } else {
+            proxy(exchange, metadata.activeHost());
+        }
+    }
+
+    private void fanOut(HttpExchange exchange, String store, boolean windowed, Map<String, String> params)
+            throws IOException {
+        var hosts = streams.streamsMetadataForStore(store);
+        if (hosts.isEmpty()) {
+            throw new UnknownStateStoreException("Unknown state store or no instance is hosting it: " + store);
+        }
+        LineWriter local = null;
+        Map<HostInfo, CompletableFuture<HttpResponse<InputStream>>> requests = new LinkedHashMap<>();
+        for (StreamsMetadata host : hosts) {
+            if (self.equals(host.hostInfo())) {
+                local = localRange(store, windowed, params);
+            } else {
+                requests.put(host.hostInfo(), client.sendAsync(remoteRequest(host.hostInfo(), exchange.getRequestURI()),
+                        HttpResponse.BodyHandlers.ofInputStream()));
+            }
+        }
+        Map<HostInfo, HttpResponse<InputStream>> remotes = new LinkedHashMap<>();
+        try {
+            awaitRemotes(requests, remotes);
+        } catch (RemoteQueryException e) {
+            requests.values().forEach(request -> request.thenAccept(StateQueryServer::discard));
+            log.warn("Range query on store {} failed: {}", store, e.getMessage());
+            sendError(exchange, e.status, e.getMessage());
+            return;
+        }
+        LineWriter localLines = local;
+        streamLines(exchange, out -> {
+            if (localLines != null) localLines.write(out);
+            for (var remote : remotes.entrySet()) {
+                try (var body = remote.getValue().body()) {
+                    transferLines(body, out, remote.getKey());
+                }
+            }
+        });
+    }
+
+    // waits for the response headers of all instances, fails on the first that is unreachable or not OK
+    private static void awaitRemotes(Map<HostInfo, CompletableFuture<HttpResponse<InputStream>>> requests,
+                                     Map<HostInfo, HttpResponse<InputStream>> remotes) throws RemoteQueryException {
+        for (var request : requests.entrySet()) {
+            HostInfo host = request.getKey();
+            HttpResponse<InputStream> response;
+            try {
+                response = request.getValue().get();
+            } catch (ExecutionException e) {
+                throw new RemoteQueryException(502, "Instance " + address(host) + " is not reachable: " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RemoteQueryException(503, "Interrupted while querying instance " + address(host));
+            }
+            if (response.statusCode() != 200) {
+                discard(response);
+                throw new RemoteQueryException(response.statusCode() == 503 ? 503 : 502,
+                        "Instance " + address(host) + " answered " + response.statusCode());
+            }
+            remotes.put(host, response);
+        }
+    }
+
+    // copies the lines of another instance, a read failure ends them with an error line
+    private static void transferLines(InputStream remote, OutputStream out, HostInfo host) throws IOException {
+        byte[] buffer = new byte[8192];
+        boolean lineStart = true;
+        while (true) {
+            int read;
+            try {
+                read = remote.read(buffer);
+            } catch (IOException e) {
+                log.warn("Range query on instance {} failed while streaming", address(host), e);
+                if (!lineStart) out.write('\n');
+                writeLine(out, error("Instance " + address(host) + " failed while streaming: " + e.getMessage()));
+                return;
+            }
+            if (read < 0) return;
+            out.write(buffer, 0, read);
+            lineStart = buffer[read - 1] == '\n';
+        }
+    }
+
+    private LineWriter localRange(String store, boolean windowed, Map<String, String> params) {
+        Instant from = timeParam(params, "from", 0);
+        Instant to = timeParam(params, "to", Long.MAX_VALUE);
+        if (windowed) {
+            ReadOnlyWindowStore<String, Object> windowStore = streams.store(
+                    StoreQueryParameters.fromNameAndType(store, QueryableStoreTypes.windowStore()));
+            return out -> {
+                try (var iter = windowStore.fetchAll(from, to)) {
+                    while (iter.hasNext()) {
+                        var entry = iter.next();
+                        writeLine(out, window(entry.key.key(), entry.key.window().start(), entry.key.window().end(),
+                                entry.value));
+                    }
+                }
+            };
+        }
+        ReadOnlyKeyValueStore<String, Object> kvStore = streams.store(
+                StoreQueryParameters.fromNameAndType(store, QueryableStoreTypes.keyValueStore()));
+        String fromKey = params.get("from");
+        String toKey = params.get("to");
+        return out -> {
+            try (var iter = fromKey == null && toKey == null ? kvStore.all() : kvStore.range(fromKey, toKey)) {
+                while (iter.hasNext()) {
+                    var entry = iter.next();
+                    writeLine(out, keyValue(entry.key, entry.value));
+                }
+            }
+        };
+    }
+
+    private LineWriter localWindows(String store, String key, Map<String, String> params) {
+        Instant from = timeParam(params, "from", 0);
+        Instant to = timeParam(params, "to", Long.MAX_VALUE);
+        ReadOnlyWindowStore<String, Object> windowStore = streams.store(
+                StoreQueryParameters.fromNameAndType(store, QueryableStoreTypes.windowStore()));
+        return out -> {
+            try (var iter = windowStore.fetch(key, from, to)) {
+                while (iter.hasNext()) {
+                    var entry = iter.next();
+                    writeLine(out, window(key, entry.key, null, entry.value));
+                }
+            }
+        };
+    }
+
+    private void proxy(HttpExchange exchange, HostInfo host) throws IOException {
+        HttpResponse<InputStream> response;
+        try {
+            response = client.send(remoteRequest(host, exchange.getRequestURI()),
+                    HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while querying instance " + address(host));
+        } catch (IOException e) {
+            log.warn("Keyed query on instance {} failed", address(host), e);
+            sendError(exchange, 502, "Instance " + address(host) + " is not reachable: " + e);
+            return;
+        }
+        String contentType = response.headers().firstValue("Content-Type").orElse(JSON_CONTENT_TYPE);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(response.statusCode(), 0);
+        try (var body = response.body(); var out = exchange.getResponseBody()) {
+            body.transferTo(out);
+        }
+    }
+
+    // forwards the query to another instance, restricted to the stores local to that instance
+    private static HttpRequest remoteRequest(HostInfo host, URI requestUri) {
+        String query = requestUri.getRawQuery();
+        String localQuery = (query == null ? "" : query + "&") + LOCAL_ONLY_PARAM + "=true";
+        var uri = URI.create("http://" + address(host) + requestUri.getRawPath() + "?" + localQuery);
+        return HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT).GET().build();
+    }
+
+    private static void discard(HttpResponse<InputStream> response) {
+        try {
+            response.body().close();
+        } catch (IOException e) {
+            log.debug("Failed to close the response of {}", response.uri(), e);
+        }
+    }
+
+    private static String address(HostInfo host) {
+        return host.host() + ":" + host.port();
+    }
+
+    private void streamLines(HttpExchange exchange, LineWriter writer) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", NDJSON_CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, 0); // chunked
+        try (var out = new BufferedOutputStream(exchange.getResponseBody())) {
+            try {
+                writer.write(out);
+            } catch (InvalidStateStoreException e) { // e.g. the store migrated during the iteration
+                log.warn("State query {} failed while streaming", exchange.getRequestURI(), e);
+                writeLine(out, error(e.getMessage()));
+            }
+        }
+    }
+
+    private static void writeLine(OutputStream out, ObjectNode line) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(line));
+        out.write('\n');
+    }
+
+    private static ObjectNode error(String message) {
+        return objectMapper.createObjectNode().put("error", message);
+    }
+
+    private static ObjectNode keyValue(String key, Object value) {
+        var node = objectMapper.createObjectNode().put("key", key);
+        node.set("value", objectMapper.valueToTree(value));
+        return node;
+    }
+
+    private static ObjectNode window(String key, long start, Long end, Object value) {
+        var node = objectMapper.createObjectNode().put("key", key).put("windowStart", start);
+        if (end != null) {
+            node.put("windowEnd", end);
+        }
+        node.set("value", objectMapper.valueToTree(value));
+        return node;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (var out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            var body = objectMapper.writeValueAsBytes(error(message));
+            send(exchange, status, JSON_CONTENT_TYPE, body);
+        } catch (IOException e) {
+            // the response was already started - nothing more can be reported to the client
+            log.warn("Unable to send error {} for {}: {}", status, exchange.getRequestURI(), message);
+        }
+    }
+
+    private static Instant timeParam(Map<String, String> params, String name, long defaultValue) {
+        String value = params.get(name);
+        try {
+            return Instant.ofEpochMilli(value == null ? defaultValue : Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " must be epoch milliseconds, but was " + value);
+        }
+    }
+
+    private static Map<String, String> queryParams(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        if (uri.getRawQuery() != null) {
+            for (String param : uri.getRawQuery().split("&")) {
+                int eq = param.indexOf('=');
+                if (eq > 0) {
+                    params.put(decode(param.substring(0, eq)), decode(param.substring(eq + 1)));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static final class RemoteQueryException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        RemoteQueryException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    @FunctionalInterface
+    private interface LocalQuery {
+        void run() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface LineWriter {
+        void write(OutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,44 @@
+package course.kafka.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Small LRU cache whose entries expire after a fixed time to live - meant for hot keys only
+class TtlCache<K, V> {
+    private final long ttlMs;
+    private final Map<K, Entry<V>> entries;
+
+    TtlCache(long ttlMs, int maxEntries) {
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    synchronized V get(K key) {
+        var entry = entries.get(key);
+        if (entry == null) return null;
+        if (System.currentTimeMillis() > entry.expiresAt) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMs));
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
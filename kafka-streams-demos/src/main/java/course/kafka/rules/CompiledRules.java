@@ -0,0 +1,69 @@
+package course.kafka.rules;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A rule set compiled into inclusive [min, max] bounds: one pair for all sensors and one per sensor with its own
+ * rules. Strict operators are turned into inclusive ones with the adjacent double, so a reading is tested with a
+ * single map lookup and two primitive comparisons. A sensor rule replaces the global bound of the same side, and
+ * several rules on the same side keep the strictest one.
+ */
+public final class CompiledRules {
+    public static final List<FilterRule> DEFAULT_RULES = List.of(
+            new FilterRule(FilterRule.Operator.GT, -15), new FilterRule(FilterRule.Operator.LT, 60));
+    public static final CompiledRules DEFAULT = compile(DEFAULT_RULES);
+    private static final int MIN = 0;
+    private static final int MAX = 1;
+
+    private final double min;
+    private final double max;
+    private final Map<String, double[]> sensorBounds;
+
+    private CompiledRules(double min, double max, Map<String, double[]> sensorBounds) {
+        this.min = min;
+        this.max = max;
+        this.sensorBounds = sensorBounds;
+    }
+
+    public boolean test(String sensorId, double value) {
+        double[] bounds = sensorId == null ? null : sensorBounds.get(sensorId);
+        if (bounds == null) return value >= min && value <= max;
+        return value >= bounds[MIN] && value <= bounds[MAX];
+    }
+
+    public int sensorCount() {
+        return sensorBounds.size();
+    }
+
+    public static CompiledRules compile(Collection<FilterRule> rules) {
+        double[] global = {Double.NaN, Double.NaN};
+        Map<String, double[]> sensors = new HashMap<>();
+        for (FilterRule rule : rules) {
+            double[] bounds = rule.getSensorId() == null ? global
+                    : sensors.computeIfAbsent(rule.getSensorId(), sensorId -> new double[]{Double.NaN, Double.NaN});
+            tighten(bounds, rule);
+        }
+        double min = Double.isNaN(global[MIN]) ? Double.NEGATIVE_INFINITY : global[MIN];
+        double max = Double.isNaN(global[MAX]) ? Double.POSITIVE_INFINITY : global[MAX];
+        for (double[] bounds : sensors.values()) {
+            if (Double.isNaN(bounds[MIN])) bounds[MIN] = min;
+            if (Double.isNaN(bounds[MAX])) bounds[MAX] = max;
+        }
+        return new CompiledRules(min, max, sensors);
+    }
+
+    private static void tighten(double[] bounds, FilterRule rule) {
+        FilterRule.Operator operator = rule.getOperator();
+        double threshold = operator == FilterRule.Operator.GT ? Math.nextUp(rule.getThreshold())
+                : operator == FilterRule.Operator.LT ? Math.nextDown(rule.getThreshold())
+                : rule.getThreshold();
+        if (operator == FilterRule.Operator.GT || operator == FilterRule.Operator.GE) {
+            bounds[MIN] = Double.isNaN(bounds[MIN]) ? threshold : Math.max(bounds[MIN], threshold);
+        } else {
+            bounds[MAX] = Double.isNaN(bounds[MAX]) ? threshold : Math.min(bounds[MAX], threshold);
+        }
+    }
+}
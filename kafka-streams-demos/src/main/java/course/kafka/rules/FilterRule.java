@@ -0,0 +1,21 @@
+package course.kafka.rules;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// a threshold on the reading value, for one sensor or - without sensorId - for all sensors
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FilterRule {
+    public enum Operator {GT, GE, LT, LE}
+
+    private Operator operator;
+    private double threshold;
+    private String sensorId;
+
+    public FilterRule(Operator operator, double threshold) {
+        this(operator, threshold, null);
+    }
+}
@@ -0,0 +1,84 @@
+package course.kafka.rules;
+
+import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.serialization.JsonDeserializer;
+import course.kafka.serialization.JsonSerializer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Predicate;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Temperature filter rules read from the compacted {@link #RULES_TOPIC}, keyed by rule id (a tombstone deletes
+ * the rule). The topic holds the complete rule set: a side without any global rule is unbounded, and only an
+ * empty rule set falls back to {@link CompiledRules#DEFAULT}. The topic is loaded into a global store, so every
+ * instance sees all rules, and the rule set is compiled once per change into {@link CompiledRules}, which all
+ * stream threads of the instance share. Filters read the current compiled rules once per record, so a new rule
+ * set replaces the old one atomically.
+ */
+@Slf4j
+public class FilterRules {
+    public static final String RULES_TOPIC = "temperature-rules";
+    public static final String RULES_STORE = "temperature-rules-store";
+    public static final Serde<FilterRule> RULE_SERDE = Serdes.serdeFrom(
+            new JsonSerializer<>(), new JsonDeserializer<>(FilterRule.class));
+
+    private volatile CompiledRules rules = CompiledRules.DEFAULT;
+
+    public static FilterRules addGlobalStore(StreamsBuilder builder) {
+        var filterRules = new FilterRules();
+        builder.addGlobalStore(Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(RULES_STORE),
+                        Serdes.String(), RULE_SERDE).withLoggingDisabled(),
+                RULES_TOPIC, Consumed.with(Serdes.String(), RULE_SERDE), () -> filterRules.new RulesUpdater());
+        return filterRules;
+    }
+
+    public CompiledRules current() {
+        return rules;
+    }
+
+    public Predicate<String, TimestampedTemperatureReading> validTemperatureFilter() {
+        return (sensorId, reading) -> rules.test(sensorId, reading.getValue());
+    }
+
+    // runs on the global thread: updates the store and publishes the recompiled rules
+    private class RulesUpdater implements Processor<String, FilterRule, Void, Void> {
+        private KeyValueStore<String, FilterRule> store;
+
+        @Override
+        public void init(ProcessorContext<Void, Void> context) {
+            store = context.getStateStore(RULES_STORE);
+            compile(); // the store is already restored from the rules topic
+        }
+
+        @Override
+        public void process(Record<String, FilterRule> record) {
+            if (record.key() == null) return;
+            if (record.value() == null) {
+                store.delete(record.key());
+            } else {
+                store.put(record.key(), record.value());
+            }
+            compile();
+        }
+
+        private void compile() {
+            List<FilterRule> all = new ArrayList<>();
+            try (var iter = store.all()) {
+                iter.forEachRemaining(rule -> all.add(rule.value));
+            }
+            rules = all.isEmpty() ? CompiledRules.DEFAULT : CompiledRules.compile(all);
+            log.info("Compiled {} temperature filter rules, {} with sensor thresholds", all.size(), rules.sensorCount());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package course.kafka.serialization;
+
+import course.kafka.model.DoubleStatistics;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.ByteBuffer;
+
+public class DoubleStatisticsDeserializer implements Deserializer<DoubleStatistics> {
+
+    @Override
+    public DoubleStatistics deserialize(String topic, byte[] data) {
+        if (data == null) return null;
+        if (data.length != DoubleStatistics.SERIALIZED_SIZE) {
+            throw new SerializationException("Invalid DoubleStatistics size: expected " +
+                    DoubleStatistics.SERIALIZED_SIZE + " bytes, but was " + data.length);
+        }
+        return DoubleStatistics.readFrom(ByteBuffer.wrap(data));
+    }
+}
@@ -0,0 +1,17 @@
+package course.kafka.serialization;
+
+import course.kafka.model.DoubleStatistics;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+public class DoubleStatisticsSerializer implements Serializer<DoubleStatistics> {
+
+    @Override
+    public byte[] serialize(String topic, DoubleStatistics stats) {
+        if (stats == null) return null;
+        var buffer = ByteBuffer.allocate(DoubleStatistics.SERIALIZED_SIZE);
+        stats.writeTo(buffer);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,21 @@
+package course.kafka.serialization;
+
+import course.kafka.model.HeavyHitters;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+public class HeavyHittersDeserializer implements Deserializer<HeavyHitters> {
+
+    @Override
+    public HeavyHitters deserialize(String topic, byte[] data) {
+        if (data == null) return null;
+        try {
+            return HeavyHitters.readFrom(ByteBuffer.wrap(data));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new SerializationException("Invalid HeavyHitters of " + data.length + " bytes", e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package course.kafka.serialization;
+
+import course.kafka.model.HeavyHitters;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+public class HeavyHittersSerializer implements Serializer<HeavyHitters> {
+
+    @Override
+    public byte[] serialize(String topic, HeavyHitters sketch) {
+        if (sketch == null) return null;
+        var buffer = ByteBuffer.allocate(sketch.serializedSize());
+        sketch.writeTo(buffer);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,21 @@
+package course.kafka.serialization;
+
+import course.kafka.model.QuantileSketch;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+public class QuantileSketchDeserializer implements Deserializer<QuantileSketch> {
+
+    @Override
+    public QuantileSketch deserialize(String topic, byte[] data) {
+        if (data == null) return null;
+        try {
+            return QuantileSketch.readFrom(ByteBuffer.wrap(data));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new SerializationException("Invalid QuantileSketch of " + data.length + " bytes", e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package course.kafka.state;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.state.RocksDBConfigSetter;
+import org.rocksdb.*;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Bounds the native memory of all RocksDB stores in the JVM. The block cache, index and filter blocks and the
+ * memtables of every store, partition and window segment are charged to a single LRU cache of
+ * {@link #TOTAL_MEMORY_CONFIG} bytes, instead of each store instance allocating its own.
+ * <p>
+ * Stores are tuned with a {@link Profile} - taken from {@link #STORE_PROFILES_CONFIG} (comma separated
+ * {@code store-name-prefix:PROFILE} pairs) or inferred from the store name. With
+ * {@code metrics.recording.level=DEBUG} Streams attaches RocksDB statistics to every store and publishes them
+ * in the {@code stream-state-metrics} group - so the statistics are intentionally left for Streams to set up.
+ */
+@Slf4j
+public class BoundedMemoryRocksDBConfig implements RocksDBConfigSetter {
+    public static final String TOTAL_MEMORY_CONFIG = "rocksdb.bounded.total.memory.bytes";
+    public static final String STORE_PROFILES_CONFIG = "rocksdb.bounded.store.profiles";
+    public static final long DEFAULT_TOTAL_MEMORY_BYTES = 256L * 1024 * 1024;
+    public static final double MEMTABLE_RATIO = 0.25;
+    public static final double INDEX_FILTER_BLOCK_RATIO = 0.1;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile(".+\\.\\d+$"); // <store>.<segment start>
+    private static Cache cache;
+    private static WriteBufferManager writeBufferManager;
+
+    private Filter filter;
+
+    public enum Profile {
+        /** Point lookups and updates of counts and aggregates by key - bloom filters skip SST files without the key. */
+        KEY_VALUE(8 * 1024 * 1024, 4 * 1024, true),
+        /** Segmented window stores - range fetches by key and time, many small short-lived segments. */
+        WINDOWED_AGGREGATE(4 * 1024 * 1024, 16 * 1024, false),
+        /** Join window stores - write heavy, every record is also a range fetch into the other side. */
+        JOIN(16 * 1024 * 1024, 16 * 1024, false);
+
+        private final long writeBufferSize;
+        private final long blockSize;
+        private final boolean bloomFilter;
+
+        Profile(long writeBufferSize, long blockSize, boolean bloomFilter) {
+            this.writeBufferSize = writeBufferSize;
+            this.blockSize = blockSize;
+            this.bloomFilter = bloomFilter;
+        }
+    }
+
+    @Override
+    public void setConfig(String storeName, Options options, Map<String, Object> configs) {
+        Profile profile = profileFor(storeName, configs);
+        // Streams exposes the block cache to its metrics only through the table config it created
+        BlockBasedTableConfig tableConfig = (BlockBasedTableConfig) options.tableFormatConfig();
+        tableConfig.setBlockCache(sharedCache(configs));
+        tableConfig.setCacheIndexAndFilterBlocks(true);
+        tableConfig.setCacheIndexAndFilterBlocksWithHighPriority(true);
+        tableConfig.setPinTopLevelIndexAndFilter(true);
+        tableConfig.setBlockSize(profile.blockSize);
+        if (profile.bloomFilter) {
+            filter = new BloomFilter(10, false);
+            tableConfig.setFilterPolicy(filter);
+        }
+        options.setTableFormatConfig(tableConfig);
+        options.setWriteBufferManager(writeBufferManager);
+        options.setWriteBufferSize(profile.writeBufferSize);
+        options.setMaxWriteBufferNumber(2);
+        options.setCompressionType(CompressionType.LZ4_COMPRESSION);
+        log.debug("Configured RocksDB store '{}' with profile {}", storeName, profile);
+    }
+
+    @Override
+    public void close(String storeName, Options options) {
+        // the cache and write buffer manager are shared by all stores and live as long as the JVM
+        if (filter != null) {
+            filter.close();
+        }
+    }
+
+    static Profile profileFor(String storeName, Map<String, Object> configs) {
+        Object profiles = configs.get(STORE_PROFILES_CONFIG);
+        if (profiles != null) {
+            for (String entry : profiles.toString().split(",")) {
+                String[] prefixAndProfile = entry.trim().split(":");
+                if (prefixAndProfile.length == 2 && storeName.startsWith(prefixAndProfile[0].trim())) {
+                    return Profile.valueOf(prefixAndProfile[1].trim());
+                }
+            }
+        }
+        if (storeName.toLowerCase().contains("join")) return Profile.JOIN;
+        if (SEGMENT_NAME.matcher(storeName).matches()) return Profile.WINDOWED_AGGREGATE;
+        return Profile.KEY_VALUE;
+    }
+
+    private static synchronized Cache sharedCache(Map<String, Object> configs) {
+        if (cache == null) {
+            Object configured = configs.get(TOTAL_MEMORY_CONFIG);
+            long totalMemory = configured == null ? DEFAULT_TOTAL_MEMORY_BYTES : Long.parseLong(configured.toString());
+            cache = new LRUCache(totalMemory, -1, false, INDEX_FILTER_BLOCK_RATIO);
+            // memtable memory is charged to the cache, so the cache capacity bounds both
+            writeBufferManager = new WriteBufferManager((long) (totalMemory * MEMTABLE_RATIO), cache);
+            log.info("RocksDB stores share {} bytes of native memory, up to {} bytes of it for memtables",
+                    totalMemory, (long) (totalMemory * MEMTABLE_RATIO));
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,47 @@
+package course.kafka.state;
+
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.KeyValueIterator;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Iterates over a snapshot of store entries copied out while holding the store lock
+class ListKeyValueIterator<K, V> implements KeyValueIterator<K, V> {
+    private final List<KeyValue<K, V>> entries;
+    private final Iterator<KeyValue<K, V>> iterator;
+    private int index = 0;
+
+    ListKeyValueIterator(List<KeyValue<K, V>> entries) {
+        this.entries = entries;
+        this.iterator = entries.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public KeyValue<K, V> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        index++;
+        return iterator.next();
+    }
+
+    @Override
+    public K peekNextKey() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return entries.get(index).key;
+    }
+
+    @Override
+    public void close() {
+        // nothing to release - entries were already copied on heap
+    }
+}
@@ -0,0 +1,14 @@
+package course.kafka.state;
+
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+
+import java.util.List;
+
+// Single key window iterator - keys are the window start timestamps
+class ListWindowStoreIterator extends ListKeyValueIterator<Long, byte[]> implements WindowStoreIterator<byte[]> {
+
+    ListWindowStoreIterator(List<KeyValue<Long, byte[]>> entries) {
+        super(entries);
+    }
+}
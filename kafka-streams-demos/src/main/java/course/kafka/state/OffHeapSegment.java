@@ -0,0 +1,144 @@
+package course.kafka.state;
+
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.errors.ProcessorStateException;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Fixed-capacity append-only slab of window values kept outside of the heap. Only the (window start, key)
+ * index lives on heap; overwritten and deleted values are reclaimed by compacting the slab in place when full.
+ * All methods are synchronized, as interactive queries may read while the stream thread writes.
+ */
+class OffHeapSegment {
+    private static final int LENGTH_PREFIX_SIZE = Integer.BYTES;
+
+    private final ByteBuffer slab;
+    private final NavigableMap<Long, NavigableMap<Bytes, Integer>> index = new TreeMap<>();
+    private long segmentId = -1;
+    private int liveBytes = 0;
+
+    OffHeapSegment(int capacityBytes) {
+        slab = ByteBuffer.allocateDirect(capacityBytes);
+    }
+
+    synchronized long segmentId() {
+        return segmentId;
+    }
+
+    synchronized void reset(long newSegmentId) {
+        segmentId = newSegmentId;
+        index.clear();
+        slab.clear();
+        liveBytes = 0;
+    }
+
+    synchronized void put(long windowStart, Bytes key, byte[] value) {
+        int entrySize = LENGTH_PREFIX_SIZE + value.length;
+        if (entrySize > slab.capacity()) {
+            throw new ProcessorStateException("Value of " + value.length +
+                    " bytes does not fit into an off-heap segment of " + slab.capacity() + " bytes");
+        }
+        var keys = index.computeIfAbsent(windowStart, start -> new TreeMap<>());
+        Integer previous = keys.remove(key);
+        if (previous != null) {
+            liveBytes -= LENGTH_PREFIX_SIZE + slab.getInt(previous);
+        }
+        if (slab.remaining() < entrySize) {
+            compact();
+            if (slab.remaining() < entrySize) {
+                throw new ProcessorStateException("Off-heap segment " + segmentId + " is full: " + liveBytes +
+                        " live bytes of " + slab.capacity() + " - increase the store memory or shorten the retention");
+            }
+        }
+        int offset = slab.position();
+        slab.putInt(value.length).put(value);
+        keys.put(key, offset);
+        liveBytes += entrySize;
+    }
+
+    synchronized void remove(long windowStart, Bytes key) {
+        var keys = index.get(windowStart);
+        if (keys == null) return;
+        Integer offset = keys.remove(key);
+        if (offset != null) {
+            liveBytes -= LENGTH_PREFIX_SIZE + slab.getInt(offset);
+        }
+        if (keys.isEmpty()) {
+            index.remove(windowStart);
+        }
+    }
+
+    synchronized byte[] get(long windowStart, Bytes key) {
+        var keys = index.get(windowStart);
+        if (keys == null) return null;
+        Integer offset = keys.get(key);
+        return offset == null ? null : read(offset);
+    }
+
+    // copies the entries in [timeFrom, timeTo] and [keyFrom, keyTo] (null key bounds are open) ordered by time, then key
+    synchronized void collect(long timeFrom, long timeTo, Bytes keyFrom, Bytes keyTo, List<WindowEntry> result) {
+        for (var windowKeys : index.subMap(timeFrom, true, timeTo, true).entrySet()) {
+            NavigableMap<Bytes, Integer> keys = windowKeys.getValue();
+            if (keyFrom != null && keyTo != null) {
+                if (keyFrom.compareTo(keyTo) > 0) continue;
+                keys = keys.subMap(keyFrom, true, keyTo, true);
+            } else if (keyFrom != null) {
+                keys = keys.tailMap(keyFrom, true);
+            } else if (keyTo != null) {
+                keys = keys.headMap(keyTo, true);
+            }
+            for (var entry : keys.entrySet()) {
+                result.add(new WindowEntry(windowKeys.getKey(), entry.getKey(), read(entry.getValue())));
+            }
+        }
+    }
+
+    synchronized int liveBytes() {
+        return liveBytes;
+    }
+
+    private byte[] read(int offset) {
+        var view = slab.duplicate();
+        view.position(offset);
+        var value = new byte[view.getInt()];
+        view.get(value);
+        return value;
+    }
+
+    // slides live entries towards the start of the slab in offset order, so moves never overwrite unread data
+    private void compact() {
+        var live = new ArrayList<Map.Entry<Bytes, Integer>>();
+        for (var keys : index.values()) {
+            live.addAll(keys.entrySet());
+        }
+        live.sort(Map.Entry.comparingByValue());
+        var target = slab.duplicate();
+        target.clear();
+        var newOffsets = new HashMap<Integer, Integer>(live.size() * 2);
+        for (var entry : live) {
+            int offset = entry.getValue();
+            var value = read(offset);
+            newOffsets.put(offset, target.position());
+            target.putInt(value.length).put(value);
+        }
+        for (var keys : index.values()) {
+            keys.replaceAll((key, offset) -> newOffsets.get(offset));
+        }
+        slab.position(target.position());
+        slab.limit(slab.capacity());
+    }
+
+    static final class WindowEntry {
+        final long windowStart;
+        final Bytes key;
+        final byte[] value;
+
+        WindowEntry(long windowStart, Bytes key, byte[] value) {
+            this.windowStart = windowStart;
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package course.kafka.state;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.processor.StateStoreContext;
+import org.apache.kafka.streams.query.Position;
+import org.apache.kafka.streams.query.PositionBound;
+import org.apache.kafka.streams.query.Query;
+import org.apache.kafka.streams.query.QueryConfig;
+import org.apache.kafka.streams.query.QueryResult;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Window store for short windows keeping its values in a ring of off-heap segments indexed by window start.
+ * Each segment covers one segment interval; a slot is reused as soon as stream time moves its segment out of
+ * the retention period, so memory stays bounded by the configured size. The store is not persistent - it is
+ * rebuilt from the same changelog the built-in window stores write, in the same key format.
+ */
+@Slf4j
+public class OffHeapWindowStore implements WindowStore<Bytes, byte[]> {
+    // changelog key layout: [key bytes][window start:long][sequence number:int]
+    private static final int TIMESTAMP_SIZE = Long.BYTES;
+    private static final int SEQNUM_SIZE = Integer.BYTES;
+
+    private final String name;
+    private final long retentionPeriod;
+    private final long windowSize;
+    private final long segmentInterval;
+    private final long memoryBytes;
+    private final OffHeapSegment[] segments;
+    private final Position position = Position.emptyPosition();
+
+    private StateStoreContext stateStoreContext;
+    private volatile long observedStreamTime = -1;
+    private volatile boolean open;
+
+    public OffHeapWindowStore(String name, long retentionPeriod, long windowSize, long segmentInterval, long memoryBytes) {
+        this.name = name;
+        this.retentionPeriod = retentionPeriod;
+        this.windowSize = windowSize;
+        this.segmentInterval = segmentInterval;
+        this.memoryBytes = memoryBytes;
+        // enough slots to cover the whole retention period plus the segment currently being filled
+        this.segments = new OffHeapSegment[(int) (retentionPeriod / segmentInterval) + 2];
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Deprecated
+    @Override
+    public void init(ProcessorContext context, StateStore root) {
+        allocateSegments();
+        if (root != null) {
+            context.register(root, (key, value) -> restore(key, value));
+        }
+        open = true;
+    }
+
+    @Override
+    public void init(StateStoreContext context, StateStore root) {
+        this.stateStoreContext = context;
+        allocateSegments();
+        if (root != null) {
+            context.register(root, (key, value) -> restore(key, value));
+        }
+        open = true;
+    }
+
+    private void allocateSegments() {
+        int segmentCapacity = (int) Math.min(Integer.MAX_VALUE, memoryBytes / segments.length);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new OffHeapSegment(segmentCapacity);
+        }
+        log.info("Allocated {} off-heap segments of {} bytes for window store '{}'", segments.length, segmentCapacity, name);
+    }
+
+    private void restore(byte[] changelogKey, byte[] value) {
+        var buffer = ByteBuffer.wrap(changelogKey);
+        int keyLength = changelogKey.length - TIMESTAMP_SIZE - SEQNUM_SIZE;
+        long windowStart = buffer.getLong(keyLength);
+        put(Bytes.wrap(Arrays.copyOfRange(changelogKey, 0, keyLength)), value, windowStart);
+    }
+
+    @Override
+    public void put(Bytes key, byte[] value, long windowStartTimestamp) {
+        Objects.requireNonNull(key, "key cannot be null");
+        observedStreamTime = Math.max(observedStreamTime, windowStartTimestamp);
+        if (isExpired(windowStartTimestamp)) {
+            log.warn("Skipping record for expired window starting at {} in store '{}'", windowStartTimestamp, name);
+        } else {
+            long segmentId = windowStartTimestamp / segmentInterval;
+            var segment = segments[(int) Math.floorMod(segmentId, (long) segments.length)];
+            if (segment.segmentId() != segmentId) {
+                // slot still holds an expired segment - reuse it for the newer one
+                segment.reset(segmentId);
+            }
+            if (value == null) {
+                segment.remove(windowStartTimestamp, key);
+            } else {
+                segment.put(windowStartTimestamp, key, value);
+            }
+        }
+        updatePosition();
+    }
+
+    // the input offsets reflected in the store, for position-aware interactive queries
+    private void updatePosition() {
+        if (stateStoreContext == null) return;
+        stateStoreContext.recordMetadata().ifPresent(metadata -> {
+            if (metadata.topic() != null) {
+                position.withComponent(metadata.topic(), metadata.partition(), metadata.offset());
+            }
+        });
+    }
+
+    @Override
+    public byte[] fetch(Bytes key, long windowStartTimestamp) {
+        Objects.requireNonNull(key, "key cannot be null");
+        if (isExpired(windowStartTimestamp)) return null;
+        var segment = liveSegment(windowStartTimestamp / segmentInterval);
+        return segment == null ? null : segment.get(windowStartTimestamp, key);
+    }
+
+    @Override
+    public WindowStoreIterator<byte[]> fetch(Bytes key, long timeFrom, long timeTo) {
+        Objects.requireNonNull(key, "key cannot be null");
+        return new ListWindowStoreIterator(collect(key, key, timeFrom, timeTo).stream()
+                .map(entry -> KeyValue.pair(entry.windowStart, entry.value))
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public WindowStoreIterator<byte[]> backwardFetch(Bytes key, long timeFrom, long timeTo) {
+        Objects.requireNonNull(key, "key cannot be null");
+        var entries = collect(key, key, timeFrom, timeTo);
+        Collections.reverse(entries);
+        return new ListWindowStoreIterator(entries.stream()
+                .map(entry -> KeyValue.pair(entry.windowStart, entry.value))
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public KeyValueIterator<Windowed<Bytes>, byte[]> fetch(Bytes keyFrom, Bytes keyTo, long timeFrom, long timeTo) {
+        return windowedIterator(collect(keyFrom, keyTo, timeFrom, timeTo));
+    }
+
+    @Override
+    public KeyValueIterator<Windowed<Bytes>, byte[]> backwardFetch(Bytes keyFrom, Bytes keyTo, long timeFrom, long timeTo) {
+        var entries = collect(keyFrom, keyTo, timeFrom, timeTo);
+        Collections.reverse(entries);
+        return windowedIterator(entries);
+    }
+
+    @Override
+    public KeyValueIterator<Windowed<Bytes>, byte[]> fetchAll(long timeFrom, long timeTo) {
+        return windowedIterator(collect(null, null, timeFrom, timeTo));
+    }
+
+    @Override
+    public KeyValueIterator<Windowed<Bytes>, byte[]> backwardFetchAll(long timeFrom, long timeTo) {
+        var entries = collect(null, null, timeFrom, timeTo);
+        Collections.reverse(entries);
+        return windowedIterator(entries);
+    }
+
+    @Override
+    public KeyValueIterator<Windowed<Bytes>, byte[]> all() {
+        return fetchAll(0, Long.MAX_VALUE);
+    }
+
+    @Override
+    public KeyValueIterator<Windowed<Bytes>, byte[]> backwardAll() {
+        return backwardFetchAll(0, Long.MAX_VALUE);
+    }
+
+    // iterators are snapshots - windows are short, so copying them out keeps readers independent of compaction
+    private List<OffHeapSegment.WindowEntry> collect(Bytes keyFrom, Bytes keyTo, long timeFrom, long timeTo) {
+        long actualFrom = Math.max(timeFrom, observedStreamTime - retentionPeriod + 1);
+        var result = new ArrayList<OffHeapSegment.WindowEntry>();
+        if (actualFrom > timeTo) return result;
+        var liveSegments = Arrays.stream(segments)
+                .filter(segment -> segment.segmentId() >= 0 && !isExpiredSegment(segment.segmentId()))
+                .filter(segment -> segment.segmentId() >= actualFrom / segmentInterval
+                        && segment.segmentId() <= timeTo / segmentInterval)
+                .sorted(Comparator.comparingLong(OffHeapSegment::segmentId))
+                .collect(Collectors.toList());
+        for (var segment : liveSegments) {
+            segment.collect(actualFrom, timeTo, keyFrom, keyTo, result);
+        }
+        return result;
+    }
+
+    private KeyValueIterator<Windowed<Bytes>, byte[]> windowedIterator(List<OffHeapSegment.WindowEntry> entries) {
+        return new ListKeyValueIterator<>(entries.stream()
+                .map(entry -> KeyValue.pair(
+                        new Windowed<>(entry.key, new TimeRangeWindow(entry.windowStart, entry.windowStart + windowSize)),
+                        entry.value))
+                .collect(Collectors.toList()));
+    }
+
+    private OffHeapSegment liveSegment(long segmentId) {
+        var segment = segments[(int) Math.floorMod(segmentId, (long) segments.length)];
+        return segment.segmentId() == segmentId ? segment : null;
+    }
+
+    private boolean isExpired(long windowStartTimestamp) {
+        return windowStartTimestamp <= observedStreamTime - retentionPeriod;
+    }
+
+    private boolean isExpiredSegment(long segmentId) {
+        return (segmentId + 1) * segmentInterval - 1 <= observedStreamTime - retentionPeriod;
+    }
+
+    public long liveBytes() {
+        return Arrays.stream(segments).filter(Objects::nonNull).mapToLong(OffHeapSegment::liveBytes).sum();
+    }
+
+    @Override
+    public void flush() {
+        // nothing to flush - the store is rebuilt from its changelog
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        // direct buffers are released by the garbage collector once the segments become unreachable
+        Arrays.fill(segments, null);
+    }
+
+    @Override
+    public boolean persistent() {
+        return false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public Position getPosition() {
+        return position;
+    }
+
+    // no interactive query types are supported beyond the WindowStore interface
+    @Override
+    public <R> QueryResult<R> query(Query<R> query, PositionBound positionBound, QueryConfig config) {
+        return QueryResult.forUnknownQueryType(query, this);
+    }
+}
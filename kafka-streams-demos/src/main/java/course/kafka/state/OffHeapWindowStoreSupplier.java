@@ -0,0 +1,63 @@
+package course.kafka.state;
+
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.state.WindowBytesStoreSupplier;
+import org.apache.kafka.streams.state.WindowStore;
+
+import java.time.Duration;
+
+public class OffHeapWindowStoreSupplier implements WindowBytesStoreSupplier {
+    private final String name;
+    private final long retentionPeriod;
+    private final long windowSize;
+    private final long segmentInterval;
+    private final long memoryBytes;
+
+    public OffHeapWindowStoreSupplier(String name, Duration retentionPeriod, Duration windowSize, long memoryBytes) {
+        if (windowSize.compareTo(retentionPeriod) > 0) {
+            throw new IllegalArgumentException("The retention period of window store " + name +
+                    " must be no smaller than its window size");
+        }
+        this.name = name;
+        this.retentionPeriod = retentionPeriod.toMillis();
+        this.windowSize = windowSize.toMillis();
+        // one segment per window keeps the ring small for short tumbling windows
+        this.segmentInterval = Math.max(1, this.windowSize);
+        this.memoryBytes = memoryBytes;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public WindowStore<Bytes, byte[]> get() {
+        return new OffHeapWindowStore(name, retentionPeriod, windowSize, segmentInterval, memoryBytes);
+    }
+
+    @Override
+    public String metricsScope() {
+        return "off-heap-window";
+    }
+
+    @Override
+    public long segmentIntervalMs() {
+        return segmentInterval;
+    }
+
+    @Override
+    public long windowSize() {
+        return windowSize;
+    }
+
+    @Override
+    public boolean retainDuplicates() {
+        return false;
+    }
+
+    @Override
+    public long retentionPeriod() {
+        return retentionPeriod;
+    }
+}
@@ -0,0 +1,28 @@
+package course.kafka.state;
+
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.state.KeyValueBytesStoreSupplier;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+public class SnapshottingKeyValueBytesStoreSupplier implements KeyValueBytesStoreSupplier {
+    private final String name;
+
+    public SnapshottingKeyValueBytesStoreSupplier(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public KeyValueStore<Bytes, byte[]> get() {
+        return new SnapshottingKeyValueStore(name);
+    }
+
+    @Override
+    public String metricsScope() {
+        return "snapshotting-in-memory";
+    }
+}
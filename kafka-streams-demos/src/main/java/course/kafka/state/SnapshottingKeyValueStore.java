@@ -0,0 +1,466 @@
+package course.kafka.state;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.errors.ProcessorStateException;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.processor.StateStoreContext;
+import org.apache.kafka.streams.query.Position;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32C;
+
+/**
+ * In-memory key-value store that restarts from a local snapshot instead of replaying its whole changelog. Streams
+ * flushes a store right before it checkpoints the changelog offset - every 10,000 changelog records under
+ * at-least-once and on clean shutdown under exactly-once - so each flush writes a snapshot of the current entries,
+ * and on restart only the changelog after the checkpointed offset is replayed on top of it. The snapshot is the
+ * persistent data of the store, like the files of a RocksDB store, so it reports itself as persistent and gets
+ * the Streams rules for local state: under exactly-once a task that did not shut down cleanly is wiped and
+ * restored from scratch.
+ * <p>
+ * A snapshot is written to a temp file through memory-mapped windows and atomically renamed, so after every
+ * flush the snapshot matches the offset Streams checkpoints next. A corrupted snapshot fails the task like a
+ * corrupted RocksDB store: the local state of the task has to be deleted to restore it from the changelog.
+ * <p>
+ * Snapshot layout (big-endian): magic:int | entries:long | (key length:int | key | value length:int | value)* |
+ * CRC32C of all preceding bytes:int
+ */
+@Slf4j
+public class SnapshottingKeyValueStore implements KeyValueStore<Bytes, byte[]> {
+    public static final String SNAPSHOT_FILE = "snapshot";
+    private static final int MAGIC = 0x4b565331; // "KVS1"
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final int MAP_WINDOW_BYTES = 256 * 1024 * 1024;
+
+    private final String name;
+    private final int mapWindowBytes;
+    private final ConcurrentNavigableMap<Bytes, byte[]> map = new ConcurrentSkipListMap<>();
+    private final Position position = Position.emptyPosition();
+    private StateStoreContext stateStoreContext;
+    private Path snapshotDir;
+    private volatile boolean open;
+
+    public SnapshottingKeyValueStore(String name) {
+        this(name, MAP_WINDOW_BYTES);
+    }
+
+    SnapshottingKeyValueStore(String name, int mapWindowBytes) {
+        this.name = name;
+        this.mapWindowBytes = mapWindowBytes;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Deprecated
+    @Override
+    public void init(ProcessorContext context, StateStore root) {
+        init(context.stateDir());
+        if (root != null) {
+            context.register(root, this::restore);
+        }
+        open = true;
+    }
+
+    @Override
+    public void init(StateStoreContext context, StateStore root) {
+        this.stateStoreContext = context;
+        init(context.stateDir());
+        if (root != null) {
+            context.register(root, this::restore);
+        }
+        open = true;
+    }
+
+    private void init(File taskDir) {
+        snapshotDir = taskDir.toPath().resolve(name);
+        try {
+            Files.createDirectories(snapshotDir);
+        } catch (IOException e) {
+            throw new ProcessorStateException("Failed to create snapshot directory " + snapshotDir, e);
+        }
+        long start = System.nanoTime();
+        if (loadSnapshot()) {
+            log.info("Loaded {} entries of store '{}' from snapshot in {} ms", map.size(), name,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private void restore(byte[] key, byte[] value) {
+        if (value == null) {
+            map.remove(Bytes.wrap(key));
+        } else {
+            map.put(Bytes.wrap(key), value);
+        }
+    }
+
+    private boolean loadSnapshot() {
+        Path snapshot = snapshotDir.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) return false;
+        try (var channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + Integer.BYTES) {
+                throw corrupted(snapshot, "invalid size " + size);
+            }
+            var in = new MappedInput(channel, size - Integer.BYTES);
+            if (in.readInt() != MAGIC) {
+                throw corrupted(snapshot, "unknown format");
+            }
+            long entries = in.readLong();
+            for (long i = 0; i < entries; i++) {
+                byte[] key = in.readBytes();
+                map.put(Bytes.wrap(key), in.readBytes());
+            }
+            int checksum = channel.map(FileChannel.MapMode.READ_ONLY, size - Integer.BYTES, Integer.BYTES).getInt();
+            if (in.remaining() != 0 || checksum != in.checksum()) {
+                throw corrupted(snapshot, "checksum mismatch");
+            }
+            return true;
+        } catch (IOException e) {
+            map.clear();
+            throw new ProcessorStateException("Failed to load snapshot of store " + name, e);
+        }
+    }
+
+    private ProcessorStateException corrupted(Path snapshot, String reason) {
+        map.clear();
+        return new ProcessorStateException("Corrupted snapshot " + snapshot + " of store " + name + " (" + reason +
+                "), delete the local state of the task to restore the store from its changelog");
+    }
+
+    private void writeSnapshot() {
+        long size = HEADER_SIZE + Integer.BYTES;
+        for (var entry : map.entrySet()) {
+            size += 2 * Integer.BYTES + entry.getKey().get().length + entry.getValue().length;
+        }
+        Path snapshot = snapshotDir.resolve(SNAPSHOT_FILE);
+        Path temp = snapshotDir.resolve(SNAPSHOT_FILE + ".tmp");
+        try {
+            try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                var out = new MappedOutput(channel, size);
+                out.writeInt(MAGIC);
+                out.writeLong(map.size());
+                for (var entry : map.entrySet()) {
+                    out.writeBytes(entry.getKey().get());
+                    out.writeBytes(entry.getValue());
+                }
+                out.writeChecksum();
+                out.force();
+            }
+            Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new ProcessorStateException("Failed to write snapshot of store " + name, e);
+        }
+    }
+
+    @Override
+    public void put(Bytes key, byte[] value) {
+        Objects.requireNonNull(key, "key cannot be null");
+        if (value == null) {
+            map.remove(key);
+        } else {
+            map.put(key, value);
+        }
+        updatePosition();
+    }
+
+    // the input offsets reflected in the store, for position-aware interactive queries
+    private void updatePosition() {
+        if (stateStoreContext == null) return;
+        stateStoreContext.recordMetadata().ifPresent(metadata -> {
+            if (metadata.topic() != null) {
+                position.withComponent(metadata.topic(), metadata.partition(), metadata.offset());
+            }
+        });
+    }
+
+    @Override
+    public byte[] putIfAbsent(Bytes key, byte[] value) {
+        byte[] old = get(key);
+        if (old == null) {
+            put(key, value);
+        }
+        return old;
+    }
+
+    @Override
+    public void putAll(List<KeyValue<Bytes, byte[]>> entries) {
+        for (var entry : entries) {
+            put(entry.key, entry.value);
+        }
+    }
+
+    @Override
+    public byte[] delete(Bytes key) {
+        Objects.requireNonNull(key, "key cannot be null");
+        byte[] old = map.remove(key);
+        updatePosition();
+        return old;
+    }
+
+    @Override
+    public byte[] get(Bytes key) {
+        Objects.requireNonNull(key, "key cannot be null");
+        return map.get(key);
+    }
+
+    @Override
+    public KeyValueIterator<Bytes, byte[]> range(Bytes from, Bytes to) {
+        return new MapIterator(subMap(from, to));
+    }
+
+    @Override
+    public KeyValueIterator<Bytes, byte[]> reverseRange(Bytes from, Bytes to) {
+        return new MapIterator(subMap(from, to).descendingMap());
+    }
+
+    @Override
+    public KeyValueIterator<Bytes, byte[]> all() {
+        return new MapIterator(map);
+    }
+
+    @Override
+    public KeyValueIterator<Bytes, byte[]> reverseAll() {
+        return new MapIterator(map.descendingMap());
+    }
+
+    @Override
+    public <PS extends Serializer<P>, P> KeyValueIterator<Bytes, byte[]> prefixScan(P prefix, PS prefixKeySerializer) {
+        byte[] prefixBytes = prefixKeySerializer.serialize(null, prefix);
+        return new MapIterator(map.tailMap(Bytes.wrap(prefixBytes)), prefixBytes);
+    }
+
+    private ConcurrentNavigableMap<Bytes, byte[]> subMap(Bytes from, Bytes to) {
+        if (from != null && to != null && from.compareTo(to) > 0) {
+            log.warn("Returning empty iterator for range query with from key greater than to key in store '{}'", name);
+            return new ConcurrentSkipListMap<>();
+        }
+        if (from == null && to == null) return map;
+        if (from == null) return map.headMap(to, true);
+        if (to == null) return map.tailMap(from, true);
+        return map.subMap(from, true, to, true);
+    }
+
+    @Override
+    public long approximateNumEntries() {
+        return map.size();
+    }
+
+    @Override
+    public void flush() {
+        if (open) {
+            writeSnapshot();
+        }
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        map.clear();
+    }
+
+    @Override
+    public boolean persistent() {
+        return true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public Position getPosition() {
+        return position;
+    }
+
+    // sequential writes through memory-mapped windows, so that snapshots are not limited to 2 GiB
+    private final class MappedOutput {
+        private final FileChannel channel;
+        private final long size;
+        private final CRC32C crc = new CRC32C();
+        private final ByteBuffer scratch = ByteBuffer.allocate(Long.BYTES);
+        private long windowStart = 0;
+        private MappedByteBuffer window;
+
+        MappedOutput(FileChannel channel, long size) throws IOException {
+            this.channel = channel;
+            this.size = size;
+            this.window = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(size, mapWindowBytes));
+        }
+
+        void writeInt(int value) throws IOException {
+            write(scratch.clear().putInt(value).array(), Integer.BYTES);
+        }
+
+        void writeLong(long value) throws IOException {
+            write(scratch.clear().putLong(value).array(), Long.BYTES);
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            writeInt(bytes.length);
+            write(bytes, bytes.length);
+        }
+
+        void writeChecksum() throws IOException {
+            int checksum = (int) crc.getValue();
+            write(scratch.clear().putInt(checksum).array(), Integer.BYTES);
+        }
+
+        void force() {
+            window.force();
+        }
+
+        private void write(byte[] bytes, int length) throws IOException {
+            crc.update(bytes, 0, length);
+            for (int offset = 0; offset < length; ) {
+                if (!window.hasRemaining()) {
+                    window.force();
+                    windowStart += window.capacity();
+                    window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart,
+                            Math.min(size - windowStart, mapWindowBytes));
+                }
+                int chunk = Math.min(length - offset, window.remaining());
+                window.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+    }
+
+    // sequential reads through memory-mapped windows of the first {@code size} bytes, with their checksum
+    private final class MappedInput {
+        private final FileChannel channel;
+        private final long size;
+        private final CRC32C crc = new CRC32C();
+        private final byte[] scratch = new byte[Long.BYTES];
+        private long windowStart = 0;
+        private MappedByteBuffer window;
+
+        MappedInput(FileChannel channel, long size) throws IOException {
+            this.channel = channel;
+            this.size = size;
+            this.window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, mapWindowBytes));
+        }
+
+        int readInt() throws IOException {
+            read(scratch, Integer.BYTES);
+            return ByteBuffer.wrap(scratch).getInt();
+        }
+
+        long readLong() throws IOException {
+            read(scratch, Long.BYTES);
+            return ByteBuffer.wrap(scratch).getLong();
+        }
+
+        byte[] readBytes() throws IOException {
+            int length = readInt();
+            if (length < 0 || length > remaining()) {
+                throw new IOException("Invalid length " + length + " with " + remaining() + " bytes left");
+            }
+            byte[] bytes = new byte[length];
+            read(bytes, length);
+            return bytes;
+        }
+
+        long remaining() {
+            return size - windowStart - window.position();
+        }
+
+        int checksum() {
+            return (int) crc.getValue();
+        }
+
+        private void read(byte[] bytes, int length) throws IOException {
+            if (length > remaining()) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+            for (int offset = 0; offset < length; ) {
+                if (!window.hasRemaining()) {
+                    windowStart += window.capacity();
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                            Math.min(size - windowStart, mapWindowBytes));
+                }
+                int chunk = Math.min(length - offset, window.remaining());
+                window.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            crc.update(bytes, 0, length);
+        }
+    }
+
+    // weakly consistent view over the skip list - sees concurrent updates, never fails on them
+    private static final class MapIterator implements KeyValueIterator<Bytes, byte[]> {
+        private final Iterator<Map.Entry<Bytes, byte[]>> iterator;
+        private final byte[] prefix;
+        private Map.Entry<Bytes, byte[]> next;
+
+        MapIterator(NavigableMap<Bytes, byte[]> entries) {
+            this(entries, null);
+        }
+
+        MapIterator(NavigableMap<Bytes, byte[]> entries, byte[] prefix) {
+            this.iterator = entries.entrySet().iterator();
+            this.prefix = prefix;
+            advance();
+        }
+
+        private void advance() {
+            next = iterator.hasNext() ? iterator.next() : null;
+            if (next != null && prefix != null && !startsWith(next.getKey().get(), prefix)) {
+                next = null;
+            }
+        }
+
+        private static boolean startsWith(byte[] key, byte[] prefix) {
+            return key.length >= prefix.length &&
+                    Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public KeyValue<Bytes, byte[]> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            var result = KeyValue.pair(next.getKey(), next.getValue());
+            advance();
+            return result;
+        }
+
+        @Override
+        public Bytes peekNextKey() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            return next.getKey();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package course.kafka.state;
+
+import org.apache.kafka.streams.kstream.Window;
+
+/**
+ * Time window {@code [start, end)} for windowed keys rebuilt from stored window bounds, e.g. of tumbling or hopping
+ * windows. Same semantics as the window of a {@code TimeWindows} aggregation, without depending on Streams internals.
+ * As {@link Window#equals(Object)} compares classes, it never equals the windows built by Streams itself - compare
+ * their bounds instead.
+ */
+public class TimeRangeWindow extends Window {
+
+    public TimeRangeWindow(long startMs, long endMs) {
+        super(startMs, endMs);
+        if (startMs >= endMs) {
+            throw new IllegalArgumentException("Window end " + endMs + " must be after its start " + startMs);
+        }
+    }
+
+    @Override
+    public boolean overlap(Window other) {
+        return startMs < other.end() && other.start() < endMs;
+    }
+}
@@ -0,0 +1,39 @@
+package course.kafka.state;
+
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.state.WindowStore;
+
+import java.time.Duration;
+
+/**
+ * Selects the window store backing a windowed aggregation. Both types use the same store name and changelog
+ * format, so a topology can be switched between them and restored from the existing changelog topic.
+ */
+public enum WindowStoreType {
+    ROCKSDB,
+    OFF_HEAP;
+
+    public static final Duration DEFAULT_RETENTION = Duration.ofMinutes(1);
+    public static final long DEFAULT_MEMORY_BYTES = 16 * 1024 * 1024;
+
+    public <K, V> Materialized<K, V, WindowStore<Bytes, byte[]>> materialized(
+            String storeName, Duration windowSize, Serde<K> keySerde, Serde<V> valueSerde) {
+        return materialized(storeName, windowSize, DEFAULT_RETENTION, DEFAULT_MEMORY_BYTES, keySerde, valueSerde);
+    }
+
+    public <K, V> Materialized<K, V, WindowStore<Bytes, byte[]>> materialized(
+            String storeName, Duration windowSize, Duration retention, long memoryBytes,
+            Serde<K> keySerde, Serde<V> valueSerde) {
+        Materialized<K, V, WindowStore<Bytes, byte[]>> materialized;
+        switch (this) {
+            case OFF_HEAP:
+                materialized = Materialized.as(new OffHeapWindowStoreSupplier(storeName, retention, windowSize, memoryBytes));
+                break;
+            default:
+                materialized = Materialized.<K, V, WindowStore<Bytes, byte[]>>as(storeName).withRetention(retention);
+        }
+        return materialized.withKeySerde(keySerde).withValueSerde(valueSerde);
+    }
+}
@@ -0,0 +1,112 @@
+package course.kafka.streams;
+
+import course.kafka.model.TemperatureAnomaly;
+import course.kafka.model.TimestampedTemperatureReading;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Scores every reading against the exponentially weighted moving mean and variance of its sensor, and checks its
+ * rate of change since the previous reading, so anomalies are emitted as soon as they arrive instead of when a
+ * window closes. The state of a sensor is a fixed {@value #STATE_SIZE} byte array - mean, variance, previous
+ * value, previous timestamp and reading count - updated in place, so scoring a normal reading allocates nothing
+ * beyond what the store does. The z-score is checked only after {@code warmup} readings of the sensor.
+ */
+public class AnomalyDetector implements Transformer<String, TimestampedTemperatureReading, KeyValue<String, TemperatureAnomaly>> {
+    static final int STATE_SIZE = 3 * Double.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int MEAN = 0;
+    private static final int VARIANCE = MEAN + Double.BYTES;
+    private static final int PREVIOUS_VALUE = VARIANCE + Double.BYTES;
+    private static final int PREVIOUS_TIMESTAMP = PREVIOUS_VALUE + Double.BYTES;
+    private static final int COUNT = PREVIOUS_TIMESTAMP + Long.BYTES;
+    private static final VarHandle DOUBLE = MethodHandles.byteArrayViewVarHandle(double[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final String storeName;
+    private final double alpha;
+    private final double zThreshold;
+    private final double maxRatePerSecond;
+    private final int warmup;
+    private KeyValueStore<String, byte[]> store;
+
+    public AnomalyDetector(String storeName, double alpha, double zThreshold, double maxRatePerSecond, int warmup) {
+        if (alpha <= 0 || alpha > 1) throw new IllegalArgumentException("Alpha must be in (0, 1]: " + alpha);
+        this.storeName = storeName;
+        this.alpha = alpha;
+        this.zThreshold = zThreshold;
+        this.maxRatePerSecond = maxRatePerSecond;
+        this.warmup = warmup;
+    }
+
+    public static <K> void addStore(StreamsBuilder builder, String storeName, Serde<K> keySerde) {
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(storeName), keySerde, Serdes.ByteArray()));
+    }
+
+    @Override
+    public void init(ProcessorContext context) {
+        store = context.getStateStore(storeName);
+    }
+
+    @Override
+    public KeyValue<String, TemperatureAnomaly> transform(String sensorId, TimestampedTemperatureReading reading) {
+        if (sensorId == null || reading == null || Double.isNaN(reading.getValue())) return null;
+        double value = reading.getValue();
+        long timestamp = reading.getTimestamp();
+        byte[] state = store.get(sensorId);
+        if (state == null) {
+            state = new byte[STATE_SIZE];
+            DOUBLE.set(state, MEAN, value);
+            DOUBLE.set(state, PREVIOUS_VALUE, value);
+            LONG.set(state, PREVIOUS_TIMESTAMP, timestamp);
+            INT.set(state, COUNT, 1);
+            store.put(sensorId, state);
+            return null;
+        }
+        double mean = (double) DOUBLE.get(state, MEAN);
+        double variance = (double) DOUBLE.get(state, VARIANCE);
+        int count = (int) INT.get(state, COUNT);
+        long elapsedMs = timestamp - (long) LONG.get(state, PREVIOUS_TIMESTAMP);
+
+        double stdDev = Math.sqrt(variance);
+        double zScore = stdDev > 0 ? (value - mean) / stdDev : 0;
+        double rate = elapsedMs > 0 ? (value - (double) DOUBLE.get(state, PREVIOUS_VALUE)) * 1000 / elapsedMs : 0;
+        TemperatureAnomaly.Type type = null;
+        if (count >= warmup && Math.abs(zScore) > zThreshold) {
+            type = TemperatureAnomaly.Type.Z_SCORE;
+        } else if (Math.abs(rate) > maxRatePerSecond) {
+            type = TemperatureAnomaly.Type.RATE_OF_CHANGE;
+        }
+
+        // incremental exponentially weighted mean and variance
+        double diff = value - mean;
+        double increment = alpha * diff;
+        DOUBLE.set(state, MEAN, mean + increment);
+        DOUBLE.set(state, VARIANCE, (1 - alpha) * (variance + diff * increment));
+        if (elapsedMs >= 0) { // out of order readings do not move the rate baseline back
+            DOUBLE.set(state, PREVIOUS_VALUE, value);
+            LONG.set(state, PREVIOUS_TIMESTAMP, timestamp);
+        }
+        if (count < warmup) INT.set(state, COUNT, count + 1);
+        store.put(sensorId, state);
+
+        if (type == null) return null;
+        return KeyValue.pair(sensorId,
+                new TemperatureAnomaly(type, sensorId, value, timestamp, mean, stdDev, zScore, rate));
+    }
+
+    @Override
+    public void close() {
+    }
+}
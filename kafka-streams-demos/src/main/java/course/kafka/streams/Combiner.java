@@ -0,0 +1,111 @@
+package course.kafka.streams;
+
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Reducer;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.To;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Map-side combiner: pre-aggregates records per key within the task and forwards one partial aggregate per key
+ * every flush interval, or as soon as {@code maxEntries} keys are pending. Placed before a repartition it sends
+ * each key once per interval instead of once per record. The downstream aggregation must reduce the partials with
+ * the same associative reducer, e.g. count as {@code map(1L)}, combine and {@code reduce(Long::sum)}.
+ * <p>
+ * Partials are buffered in a cached, changelogged in-memory store, so pending ones survive a failover and are
+ * neither lost nor double counted. The cache collapses the updates between commits, so the changelog carries
+ * about one record per pending key and commit - set the flush interval to the commit interval to keep it small.
+ * Forwarded partials carry the latest timestamp of the records combined since the last flush.
+ */
+public class Combiner<K, V> implements Transformer<K, V, KeyValue<K, V>> {
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private final String storeName;
+    private final Reducer<V> reducer;
+    private final int maxEntries;
+    private final Duration flushInterval;
+    private int entries = 0;
+    private long maxTimestamp = Long.MIN_VALUE;
+    private KeyValueStore<K, V> buffer;
+    private ProcessorContext context;
+
+    public Combiner(String storeName, Reducer<V> reducer, int maxEntries, Duration flushInterval) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Combiner needs room for at least one entry, but was " + maxEntries);
+        }
+        this.storeName = storeName;
+        this.reducer = reducer;
+        this.maxEntries = maxEntries;
+        this.flushInterval = flushInterval;
+    }
+
+    public static <K, V> StoreBuilder<KeyValueStore<K, V>> storeBuilder(String storeName, Serde<K> keySerde,
+                                                                         Serde<V> valueSerde) {
+        return Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(storeName), keySerde, valueSerde)
+                .withCachingEnabled()
+                .withLoggingEnabled(Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+    }
+
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        buffer = context.getStateStore(storeName);
+        try (var iter = buffer.all()) {
+            while (iter.hasNext()) {
+                iter.next();
+                entries++;
+            }
+        }
+        context.schedule(flushInterval, PunctuationType.WALL_CLOCK_TIME, timestamp -> flush());
+    }
+
+    @Override
+    public KeyValue<K, V> transform(K key, V value) {
+        if (key == null || value == null) {
+            return KeyValue.pair(key, value); // nothing to combine, the aggregation downstream drops it anyway
+        }
+        V partial = buffer.get(key);
+        if (partial == null) {
+            buffer.put(key, value);
+            entries++;
+        } else {
+            buffer.put(key, reducer.apply(partial, value));
+        }
+        maxTimestamp = Math.max(maxTimestamp, context.timestamp());
+        if (entries >= maxEntries) {
+            flush();
+        }
+        return null;
+    }
+
+    private void flush() {
+        if (entries == 0) return;
+        var to = maxTimestamp == Long.MIN_VALUE ? To.all() : To.all().withTimestamp(maxTimestamp);
+        List<K> flushed = new ArrayList<>(entries);
+        try (var iter = buffer.all()) {
+            while (iter.hasNext()) {
+                var entry = iter.next();
+                context.forward(entry.key, entry.value, to);
+                flushed.add(entry.key);
+            }
+        }
+        flushed.forEach(buffer::delete);
+        entries = 0;
+        maxTimestamp = Long.MIN_VALUE;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,84 @@
+package course.kafka.streams;
+
+import course.kafka.model.TemperatureReading;
+import course.kafka.serialization.JsonDeserializer;
+import course.kafka.serialization.JsonSerializer;
+import course.kafka.state.BoundedMemoryRocksDBConfig;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.kstream.Produced;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import static org.apache.kafka.streams.kstream.Consumed.with;
+
+// Removes the duplicates that producer retries without idempotence leave in the readings, by reading id
+public class DeduplicatedTemperatureReadings11 {
+    public static final String INPUT_TOPIC = "temperature2"; // see SimpleTemperatureReadingsProducer
+    public static final String OUTPUT_TOPIC = "temperature2-deduplicated";
+    public static final String DEDUPLICATION_STORE = "temperature-reading-ids-store";
+    public static final Duration HORIZON = Duration.ofHours(1);
+    public static final long EXPECTED_IDS_PER_HORIZON = 1_000_000; // per task
+    public static final double FALSE_POSITIVE_RATE = 0.01;
+
+    // create custom JSON Serde
+    private static Serde<TemperatureReading> readingsJsonSerde = Serdes.serdeFrom(
+            new JsonSerializer<>(), new JsonDeserializer<>(TemperatureReading.class));
+
+    public static void buildTopology(StreamsBuilder builder) {
+        DeduplicationTransformer.addStore(builder, DEDUPLICATION_STORE, HORIZON);
+        builder.stream(INPUT_TOPIC, with(Serdes.String(), readingsJsonSerde))
+                .transform(() -> new DeduplicationTransformer<String, TemperatureReading>(DEDUPLICATION_STORE,
+                        (id, reading) -> reading.getId(), HORIZON, EXPECTED_IDS_PER_HORIZON, FALSE_POSITIVE_RATE),
+                        DEDUPLICATION_STORE)
+                .to(OUTPUT_TOPIC, Produced.with(Serdes.String(), readingsJsonSerde));
+    }
+
+    public static void main(String[] args) {
+        // 1) Configure stream
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-deduplication");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
+        props.put(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG, BoundedMemoryRocksDBConfig.class);
+        props.put(BoundedMemoryRocksDBConfig.TOTAL_MEMORY_CONFIG, 256L * 1024 * 1024);
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+
+        // 2) Create stream builder
+        final StreamsBuilder builder = new StreamsBuilder();
+        buildTopology(builder);
+
+        // 3) Build stream topology
+        final Topology topology = builder.build(); // build DAG
+        System.out.println(topology.describe());
+
+        // 4) Create streams instance
+        final KafkaStreams streams = new KafkaStreams(topology, props);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        // attach shutdown handler to catch Ctrl-c
+        Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
+            @Override
+            public void run() {
+                streams.close();
+                latch.countDown();
+            }
+        });
+
+        // 5) Start streams and await termination
+        try {
+            streams.start();
+            latch.await();
+        } catch (InterruptedException e) {
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,134 @@
+package course.kafka.streams;
+
+import course.kafka.model.RotatingBloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.CumulativeSum;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.KeyValueMapper;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drops the records whose id was already seen within the horizon, in two tiers. A {@link RotatingBloomFilter}
+ * answers for the ids never seen - most of them - without touching the store; only its positives are confirmed by
+ * a lookup in a window store of the ids, which expires whole segments after the horizon instead of deleting ids one
+ * by one. The filter is not persisted, but rebuilt from the window store when the task starts.
+ * <p>
+ * Dropped duplicates, filter positives and false positives are counted per task in group {@value #METRICS_GROUP}.
+ */
+@Slf4j
+public class DeduplicationTransformer<K, V> implements Transformer<K, V, KeyValue<K, V>> {
+    public static final String METRICS_GROUP = "stream-deduplication-metrics";
+    public static final int GENERATIONS = 4;
+
+    private final String storeName;
+    private final KeyValueMapper<K, V, String> idExtractor;
+    private final long horizonMs;
+    private final long expectedIds;
+    private final double fpp;
+    private RotatingBloomFilter filter;
+    private WindowStore<String, Long> store;
+    private ProcessorContext context;
+    private long streamTime = Long.MIN_VALUE;
+    private final List<Sensor> sensors = new ArrayList<>();
+    private Sensor duplicatesSensor;
+    private Sensor positivesSensor;
+    private Sensor falsePositivesSensor;
+
+    public DeduplicationTransformer(String storeName, KeyValueMapper<K, V, String> idExtractor, Duration horizon,
+                                    long expectedIdsPerHorizon, double fpp) {
+        this.storeName = storeName;
+        this.idExtractor = idExtractor;
+        this.horizonMs = horizon.toMillis();
+        this.expectedIds = expectedIdsPerHorizon;
+        this.fpp = fpp;
+    }
+
+    public static void addStore(StreamsBuilder builder, String storeName, Duration horizon) {
+        builder.addStateStore(Stores.windowStoreBuilder(
+                Stores.persistentWindowStore(storeName, horizon, horizon, false), Serdes.String(), Serdes.Long()));
+    }
+
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        store = context.getStateStore(storeName);
+        filter = RotatingBloomFilter.forFpp(expectedIds, fpp, GENERATIONS, horizonMs);
+        int restored = 0;
+        try (var iter = store.all()) {
+            while (iter.hasNext()) {
+                var entry = iter.next();
+                advanceTo(entry.key.window().start());
+                filter.put(entry.key.key());
+                restored++;
+            }
+        }
+        registerMetrics();
+        log.info("Deduplicating '{}' over {} ms with a {} byte Bloom filter, {} ids restored",
+                storeName, horizonMs, filter.memoryBytes(), restored);
+    }
+
+    @Override
+    public KeyValue<K, V> transform(K key, V value) {
+        String id = value == null ? null : idExtractor.apply(key, value);
+        if (id == null) return KeyValue.pair(key, value);
+        long timestamp = context.timestamp();
+        advanceTo(timestamp);
+        if (filter.mightContain(id)) {
+            positivesSensor.record();
+            try (var iter = store.fetch(id, timestamp - horizonMs, timestamp + horizonMs)) {
+                if (iter.hasNext()) {
+                    duplicatesSensor.record();
+                    return null;
+                }
+            }
+            falsePositivesSensor.record();
+        }
+        store.put(id, timestamp, timestamp);
+        filter.put(id);
+        return KeyValue.pair(key, value);
+    }
+
+    private void advanceTo(long timestamp) {
+        if (timestamp > streamTime) {
+            streamTime = timestamp;
+            filter.advanceTo(timestamp);
+        }
+    }
+
+    private void registerMetrics() {
+        Map<String, String> tags = Map.of(
+                "thread-id", Thread.currentThread().getName(),
+                "task-id", context.taskId().toString(),
+                "store-name", storeName);
+        duplicatesSensor = sensor("duplicates-total", "Total number of dropped duplicates", tags);
+        positivesSensor = sensor("bloom-positives-total", "Total number of ids checked in the store", tags);
+        falsePositivesSensor = sensor("bloom-false-positives-total",
+                "Total number of ids checked in the store, but not found", tags);
+    }
+
+    private Sensor sensor(String name, String description, Map<String, String> tags) {
+        var sensor = context.metrics().addSensor(
+                context.taskId() + "." + storeName + "." + name, Sensor.RecordingLevel.INFO);
+        sensor.add(new MetricName(name, METRICS_GROUP, description, tags), new CumulativeSum());
+        sensors.add(sensor);
+        return sensor;
+    }
+
+    @Override
+    public void close() {
+        sensors.forEach(context.metrics()::removeSensor);
+        sensors.clear();
+    }
+}
@@ -0,0 +1,85 @@
+package course.kafka.streams;
+
+import java.time.Duration;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * When {@link EmissionPolicyTransformer} forwards the updates of a key:
+ * <ul>
+ *     <li>{@link Mode#EVERY_UPDATE} - every update, as the DSL does without caching;</li>
+ *     <li>{@link Mode#RATE_LIMITED} - at most once per interval of stream time, the latest update pending
+ *     until the interval expires;</li>
+ *     <li>{@link Mode#ON_CHANGE} - only when the measured value moves more than a threshold away from the
+ *     last emitted one;</li>
+ *     <li>{@link Mode#PERIODIC} - the latest update of each period (e.g. a billing period), when stream time
+ *     passes the period end.</li>
+ * </ul>
+ */
+public final class EmissionPolicy<V> {
+    public enum Mode {EVERY_UPDATE, RATE_LIMITED, ON_CHANGE, PERIODIC}
+
+    private final Mode mode;
+    private final Duration interval;
+    private final ToDoubleFunction<V> measure;
+    private final double threshold;
+
+    private EmissionPolicy(Mode mode, Duration interval, ToDoubleFunction<V> measure, double threshold) {
+        this.mode = mode;
+        this.interval = interval;
+        this.measure = measure;
+        this.threshold = threshold;
+    }
+
+    public static <V> EmissionPolicy<V> everyUpdate() {
+        return new EmissionPolicy<>(Mode.EVERY_UPDATE, Duration.ZERO, null, 0);
+    }
+
+    public static <V> EmissionPolicy<V> rateLimited(Duration interval) {
+        return new EmissionPolicy<>(Mode.RATE_LIMITED, positive(interval), null, 0);
+    }
+
+    public static <V> EmissionPolicy<V> onChange(ToDoubleFunction<V> measure, double threshold) {
+        if (threshold < 0) throw new IllegalArgumentException("Threshold must not be negative: " + threshold);
+        return new EmissionPolicy<>(Mode.ON_CHANGE, Duration.ZERO, measure, threshold);
+    }
+
+    public static <V> EmissionPolicy<V> periodic(Duration period) {
+        return new EmissionPolicy<>(Mode.PERIODIC, positive(period), null, 0);
+    }
+
+    private static Duration positive(Duration interval) {
+        if (interval.isZero() || interval.isNegative()) {
+            throw new IllegalArgumentException("Interval must be positive: " + interval);
+        }
+        return interval;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public Duration interval() {
+        return interval;
+    }
+
+    boolean changed(V value, double lastEmitted) {
+        return Math.abs(measure.applyAsDouble(value) - lastEmitted) > threshold;
+    }
+
+    double measure(V value) {
+        return measure == null ? Double.NaN : measure.applyAsDouble(value);
+    }
+
+    @Override
+    public String toString() {
+        switch (mode) {
+            case RATE_LIMITED:
+            case PERIODIC:
+                return mode + "(" + interval + ")";
+            case ON_CHANGE:
+                return mode + "(" + threshold + ")";
+            default:
+                return mode.toString();
+        }
+    }
+}
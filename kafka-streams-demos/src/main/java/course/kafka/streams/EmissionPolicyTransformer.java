@@ -0,0 +1,222 @@
+package course.kafka.streams;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.CumulativeSum;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.To;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Forwards the updates of a changelog stream (e.g. {@code aggregate(...).toStream()}) as its {@link EmissionPolicy}
+ * allows. Per key the store keeps the last emission time, the last emitted measure and the latest pending update,
+ * so rate limited and periodic emission survive restarts. Rate limited keys are evicted once their interval has
+ * passed without updates, periodic keys once emitted. Tombstones are always forwarded.
+ * <p>
+ * Rate limited updates are emitted by stream time punctuation. Periods are aligned to multiples of the period
+ * length and emitted by the first record whose stream time crosses the boundary, before it is buffered - Streams
+ * punctuates only after processing that record, which would bill it to the ended period. Buffered updates keep
+ * the start of their period in place of the emission time, so after a restart the current period is recovered
+ * from the store on the first record and an ended period is still emitted on time. Forwarded and suppressed
+ * (never forwarded) update counts are registered per task in group {@value #METRICS_GROUP}.
+ */
+@Slf4j
+public class EmissionPolicyTransformer<K, V> implements Transformer<K, V, KeyValue<K, V>> {
+    public static final String METRICS_GROUP = "stream-emission-policy-metrics";
+    private static final int HEADER_BYTES = Long.BYTES + Double.BYTES + Long.BYTES;
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final String storeName;
+    private final Serde<V> valueSerde;
+    private final EmissionPolicy<V> policy;
+    private final long intervalMs;
+    private KeyValueStore<K, byte[]> store;
+    private ProcessorContext context;
+    private long periodStart = NEVER;
+    private final List<Sensor> sensors = new ArrayList<>();
+    private Sensor emittedSensor;
+    private Sensor suppressedSensor;
+
+    public EmissionPolicyTransformer(String storeName, Serde<V> valueSerde, EmissionPolicy<V> policy) {
+        this.storeName = storeName;
+        this.valueSerde = valueSerde;
+        this.policy = policy;
+        this.intervalMs = policy.interval().toMillis();
+    }
+
+    public static <K> void addStore(StreamsBuilder builder, String storeName, Serde<K> keySerde) {
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(storeName), keySerde, Serdes.ByteArray()));
+    }
+
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        store = context.getStateStore(storeName);
+        if (policy.mode() == EmissionPolicy.Mode.RATE_LIMITED) {
+            context.schedule(policy.interval(), PunctuationType.STREAM_TIME, this::emitExpired);
+        }
+        registerMetrics();
+        log.info("Emitting updates of '{}' with policy {}", storeName, policy);
+    }
+
+    @Override
+    public KeyValue<K, V> transform(K key, V value) {
+        long timestamp = context.timestamp();
+        if (value == null) {
+            store.delete(key);
+            emit(key, null, timestamp);
+            return null;
+        }
+        long now = context.currentStreamTimeMs();
+        byte[] state = policy.mode() == EmissionPolicy.Mode.EVERY_UPDATE ? null : store.get(key);
+        switch (policy.mode()) {
+            case RATE_LIMITED:
+                if (state == null || now - lastEmitTime(state) >= intervalMs) {
+                    emit(key, value, timestamp);
+                    store.put(key, encode(now, Double.NaN, NEVER, null));
+                } else {
+                    if (hasPending(state)) suppressedSensor.record();
+                    store.put(key, encode(lastEmitTime(state), Double.NaN, timestamp, value));
+                }
+                break;
+            case ON_CHANGE:
+                if (state == null || policy.changed(value, lastEmitted(state))) {
+                    emit(key, value, timestamp);
+                    store.put(key, encode(now, policy.measure(value), NEVER, null));
+                } else {
+                    suppressedSensor.record();
+                }
+                break;
+            case PERIODIC:
+                long boundary = now - now % intervalMs;
+                if (periodStart == NEVER) periodStart = storedPeriodStart();
+                if (periodStart != NEVER && boundary > periodStart) {
+                    emitPeriod(now);
+                    state = null;
+                }
+                periodStart = boundary;
+                if (state != null) suppressedSensor.record();
+                store.put(key, encode(boundary, Double.NaN, timestamp, value));
+                break;
+            default:
+                emit(key, value, timestamp);
+        }
+        return null;
+    }
+
+    // forwards the pending updates of keys whose interval has expired, evicts the keys without updates
+    private void emitExpired(long streamTime) {
+        List<KeyValue<K, byte[]>> expired = new ArrayList<>();
+        try (var iter = store.all()) {
+            while (iter.hasNext()) {
+                var entry = iter.next();
+                if (streamTime - lastEmitTime(entry.value) >= intervalMs) {
+                    expired.add(entry);
+                }
+            }
+        }
+        for (var entry : expired) {
+            if (hasPending(entry.value)) {
+                emit(entry.key, pending(entry.value), pendingTimestamp(entry.value));
+                store.put(entry.key, encode(streamTime, Double.NaN, NEVER, null));
+            } else {
+                store.delete(entry.key);
+            }
+        }
+    }
+
+    // forwards the latest update of every key updated in the period that ended
+    private void emitPeriod(long streamTime) {
+        long boundary = streamTime - streamTime % intervalMs;
+        List<KeyValue<K, byte[]>> updated = new ArrayList<>();
+        try (var iter = store.all()) {
+            iter.forEachRemaining(updated::add);
+        }
+        for (var entry : updated) {
+            emit(entry.key, pending(entry.value), pendingTimestamp(entry.value));
+            store.delete(entry.key);
+        }
+        log.debug("Emitted {} updates of '{}' for period [{}, {})", updated.size(), storeName, periodStart, boundary);
+    }
+
+    // the latest period of the buffered updates, NEVER if there are none
+    private long storedPeriodStart() {
+        long latest = NEVER;
+        try (var iter = store.all()) {
+            while (iter.hasNext()) {
+                latest = Math.max(latest, lastEmitTime(iter.next().value));
+            }
+        }
+        return latest;
+    }
+
+    private void emit(K key, V value, long timestamp) {
+        context.forward(key, value, To.all().withTimestamp(timestamp));
+        emittedSensor.record();
+    }
+
+    // last emit time (period start if periodic):long | last emitted measure:double | pending timestamp:long | pending value, if any
+    private byte[] encode(long lastEmitTime, double lastEmitted, long pendingTimestamp, V pending) {
+        byte[] value = pending == null ? new byte[0] : valueSerde.serializer().serialize(storeName, pending);
+        return ByteBuffer.allocate(HEADER_BYTES + value.length)
+                .putLong(lastEmitTime).putDouble(lastEmitted).putLong(pendingTimestamp).put(value).array();
+    }
+
+    private static long lastEmitTime(byte[] state) {
+        return ByteBuffer.wrap(state).getLong(0);
+    }
+
+    private static double lastEmitted(byte[] state) {
+        return ByteBuffer.wrap(state).getDouble(Long.BYTES);
+    }
+
+    private static long pendingTimestamp(byte[] state) {
+        return ByteBuffer.wrap(state).getLong(Long.BYTES + Double.BYTES);
+    }
+
+    private static boolean hasPending(byte[] state) {
+        return state.length > HEADER_BYTES;
+    }
+
+    private V pending(byte[] state) {
+        return valueSerde.deserializer().deserialize(storeName, Arrays.copyOfRange(state, HEADER_BYTES, state.length));
+    }
+
+    private void registerMetrics() {
+        Map<String, String> tags = Map.of(
+                "thread-id", Thread.currentThread().getName(),
+                "task-id", context.taskId().toString(),
+                "store-name", storeName);
+        emittedSensor = sensor("emitted-total", "Total number of forwarded updates", tags);
+        suppressedSensor = sensor("suppressed-total", "Total number of updates that were never forwarded", tags);
+    }
+
+    private Sensor sensor(String name, String description, Map<String, String> tags) {
+        var sensor = context.metrics().addSensor(
+                context.taskId() + "." + storeName + "." + name, Sensor.RecordingLevel.INFO);
+        sensor.add(new MetricName(name, METRICS_GROUP, description, tags), new CumulativeSum());
+        sensors.add(sensor);
+        return sensor;
+    }
+
+    @Override
+    public void close() {
+        sensors.forEach(context.metrics()::removeSensor);
+        sensors.clear();
+    }
+}
@@ -0,0 +1,295 @@
+package course.kafka.streams;
+
+import course.kafka.state.TimeRangeWindow;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.MeasurableStat;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.CumulativeSum;
+import org.apache.kafka.common.metrics.stats.Value;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.To;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded replacement of {@code suppress(untilWindowCloses(unbounded()))}: buffers the latest result of each window
+ * and forwards it once stream time passes window end plus grace, in window end order. Pending results stay in a
+ * changelogged in-memory store up to {@code maxMemoryBytes}; beyond that the windows closing last are spilled to a
+ * changelogged RocksDB store, so a burst or a stream time stall costs disk instead of heap. Both stores are keyed by
+ * window end first, so emitting is a range scan merged from both.
+ * <p>
+ * Buffer metrics are registered per task in group {@value #METRICS_GROUP}: memory bytes and count, spilled count,
+ * spilled total and late total (results for windows that had already been emitted, which are dropped).
+ */
+@Slf4j
+public class EmitFinalTransformer<K, V> implements Transformer<Windowed<K>, V, KeyValue<Windowed<K>, V>> {
+    public static final String METRICS_GROUP = "stream-emit-final-buffer-metrics";
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 16 * 1024 * 1024;
+    private static final int ENTRY_OVERHEAD_BYTES = 64; // map node, Bytes wrapper and array headers
+    private static final double SPILL_TARGET = 0.9;
+
+    private final String bufferName;
+    private final Serde<K> keySerde;
+    private final Serde<V> valueSerde;
+    private final long graceMs;
+    private final long maxMemoryBytes;
+    private KeyValueStore<Bytes, byte[]> memory;
+    private KeyValueStore<Bytes, byte[]> spill;
+    private long memoryBytes = 0;
+    private long memoryCount = 0;
+    private long spilledCount = 0;
+    private long nextWindowEnd = Long.MAX_VALUE;
+    private ProcessorContext context;
+    private final List<Sensor> sensors = new ArrayList<>();
+    private Sensor memoryBytesSensor;
+    private Sensor memoryCountSensor;
+    private Sensor spilledCountSensor;
+    private Sensor spillSensor;
+    private Sensor lateSensor;
+
+    public EmitFinalTransformer(String bufferName, Serde<K> keySerde, Serde<V> valueSerde, Duration grace,
+                                long maxMemoryBytes) {
+        this.bufferName = bufferName;
+        this.keySerde = keySerde;
+        this.valueSerde = valueSerde;
+        this.graceMs = grace.toMillis();
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    public static void addStores(StreamsBuilder builder, String bufferName) {
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.inMemoryKeyValueStore(memoryStoreName(bufferName)), Serdes.Bytes(), Serdes.ByteArray()));
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(spillStoreName(bufferName)), Serdes.Bytes(), Serdes.ByteArray()));
+    }
+
+    public static String[] storeNames(String bufferName) {
+        return new String[]{memoryStoreName(bufferName), spillStoreName(bufferName)};
+    }
+
+    private static String memoryStoreName(String bufferName) {
+        return bufferName + "-memory";
+    }
+
+    private static String spillStoreName(String bufferName) {
+        return bufferName + "-spill";
+    }
+
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        memory = context.getStateStore(memoryStoreName(bufferName));
+        spill = context.getStateStore(spillStoreName(bufferName));
+        try (var iter = memory.all()) {
+            if (iter.hasNext()) nextWindowEnd = windowEnd(iter.peekNextKey());
+            while (iter.hasNext()) {
+                var entry = iter.next();
+                memoryBytes += entryBytes(entry.key, entry.value);
+                memoryCount++;
+            }
+        }
+        try (var iter = spill.all()) {
+            if (iter.hasNext()) nextWindowEnd = Math.min(nextWindowEnd, windowEnd(iter.peekNextKey()));
+            while (iter.hasNext()) {
+                iter.next();
+                spilledCount++;
+            }
+        }
+        registerMetrics();
+        recordBufferMetrics();
+        log.info("Restored buffer '{}' with {} results in {} bytes of memory and {} spilled results",
+                bufferName, memoryCount, memoryBytes, spilledCount);
+    }
+
+    @Override
+    public KeyValue<Windowed<K>, V> transform(Windowed<K> windowedKey, V value) {
+        long closeTime = context.currentStreamTimeMs() - graceMs;
+        if (windowedKey.window().end() <= closeTime) {
+            lateSensor.record();
+            log.debug("Dropping result for closed window {}", windowedKey);
+        } else {
+            buffer(windowedKey, value);
+        }
+        emitClosedWindows(closeTime);
+        recordBufferMetrics();
+        return null;
+    }
+
+    private void buffer(Windowed<K> windowedKey, V value) {
+        Bytes key = toKey(windowedKey);
+        if (value == null) {
+            remove(key);
+            return;
+        }
+        byte[] serialized = valueSerde.serializer().serialize(bufferName, value);
+        byte[] bufferValue = ByteBuffer.allocate(Long.BYTES + serialized.length)
+                .putLong(context.timestamp()).put(serialized).array();
+        byte[] old = memory.get(key);
+        if (old != null) {
+            memoryBytes += bufferValue.length - old.length;
+            memory.put(key, bufferValue);
+        } else if (spilledCount > 0 && spill.get(key) != null) {
+            spill.put(key, bufferValue);
+        } else {
+            memory.put(key, bufferValue);
+            memoryBytes += entryBytes(key, bufferValue);
+            memoryCount++;
+        }
+        nextWindowEnd = Math.min(nextWindowEnd, windowedKey.window().end());
+        if (memoryBytes > maxMemoryBytes) {
+            spillLastClosingWindows();
+        }
+    }
+
+    private void remove(Bytes key) {
+        byte[] old = memory.delete(key);
+        if (old != null) {
+            memoryBytes -= entryBytes(key, old);
+            memoryCount--;
+        } else if (spilledCount > 0 && spill.delete(key) != null) {
+            spilledCount--;
+        }
+    }
+
+    // the windows closing last are needed last, spill them down to the target with some headroom
+    private void spillLastClosingWindows() {
+        long target = (long) (maxMemoryBytes * SPILL_TARGET);
+        List<KeyValue<Bytes, byte[]>> spilled = new ArrayList<>();
+        long bytes = memoryBytes;
+        try (var iter = memory.reverseAll()) {
+            while (bytes > target && iter.hasNext()) {
+                var entry = iter.next();
+                spilled.add(entry);
+                bytes -= entryBytes(entry.key, entry.value);
+            }
+        }
+        spill.putAll(spilled);
+        for (var entry : spilled) {
+            memory.delete(entry.key);
+        }
+        memoryBytes = bytes;
+        memoryCount -= spilled.size();
+        spilledCount += spilled.size();
+        spillSensor.record(spilled.size());
+    }
+
+    // the iterators stop at the first open window of each store, which is the next window end to wait for
+    private void emitClosedWindows(long closeTime) {
+        if (nextWindowEnd > closeTime) return;
+        List<Bytes> emittedFromMemory = new ArrayList<>();
+        List<Bytes> emittedFromSpill = new ArrayList<>();
+        long next = Long.MAX_VALUE;
+        try (var memoryIter = memory.all(); var spillIter = spilledCount > 0 ? spill.all() : null) {
+            while (true) {
+                var fromMemory = closed(memoryIter, closeTime);
+                var fromSpill = spillIter == null ? null : closed(spillIter, closeTime);
+                if (fromMemory == null && fromSpill == null) break;
+                // both keep window end order, merge them
+                if (fromSpill == null || (fromMemory != null && fromMemory.key.compareTo(fromSpill.key) <= 0)) {
+                    forward(memoryIter.next());
+                    emittedFromMemory.add(fromMemory.key);
+                } else {
+                    forward(spillIter.next());
+                    emittedFromSpill.add(fromSpill.key);
+                }
+            }
+            if (memoryIter.hasNext()) next = windowEnd(memoryIter.peekNextKey());
+            if (spillIter != null && spillIter.hasNext()) next = Math.min(next, windowEnd(spillIter.peekNextKey()));
+        }
+        for (Bytes key : emittedFromMemory) {
+            memoryBytes -= entryBytes(key, memory.delete(key));
+        }
+        memoryCount -= emittedFromMemory.size();
+        emittedFromSpill.forEach(spill::delete);
+        spilledCount -= emittedFromSpill.size();
+        nextWindowEnd = next;
+    }
+
+    // the next entry if it belongs to a closed window, without consuming it
+    private static KeyValue<Bytes, byte[]> closed(KeyValueIterator<Bytes, byte[]> iter, long closeTime) {
+        if (!iter.hasNext()) return null;
+        var next = iter.peekNextKey();
+        return windowEnd(next) <= closeTime ? KeyValue.pair(next, null) : null;
+    }
+
+    private void forward(KeyValue<Bytes, byte[]> entry) {
+        var key = ByteBuffer.wrap(entry.key.get());
+        long end = key.getLong();
+        long start = key.getLong();
+        byte[] keyBytes = new byte[key.remaining()];
+        key.get(keyBytes);
+        var value = ByteBuffer.wrap(entry.value);
+        long timestamp = value.getLong();
+        byte[] valueBytes = new byte[value.remaining()];
+        value.get(valueBytes);
+        context.forward(
+                new Windowed<>(keySerde.deserializer().deserialize(bufferName, keyBytes), new TimeRangeWindow(start, end)),
+                valueSerde.deserializer().deserialize(bufferName, valueBytes),
+                To.all().withTimestamp(timestamp));
+    }
+
+    // window end:long | window start:long | key - big-endian, so byte order is window end order for end >= 0
+    private Bytes toKey(Windowed<K> windowedKey) {
+        byte[] keyBytes = keySerde.serializer().serialize(bufferName, windowedKey.key());
+        return Bytes.wrap(ByteBuffer.allocate(2 * Long.BYTES + keyBytes.length)
+                .putLong(windowedKey.window().end())
+                .putLong(windowedKey.window().start())
+                .put(keyBytes).array());
+    }
+
+    private static long windowEnd(Bytes key) {
+        return ByteBuffer.wrap(key.get()).getLong();
+    }
+
+    private static long entryBytes(Bytes key, byte[] value) {
+        return key.get().length + value.length + ENTRY_OVERHEAD_BYTES;
+    }
+
+    private void registerMetrics() {
+        Map<String, String> tags = Map.of(
+                "thread-id", Thread.currentThread().getName(),
+                "task-id", context.taskId().toString(),
+                "buffer-name", bufferName);
+        memoryBytesSensor = sensor("memory-bytes", "Bytes of pending results in memory", new Value(), tags);
+        memoryCountSensor = sensor("memory-count", "Number of pending results in memory", new Value(), tags);
+        spilledCountSensor = sensor("spilled-count", "Number of pending results spilled to disk", new Value(), tags);
+        spillSensor = sensor("spilled-total", "Total number of results spilled to disk", new CumulativeSum(), tags);
+        lateSensor = sensor("late-total", "Total number of dropped results of emitted windows",
+                new CumulativeSum(), tags);
+    }
+
+    private Sensor sensor(String name, String description, MeasurableStat stat, Map<String, String> tags) {
+        var sensor = context.metrics().addSensor(
+                context.taskId() + "." + bufferName + "." + name, Sensor.RecordingLevel.INFO);
+        sensor.add(new MetricName(name, METRICS_GROUP, description, tags), stat);
+        sensors.add(sensor);
+        return sensor;
+    }
+
+    private void recordBufferMetrics() {
+        memoryBytesSensor.record(memoryBytes);
+        memoryCountSensor.record(memoryCount);
+        spilledCountSensor.record(spilledCount);
+    }
+
+    @Override
+    public void close() {
+        sensors.forEach(context.metrics()::removeSensor);
+        sensors.clear();
+    }
+}
@@ -1,6 +1,7 @@
 package course.kafka.streams;
 
 import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.rules.FilterRules;
 import course.kafka.serialization.JsonDeserializer;
 import course.kafka.serialization.JsonSerializer;
 import org.apache.kafka.common.serialization.Serde;
@@ -27,33 +28,16 @@ public class FilteredTemperatureReadingsDemo {
     public static void main(String[] args) {
         // 1) Configure stream
         Properties props = new Properties();
-        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-bills");
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-bills-filtered");
         props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
         props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
         props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 4);
         props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
         props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
 
-        // create custom JSON Serde
-        Serde<TimestampedTemperatureReading> jsonSerde = Serdes.serdeFrom(
-                new JsonSerializer<>(), new JsonDeserializer<>(TimestampedTemperatureReading.class));
-
         // 2) Create stream builder
         final StreamsBuilder builder = new StreamsBuilder();
-        KStream<String, TimestampedTemperatureReading> internalTemperature = builder
-                .stream(INTERNAL_TEMP_TOPIC, with(Serdes.String(), jsonSerde));
-        KStream<String, TimestampedTemperatureReading> externalTemperature = builder
-                .stream(EXTERNAL_TEMP_TOPIC, with(Serdes.String(), jsonSerde));
-
-        Predicate<String, TimestampedTemperatureReading> validTemperatureFilter =
-                (sensorId, reading) -> reading.getValue() > -15 && reading.getValue() < 60;
-
-        internalTemperature
-                .filter(validTemperatureFilter)
-                .to(OUTPUT_TOPIC);
-        externalTemperature
-                .filter(validTemperatureFilter)
-                .to(OUTPUT_TOPIC);
+        buildTopology(builder);
 
         // 3) Build stream topology
         final Topology topology = builder.build(); // build DAG
@@ -61,12 +45,15 @@ public class FilteredTemperatureReadingsDemo {
 
         // 4) Create streams instance
         final KafkaStreams streams = new KafkaStreams(topology, props);
+        final StreamThreadAutoscaler autoscaler =
+                new StreamThreadAutoscaler(streams, 1, Math.max(4, Runtime.getRuntime().availableProcessors()));
         final CountDownLatch latch = new CountDownLatch(1);
 
         // attach shutdown handler to catch Ctrl-c
         Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
             @Override
             public void run() {
+                autoscaler.close();
                 streams.close();
                 latch.countDown();
             }
@@ -75,10 +62,32 @@ public class FilteredTemperatureReadingsDemo {
         // 5) Start streams and await termination
         try {
             streams.start();
+            autoscaler.start();
             latch.await();
         } catch (InterruptedException e) {
             System.exit(1);
         }
         System.exit(0);
     }
+
+    public static void buildTopology(StreamsBuilder builder) {
+        // create custom JSON Serde
+        Serde<TimestampedTemperatureReading> jsonSerde = Serdes.serdeFrom(
+                new JsonSerializer<>(), new JsonDeserializer<>(TimestampedTemperatureReading.class));
+
+        KStream<String, TimestampedTemperatureReading> internalTemperature = builder
+                .stream(INTERNAL_TEMP_TOPIC, with(Serdes.String(), jsonSerde));
+        KStream<String, TimestampedTemperatureReading> externalTemperature = builder
+                .stream(EXTERNAL_TEMP_TOPIC, with(Serdes.String(), jsonSerde));
+
+        Predicate<String, TimestampedTemperatureReading> validTemperatureFilter =
+                FilterRules.addGlobalStore(builder).validTemperatureFilter();
+
+        internalTemperature
+                .filter(validTemperatureFilter)
+                .to(OUTPUT_TOPIC);
+        externalTemperature
+                .filter(validTemperatureFilter)
+                .to(OUTPUT_TOPIC);
+    }
 }
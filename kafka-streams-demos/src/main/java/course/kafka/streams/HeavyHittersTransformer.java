@@ -0,0 +1,75 @@
+package course.kafka.streams;
+
+import course.kafka.model.HeavyHitters;
+import course.kafka.util.WordTokenizer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.time.Duration;
+
+/**
+ * Counts the words of a stream task's lines into a bounded {@link HeavyHitters} summary. The summary is written to
+ * a cached, changelogged store on each line, so it is committed together with the input offsets, while the cache
+ * collapses the writes between commits into one changelog record. Every emit interval a changed summary is
+ * forwarded keyed by task id, so a downstream merge always holds the latest cumulative summary of each task.
+ */
+@Slf4j
+public class HeavyHittersTransformer implements Transformer<String, String, KeyValue<String, HeavyHitters>> {
+    private final String storeName;
+    private final int candidates;
+    private final double epsilon;
+    private final double delta;
+    private final Duration emitInterval;
+    private final WordTokenizer tokenizer = new WordTokenizer();
+    private final WordTokenizer.WordConsumer countWord = word -> this.summary.add(word, 1);
+    private HeavyHitters summary;
+    private boolean dirty = false;
+    private String taskKey;
+    private KeyValueStore<String, HeavyHitters> store;
+    private ProcessorContext context;
+
+    public HeavyHittersTransformer(String storeName, int candidates, double epsilon, double delta,
+                                   Duration emitInterval) {
+        this.storeName = storeName;
+        this.candidates = candidates;
+        this.epsilon = epsilon;
+        this.delta = delta;
+        this.emitInterval = emitInterval;
+    }
+
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        store = context.getStateStore(storeName);
+        taskKey = context.taskId().toString();
+        summary = store.get(taskKey);
+        if (summary == null) {
+            summary = new HeavyHitters(candidates, epsilon, delta);
+        }
+        log.info("Task {} counts heavy hitters of {} words in {} bytes", taskKey, summary.getTotal(),
+                summary.memoryBytes());
+        context.schedule(emitInterval, PunctuationType.WALL_CLOCK_TIME, timestamp -> emit());
+    }
+
+    @Override
+    public KeyValue<String, HeavyHitters> transform(String key, String line) {
+        tokenizer.forEachWord(line, countWord);
+        store.put(taskKey, summary);
+        dirty = true;
+        return null;
+    }
+
+    private void emit() {
+        if (!dirty) return;
+        context.forward(taskKey, summary);
+        dirty = false;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,140 @@
+package course.kafka.streams;
+
+import course.kafka.model.HeavyHitters;
+import course.kafka.serialization.HeavyHittersDeserializer;
+import course.kafka.serialization.HeavyHittersSerializer;
+import course.kafka.serialization.JsonDeserializer;
+import course.kafka.serialization.JsonSerializer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Repartitioned;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bounded memory variant of {@link WordCountDslDemo}: instead of an exact count per distinct word, each task keeps
+ * a Count-Min Sketch with its top candidate words, and a single partition merge step publishes the global top
+ * words. State per task is {@code 8 * e / EPSILON * ln(1 / DELTA)} bytes whatever the vocabulary, and estimates
+ * exceed the exact counts by at most EPSILON times the number of words with probability 1 - DELTA.
+ */
+@Slf4j
+public class HeavyHittersWordCountDemo {
+    public static final String INPUT_TOPIC = "streams-input";
+    public static final String OUTPUT_TOPIC = "top-word-counts"; // compacted, only the latest top words matter
+    public static final String OUTPUT_KEY = "top-words";
+    public static final String HEAVY_HITTERS_STORE = "word-heavy-hitters-store";
+    public static final String PARTIALS_STORE = "word-heavy-hitters-partials-store";
+    public static final int TOP_K = 20;
+    public static final int CANDIDATES = 5 * TOP_K; // per task, so that merging rarely misses a global top word
+    public static final double EPSILON = 0.0005;
+    public static final double DELTA = 0.01;
+    public static final Duration EMIT_INTERVAL = Duration.ofSeconds(10);
+
+    public static final Serde<HeavyHitters> HEAVY_HITTERS_SERDE = Serdes.serdeFrom(
+            new HeavyHittersSerializer(), new HeavyHittersDeserializer());
+
+    // a single partition, as the merge step publishes all top words under one key
+    public static void createOutputTopic(Admin admin) throws ExecutionException, InterruptedException {
+        try {
+            admin.createTopics(List.of(new NewTopic(OUTPUT_TOPIC, Optional.of(1), Optional.empty())
+                    .configs(Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT)))).all().get();
+            log.info("Created top words topic '{}'", OUTPUT_TOPIC);
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof TopicExistsException)) throw e;
+        }
+    }
+
+    public static void main(String[] args) throws ExecutionException, InterruptedException {
+        // 1) Configure stream
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "streams-heavy-hitters");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 4);
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+
+        // 2) Create the compacted output topic
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG,
+                props.get(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG)))) {
+            createOutputTopic(admin);
+        }
+
+        // 3) Create stream builder
+        final StreamsBuilder builder = new StreamsBuilder();
+        buildTopology(builder);
+
+        // 4) Build stream topology
+        final Topology topology = builder.build(); // build DAG
+        System.out.println(topology.describe());
+
+        // 5) Create streams instance
+        final KafkaStreams streams = new KafkaStreams(topology, props);
+        final StreamThreadAutoscaler autoscaler =
+                new StreamThreadAutoscaler(streams, 1, Math.max(4, Runtime.getRuntime().availableProcessors()));
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        // attach shutdown handler to catch Ctrl-c
+        Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
+            @Override
+            public void run() {
+                autoscaler.close();
+                streams.close();
+                latch.countDown();
+            }
+        });
+
+        // 6) Start streams and await termination
+        try {
+            streams.start();
+            autoscaler.start();
+            latch.await();
+        } catch (InterruptedException e) {
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    public static void buildTopology(StreamsBuilder builder) {
+        // one summary per task and one partial per task in the merge step - both changelogs restore in no time
+        builder.addStateStore(summaryStore(HEAVY_HITTERS_STORE));
+        builder.addStateStore(summaryStore(PARTIALS_STORE));
+
+        KStream<String, String> stream = builder.stream(INPUT_TOPIC);
+        stream.transform(() -> new HeavyHittersTransformer(HEAVY_HITTERS_STORE, CANDIDATES, EPSILON, DELTA,
+                        EMIT_INTERVAL), HEAVY_HITTERS_STORE)
+                .repartition(Repartitioned.with(Serdes.String(), HEAVY_HITTERS_SERDE)
+                        .withName("heavy-hitters-partials").withNumberOfPartitions(1))
+                .transform(() -> new TopKMergeTransformer(PARTIALS_STORE, OUTPUT_KEY, TOP_K, EMIT_INTERVAL),
+                        PARTIALS_STORE)
+                .to(OUTPUT_TOPIC, Produced.with(Serdes.String(),
+                        Serdes.serdeFrom(new JsonSerializer<>(), new JsonDeserializer<>())));
+    }
+
+    private static StoreBuilder<KeyValueStore<String, HeavyHitters>> summaryStore(String name) {
+        return Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(name), Serdes.String(), HEAVY_HITTERS_SERDE)
+                .withCachingEnabled() // one changelog record per summary and commit
+                .withLoggingEnabled(Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+    }
+}
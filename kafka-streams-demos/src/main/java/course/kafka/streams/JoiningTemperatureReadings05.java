@@ -2,74 +2,50 @@ package course.kafka.streams;
 
 import course.kafka.model.DoubleStatistics;
 import course.kafka.model.TempDifference;
-import course.kafka.model.TimestampedTemperatureReading;
 import course.kafka.serialization.JsonDeserializer;
 import course.kafka.serialization.JsonSerializer;
+import course.kafka.state.BoundedMemoryRocksDBConfig;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.*;
 import org.apache.kafka.streams.kstream.*;
+import org.apache.kafka.streams.state.KeyValueStore;
 
 import java.time.Duration;
 import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
 
 import static java.lang.Double.max;
-import static java.lang.Double.min;
 import static org.apache.kafka.streams.kstream.Consumed.with;
 
 
 public class JoiningTemperatureReadings05 {
-    public static final String INTERNAL_TEMP_TOPIC = "temperature";
-    public static final String EXTERNAL_TEMP_TOPIC = "external-temperature";
+    public static final String INTERNAL_STATISTICS_TOPIC = TemperatureStatisticsProducer08.INTERNAL_STATISTICS_TOPIC;
+    public static final String EXTERNAL_STATISTICS_TOPIC = TemperatureStatisticsProducer08.EXTERNAL_STATISTICS_TOPIC;
     public static final String OUTPUT_TOPIC = "events";
-    public static final long WINDOW_SIZE_MS = 5000;
+    public static final String HEATING_POWER_STORE = "heating-power-store";
+    public static final String HEATING_POWER_EMISSION_STORE = "heating-power-emission-store";
+    // or EmissionPolicy.onChange(TempDifference::getValue, 0.5), EmissionPolicy.periodic(Duration.ofHours(1))
+    public static final EmissionPolicy<TempDifference> EMISSION_POLICY = EmissionPolicy.rateLimited(Duration.ofSeconds(30));
 
-    // create custom JSON Serdes and filters
-    private static Serde<TimestampedTemperatureReading> readingsJsonSerde = Serdes.serdeFrom(
-            new JsonSerializer<>(), new JsonDeserializer<>(TimestampedTemperatureReading.class));
-    private static Serde<DoubleStatistics> doubleStatisticsSerde = Serdes.serdeFrom(
-            new JsonSerializer<>(), new JsonDeserializer<>(DoubleStatistics.class));
+    // create custom JSON and binary Serdes
+    private static Serde<DoubleStatistics> doubleStatisticsSerde = TemperatureStatistics.STATISTICS_SERDE;
     private static Serde<TempDifference> tempDifferenceSerde = Serdes.serdeFrom(
             new JsonSerializer<>(), new JsonDeserializer<>(TempDifference.class));
-    private static Predicate<String, TimestampedTemperatureReading> validTemperatureFilter =
-            (sensorId, reading) -> reading.getValue() > -15 && reading.getValue() < 60;
-
-    public static KStream<String, DoubleStatistics> createTemperatureStatisticsStream(StreamsBuilder builder, String inputTopic) {
-        return builder.stream(inputTopic, with(Serdes.String(), readingsJsonSerde))
-                .filter(validTemperatureFilter)
-                .groupByKey(Grouped.valueSerde(readingsJsonSerde))
-                .windowedBy(TimeWindows.ofSizeWithNoGrace(Duration.ofMillis(WINDOW_SIZE_MS)))
-                .aggregate(() -> new DoubleStatistics(),
-                        (sensorId, reading, aggStats) -> {
-                            aggStats.setCount(aggStats.getCount() + 1);
-                            aggStats.setSum(aggStats.getSum() + reading.getValue());
-                            aggStats.setAverage(aggStats.getSum() / aggStats.getCount());
-                            aggStats.setMin(min(aggStats.getMin(), reading.getValue()));
-                            aggStats.setMax(max(aggStats.getMin(), reading.getValue()));
-                            aggStats.setTimestamp(reading.getTimestamp());
-                            return aggStats;
-                        }, Materialized.with(Serdes.String(), doubleStatisticsSerde))
-                .suppress(Suppressed.untilWindowCloses(Suppressed.BufferConfig.unbounded()))
-                .toStream()
-                .map((windowedSensorId, stats) -> new KeyValue<>(windowedSensorId.key(), stats));
+
+    public static KStream<String, DoubleStatistics> createTemperatureStatisticsStream(StreamsBuilder builder, String statisticsTopic) {
+        return builder.stream(statisticsTopic, with(Serdes.String(), doubleStatisticsSerde));
     }
 
-    public static void main(String[] args) {
-        // 1) Configure stream
-        Properties props = new Properties();
-        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-bills");
-        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
-        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
-        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 4);
-        props.put(StreamsConfig.STATE_DIR_CONFIG, "/tmp/kafka-streams");
-        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
-        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+    public static void buildTopology(StreamsBuilder builder) {
+        buildTopology(builder, EMISSION_POLICY);
+    }
 
-        // 2) Create stream builder
-        final StreamsBuilder builder = new StreamsBuilder();
-        var internalTemperature = createTemperatureStatisticsStream(builder, INTERNAL_TEMP_TOPIC);
-        var externalTemperature = createTemperatureStatisticsStream(builder, EXTERNAL_TEMP_TOPIC);
+    public static void buildTopology(StreamsBuilder builder, EmissionPolicy<TempDifference> emissionPolicy) {
+        EmissionPolicyTransformer.addStore(builder, HEATING_POWER_EMISSION_STORE, Serdes.String());
+        var internalTemperature = createTemperatureStatisticsStream(builder, INTERNAL_STATISTICS_TOPIC);
+        var externalTemperature = createTemperatureStatisticsStream(builder, EXTERNAL_STATISTICS_TOPIC);
 
         internalTemperature
                 .join(externalTemperature, (s1, s2) ->
@@ -90,10 +66,33 @@ public class JoiningTemperatureReadings05 {
                                 aggPower.setTimestamp(tempDiff.getTimestamp());
                             }
                             return aggPower;
-                        }, Materialized.with(Serdes.String(), tempDifferenceSerde))
+                        }, Materialized.<String, TempDifference, KeyValueStore<Bytes, byte[]>>as(HEATING_POWER_STORE)
+                                .withKeySerde(Serdes.String()).withValueSerde(tempDifferenceSerde)
+                                .withCachingDisabled()) // the emission policy decides what is forwarded
                 .toStream()
+                .transform(() -> new EmissionPolicyTransformer<>(HEATING_POWER_EMISSION_STORE, tempDifferenceSerde,
+                        emissionPolicy), HEATING_POWER_EMISSION_STORE)
                 .mapValues((k, t) -> String.format("SENSOR-ID: %12s -> CONSUMED HEATING POWER:%9.5f, Time: %d", k, t.getValue(), t.getTimestamp()))
                 .to(OUTPUT_TOPIC);
+    }
+
+    public static void main(String[] args) {
+        // 1) Configure stream
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-bills-joining");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 4);
+        props.put(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG, BoundedMemoryRocksDBConfig.class);
+        props.put(BoundedMemoryRocksDBConfig.TOTAL_MEMORY_CONFIG, 256L * 1024 * 1024);
+        props.put(StreamsConfig.METRICS_RECORDING_LEVEL_CONFIG, "DEBUG"); // publishes RocksDB statistics
+        props.put(StreamsConfig.STATE_DIR_CONFIG, "/tmp/kafka-streams");
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+
+        // 2) Create stream builder
+        final StreamsBuilder builder = new StreamsBuilder();
+        buildTopology(builder);
 
         // 3) Build stream topology
         final Topology topology = builder.build(); // build DAG
@@ -101,6 +100,8 @@ public class JoiningTemperatureReadings05 {
 
         // 4) Create streams instance
         final KafkaStreams streams = new KafkaStreams(topology, props);
+        final StreamThreadAutoscaler autoscaler =
+                new StreamThreadAutoscaler(streams, 1, Math.max(4, Runtime.getRuntime().availableProcessors()));
 //        streams.cleanUp();
         final CountDownLatch latch = new CountDownLatch(1);
 
@@ -108,6 +109,7 @@ public class JoiningTemperatureReadings05 {
         Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
             @Override
             public void run() {
+                autoscaler.close();
                 streams.close();
                 latch.countDown();
             }
@@ -116,6 +118,7 @@ public class JoiningTemperatureReadings05 {
         // 5) Start streams and await termination
         try {
             streams.start();
+            autoscaler.start();
             latch.await();
         } catch (InterruptedException e) {
             System.exit(1);
@@ -1,5 +1,6 @@
 package course.kafka.streams;
 
+import course.kafka.util.WordTokenizer;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.StreamsBuilder;
@@ -7,8 +8,6 @@ import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.Topology;
 import org.apache.kafka.streams.kstream.KStream;
 
-import java.util.Arrays;
-import java.util.Locale;
 import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
 
@@ -24,10 +23,7 @@ public class LineSplit {
 
         // 2) Create stream builder
         final StreamsBuilder builder = new StreamsBuilder();
-        KStream<String, String> stream = builder.stream("streams-input");
-        stream.flatMapValues(sentence ->
-                        Arrays.asList(sentence.toLowerCase(Locale.getDefault()).split("\\W+")))
-                .to("streams-output");
+        buildTopology(builder);
 
         // 3) Build stream topology
         final Topology topology = builder.build(); // build DAG
@@ -55,4 +51,10 @@ public class LineSplit {
         }
         System.exit(0);
     }
+
+    public static void buildTopology(StreamsBuilder builder) {
+        KStream<String, String> stream = builder.stream("streams-input");
+        stream.flatMapValues(sentence -> WordTokenizer.words(sentence))
+                .to("streams-output");
+    }
 }
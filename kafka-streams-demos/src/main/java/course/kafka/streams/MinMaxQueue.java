@@ -0,0 +1,76 @@
+package course.kafka.streams;
+
+/**
+ * FIFO queue of (min, max) pairs answering the minimum and maximum of all queued pairs in amortized O(1).
+ * Implemented with two stacks: pushes go to the in-stack, which tracks its running min/max; when the out-stack
+ * runs empty, the in-stack is drained into it, recording the running min/max from the bottom (newest) up.
+ */
+class MinMaxQueue {
+    private final double[] inMins;
+    private final double[] inMaxs;
+    private final double[] outAggMins;
+    private final double[] outAggMaxs;
+    private int inSize;
+    private int outSize;
+    private double inAggMin = Double.POSITIVE_INFINITY;
+    private double inAggMax = Double.NEGATIVE_INFINITY;
+
+    MinMaxQueue(int capacity) {
+        inMins = new double[capacity];
+        inMaxs = new double[capacity];
+        outAggMins = new double[capacity];
+        outAggMaxs = new double[capacity];
+    }
+
+    void push(double min, double max) {
+        if (size() == inMins.length) {
+            throw new IllegalStateException("Queue capacity of " + inMins.length + " exceeded");
+        }
+        inMins[inSize] = min;
+        inMaxs[inSize] = max;
+        inSize++;
+        inAggMin = Math.min(inAggMin, min);
+        inAggMax = Math.max(inAggMax, max);
+    }
+
+    void pop() {
+        if (outSize == 0) {
+            if (inSize == 0) {
+                throw new IllegalStateException("Queue is empty");
+            }
+            // reverse the in-stack, so that its oldest element ends up on top of the out-stack
+            double aggMin = Double.POSITIVE_INFINITY;
+            double aggMax = Double.NEGATIVE_INFINITY;
+            for (int i = inSize - 1; i >= 0; i--) {
+                aggMin = Math.min(aggMin, inMins[i]);
+                aggMax = Math.max(aggMax, inMaxs[i]);
+                outAggMins[outSize] = aggMin;
+                outAggMaxs[outSize] = aggMax;
+                outSize++;
+            }
+            inSize = 0;
+            inAggMin = Double.POSITIVE_INFINITY;
+            inAggMax = Double.NEGATIVE_INFINITY;
+        }
+        outSize--;
+    }
+
+    double min() {
+        return outSize == 0 ? inAggMin : Math.min(inAggMin, outAggMins[outSize - 1]);
+    }
+
+    double max() {
+        return outSize == 0 ? inAggMax : Math.max(inAggMax, outAggMaxs[outSize - 1]);
+    }
+
+    int size() {
+        return inSize + outSize;
+    }
+
+    void clear() {
+        inSize = 0;
+        outSize = 0;
+        inAggMin = Double.POSITIVE_INFINITY;
+        inAggMax = Double.NEGATIVE_INFINITY;
+    }
+}
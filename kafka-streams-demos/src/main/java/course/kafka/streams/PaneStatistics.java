@@ -0,0 +1,195 @@
+package course.kafka.streams;
+
+import course.kafka.model.DoubleStatistics;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Statistics of one key over a hopping window of {@code numPanes} closed panes of {@code advanceMs} each, plus
+ * the currently open pane. A reading updates a single pane; when a pane closes its count, sum and sum of squares
+ * are added to the window totals and those of the evicted pane are subtracted, while min and max of the closed
+ * panes are kept in a {@link MinMaxQueue}. Readings older than the window are rejected.
+ */
+class PaneStatistics {
+    private static final int PANE_SIZE = Long.BYTES + 4 * Double.BYTES;
+
+    private final long advanceMs;
+    private final int numPanes;
+    // ring of numPanes closed panes followed by the open pane at head
+    private final long[] counts;
+    private final double[] sums;
+    private final double[] sumSquares;
+    private final double[] mins;
+    private final double[] maxs;
+    private final MinMaxQueue closedPanes;
+    private int head = 0;
+    private long openPaneStart = Long.MIN_VALUE;
+
+    // totals over the closed panes
+    private long count = 0;
+    private double sum = 0;
+    private double sumSquare = 0;
+
+    PaneStatistics(long advanceMs, int numPanes) {
+        this.advanceMs = advanceMs;
+        this.numPanes = numPanes;
+        counts = new long[numPanes + 1];
+        sums = new double[numPanes + 1];
+        sumSquares = new double[numPanes + 1];
+        mins = new double[numPanes + 1];
+        maxs = new double[numPanes + 1];
+        closedPanes = new MinMaxQueue(numPanes + 1);
+        reset();
+    }
+
+    boolean add(double value, long timestamp) {
+        long paneStart = timestamp - Math.floorMod(timestamp, advanceMs);
+        advanceTo(paneStart);
+        long lag = (openPaneStart - paneStart) / advanceMs;
+        if (lag > numPanes) {
+            return false;
+        }
+        int slot = Math.floorMod(head - (int) lag, counts.length);
+        boolean extendsRange = value < mins[slot] || value > maxs[slot];
+        counts[slot]++;
+        sums[slot] += value;
+        sumSquares[slot] += value * value;
+        mins[slot] = Math.min(mins[slot], value);
+        maxs[slot] = Math.max(maxs[slot], value);
+        if (lag > 0) {
+            // late reading for an already closed pane - rare, so rebuilding the min/max queue is acceptable
+            count++;
+            sum += value;
+            sumSquare += value * value;
+            if (extendsRange) {
+                rebuildClosedPanes();
+            }
+        }
+        return true;
+    }
+
+    // closes panes until the one starting at paneStart is open, evicting the panes that fall out of the window
+    void advanceTo(long paneStart) {
+        if (openPaneStart == Long.MIN_VALUE) {
+            openPaneStart = paneStart;
+            return;
+        }
+        long steps = (paneStart - openPaneStart) / advanceMs;
+        if (steps <= 0) return;
+        if (steps > numPanes) {
+            reset();
+        } else {
+            for (long i = 0; i < steps; i++) {
+                count += counts[head];
+                sum += sums[head];
+                sumSquare += sumSquares[head];
+                closedPanes.push(mins[head], maxs[head]);
+                head = (head + 1) % counts.length;
+                count -= counts[head];
+                sum -= sums[head];
+                sumSquare -= sumSquares[head];
+                closedPanes.pop();
+                clearPane(head);
+            }
+            if (count == 0) {
+                // discard rounding errors accumulated by subtraction
+                sum = 0;
+                sumSquare = 0;
+            }
+        }
+        openPaneStart = paneStart;
+    }
+
+    // statistics over the closed panes - the window ending at the start of the open pane
+    DoubleStatistics statistics() {
+        double mean = count == 0 ? 0 : sum / count;
+        double m2 = count == 0 ? 0 : Math.max(0, sumSquare - sum * mean);
+        return new DoubleStatistics(count, mean, m2, closedPanes.min(), closedPanes.max(), windowEnd());
+    }
+
+    long windowEnd() {
+        return openPaneStart;
+    }
+
+    long count() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0 && counts[head] == 0;
+    }
+
+    // layout: open pane start:long | head:int | (count:long | sum | sum of squares | min | max) per pane
+    byte[] toBytes() {
+        var buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + counts.length * PANE_SIZE);
+        buffer.putLong(openPaneStart).putInt(head);
+        for (int i = 0; i < counts.length; i++) {
+            buffer.putLong(counts[i]).putDouble(sums[i]).putDouble(sumSquares[i])
+                    .putDouble(mins[i]).putDouble(maxs[i]);
+        }
+        return buffer.array();
+    }
+
+    static PaneStatistics fromBytes(byte[] data, long advanceMs, int numPanes) {
+        var panes = new PaneStatistics(advanceMs, numPanes);
+        if (data.length != Long.BYTES + Integer.BYTES + (numPanes + 1) * PANE_SIZE) {
+            throw new IllegalArgumentException("Pane statistics of " + data.length +
+                    " bytes do not match a window of " + numPanes + " panes");
+        }
+        var buffer = ByteBuffer.wrap(data);
+        panes.openPaneStart = buffer.getLong();
+        panes.head = buffer.getInt();
+        for (int i = 0; i < panes.counts.length; i++) {
+            panes.counts[i] = buffer.getLong();
+            panes.sums[i] = buffer.getDouble();
+            panes.sumSquares[i] = buffer.getDouble();
+            panes.mins[i] = buffer.getDouble();
+            panes.maxs[i] = buffer.getDouble();
+        }
+        panes.rebuildTotals();
+        return panes;
+    }
+
+    private void rebuildTotals() {
+        count = 0;
+        sum = 0;
+        sumSquare = 0;
+        for (int i = 1; i <= numPanes; i++) {
+            int slot = (head + i) % counts.length;
+            count += counts[slot];
+            sum += sums[slot];
+            sumSquare += sumSquares[slot];
+        }
+        rebuildClosedPanes();
+    }
+
+    // pushes the closed panes oldest first - the slot right after head is the oldest one
+    private void rebuildClosedPanes() {
+        closedPanes.clear();
+        for (int i = 1; i <= numPanes; i++) {
+            int slot = (head + i) % counts.length;
+            closedPanes.push(mins[slot], maxs[slot]);
+        }
+    }
+
+    private void reset() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(sums, 0);
+        Arrays.fill(sumSquares, 0);
+        Arrays.fill(mins, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+        count = 0;
+        sum = 0;
+        sumSquare = 0;
+        rebuildClosedPanes();
+    }
+
+    private void clearPane(int slot) {
+        counts[slot] = 0;
+        sums[slot] = 0;
+        sumSquares[slot] = 0;
+        mins[slot] = Double.POSITIVE_INFINITY;
+        maxs[slot] = Double.NEGATIVE_INFINITY;
+    }
+}
@@ -22,7 +22,7 @@ public class Pipe {
 
         // 2) Create stream builder
         final StreamsBuilder builder = new StreamsBuilder();
-        builder.stream("streams-input").to("streams-output");
+        buildTopology(builder);
 
         // 3) Build stream topology
         final Topology topology = builder.build(); // build DAG
@@ -50,4 +50,8 @@ public class Pipe {
         }
         System.exit(0);
     }
+
+    public static void buildTopology(StreamsBuilder builder) {
+        builder.stream("streams-input").to("streams-output");
+    }
 }
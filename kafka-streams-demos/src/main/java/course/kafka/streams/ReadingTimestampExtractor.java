@@ -0,0 +1,162 @@
+package course.kafka.streams;
+
+import course.kafka.model.DoubleStatistics;
+import course.kafka.model.TimestampedTemperatureReading;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.Configurable;
+import org.apache.kafka.streams.errors.StreamsException;
+import org.apache.kafka.streams.processor.TimestampExtractor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Uses the event time of temperature readings - the {@code timestamp} field - as record timestamp.
+ * <p>
+ * Streams calls the extractor with the value already deserialized by the source, so readings and statistics
+ * deserialized by their serdes cost a getter call. Sources consuming raw {@code byte[]} (or {@code String}) values
+ * are not deserialized at all: JSON values are scanned for the top level {@code timestamp} field without building
+ * any object, and binary values (with {@link #BINARY_OFFSET_CONFIG} set) are read as a big-endian long at that offset.
+ * <p>
+ * Missing, negative or non-integer timestamps are handled by the {@link OnInvalid} policy in
+ * {@link #ON_INVALID_CONFIG}, by default the partition time as in {@code UsePartitionTimeOnInvalidTimestamp}.
+ */
+@Slf4j
+public class ReadingTimestampExtractor implements TimestampExtractor, Configurable {
+    public static final String ON_INVALID_CONFIG = "reading.timestamp.on.invalid";
+    public static final String BINARY_OFFSET_CONFIG = "reading.timestamp.binary.offset";
+    private static final byte[] TIMESTAMP_FIELD = "timestamp".getBytes(StandardCharsets.US_ASCII);
+    private static final long INVALID = -1;
+    private static final int MAX_DIGITS = 18; // epoch millis have 13, more would overflow
+
+    public enum OnInvalid {
+        /** The highest timestamp seen in the partition, or the record timestamp before the first one. */
+        PARTITION_TIME,
+        /** The timestamp of the Kafka record. */
+        RECORD_TIME,
+        /** Drop the record - Streams logs it and counts it in the dropped records metric. */
+        SKIP,
+        /** Stop processing with a {@link StreamsException}. */
+        FAIL
+    }
+
+    private OnInvalid onInvalid;
+    private int binaryOffset;
+
+    public ReadingTimestampExtractor() {
+        this(OnInvalid.PARTITION_TIME, -1);
+    }
+
+    public ReadingTimestampExtractor(OnInvalid onInvalid, int binaryOffset) {
+        this.onInvalid = onInvalid;
+        this.binaryOffset = binaryOffset;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object policy = configs.get(ON_INVALID_CONFIG);
+        if (policy != null) {
+            onInvalid = OnInvalid.valueOf(policy.toString());
+        }
+        Object offset = configs.get(BINARY_OFFSET_CONFIG);
+        if (offset != null) {
+            binaryOffset = Integer.parseInt(offset.toString());
+        }
+    }
+
+    @Override
+    public long extract(ConsumerRecord<Object, Object> record, long partitionTime) {
+        long timestamp = timestampOf(record.value());
+        if (timestamp >= 0) return timestamp;
+        switch (onInvalid) {
+            case PARTITION_TIME:
+                return partitionTime >= 0 ? partitionTime : record.timestamp();
+            case RECORD_TIME:
+                return record.timestamp();
+            case SKIP:
+                return INVALID;
+            default:
+                throw new StreamsException("Invalid reading timestamp in record " + record.topic() + "-" +
+                        record.partition() + "@" + record.offset());
+        }
+    }
+
+    long timestampOf(Object value) {
+        if (value instanceof TimestampedTemperatureReading) {
+            return ((TimestampedTemperatureReading) value).getTimestamp();
+        } else if (value instanceof DoubleStatistics) {
+            return ((DoubleStatistics) value).getTimestamp();
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            if (binaryOffset < 0) return scanJson(bytes);
+            return bytes.length >= binaryOffset + Long.BYTES ? ByteBuffer.wrap(bytes).getLong(binaryOffset) : INVALID;
+        } else if (value instanceof String) {
+            return scanJson(((String) value).getBytes(StandardCharsets.UTF_8));
+        }
+        return INVALID;
+    }
+
+    // finds "timestamp" among the keys of the top level object, skipping strings and nested values
+    static long scanJson(byte[] json) {
+        int depth = 0;
+        for (int i = 0; i < json.length; i++) {
+            byte b = json[i];
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+            } else if (b == '"') {
+                int end = endOfString(json, i + 1);
+                if (end < 0) return INVALID;
+                if (depth == 1 && isTimestampField(json, i + 1, end)) {
+                    int colon = skipWhitespace(json, end + 1);
+                    if (colon < json.length && json[colon] == ':') {
+                        return parseLong(json, skipWhitespace(json, colon + 1));
+                    }
+                }
+                i = end;
+            }
+        }
+        return INVALID;
+    }
+
+    private static int endOfString(byte[] json, int from) {
+        for (int i = from; i < json.length; i++) {
+            if (json[i] == '\\') {
+                i++;
+            } else if (json[i] == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isTimestampField(byte[] json, int from, int to) {
+        if (to - from != TIMESTAMP_FIELD.length) return false;
+        for (int i = 0; i < TIMESTAMP_FIELD.length; i++) {
+            if (json[from + i] != TIMESTAMP_FIELD[i]) return false;
+        }
+        return true;
+    }
+
+    private static int skipWhitespace(byte[] json, int from) {
+        int i = from;
+        while (i < json.length && (json[i] == ' ' || json[i] == '\t' || json[i] == '\n' || json[i] == '\r')) i++;
+        return i;
+    }
+
+    // a non-negative integer followed by the end of the value, anything else is invalid
+    private static long parseLong(byte[] json, int from) {
+        long value = 0;
+        int i = from;
+        while (i < json.length && json[i] >= '0' && json[i] <= '9') {
+            if (i - from == MAX_DIGITS) return INVALID;
+            value = value * 10 + (json[i++] - '0');
+        }
+        if (i == from) return INVALID;
+        int next = skipWhitespace(json, i);
+        return next < json.length && (json[next] == ',' || json[next] == '}') ? value : INVALID;
+    }
+}
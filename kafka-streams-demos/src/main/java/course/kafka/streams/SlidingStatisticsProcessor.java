@@ -0,0 +1,87 @@
+package course.kafka.streams;
+
+import course.kafka.model.DoubleStatistics;
+import course.kafka.model.TimestampedTemperatureReading;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hopping window statistics per sensor - a window of {@code windowSize} emitted every {@code advance} of stream
+ * time. With {@code advance} equal to the reading granularity the windows become sliding ones. Each reading
+ * updates exactly one pane instead of all {@code windowSize / advance} overlapping windows.
+ * <p>
+ * Panes live on heap, and the panes of a sensor are written to a cached, changelogged key-value store on each of
+ * its readings, so they are committed together with the input offsets. The cache collapses the writes of a sensor
+ * between commits into one changelog record. Idle sensors are rolled forward on restore.
+ */
+@Slf4j
+public class SlidingStatisticsProcessor implements Processor<String, TimestampedTemperatureReading, String, DoubleStatistics> {
+    private final String storeName;
+    private final long advanceMs;
+    private final int numPanes;
+    private final Map<String, PaneStatistics> sensors = new HashMap<>();
+    private KeyValueStore<String, byte[]> panesStore;
+    private ProcessorContext<String, DoubleStatistics> context;
+
+    public SlidingStatisticsProcessor(String storeName, Duration windowSize, Duration advance) {
+        if (advance.isZero() || advance.isNegative() || windowSize.toMillis() % advance.toMillis() != 0) {
+            throw new IllegalArgumentException("Window size " + windowSize +
+                    " must be a positive multiple of the advance " + advance);
+        }
+        this.storeName = storeName;
+        this.advanceMs = advance.toMillis();
+        this.numPanes = (int) (windowSize.toMillis() / advanceMs);
+    }
+
+    @Override
+    public void init(ProcessorContext<String, DoubleStatistics> context) {
+        this.context = context;
+        panesStore = context.getStateStore(storeName);
+        try (var iter = panesStore.all()) {
+            iter.forEachRemaining(entry ->
+                    sensors.put(entry.key, PaneStatistics.fromBytes(entry.value, advanceMs, numPanes)));
+        }
+        log.info("Restored panes of {} sensors from store '{}'", sensors.size(), storeName);
+        context.schedule(Duration.ofMillis(advanceMs), PunctuationType.STREAM_TIME, this::emit);
+    }
+
+    @Override
+    public void process(Record<String, TimestampedTemperatureReading> record) {
+        var panes = sensors.computeIfAbsent(record.key(), sensorId -> new PaneStatistics(advanceMs, numPanes));
+        if (!panes.add(record.value().getValue(), record.timestamp())) {
+            log.debug("Dropping reading of sensor {} older than the window: {}", record.key(), record.value());
+            return;
+        }
+        panesStore.put(record.key(), panes.toBytes());
+    }
+
+    private void emit(long timestamp) {
+        long paneStart = timestamp - Math.floorMod(timestamp, advanceMs);
+        var iter = sensors.entrySet().iterator();
+        while (iter.hasNext()) {
+            var entry = iter.next();
+            var panes = entry.getValue();
+            panes.advanceTo(paneStart);
+            if (panes.isEmpty()) {
+                iter.remove();
+                panesStore.delete(entry.getKey());
+                continue;
+            }
+            if (panes.count() > 0) {
+                context.forward(new Record<>(entry.getKey(), panes.statistics(), panes.windowEnd()));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,94 @@
+package course.kafka.streams;
+
+import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.serialization.DoubleStatisticsSerializer;
+import course.kafka.serialization.JsonDeserializer;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+
+public class SlidingStatisticsTemperatureReadings06 {
+    public static final String INTERNAL_TEMP_TOPIC = "temperature";
+    public static final String OUTPUT_TOPIC = "temperature-sliding-statistics";
+    public static final String PANES_STORE = "temperature-panes-store";
+    public static final Duration WINDOW_SIZE = Duration.ofMinutes(1);
+    public static final Duration ADVANCE = Duration.ofSeconds(1);
+
+    public static void main(String[] args) {
+        // 1) Configure stream
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-bills-sliding");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 4);
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_TIMESTAMP_EXTRACTOR_CLASS_CONFIG, ReadingTimestampExtractor.class); // event time
+
+        // 2) Create topology - one pane update per reading, one emitted window per sensor and advance
+        final Topology topology = buildTopology();
+
+        // 3) Describe stream topology - optional
+        System.out.println(topology.describe());
+
+        // 4) Create streams instance
+        final KafkaStreams streams = new KafkaStreams(topology, props);
+        final StreamThreadAutoscaler autoscaler =
+                new StreamThreadAutoscaler(streams, 1, Math.max(4, Runtime.getRuntime().availableProcessors()));
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        // attach shutdown handler to catch Ctrl-c
+        Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
+            @Override
+            public void run() {
+                autoscaler.close();
+                streams.close();
+                latch.countDown();
+            }
+        });
+
+        // 5) Start streams and await termination
+        try {
+            streams.start();
+            autoscaler.start();
+            latch.await();
+        } catch (InterruptedException e) {
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    public static Topology buildTopology() {
+        // provide supplier for the panes store - cached, so the changelog gets one record per sensor and commit
+        StoreBuilder<KeyValueStore<String, byte[]>> panesStoreSupplier =
+                Stores.keyValueStoreBuilder(
+                        Stores.inMemoryKeyValueStore(PANES_STORE),
+                        Serdes.String(),
+                        Serdes.ByteArray())
+                        .withCachingEnabled()
+                        .withLoggingEnabled(Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+
+        final Topology topology = new Topology();
+        topology.addSource("Source", new StringDeserializer(),
+                        new JsonDeserializer<>(TimestampedTemperatureReading.class), INTERNAL_TEMP_TOPIC)
+                .addProcessor("SlidingStatistics",
+                        () -> new SlidingStatisticsProcessor(PANES_STORE, WINDOW_SIZE, ADVANCE), "Source")
+                .addStateStore(panesStoreSupplier, "SlidingStatistics")
+                .addSink("Sink", OUTPUT_TOPIC, new StringSerializer(), new DoubleStatisticsSerializer(),
+                        "SlidingStatistics");
+        return topology;
+    }
+}
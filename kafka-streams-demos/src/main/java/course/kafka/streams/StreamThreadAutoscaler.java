@@ -0,0 +1,196 @@
+package course.kafka.streams;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.*;
+import org.apache.kafka.common.metrics.stats.CumulativeCount;
+import org.apache.kafka.common.utils.Time;
+import org.apache.kafka.streams.KafkaStreams;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds and removes stream threads of a running {@link KafkaStreams} instance, following the consumer lag of its
+ * input partitions. A thread is added when the total lag stays above {@code scaleUpLag}, and removed when the lag
+ * stays below {@code scaleDownLag} while the threads spend less than {@code scaleDownProcessRatio} of their time
+ * processing. Both must hold for {@code stableChecks} consecutive checks, and no decision is taken for
+ * {@code cooldown} after a change - every change triggers a rebalance, during which the lag is not meaningful.
+ * <p>
+ * Decisions are logged and exported over JMX in the {@value #METRICS_GROUP} group.
+ */
+@Slf4j
+public class StreamThreadAutoscaler implements AutoCloseable {
+    public static final String METRICS_GROUP = "stream-thread-autoscaler-metrics";
+    public static final String JMX_PREFIX = "course.kafka.streams";
+    public static final Duration DEFAULT_CHECK_INTERVAL = Duration.ofSeconds(30);
+    public static final Duration DEFAULT_COOLDOWN = Duration.ofMinutes(2);
+    public static final int DEFAULT_STABLE_CHECKS = 3;
+    public static final long DEFAULT_SCALE_UP_LAG = 10_000;
+    public static final long DEFAULT_SCALE_DOWN_LAG = 1_000;
+    public static final double DEFAULT_SCALE_DOWN_PROCESS_RATIO = 0.3;
+    public static final Duration REMOVE_THREAD_TIMEOUT = Duration.ofMinutes(1);
+
+    enum Decision {SCALE_UP, SCALE_DOWN, HOLD}
+
+    private final KafkaStreams streams;
+    private final int minThreads;
+    private final int maxThreads;
+    private final Duration checkInterval;
+    private final long scaleUpLag;
+    private final long scaleDownLag;
+    private final double scaleDownProcessRatio;
+    private final int stableChecks;
+    private final long cooldownMs;
+    private final Metrics metrics;
+    private final Sensor scaleUpSensor;
+    private final Sensor scaleDownSensor;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stream-thread-autoscaler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile int threads;
+    private volatile long totalLag;
+    private volatile double processRatio;
+    private int aboveChecks;
+    private int belowChecks;
+    private long lastChangeMs = Long.MIN_VALUE / 2;
+
+    public StreamThreadAutoscaler(KafkaStreams streams, int minThreads, int maxThreads) {
+        this(streams, minThreads, maxThreads, DEFAULT_CHECK_INTERVAL, DEFAULT_SCALE_UP_LAG, DEFAULT_SCALE_DOWN_LAG,
+                DEFAULT_SCALE_DOWN_PROCESS_RATIO, DEFAULT_STABLE_CHECKS, DEFAULT_COOLDOWN);
+    }
+
+    public StreamThreadAutoscaler(KafkaStreams streams, int minThreads, int maxThreads, Duration checkInterval,
+                                  long scaleUpLag, long scaleDownLag, double scaleDownProcessRatio,
+                                  int stableChecks, Duration cooldown) {
+        if (minThreads < 1 || maxThreads < minThreads) {
+            throw new IllegalArgumentException("Invalid thread bounds: " + minThreads + " to " + maxThreads);
+        }
+        if (scaleDownLag >= scaleUpLag) {
+            throw new IllegalArgumentException("Scale down lag must be below scale up lag");
+        }
+        this.streams = streams;
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.checkInterval = checkInterval;
+        this.scaleUpLag = scaleUpLag;
+        this.scaleDownLag = scaleDownLag;
+        this.scaleDownProcessRatio = scaleDownProcessRatio;
+        this.stableChecks = stableChecks;
+        this.cooldownMs = cooldown.toMillis();
+
+        this.metrics = new Metrics(new MetricConfig(), List.of(new JmxReporter()), Time.SYSTEM,
+                new KafkaMetricsContext(JMX_PREFIX));
+        metrics.addMetric(metrics.metricName("thread-count", METRICS_GROUP, "Current number of stream threads"),
+                (Gauge<Integer>) (config, now) -> threads);
+        metrics.addMetric(metrics.metricName("total-lag", METRICS_GROUP, "Total consumer lag at the last check"),
+                (Gauge<Long>) (config, now) -> totalLag);
+        metrics.addMetric(metrics.metricName("process-ratio-avg", METRICS_GROUP,
+                "Average fraction of time the threads spent processing at the last check"),
+                (Gauge<Double>) (config, now) -> processRatio);
+        scaleUpSensor = metrics.sensor("scale-up");
+        scaleUpSensor.add(metrics.metricName("scale-up-total", METRICS_GROUP, "Number of added stream threads"),
+                new CumulativeCount());
+        scaleDownSensor = metrics.sensor("scale-down");
+        scaleDownSensor.add(metrics.metricName("scale-down-total", METRICS_GROUP, "Number of removed stream threads"),
+                new CumulativeCount());
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::check, checkInterval.toMillis(), checkInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    private void check() {
+        try {
+            if (streams.state() != KafkaStreams.State.RUNNING) return; // lag is not meaningful while rebalancing
+            threads = streams.metadataForLocalThreads().size();
+            sampleMetrics(streams.metrics());
+            switch (decide(totalLag, processRatio, threads, System.currentTimeMillis())) {
+                case SCALE_UP:
+                    streams.addStreamThread().ifPresentOrElse(name -> {
+                        scaleUpSensor.record();
+                        log.info("Added stream thread {} - total lag {} above {}, now {} threads",
+                                name, totalLag, scaleUpLag, threads + 1);
+                    }, () -> log.warn("Failed to add a stream thread in state {}", streams.state()));
+                    break;
+                case SCALE_DOWN:
+                    streams.removeStreamThread(REMOVE_THREAD_TIMEOUT).ifPresentOrElse(name -> {
+                        scaleDownSensor.record();
+                        log.info("Removed stream thread {} - total lag {} below {} at process ratio {}, now {} threads",
+                                name, totalLag, scaleDownLag, String.format("%.2f", processRatio), threads - 1);
+                    }, () -> log.warn("Failed to remove a stream thread in state {}", streams.state()));
+                    break;
+                default:
+                    log.debug("Keeping {} stream threads at total lag {} and process ratio {}",
+                            threads, totalLag, String.format("%.2f", processRatio));
+            }
+            threads = streams.metadataForLocalThreads().size();
+        } catch (RuntimeException e) {
+            log.error("Stream thread autoscaling check failed", e);
+        }
+    }
+
+    // sums the lag of the main consumers - restore consumers report the lag of changelogs being restored
+    private void sampleMetrics(Map<MetricName, ? extends Metric> streamsMetrics) {
+        long lag = 0;
+        double ratioSum = 0;
+        int ratioCount = 0;
+        for (var entry : streamsMetrics.entrySet()) {
+            MetricName name = entry.getKey();
+            if (name.group().equals("consumer-fetch-manager-metrics") && name.name().equals("records-lag")
+                    && !name.tags().getOrDefault("client-id", "").endsWith("restore-consumer")) {
+                lag += toLong(entry.getValue().metricValue());
+            } else if (name.group().equals("stream-thread-metrics") && name.name().equals("process-ratio")) {
+                Object value = entry.getValue().metricValue();
+                if (value instanceof Number && !Double.isNaN(((Number) value).doubleValue())) {
+                    ratioSum += ((Number) value).doubleValue();
+                    ratioCount++;
+                }
+            }
+        }
+        totalLag = lag;
+        processRatio = ratioCount == 0 ? 0 : ratioSum / ratioCount;
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number && !Double.isNaN(((Number) value).doubleValue())
+                ? ((Number) value).longValue() : 0;
+    }
+
+    Decision decide(long lag, double processRatio, int threads, long nowMs) {
+        aboveChecks = lag > scaleUpLag ? aboveChecks + 1 : 0;
+        belowChecks = lag < scaleDownLag && processRatio < scaleDownProcessRatio ? belowChecks + 1 : 0;
+        if (nowMs - lastChangeMs < cooldownMs) return Decision.HOLD;
+        Decision decision = Decision.HOLD;
+        if (aboveChecks >= stableChecks && threads < maxThreads) {
+            decision = Decision.SCALE_UP;
+        } else if (belowChecks >= stableChecks && threads > minThreads) {
+            decision = Decision.SCALE_DOWN;
+        }
+        if (decision != Decision.HOLD) {
+            lastChangeMs = nowMs;
+            aboveChecks = 0;
+            belowChecks = 0;
+        }
+        return decision;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        metrics.close();
+    }
+}
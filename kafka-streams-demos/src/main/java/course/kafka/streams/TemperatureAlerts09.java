@@ -0,0 +1,133 @@
+package course.kafka.streams;
+
+import course.kafka.cep.Pattern;
+import course.kafka.cep.PatternMatch;
+import course.kafka.cep.PatternTransformer;
+import course.kafka.model.DoubleStatistics;
+import course.kafka.model.TempDifference;
+import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.serialization.JsonDeserializer;
+import course.kafka.serialization.JsonSerializer;
+import course.kafka.state.BoundedMemoryRocksDBConfig;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.kstream.*;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import static org.apache.kafka.streams.kstream.Consumed.with;
+
+// Temperature alerts detected with event patterns instead of chains of DSL windows and joins
+public class TemperatureAlerts09 {
+    public static final String INTERNAL_TEMP_TOPIC = TemperatureStatisticsProducer08.INTERNAL_TEMP_TOPIC;
+    public static final String INTERNAL_STATISTICS_TOPIC = TemperatureStatisticsProducer08.INTERNAL_STATISTICS_TOPIC;
+    public static final String EXTERNAL_STATISTICS_TOPIC = TemperatureStatisticsProducer08.EXTERNAL_STATISTICS_TOPIC;
+    public static final String OUTPUT_TOPIC = "temperature-alerts";
+    public static final String RISING_STORE = "rising-temperature-pattern-store";
+    public static final String DIVERGING_STORE = "diverging-temperature-pattern-store";
+    public static final int RISING_READINGS = 5;
+    public static final double RISING_ABOVE = 40;
+    public static final Duration RISING_WITHIN = Duration.ofSeconds(30);
+    public static final double DIVERGING_BY = 20;
+    public static final Duration DIVERGING_LASTING = Duration.ofMinutes(10);
+
+    // create custom JSON and binary Serdes
+    private static Serde<TimestampedTemperatureReading> readingsJsonSerde = Serdes.serdeFrom(
+            new JsonSerializer<>(), new JsonDeserializer<>(TimestampedTemperatureReading.class));
+    private static Serde<DoubleStatistics> doubleStatisticsSerde = TemperatureStatistics.STATISTICS_SERDE;
+    private static Serde<TempDifference> tempDifferenceSerde = Serdes.serdeFrom(
+            new JsonSerializer<>(), new JsonDeserializer<>(TempDifference.class));
+
+    // N consecutive rising readings above X within T
+    public static Pattern<TimestampedTemperatureReading> risingPattern() {
+        return Pattern.<TimestampedTemperatureReading>begin("above", reading -> reading.getValue() > RISING_ABOVE)
+                .next("rising", (previous, reading) -> reading.getValue() > previous.getValue())
+                .times(RISING_READINGS - 1)
+                .within(RISING_WITHIN)
+                .named("rising-temperature");
+    }
+
+    // internal above external by more than D for 10 minutes
+    public static Pattern<TempDifference> divergingPattern() {
+        return Pattern.<TempDifference>begin("diverging", difference -> difference.getValue() > DIVERGING_BY)
+                .lasting(DIVERGING_LASTING)
+                .named("diverging-temperature");
+    }
+
+    public static void buildTopology(StreamsBuilder builder) {
+        PatternTransformer.addStore(builder, RISING_STORE, Serdes.String());
+        PatternTransformer.addStore(builder, DIVERGING_STORE, Serdes.String());
+
+        var rising = builder.stream(INTERNAL_TEMP_TOPIC, with(Serdes.String(), readingsJsonSerde))
+                .transform(() -> new PatternTransformer<>(RISING_STORE, readingsJsonSerde, risingPattern()), RISING_STORE);
+
+        var internalStatistics = builder.stream(INTERNAL_STATISTICS_TOPIC, with(Serdes.String(), doubleStatisticsSerde));
+        var externalStatistics = builder.stream(EXTERNAL_STATISTICS_TOPIC, with(Serdes.String(), doubleStatisticsSerde));
+        var diverging = internalStatistics
+                .join(externalStatistics, (s1, s2) ->
+                        new TempDifference(s1.getAverage() - s2.getAverage(), Long.max(s1.getTimestamp(), s2.getTimestamp())),
+                        JoinWindows.ofTimeDifferenceWithNoGrace(Duration.ofMillis(1000)),
+                        StreamJoined.with(Serdes.String(), doubleStatisticsSerde, doubleStatisticsSerde)
+                                .withName("join-alerts-internal-external-temperatures"))
+                .transform(() -> new PatternTransformer<>(DIVERGING_STORE, tempDifferenceSerde, divergingPattern()),
+                        DIVERGING_STORE);
+
+        // written separately, so the raw readings and the statistics stay in separate sub-topologies
+        rising.mapValues(TemperatureAlerts09::format).to(OUTPUT_TOPIC, Produced.with(Serdes.String(), Serdes.String()));
+        diverging.mapValues(TemperatureAlerts09::format).to(OUTPUT_TOPIC, Produced.with(Serdes.String(), Serdes.String()));
+    }
+
+    private static String format(String sensorId, PatternMatch match) {
+        return String.format("ALERT %s: SENSOR-ID: %12s -> %d events in %d ms, from %d to %d", match.getPattern(),
+                sensorId, match.getEvents(), match.getDurationMs(), match.getStartTimestamp(), match.getEndTimestamp());
+    }
+
+    public static void main(String[] args) {
+        // 1) Configure stream
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-alerts");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
+        props.put(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG, BoundedMemoryRocksDBConfig.class);
+        props.put(BoundedMemoryRocksDBConfig.TOTAL_MEMORY_CONFIG, 256L * 1024 * 1024);
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_TIMESTAMP_EXTRACTOR_CLASS_CONFIG, ReadingTimestampExtractor.class); // event time
+
+        // 2) Create stream builder
+        final StreamsBuilder builder = new StreamsBuilder();
+        buildTopology(builder);
+
+        // 3) Build stream topology
+        final Topology topology = builder.build(); // build DAG
+        System.out.println(topology.describe());
+
+        // 4) Create streams instance
+        final KafkaStreams streams = new KafkaStreams(topology, props);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        // attach shutdown handler to catch Ctrl-c
+        Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
+            @Override
+            public void run() {
+                streams.close();
+                latch.countDown();
+            }
+        });
+
+        // 5) Start streams and await termination
+        try {
+            streams.start();
+            latch.await();
+        } catch (InterruptedException e) {
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,92 @@
+package course.kafka.streams;
+
+import course.kafka.model.TemperatureAnomaly;
+import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.serialization.JsonDeserializer;
+import course.kafka.serialization.JsonSerializer;
+import course.kafka.state.BoundedMemoryRocksDBConfig;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.kstream.Produced;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import static org.apache.kafka.streams.kstream.Consumed.with;
+
+// Anomalous readings, scored one by one as they arrive, with a constant size state per sensor
+public class TemperatureAnomalies10 {
+    public static final String INTERNAL_TEMP_TOPIC = "temperature";
+    public static final String OUTPUT_TOPIC = "temperature-anomalies";
+    public static final String ANOMALY_STORE = "temperature-anomaly-store";
+    public static final double ALPHA = 0.05; // about the last 40 readings
+    public static final double Z_THRESHOLD = 4;
+    public static final double MAX_RATE_PER_SECOND = 2; // degrees
+    public static final int WARMUP_READINGS = 20;
+
+    // create custom JSON Serdes
+    private static Serde<TimestampedTemperatureReading> readingsJsonSerde = Serdes.serdeFrom(
+            new JsonSerializer<>(), new JsonDeserializer<>(TimestampedTemperatureReading.class));
+    private static Serde<TemperatureAnomaly> anomalyJsonSerde = Serdes.serdeFrom(
+            new JsonSerializer<>(), new JsonDeserializer<>(TemperatureAnomaly.class));
+
+    public static void buildTopology(StreamsBuilder builder) {
+        AnomalyDetector.addStore(builder, ANOMALY_STORE, Serdes.String());
+        builder.stream(INTERNAL_TEMP_TOPIC, with(Serdes.String(), readingsJsonSerde))
+                .transform(() -> new AnomalyDetector(ANOMALY_STORE, ALPHA, Z_THRESHOLD, MAX_RATE_PER_SECOND,
+                        WARMUP_READINGS), ANOMALY_STORE)
+                .to(OUTPUT_TOPIC, Produced.with(Serdes.String(), anomalyJsonSerde));
+    }
+
+    public static void main(String[] args) {
+        // 1) Configure stream
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-anomalies");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 4);
+        props.put(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG, BoundedMemoryRocksDBConfig.class);
+        props.put(BoundedMemoryRocksDBConfig.TOTAL_MEMORY_CONFIG, 256L * 1024 * 1024);
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_TIMESTAMP_EXTRACTOR_CLASS_CONFIG, ReadingTimestampExtractor.class); // event time
+
+        // 2) Create stream builder
+        final StreamsBuilder builder = new StreamsBuilder();
+        buildTopology(builder);
+
+        // 3) Build stream topology
+        final Topology topology = builder.build(); // build DAG
+        System.out.println(topology.describe());
+
+        // 4) Create streams instance
+        final KafkaStreams streams = new KafkaStreams(topology, props);
+        final StreamThreadAutoscaler autoscaler =
+                new StreamThreadAutoscaler(streams, 1, Math.max(4, Runtime.getRuntime().availableProcessors()));
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        // attach shutdown handler to catch Ctrl-c
+        Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
+            @Override
+            public void run() {
+                autoscaler.close();
+                streams.close();
+                latch.countDown();
+            }
+        });
+
+        // 5) Start streams and await termination
+        try {
+            streams.start();
+            autoscaler.start();
+            latch.await();
+        } catch (InterruptedException e) {
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
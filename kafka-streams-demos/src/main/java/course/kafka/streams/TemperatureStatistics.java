@@ -0,0 +1,50 @@
+package course.kafka.streams;
+
+import course.kafka.model.DoubleStatistics;
+import course.kafka.model.QuantileSketch;
+import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.serialization.DoubleStatisticsDeserializer;
+import course.kafka.serialization.DoubleStatisticsSerializer;
+import course.kafka.serialization.QuantileSketchDeserializer;
+import course.kafka.serialization.QuantileSketchSerializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.kstream.Aggregator;
+import org.apache.kafka.streams.kstream.Initializer;
+import org.apache.kafka.streams.kstream.Merger;
+
+// Shared statistics aggregation for the temperature topologies
+public final class TemperatureStatistics {
+    public static final Serde<DoubleStatistics> STATISTICS_SERDE = Serdes.serdeFrom(
+            new DoubleStatisticsSerializer(), new DoubleStatisticsDeserializer());
+    public static final Serde<QuantileSketch> QUANTILES_SERDE = Serdes.serdeFrom(
+            new QuantileSketchSerializer(), new QuantileSketchDeserializer());
+
+    private TemperatureStatistics() {
+    }
+
+    public static Initializer<DoubleStatistics> initializer() {
+        return DoubleStatistics::new;
+    }
+
+    public static Aggregator<String, TimestampedTemperatureReading, DoubleStatistics> aggregator() {
+        return (sensorId, reading, aggStats) -> aggStats.add(reading.getValue(), reading.getTimestamp());
+    }
+
+    // combines partial aggregates, e.g. when session windows are merged
+    public static Merger<String, DoubleStatistics> merger() {
+        return (sensorId, aggStats1, aggStats2) -> new DoubleStatistics().merge(aggStats1).merge(aggStats2);
+    }
+
+    public static Initializer<QuantileSketch> quantilesInitializer() {
+        return QuantileSketch::new;
+    }
+
+    public static Aggregator<String, TimestampedTemperatureReading, QuantileSketch> quantilesAggregator() {
+        return (sensorId, reading, sketch) -> sketch.add(reading.getValue());
+    }
+
+    public static Merger<String, QuantileSketch> quantilesMerger() {
+        return (sensorId, sketch1, sketch2) -> new QuantileSketch().merge(sketch1).merge(sketch2);
+    }
+}
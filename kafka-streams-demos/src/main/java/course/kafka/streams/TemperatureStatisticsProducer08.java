@@ -0,0 +1,164 @@
+package course.kafka.streams;
+
+import course.kafka.model.DoubleStatistics;
+import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.rules.FilterRules;
+import course.kafka.serialization.JsonDeserializer;
+import course.kafka.serialization.JsonSerializer;
+import course.kafka.state.BoundedMemoryRocksDBConfig;
+import course.kafka.state.WindowStoreType;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.*;
+import org.apache.kafka.streams.kstream.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static org.apache.kafka.streams.kstream.Consumed.with;
+
+/**
+ * Computes the 5 second statistics of the internal and external temperature readings once, for all heating apps.
+ * The final statistics of each window are written in the binary {@link DoubleStatistics} format, keyed by sensor
+ * id, to {@code <input topic>-statistics}. Both statistics topics are created compacted and with the same number of
+ * partitions, so the apps consuming them (e.g. {@link MergingTemperatureReadingsStreams04},
+ * {@link JoiningTemperatureReadings05}) can join them without repartitioning.
+ */
+@Slf4j
+public class TemperatureStatisticsProducer08 {
+    public static final String INTERNAL_TEMP_TOPIC = "temperature";
+    public static final String EXTERNAL_TEMP_TOPIC = "external-temperature";
+    public static final String INTERNAL_STATISTICS_TOPIC = statisticsTopic(INTERNAL_TEMP_TOPIC);
+    public static final String EXTERNAL_STATISTICS_TOPIC = statisticsTopic(EXTERNAL_TEMP_TOPIC);
+    public static final long WINDOW_SIZE_MS = 5000;
+    public static final String STATISTICS_STORE_SUFFIX = "-statistics-store"; // one store per input topic
+    public static final String EMIT_FINAL_BUFFER_SUFFIX = "-statistics-buffer";
+    public static final long EMIT_FINAL_MEMORY_BYTES = EmitFinalTransformer.DEFAULT_MAX_MEMORY_BYTES;
+    public static final WindowStoreType WINDOW_STORE_TYPE = WindowStoreType.OFF_HEAP;
+    // compaction keeps the latest window of each sensor, but not before consumers had a day to read every window
+    public static final Map<String, String> STATISTICS_TOPIC_CONFIGS = Map.of(
+            TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT,
+            TopicConfig.MIN_COMPACTION_LAG_MS_CONFIG, String.valueOf(Duration.ofDays(1).toMillis()));
+
+    // create custom JSON and binary Serdes
+    private static Serde<TimestampedTemperatureReading> readingsJsonSerde = Serdes.serdeFrom(
+            new JsonSerializer<>(), new JsonDeserializer<>(TimestampedTemperatureReading.class));
+    private static Serde<DoubleStatistics> doubleStatisticsSerde = TemperatureStatistics.STATISTICS_SERDE;
+
+    public static String statisticsTopic(String inputTopic) {
+        return inputTopic + "-statistics";
+    }
+
+    public static KStream<String, DoubleStatistics> createTemperatureStatisticsStream(StreamsBuilder builder, String inputTopic,
+            Predicate<String, TimestampedTemperatureReading> validTemperatureFilter) {
+        String bufferName = inputTopic + EMIT_FINAL_BUFFER_SUFFIX;
+        EmitFinalTransformer.addStores(builder, bufferName);
+        return builder.stream(inputTopic, with(Serdes.String(), readingsJsonSerde))
+                .filter(validTemperatureFilter)
+                .groupByKey(Grouped.valueSerde(readingsJsonSerde))
+                .windowedBy(TimeWindows.ofSizeWithNoGrace(Duration.ofMillis(WINDOW_SIZE_MS)))
+                .aggregate(TemperatureStatistics.initializer(), TemperatureStatistics.aggregator(),
+                        WINDOW_STORE_TYPE.materialized(inputTopic + STATISTICS_STORE_SUFFIX, Duration.ofMillis(WINDOW_SIZE_MS),
+                        Serdes.String(), doubleStatisticsSerde))
+                .toStream()
+                .transform(() -> new EmitFinalTransformer<>(bufferName, Serdes.String(), doubleStatisticsSerde,
+                        Duration.ZERO, EMIT_FINAL_MEMORY_BYTES), EmitFinalTransformer.storeNames(bufferName))
+                .map((windowedSensorId, stats) -> new KeyValue<>(windowedSensorId.key(), stats));
+    }
+
+    public static void buildTopology(StreamsBuilder builder) {
+        var validTemperatureFilter = FilterRules.addGlobalStore(builder).validTemperatureFilter();
+        for (String inputTopic : List.of(INTERNAL_TEMP_TOPIC, EXTERNAL_TEMP_TOPIC)) {
+            createTemperatureStatisticsStream(builder, inputTopic, validTemperatureFilter)
+                    .to(statisticsTopic(inputTopic), Produced.with(Serdes.String(), doubleStatisticsSerde));
+        }
+    }
+
+    // both statistics topics get the partition count of the larger input topic, so they are co-partitioned
+    public static void createStatisticsTopics(Admin admin) throws ExecutionException, InterruptedException {
+        Map<String, TopicDescription> inputs = admin.describeTopics(List.of(INTERNAL_TEMP_TOPIC, EXTERNAL_TEMP_TOPIC))
+                .allTopicNames().get();
+        int partitions = inputs.values().stream().mapToInt(input -> input.partitions().size()).max().orElseThrow();
+        short replicationFactor = (short) inputs.get(INTERNAL_TEMP_TOPIC).partitions().get(0).replicas().size();
+        for (String topic : List.of(INTERNAL_STATISTICS_TOPIC, EXTERNAL_STATISTICS_TOPIC)) {
+            try {
+                admin.createTopics(List.of(new NewTopic(topic, partitions, replicationFactor)
+                        .configs(STATISTICS_TOPIC_CONFIGS))).all().get();
+                log.info("Created statistics topic '{}' with {} partitions", topic, partitions);
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof TopicExistsException)) throw e;
+                int existing = admin.describeTopics(List.of(topic)).allTopicNames().get().get(topic).partitions().size();
+                if (existing != partitions) {
+                    throw new IllegalStateException("Statistics topic '" + topic + "' has " + existing +
+                            " partitions, but the statistics topics must be co-partitioned with " + partitions);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws ExecutionException, InterruptedException {
+        // 1) Configure stream
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-statistics");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 4);
+        props.put(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG, BoundedMemoryRocksDBConfig.class);
+        props.put(BoundedMemoryRocksDBConfig.TOTAL_MEMORY_CONFIG, 256L * 1024 * 1024);
+        props.put(StreamsConfig.METRICS_RECORDING_LEVEL_CONFIG, "DEBUG"); // publishes RocksDB statistics
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_TIMESTAMP_EXTRACTOR_CLASS_CONFIG, ReadingTimestampExtractor.class); // event time
+
+        // 2) Create the statistics topics
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG,
+                props.get(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG)))) {
+            createStatisticsTopics(admin);
+        }
+
+        // 3) Create stream builder
+        final StreamsBuilder builder = new StreamsBuilder();
+        buildTopology(builder);
+
+        // 4) Build stream topology
+        final Topology topology = builder.build(); // build DAG
+        System.out.println(topology.describe());
+
+        // 5) Create streams instance
+        final KafkaStreams streams = new KafkaStreams(topology, props);
+        final StreamThreadAutoscaler autoscaler =
+                new StreamThreadAutoscaler(streams, 1, Math.max(4, Runtime.getRuntime().availableProcessors()));
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        // attach shutdown handler to catch Ctrl-c
+        Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
+            @Override
+            public void run() {
+                autoscaler.close();
+                streams.close();
+                latch.countDown();
+            }
+        });
+
+        // 6) Start streams and await termination
+        try {
+            streams.start();
+            autoscaler.start();
+            latch.await();
+        } catch (InterruptedException e) {
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
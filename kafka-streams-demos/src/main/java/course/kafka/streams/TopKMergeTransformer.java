@@ -0,0 +1,76 @@
+package course.kafka.streams;
+
+import course.kafka.model.HeavyHitters;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Global merge of the per task {@link HeavyHitters} summaries - must run in a single partition. Keeps the latest
+ * summary of each task in the store and every emit interval forwards the top k words of all tasks under a single
+ * key, only when they changed, so a compacted output topic holds the current top k as one record.
+ */
+public class TopKMergeTransformer implements Transformer<String, HeavyHitters, KeyValue<String, Map<String, Long>>> {
+    private final String storeName;
+    private final String outputKey;
+    private final int k;
+    private final Duration emitInterval;
+    private Map<String, Long> lastTop = Map.of();
+    private boolean dirty = false;
+    private KeyValueStore<String, HeavyHitters> store;
+    private ProcessorContext context;
+
+    public TopKMergeTransformer(String storeName, String outputKey, int k, Duration emitInterval) {
+        this.storeName = storeName;
+        this.outputKey = outputKey;
+        this.k = k;
+        this.emitInterval = emitInterval;
+    }
+
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        store = context.getStateStore(storeName);
+        dirty = true; // re-emit after restore, the output may lag behind the store
+        context.schedule(emitInterval, PunctuationType.WALL_CLOCK_TIME, timestamp -> emit());
+    }
+
+    @Override
+    public KeyValue<String, Map<String, Long>> transform(String taskKey, HeavyHitters summary) {
+        store.put(taskKey, summary);
+        dirty = true;
+        return null;
+    }
+
+    private void emit() {
+        if (!dirty) return;
+        dirty = false;
+        HeavyHitters merged = null;
+        try (var iter = store.all()) {
+            while (iter.hasNext()) {
+                var summary = iter.next().value;
+                merged = merged == null ? summary : merged.merge(summary);
+            }
+        }
+        if (merged == null) return;
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (var entry : merged.top().entrySet()) {
+            if (top.size() == k) break;
+            top.put(entry.getKey(), entry.getValue());
+        }
+        if (!top.equals(lastTop)) {
+            context.forward(outputKey, top);
+            lastTop = top;
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -1,8 +1,11 @@
 package course.kafka.streams;
 
 import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.rules.FilterRules;
 import course.kafka.serialization.JsonDeserializer;
 import course.kafka.serialization.JsonSerializer;
+import course.kafka.state.BoundedMemoryRocksDBConfig;
+import course.kafka.state.WindowStoreType;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.KafkaStreams;
@@ -23,46 +26,29 @@ public class WindowedCountingTemperatureReadings01 {
     public static final String EXTERNAL_TEMP_TOPIC = "external-temperature";
     public static final String OUTPUT_TOPIC = "events";
     public static final long WINDOW_SIZE_MS = 5000;
+    public static final String COUNTS_STORE = "temperature-counts-store";
+    public static final WindowStoreType WINDOW_STORE_TYPE = WindowStoreType.OFF_HEAP;
 
 
     public static void main(String[] args) {
         // 1) Configure stream
         Properties props = new Properties();
-        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-bills");
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-bills-counting");
         props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
         props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
         props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 4);
+        if (WINDOW_STORE_TYPE == WindowStoreType.ROCKSDB) {
+            props.put(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG, BoundedMemoryRocksDBConfig.class);
+            props.put(BoundedMemoryRocksDBConfig.TOTAL_MEMORY_CONFIG, 256L * 1024 * 1024);
+            props.put(StreamsConfig.METRICS_RECORDING_LEVEL_CONFIG, "DEBUG"); // publishes RocksDB statistics
+        }
         props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
         props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
-
-        // create custom JSON Serde
-        Serde<TimestampedTemperatureReading> jsonSerde = Serdes.serdeFrom(
-                new JsonSerializer<>(), new JsonDeserializer<>(TimestampedTemperatureReading.class));
+        props.put(StreamsConfig.DEFAULT_TIMESTAMP_EXTRACTOR_CLASS_CONFIG, ReadingTimestampExtractor.class); // event time
 
         // 2) Create stream builder
         final StreamsBuilder builder = new StreamsBuilder();
-        KStream<String, TimestampedTemperatureReading> internalTemperature = builder
-                .stream(INTERNAL_TEMP_TOPIC, with(Serdes.String(), jsonSerde));
-        KStream<String, TimestampedTemperatureReading> externalTemperature = builder
-                .stream(EXTERNAL_TEMP_TOPIC, with(Serdes.String(), jsonSerde));
-
-        Predicate<String, TimestampedTemperatureReading> validTemperatureFilter =
-                (sensorId, reading) -> reading.getValue() > -15 && reading.getValue() < 60;
-
-        internalTemperature
-                .filter(validTemperatureFilter)
-                .mapValues(reading -> reading.getValue())
-                .groupByKey(Grouped.valueSerde(Serdes.Double()))
-                .windowedBy(TimeWindows.ofSizeWithNoGrace(Duration.ofMillis(WINDOW_SIZE_MS)))
-                .count(Materialized.with(Serdes.String(), Serdes.Long()))
-                .toStream()
-                .mapValues(t -> String.format("Temp: %5d", t))
-//                .mapValues(t -> String.format("Temp: %9.5f", t))
-                .to(OUTPUT_TOPIC);
-
-//        externalTemperature
-//                .filter(validTemperatureFilter)
-//                .to(OUTPUT_TOPIC);
+        buildTopology(builder);
 
         // 3) Build stream topology
         final Topology topology = builder.build(); // build DAG
@@ -70,12 +56,15 @@ public class WindowedCountingTemperatureReadings01 {
 
         // 4) Create streams instance
         final KafkaStreams streams = new KafkaStreams(topology, props);
+        final StreamThreadAutoscaler autoscaler =
+                new StreamThreadAutoscaler(streams, 1, Math.max(4, Runtime.getRuntime().availableProcessors()));
         final CountDownLatch latch = new CountDownLatch(1);
 
         // attach shutdown handler to catch Ctrl-c
         Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
             @Override
             public void run() {
+                autoscaler.close();
                 streams.close();
                 latch.countDown();
             }
@@ -84,10 +73,41 @@ public class WindowedCountingTemperatureReadings01 {
         // 5) Start streams and await termination
         try {
             streams.start();
+            autoscaler.start();
             latch.await();
         } catch (InterruptedException e) {
             System.exit(1);
         }
         System.exit(0);
     }
+
+    public static void buildTopology(StreamsBuilder builder) {
+        // create custom JSON Serde
+        Serde<TimestampedTemperatureReading> jsonSerde = Serdes.serdeFrom(
+                new JsonSerializer<>(), new JsonDeserializer<>(TimestampedTemperatureReading.class));
+
+        KStream<String, TimestampedTemperatureReading> internalTemperature = builder
+                .stream(INTERNAL_TEMP_TOPIC, with(Serdes.String(), jsonSerde));
+        KStream<String, TimestampedTemperatureReading> externalTemperature = builder
+                .stream(EXTERNAL_TEMP_TOPIC, with(Serdes.String(), jsonSerde));
+
+        Predicate<String, TimestampedTemperatureReading> validTemperatureFilter =
+                FilterRules.addGlobalStore(builder).validTemperatureFilter();
+
+        internalTemperature
+                .filter(validTemperatureFilter)
+                .mapValues(reading -> reading.getValue())
+                .groupByKey(Grouped.valueSerde(Serdes.Double()))
+                .windowedBy(TimeWindows.ofSizeWithNoGrace(Duration.ofMillis(WINDOW_SIZE_MS)))
+                .count(WINDOW_STORE_TYPE.materialized(COUNTS_STORE, Duration.ofMillis(WINDOW_SIZE_MS),
+                        Serdes.String(), Serdes.Long()))
+                .toStream()
+                .mapValues(t -> String.format("Temp: %5d", t))
+//                .mapValues(t -> String.format("Temp: %9.5f", t))
+                .to(OUTPUT_TOPIC);
+
+//        externalTemperature
+//                .filter(validTemperatureFilter)
+//                .to(OUTPUT_TOPIC);
+    }
 }
@@ -0,0 +1,136 @@
+package course.kafka.streams;
+
+import course.kafka.model.QuantileSketch;
+import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.rules.FilterRules;
+import course.kafka.serialization.JsonDeserializer;
+import course.kafka.serialization.JsonSerializer;
+import course.kafka.state.BoundedMemoryRocksDBConfig;
+import course.kafka.state.WindowStoreType;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.kstream.*;
+import org.apache.kafka.streams.state.WindowStore;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import static org.apache.kafka.streams.kstream.Consumed.with;
+
+
+public class WindowedQuantilesTemperatureReadings07 {
+    public static final String INTERNAL_TEMP_TOPIC = "temperature";
+    public static final String OUTPUT_TOPIC = "events";
+    public static final long WINDOW_SIZE_MS = 5000;
+    public static final String QUANTILES_STORE = "temperature-quantiles-store";
+    public static final String DAILY_QUANTILES_STORE = "temperature-daily-quantiles-store";
+    public static final String EMIT_FINAL_BUFFER = "temperature-quantiles-buffer";
+    public static final long EMIT_FINAL_MEMORY_BYTES = EmitFinalTransformer.DEFAULT_MAX_MEMORY_BYTES;
+    public static final WindowStoreType WINDOW_STORE_TYPE = WindowStoreType.OFF_HEAP;
+
+
+    public static void main(String[] args) {
+        // 1) Configure stream
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-bills-quantiles");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 4);
+        props.put(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG, BoundedMemoryRocksDBConfig.class);
+        props.put(BoundedMemoryRocksDBConfig.TOTAL_MEMORY_CONFIG, 256L * 1024 * 1024);
+        props.put(StreamsConfig.METRICS_RECORDING_LEVEL_CONFIG, "DEBUG"); // publishes RocksDB statistics
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_TIMESTAMP_EXTRACTOR_CLASS_CONFIG, ReadingTimestampExtractor.class); // event time
+
+        // 2) Create stream builder
+        final StreamsBuilder builder = new StreamsBuilder();
+        buildTopology(builder);
+
+        // 3) Build stream topology
+        final Topology topology = builder.build(); // build DAG
+        System.out.println(topology.describe());
+
+        // 4) Create streams instance
+        final KafkaStreams streams = new KafkaStreams(topology, props);
+        final StreamThreadAutoscaler autoscaler =
+                new StreamThreadAutoscaler(streams, 1, Math.max(4, Runtime.getRuntime().availableProcessors()));
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        // attach shutdown handler to catch Ctrl-c
+        Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
+            @Override
+            public void run() {
+                autoscaler.close();
+                streams.close();
+                latch.countDown();
+            }
+        });
+
+        // 5) Start streams and await termination
+        try {
+            streams.start();
+            autoscaler.start();
+            latch.await();
+        } catch (InterruptedException e) {
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    public static void buildTopology(StreamsBuilder builder) {
+        // create custom JSON and binary Serdes
+        Serde<TimestampedTemperatureReading> readingsJsonSerde = Serdes.serdeFrom(
+                new JsonSerializer<>(), new JsonDeserializer<>(TimestampedTemperatureReading.class));
+        Serde<QuantileSketch> quantilesSerde = TemperatureStatistics.QUANTILES_SERDE;
+
+        EmitFinalTransformer.addStores(builder, EMIT_FINAL_BUFFER);
+        KStream<String, TimestampedTemperatureReading> internalTemperature = builder
+                .stream(INTERNAL_TEMP_TOPIC, with(Serdes.String(), readingsJsonSerde));
+
+        Predicate<String, TimestampedTemperatureReading> validTemperatureFilter =
+                FilterRules.addGlobalStore(builder).validTemperatureFilter();
+
+        // final quantiles of each 5 second window
+        KStream<Windowed<String>, QuantileSketch> windowQuantiles = internalTemperature
+                .filter(validTemperatureFilter)
+                .groupByKey(Grouped.valueSerde(readingsJsonSerde))
+                .windowedBy(TimeWindows.ofSizeWithNoGrace(Duration.ofMillis(WINDOW_SIZE_MS)))
+                .aggregate(TemperatureStatistics.quantilesInitializer(), TemperatureStatistics.quantilesAggregator(),
+                        WINDOW_STORE_TYPE.materialized(QUANTILES_STORE, Duration.ofMillis(WINDOW_SIZE_MS),
+                                Serdes.String(), quantilesSerde))
+                // final results only, in bounded memory - see EmitFinalTransformer
+                .toStream()
+                .transform(() -> new EmitFinalTransformer<>(EMIT_FINAL_BUFFER, Serdes.String(), quantilesSerde,
+                        Duration.ZERO, EMIT_FINAL_MEMORY_BYTES), EmitFinalTransformer.storeNames(EMIT_FINAL_BUFFER));
+
+        windowQuantiles
+                .map((window, sketch) -> KeyValue.pair(window.key(), formatQuantiles(window, sketch)))
+                .to(OUTPUT_TOPIC);
+
+        // daily rollup - sketches merge without loss, so no raw readings are needed
+        windowQuantiles
+                .map((window, sketch) -> KeyValue.pair(window.key(), sketch))
+                .groupByKey(Grouped.with(Serdes.String(), quantilesSerde))
+                .windowedBy(TimeWindows.ofSizeWithNoGrace(Duration.ofDays(1)))
+                .reduce(QuantileSketch::merge,
+                        Materialized.<String, QuantileSketch, WindowStore<Bytes, byte[]>>as(DAILY_QUANTILES_STORE)
+                                .withKeySerde(Serdes.String()).withValueSerde(quantilesSerde))
+                .toStream()
+                .map((window, sketch) -> KeyValue.pair(window.key(), formatQuantiles(window, sketch)))
+                .to(OUTPUT_TOPIC);
+    }
+
+    private static String formatQuantiles(Windowed<String> window, QuantileSketch sketch) {
+        return String.format("Count:%5d, P50:%9.5f, P95:%9.5f, P99:%9.5f, Min:%9.5f, Max:%9.5f, Window: %d-%d",
+                sketch.getCount(), sketch.quantile(0.5), sketch.quantile(0.95), sketch.quantile(0.99),
+                sketch.getMin(), sketch.getMax(), window.window().start(), window.window().end());
+    }
+}
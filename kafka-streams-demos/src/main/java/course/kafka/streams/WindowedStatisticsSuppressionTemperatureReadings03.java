@@ -2,8 +2,11 @@ package course.kafka.streams;
 
 import course.kafka.model.DoubleStatistics;
 import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.rules.FilterRules;
 import course.kafka.serialization.JsonDeserializer;
 import course.kafka.serialization.JsonSerializer;
+import course.kafka.state.BoundedMemoryRocksDBConfig;
+import course.kafka.state.WindowStoreType;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.KafkaStreams;
@@ -16,8 +19,6 @@ import java.time.Duration;
 import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
 
-import static java.lang.Double.max;
-import static java.lang.Double.min;
 import static org.apache.kafka.streams.kstream.Consumed.with;
 
 
@@ -26,57 +27,29 @@ public class WindowedStatisticsSuppressionTemperatureReadings03 {
     public static final String EXTERNAL_TEMP_TOPIC = "external-temperature";
     public static final String OUTPUT_TOPIC = "events";
     public static final long WINDOW_SIZE_MS = 5000;
+    public static final String STATISTICS_STORE = "temperature-statistics-store";
+    public static final String EMIT_FINAL_BUFFER = "temperature-statistics-buffer";
+    public static final long EMIT_FINAL_MEMORY_BYTES = EmitFinalTransformer.DEFAULT_MAX_MEMORY_BYTES;
+    public static final WindowStoreType WINDOW_STORE_TYPE = WindowStoreType.OFF_HEAP;
 
 
     public static void main(String[] args) {
         // 1) Configure stream
         Properties props = new Properties();
-        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-bills");
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-bills-emit-final");
         props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
         props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
         props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 4);
+        props.put(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG, BoundedMemoryRocksDBConfig.class);
+        props.put(BoundedMemoryRocksDBConfig.TOTAL_MEMORY_CONFIG, 256L * 1024 * 1024);
+        props.put(StreamsConfig.METRICS_RECORDING_LEVEL_CONFIG, "DEBUG"); // publishes RocksDB statistics
         props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
         props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
-
-        // create custom JSON Serdes
-        Serde<TimestampedTemperatureReading> readingsJsonSerde = Serdes.serdeFrom(
-                new JsonSerializer<>(), new JsonDeserializer<>(TimestampedTemperatureReading.class));
-        Serde<DoubleStatistics> doubleStatisticsSerde = Serdes.serdeFrom(
-                new JsonSerializer<>(), new JsonDeserializer<>(DoubleStatistics.class));
+        props.put(StreamsConfig.DEFAULT_TIMESTAMP_EXTRACTOR_CLASS_CONFIG, ReadingTimestampExtractor.class); // event time
 
         // 2) Create stream builder
         final StreamsBuilder builder = new StreamsBuilder();
-        KStream<String, TimestampedTemperatureReading> internalTemperature = builder
-                .stream(INTERNAL_TEMP_TOPIC, with(Serdes.String(), readingsJsonSerde));
-        KStream<String, TimestampedTemperatureReading> externalTemperature = builder
-                .stream(EXTERNAL_TEMP_TOPIC, with(Serdes.String(), readingsJsonSerde));
-
-        Predicate<String, TimestampedTemperatureReading> validTemperatureFilter =
-                (sensorId, reading) -> reading.getValue() > -15 && reading.getValue() < 60;
-
-        internalTemperature
-                .filter(validTemperatureFilter)
-                .groupByKey(Grouped.valueSerde(readingsJsonSerde))
-                .windowedBy(TimeWindows.ofSizeWithNoGrace(Duration.ofMillis(WINDOW_SIZE_MS)))
-                .aggregate(() -> new DoubleStatistics(),
-                        (sensorId, reading, aggStats) -> {
-                            aggStats.setCount(aggStats.getCount() + 1);
-                            aggStats.setSum(aggStats.getSum() + reading.getValue());
-                            aggStats.setAverage(aggStats.getSum() / aggStats.getCount());
-                            aggStats.setMin(min(aggStats.getMin(), reading.getValue()));
-                            aggStats.setMax(max(aggStats.getMin(), reading.getValue()));
-                            aggStats.setTimestamp(reading.getTimestamp());
-                            return aggStats;
-                        }, Materialized.with(Serdes.String(), doubleStatisticsSerde))
-                .suppress(Suppressed.untilWindowCloses(Suppressed.BufferConfig.unbounded()))
-                .toStream()
-                .mapValues(t -> String.format("Count:%3d, Sum:%10.5f, Avg:%9.5f,  Min:%9.5f,  Max:%9.5f, Time: %d",
-                        t.getCount(), t.getSum(), t.getAverage(), t.getMin(), t.getMax(), t.getTimestamp()))
-                .to(OUTPUT_TOPIC);
-
-//        externalTemperature
-//                .filter(validTemperatureFilter)
-//                .to(OUTPUT_TOPIC);
+        buildTopology(builder);
 
         // 3) Build stream topology
         final Topology topology = builder.build(); // build DAG
@@ -84,12 +57,15 @@ public class WindowedStatisticsSuppressionTemperatureReadings03 {
 
         // 4) Create streams instance
         final KafkaStreams streams = new KafkaStreams(topology, props);
+        final StreamThreadAutoscaler autoscaler =
+                new StreamThreadAutoscaler(streams, 1, Math.max(4, Runtime.getRuntime().availableProcessors()));
         final CountDownLatch latch = new CountDownLatch(1);
 
         // attach shutdown handler to catch Ctrl-c
         Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
             @Override
             public void run() {
+                autoscaler.close();
                 streams.close();
                 latch.countDown();
             }
@@ -98,10 +74,46 @@ public class WindowedStatisticsSuppressionTemperatureReadings03 {
         // 5) Start streams and await termination
         try {
             streams.start();
+            autoscaler.start();
             latch.await();
         } catch (InterruptedException e) {
             System.exit(1);
         }
         System.exit(0);
     }
+
+    public static void buildTopology(StreamsBuilder builder) {
+        // create custom JSON and binary Serdes
+        Serde<TimestampedTemperatureReading> readingsJsonSerde = Serdes.serdeFrom(
+                new JsonSerializer<>(), new JsonDeserializer<>(TimestampedTemperatureReading.class));
+        Serde<DoubleStatistics> doubleStatisticsSerde = TemperatureStatistics.STATISTICS_SERDE;
+
+        EmitFinalTransformer.addStores(builder, EMIT_FINAL_BUFFER);
+        KStream<String, TimestampedTemperatureReading> internalTemperature = builder
+                .stream(INTERNAL_TEMP_TOPIC, with(Serdes.String(), readingsJsonSerde));
+        KStream<String, TimestampedTemperatureReading> externalTemperature = builder
+                .stream(EXTERNAL_TEMP_TOPIC, with(Serdes.String(), readingsJsonSerde));
+
+        Predicate<String, TimestampedTemperatureReading> validTemperatureFilter =
+                FilterRules.addGlobalStore(builder).validTemperatureFilter();
+
+        internalTemperature
+                .filter(validTemperatureFilter)
+                .groupByKey(Grouped.valueSerde(readingsJsonSerde))
+                .windowedBy(TimeWindows.ofSizeWithNoGrace(Duration.ofMillis(WINDOW_SIZE_MS)))
+                .aggregate(TemperatureStatistics.initializer(), TemperatureStatistics.aggregator(),
+                        WINDOW_STORE_TYPE.materialized(STATISTICS_STORE, Duration.ofMillis(WINDOW_SIZE_MS),
+                        Serdes.String(), doubleStatisticsSerde))
+                // final results only, in bounded memory - see EmitFinalTransformer
+                .toStream()
+                .transform(() -> new EmitFinalTransformer<>(EMIT_FINAL_BUFFER, Serdes.String(), doubleStatisticsSerde,
+                        Duration.ZERO, EMIT_FINAL_MEMORY_BYTES), EmitFinalTransformer.storeNames(EMIT_FINAL_BUFFER))
+                .mapValues(t -> String.format("Count:%3d, Sum:%10.5f, Avg:%9.5f,  Min:%9.5f,  Max:%9.5f, Time: %d",
+                        t.getCount(), t.getSum(), t.getAverage(), t.getMin(), t.getMax(), t.getTimestamp()))
+                .to(OUTPUT_TOPIC);
+
+//        externalTemperature
+//                .filter(validTemperatureFilter)
+//                .to(OUTPUT_TOPIC);
+    }
 }
@@ -1,5 +1,7 @@
 package course.kafka.streams;
 
+import course.kafka.query.StateQueryServer;
+import course.kafka.util.WordTokenizer;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.StreamsBuilder;
@@ -7,32 +9,31 @@ import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.Topology;
 import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.state.HostInfo;
 
-import java.util.Arrays;
-import java.util.Locale;
+import java.io.IOException;
 import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
 
 public class WordCountDemo {
-    public static void main(String[] args) {
+    public static final String QUERY_HOST = "localhost";
+    public static final int QUERY_PORT = 7070;
+
+    public static void main(String[] args) throws IOException {
+        int queryPort = args.length > 0 ? Integer.parseInt(args[0]) : QUERY_PORT;
+
         // 1) Configure stream
         Properties props = new Properties();
         props.put(StreamsConfig.APPLICATION_ID_CONFIG, "streams-pipe");
         props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
+        props.put(StreamsConfig.APPLICATION_SERVER_CONFIG, QUERY_HOST + ":" + queryPort);
         props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
         props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
         props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
 
         // 2) Create stream builder
         final StreamsBuilder builder = new StreamsBuilder();
-        KStream<String, String> stream = builder.stream("streams-input");
-        stream.flatMapValues(sentence ->
-                        Arrays.asList(sentence.toLowerCase(Locale.getDefault()).split("\\W+")))
-                .groupBy((key, value) -> value)
-                .count(Materialized.as("word-counts-store"))
-                .toStream()
-                .mapValues((key, value) -> String.format("%-15s->%4d", key, value))
-                .to("latest-word-counts");
+        buildTopology(builder);
 
         // 3) Build stream topology
         final Topology topology = builder.build(); // build DAG
@@ -40,12 +41,14 @@ public class WordCountDemo {
 
         // 4) Create streams instance
         final KafkaStreams streams = new KafkaStreams(topology, props);
+        final StateQueryServer queryServer = new StateQueryServer(streams, new HostInfo(QUERY_HOST, queryPort));
         final CountDownLatch latch = new CountDownLatch(1);
 
         // attach shutdown handler to catch Ctrl-c
         Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
             @Override
             public void run() {
+                queryServer.stop();
                 streams.close();
                 latch.countDown();
             }
@@ -54,10 +57,21 @@ public class WordCountDemo {
         // 5) Start streams and await termination
         try {
             streams.start();
+            queryServer.start();
             latch.await();
         } catch (InterruptedException e) {
             System.exit(1);
         }
         System.exit(0);
     }
+
+    public static void buildTopology(StreamsBuilder builder) {
+        KStream<String, String> stream = builder.stream("streams-input");
+        stream.flatMapValues(sentence -> WordTokenizer.words(sentence))
+                .groupBy((key, value) -> value)
+                .count(Materialized.as("word-counts-store"))
+                .toStream()
+                .mapValues((key, value) -> String.format("%-15s->%4d", key, value))
+                .to("latest-word-counts");
+    }
 }
@@ -1,44 +1,49 @@
 package course.kafka.streams;
 
+import course.kafka.query.StateQueryServer;
+import course.kafka.state.BoundedMemoryRocksDBConfig;
+import course.kafka.util.WordTokenizer;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.kstream.Grouped;
 import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.state.HostInfo;
 
-import java.util.Arrays;
-import java.util.Locale;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
 
 public class WordCountDslDemo {
-    public static void main(String[] args) {
+    public static final String QUERY_HOST = "localhost";
+    public static final int QUERY_PORT = 7071;
+    public static final String COMBINER_STORE = "word-counts-combiner-store";
+    public static final Duration COMBINE_INTERVAL = Duration.ofMillis(100); // the exactly_once_v2 commit interval
+
+    public static void main(String[] args) throws IOException {
+        int queryPort = args.length > 0 ? Integer.parseInt(args[0]) : QUERY_PORT;
+
         // 1) Configure stream
         Properties props = new Properties();
         props.put(StreamsConfig.APPLICATION_ID_CONFIG, "streams-pipe");
         props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
+        props.put(StreamsConfig.APPLICATION_SERVER_CONFIG, QUERY_HOST + ":" + queryPort);
         props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
         props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 4);
+        props.put(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG, BoundedMemoryRocksDBConfig.class);
+        props.put(BoundedMemoryRocksDBConfig.TOTAL_MEMORY_CONFIG, 256L * 1024 * 1024);
+        props.put(StreamsConfig.METRICS_RECORDING_LEVEL_CONFIG, "DEBUG"); // publishes RocksDB statistics
         props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
         props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
 
         // 2) Create stream builder
         final StreamsBuilder builder = new StreamsBuilder();
-        KStream<String, String> stream = builder.stream("streams-input");
-//        stream.flatMap((k, sentence) ->
-//                        Arrays.stream(sentence.toLowerCase(Locale.getDefault()).split("\\W+"))
-//                                .map(w -> new KeyValue<String, String>(k, w))
-//                                .collect(Collectors.toList())
-        stream.flatMapValues(sentence ->
-                        Arrays.asList(sentence.toLowerCase(Locale.getDefault()).split("\\W+")))
-//                .repartition(Repartitioned.as("word-counts-store").numberOfPartitions(4))
-                .groupBy((key, value) -> value)
-                .count(Materialized.as("word-counts-store"))
-                .toStream()
-                .mapValues((key, value) -> String.format("%-15s->%4d", key, value))
-                .to("latest-word-counts");
+        buildTopology(builder);
 
         // 3) Build stream topology
         final Topology topology = builder.build(); // build DAG
@@ -46,12 +51,17 @@ public class WordCountDslDemo {
 
         // 4) Create streams instance
         final KafkaStreams streams = new KafkaStreams(topology, props);
+        final StreamThreadAutoscaler autoscaler =
+                new StreamThreadAutoscaler(streams, 1, Math.max(4, Runtime.getRuntime().availableProcessors()));
+        final StateQueryServer queryServer = new StateQueryServer(streams, new HostInfo(QUERY_HOST, queryPort));
         final CountDownLatch latch = new CountDownLatch(1);
 
         // attach shutdown handler to catch Ctrl-c
         Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
             @Override
             public void run() {
+                autoscaler.close();
+                queryServer.stop();
                 streams.close();
                 latch.countDown();
             }
@@ -60,10 +70,32 @@ public class WordCountDslDemo {
         // 5) Start streams and await termination
         try {
             streams.start();
+            autoscaler.start();
+            queryServer.start();
             latch.await();
         } catch (InterruptedException e) {
             System.exit(1);
         }
         System.exit(0);
     }
+
+    public static void buildTopology(StreamsBuilder builder) {
+        builder.addStateStore(Combiner.storeBuilder(COMBINER_STORE, Serdes.String(), Serdes.Long()));
+        KStream<String, String> stream = builder.stream("streams-input");
+//        stream.flatMap((k, sentence) ->
+//                        Arrays.stream(sentence.toLowerCase(Locale.getDefault()).split("\\W+"))
+//                                .map(w -> new KeyValue<String, String>(k, w))
+//                                .collect(Collectors.toList())
+        stream.flatMapValues(sentence -> WordTokenizer.words(sentence))
+//                .repartition(Repartitioned.as("word-counts-store").numberOfPartitions(4))
+                .map((key, word) -> KeyValue.pair(word, 1L))
+                // partial counts per word, so the repartition topic carries each word once per commit
+                .transform(() -> new Combiner<String, Long>(COMBINER_STORE, Long::sum,
+                        Combiner.DEFAULT_MAX_ENTRIES, COMBINE_INTERVAL), COMBINER_STORE)
+                .groupByKey(Grouped.with(Serdes.String(), Serdes.Long()))
+                .reduce(Long::sum, Materialized.as("word-counts-store"))
+                .toStream()
+                .mapValues((key, value) -> String.format("%-15s->%4d", key, value))
+                .to("latest-word-counts");
+    }
 }
@@ -1,19 +1,23 @@
 package course.kafka.streams;
 
+import course.kafka.state.BoundedMemoryRocksDBConfig;
+import course.kafka.util.WordTokenizer;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.Topology;
 import org.apache.kafka.streams.kstream.*;
 
 import java.time.Duration;
-import java.util.Arrays;
-import java.util.Locale;
 import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
 
 public class WordCountDslDemoSplitting {
+    public static final String COMBINER_STORE = "word-lengths-combiner-store";
+    public static final Duration COMBINE_INTERVAL = Duration.ofMillis(100); // the exactly_once_v2 commit interval
+
     public static void main(String[] args) {
         // 1) Configure stream
         Properties props = new Properties();
@@ -21,18 +25,55 @@ public class WordCountDslDemoSplitting {
         props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9093");
         props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, "exactly_once_v2");
         props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 4);
+        props.put(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG, BoundedMemoryRocksDBConfig.class);
+        props.put(BoundedMemoryRocksDBConfig.TOTAL_MEMORY_CONFIG, 256L * 1024 * 1024);
+        props.put(StreamsConfig.METRICS_RECORDING_LEVEL_CONFIG, "DEBUG"); // publishes RocksDB statistics
         props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
         props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
 
         // 2) Create stream builder
         final StreamsBuilder builder = new StreamsBuilder();
+        buildTopology(builder);
+
+        // 3) Build stream topology
+        final Topology topology = builder.build(); // build DAG
+        System.out.println(topology.describe());
+
+        // 4) Create streams instance
+        final KafkaStreams streams = new KafkaStreams(topology, props);
+        final StreamThreadAutoscaler autoscaler =
+                new StreamThreadAutoscaler(streams, 1, Math.max(4, Runtime.getRuntime().availableProcessors()));
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        // attach shutdown handler to catch Ctrl-c
+        Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
+            @Override
+            public void run() {
+                autoscaler.close();
+                streams.close();
+                latch.countDown();
+            }
+        });
+
+        // 5) Start streams and await termination
+        try {
+            streams.start();
+            autoscaler.start();
+            latch.await();
+        } catch (InterruptedException e) {
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    public static void buildTopology(StreamsBuilder builder) {
+        builder.addStateStore(Combiner.storeBuilder(COMBINER_STORE, Serdes.String(), Serdes.Integer()));
         KStream<String, String> stream = builder.stream("streams-input");
 //        stream.flatMap((k, sentence) ->
 //                        Arrays.stream(sentence.toLowerCase(Locale.getDefault()).split("\\W+"))
 //                                .map(w -> new KeyValue<String, String>(k, w))
 //                                .collect(Collectors.toList())
-        var wordsStream = stream.flatMapValues(sentence ->
-                        Arrays.asList(sentence.toLowerCase(Locale.getDefault()).split("\\W+")))
+        var wordsStream = stream.flatMapValues(sentence -> WordTokenizer.words(sentence))
                 .selectKey((key, value) -> value);
 //                .repartition(Repartitioned.as("word-counts-store").numberOfPartitions(4))
 
@@ -45,8 +86,10 @@ public class WordCountDslDemoSplitting {
                         .defaultBranch(Branched.as("C"));            /* default branch */
 
         wordStreamBranches.get("Branch-A")
-                .mapValues((key, value) -> key.length())
-                .groupBy((key, value) -> key.charAt(0) + "", Grouped.valueSerde(Serdes.Integer()))
+                .map((key, value) -> KeyValue.pair(key.charAt(0) + "", key.length()))
+                .transform(() -> new Combiner<String, Integer>(COMBINER_STORE, Integer::sum,
+                        Combiner.DEFAULT_MAX_ENTRIES, COMBINE_INTERVAL), COMBINER_STORE)
+                .groupByKey(Grouped.valueSerde(Serdes.Integer()))
                 .reduce((aggValue, newValue) -> aggValue + newValue /* adder */, Materialized.as("word-lengths-store"))
                 .toStream()
                 .mapValues((key, value) -> String.format("%-15s-> Sum:%4d", key, value.intValue()))
@@ -59,32 +102,5 @@ public class WordCountDslDemoSplitting {
         wordStreamBranches.get("Branch-C")
                 .mapValues((key, value) -> String.format("%-15s", key))
                 .to("latest-latest-word-counts-c");
-
-
-        // 3) Build stream topology
-        final Topology topology = builder.build(); // build DAG
-        System.out.println(topology.describe());
-
-        // 4) Create streams instance
-        final KafkaStreams streams = new KafkaStreams(topology, props);
-        final CountDownLatch latch = new CountDownLatch(1);
-
-        // attach shutdown handler to catch Ctrl-c
-        Runtime.getRuntime().addShutdownHook(new Thread("streams-shutdown-hook") {
-            @Override
-            public void run() {
-                streams.close();
-                latch.countDown();
-            }
-        });
-
-        // 5) Start streams and await termination
-        try {
-            streams.start();
-            latch.await();
-        } catch (InterruptedException e) {
-            System.exit(1);
-        }
-        System.exit(0);
     }
 }
@@ -1,51 +1,120 @@
 package course.kafka.streams;
 
+import course.kafka.util.StringLongHashMap;
+import course.kafka.util.WordTokenizer;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.processor.PunctuationType;
 import org.apache.kafka.streams.processor.api.Processor;
 import org.apache.kafka.streams.processor.api.ProcessorContext;
 import org.apache.kafka.streams.processor.api.Record;
 import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
 
-public class WordCountProcessor implements Processor<String, String, String, String> {
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts words in batches: word deltas are accumulated in a heap {@link StringLongHashMap} and applied to the counts
+ * store with a single putAll when the flush interval elapses or maxPendingWords distinct words are pending. Each
+ * flush forwards the new total of every word counted since the previous flush, so at flush boundaries store and
+ * output equal those of counting word by word. The flush interval is capped at the commit interval, so the deltas
+ * reach the stores about once per commit instead of with a store round-trip per word.
+ * <p>
+ * On close (rebalance or shutdown) the deltas still on heap are moved to the pending store, which is cached and
+ * changelogged like the buffer of {@link Combiner}, so they are committed together with the input offsets and
+ * applied by the first flush after the restore. Only a crash loses the deltas counted since the last flush.
+ */
+public class WordCountProcessor implements Processor<String, String, String, Long> {
+    public static final String STORE_NAME = "inmemory-word-counts";
+    public static final String PENDING_STORE_NAME = "inmemory-word-count-deltas";
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+    public static final int DEFAULT_MAX_PENDING_WORDS = 10_000;
+
+    private final Duration flushInterval;
+    private final int maxPendingWords;
+    private final WordTokenizer tokenizer = new WordTokenizer();
+    private final StringLongHashMap pending;
+    private long pendingTimestamp = Long.MIN_VALUE;
     private KeyValueStore<String, Long> kvStore;
-    private ProcessorContext<String, String> context;
+    private KeyValueStore<String, Long> pendingStore;
+    private ProcessorContext<String, Long> context;
+
+    public WordCountProcessor() {
+        this(DEFAULT_FLUSH_INTERVAL, DEFAULT_MAX_PENDING_WORDS);
+    }
+
+    public WordCountProcessor(Duration flushInterval, int maxPendingWords) {
+        this.flushInterval = flushInterval;
+        this.maxPendingWords = maxPendingWords;
+        this.pending = new StringLongHashMap(maxPendingWords);
+    }
+
+    public static StoreBuilder<KeyValueStore<String, Long>> pendingStoreBuilder() {
+        return Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(PENDING_STORE_NAME),
+                        Serdes.String(), Serdes.Long())
+                .withCachingEnabled()
+                .withLoggingEnabled(Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+    }
 
     @Override
-    public void init(ProcessorContext<String, String> context) {
+    public void init(ProcessorContext<String, Long> context) {
         this.context = context;
-//        context.schedule(Duration.ofSeconds(1), PunctuationType.STREAM_TIME, timestamp -> {
-//            try (final KeyValueIterator<String, Long> iter = kvStore.all()) {
-//                while (iter.hasNext()) {
-//                    final KeyValue<String, Long> entry = iter.next();
-//                    context.forward(new Record<>(
-//                            entry.key,
-//                            String.format("%-15s -> %4d", entry.key, entry.value),
-//                            timestamp
-//                    ));
-//                }
-//            }
-//        });
-        kvStore = context.getStateStore("inmemory-word-counts");
+        kvStore = context.getStateStore(STORE_NAME);
+        pendingStore = context.getStateStore(PENDING_STORE_NAME);
+        Object commitInterval = context.appConfigs().get(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG);
+        Duration interval = commitInterval == null ? flushInterval
+                : Collections.min(List.of(flushInterval, Duration.ofMillis(((Number) commitInterval).longValue())));
+        context.schedule(interval, PunctuationType.WALL_CLOCK_TIME, this::flush);
     }
 
     @Override
     public void process(Record<String, String> record) {
-        final String[] words = record.value().toLowerCase().split("\\W+");
+        tokenizer.forEachWord(record.value(), word -> pending.addTo(word, 1));
+        pendingTimestamp = Math.max(pendingTimestamp, record.timestamp());
+        if (pending.size() >= maxPendingWords) {
+            flush(pendingTimestamp);
+        }
+    }
+
+    // deltas restored from the pending store carry no timestamp, they are forwarded with the one of the flush
+    private void flush(long timestamp) {
+        long outputTimestamp = pendingTimestamp == Long.MIN_VALUE ? timestamp : pendingTimestamp;
+        List<KeyValue<String, Long>> restored = new ArrayList<>();
+        try (var iter = pendingStore.all()) {
+            iter.forEachRemaining(restored::add);
+        }
+        for (var delta : restored) {
+            pending.addTo(delta.key, delta.value);
+            pendingStore.delete(delta.key);
+        }
+        if (pending.isEmpty()) return;
 
-        for (final String word : words) {
+        List<KeyValue<String, Long>> updates = new ArrayList<>(pending.size());
+        pending.forEach((word, delta) -> {
             Long oldVal = kvStore.get(word);
-            if (oldVal == null) {
-                oldVal = 0L;
-            }
-            kvStore.put(word, oldVal + 1);
-            context.forward(new Record<>(
-                    word,
-                    String.format("%-15s -> %4d", word, oldVal + 1),
-                    record.timestamp()
-            ));
+            updates.add(KeyValue.pair(word, oldVal == null ? delta : oldVal + delta));
+        });
+        kvStore.putAll(updates);
+        for (var update : updates) {
+            context.forward(new Record<>(update.key, update.value, outputTimestamp));
         }
+        pending.clear();
+        pendingTimestamp = Long.MIN_VALUE;
     }
 
     @Override
     public void close() {
+        pending.forEach((word, delta) -> {
+            Long oldDelta = pendingStore.get(word);
+            pendingStore.put(word, oldDelta == null ? delta : oldDelta + delta);
+        });
+        pending.clear();
     }
 }
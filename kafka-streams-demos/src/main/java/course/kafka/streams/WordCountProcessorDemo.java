@@ -1,7 +1,11 @@
 package course.kafka.streams;
 
+import course.kafka.listener.RestoreProgressListener;
+import course.kafka.state.SnapshottingKeyValueBytesStoreSupplier;
 import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.serialization.LongSerializer;
 import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.Topology;
@@ -25,30 +29,15 @@ public class WordCountProcessorDemo {
         props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
         props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
 
-        // 2) Provide supplier for local state stores
-        Map<String, String> changelogConfig = new HashMap();
-        changelogConfig.put(TopicConfig.MIN_IN_SYNC_REPLICAS_CONFIG, "1");
-
-        StoreBuilder<KeyValueStore<String, Long>> countStoreSupplier =
-                Stores.keyValueStoreBuilder(
-                        Stores.inMemoryKeyValueStore("inmemory-word-counts"),
-                        Serdes.String(),
-                        Serdes.Long())
-                        .withLoggingEnabled(changelogConfig);
-
+        // 2) Create processors DAG
+        final Topology topology = buildTopology();
 
-        // 3) Create stream builder
-        final Topology topology = new Topology(); // Configure processors DAG
-        topology.addSource("Source", "streams-input")
-                .addProcessor("Process", WordCountProcessor::new, "Source")
-                .addStateStore(countStoreSupplier, "Process")
-                .addSink("Sink", "latest-word-counts", "Process");
-
-        // 4) Describe stream topology - optional
+        // 3) Describe stream topology - optional
         System.out.println(topology.describe());
 
-        // 5) Create streams instance
+        // 4) Create streams instance
         final KafkaStreams streams = new KafkaStreams(topology, props);
+        streams.setGlobalStateRestoreListener(new RestoreProgressListener());
         final CountDownLatch latch = new CountDownLatch(1);
 
         // attach shutdown handler to catch Ctrl-c
@@ -60,7 +49,7 @@ public class WordCountProcessorDemo {
             }
         });
 
-        // 6) Start streams and await termination
+        // 5) Start streams and await termination
         try {
             streams.start();
             latch.await();
@@ -69,4 +58,25 @@ public class WordCountProcessorDemo {
         }
         System.exit(0);
     }
+
+    public static Topology buildTopology() {
+        // provide supplier for local state stores
+        Map<String, String> changelogConfig = new HashMap();
+        changelogConfig.put(TopicConfig.MIN_IN_SYNC_REPLICAS_CONFIG, "1");
+
+        StoreBuilder<KeyValueStore<String, Long>> countStoreSupplier =
+                Stores.keyValueStoreBuilder(
+                        new SnapshottingKeyValueBytesStoreSupplier("inmemory-word-counts"),
+                        Serdes.String(),
+                        Serdes.Long())
+                        .withLoggingEnabled(changelogConfig);
+
+        final Topology topology = new Topology(); // Configure processors DAG
+        topology.addSource("Source", "streams-input")
+                .addProcessor("Process", () -> new WordCountProcessor(), "Source")
+                .addStateStore(countStoreSupplier, "Process")
+                .addStateStore(WordCountProcessor.pendingStoreBuilder(), "Process")
+                .addSink("Sink", "latest-word-counts", new StringSerializer(), new LongSerializer(), "Process");
+        return topology;
+    }
 }
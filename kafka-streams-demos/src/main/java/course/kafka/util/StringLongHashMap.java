@@ -0,0 +1,103 @@
+package course.kafka.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from strings to primitive longs - no boxing and no entry objects per key.
+ * Keys may be passed as any CharSequence with the content of the string.
+ * Meant for short lived counters that are cleared after each flush, so removal of single keys is not supported.
+ */
+public class StringLongHashMap {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private String[] keys;
+    private long[] values;
+    private int size;
+
+    public StringLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new String[capacity];
+        values = new long[capacity];
+    }
+
+    // a String is allocated only when the key is new, so reusable CharSequence views can be counted cheaply
+    public long addTo(CharSequence key, long delta) {
+        int slot = slot(keys, key);
+        if (keys[slot] == null) {
+            keys[slot] = key.toString();
+            values[slot] = delta;
+            if (++size > keys.length * LOAD_FACTOR) {
+                rehash(keys.length * 2);
+            }
+            return delta;
+        }
+        return values[slot] += delta;
+    }
+
+    public long get(CharSequence key) {
+        int slot = slot(keys, key);
+        return keys[slot] == null ? 0 : values[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(Consumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    // linear probing - capacity is a power of two and never full, so the loop always terminates
+    private static int slot(String[] keys, CharSequence key) {
+        int mask = keys.length - 1;
+        int h = hash(key);
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (keys[slot] != null && !keys[slot].contentEquals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // same as String.hashCode(), which Strings have cached
+    private static int hash(CharSequence key) {
+        if (key instanceof String) return key.hashCode();
+        int h = 0;
+        for (int i = 0; i < key.length(); i++) {
+            h = 31 * h + key.charAt(i);
+        }
+        return h;
+    }
+
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new String[capacity];
+        values = new long[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+        void accept(String key, long value);
+    }
+}
@@ -0,0 +1,117 @@
+package course.kafka.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single pass replacement of {@code text.toLowerCase().split("\\W+")}: words are the maximal runs of ASCII
+ * letters, digits and underscores, lowercased while scanning. Edge cases follow {@link String#split}: a text
+ * starting with a delimiter yields a leading empty word, trailing delimiters yield nothing, an empty text yields
+ * a single empty word and a text of delimiters only yields no words at all.
+ * <p>
+ * Unlike the regex version lowercasing does not depend on the default locale, and non-ASCII characters are always
+ * delimiters - also the few whose lowercase form is ASCII, like the Kelvin sign.
+ * <p>
+ * An instance reuses its buffer and token view, so it must not be shared between threads.
+ */
+public class WordTokenizer {
+    private static final ThreadLocal<WordTokenizer> TOKENIZERS = ThreadLocal.withInitial(WordTokenizer::new);
+
+    private final Token token = new Token();
+
+    /**
+     * Calls the consumer for each word of the text. The word view is only valid during the call -
+     * use {@code toString()} to keep it.
+     */
+    public void forEachWord(CharSequence text, WordConsumer consumer) {
+        int length = text.length();
+        if (length == 0) {
+            consumer.accept(token.reset());
+            return;
+        }
+        boolean leadingEmptyWord = !isWordChar(text.charAt(0));
+        token.reset();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (isWordChar(c)) {
+                token.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+            } else if (token.length > 0) {
+                leadingEmptyWord = emit(consumer, leadingEmptyWord);
+            }
+        }
+        if (token.length > 0) {
+            emit(consumer, leadingEmptyWord);
+        }
+    }
+
+    // convenience for DSL operators like flatMapValues, using a tokenizer per thread
+    public static List<String> words(CharSequence text) {
+        List<String> words = new ArrayList<>();
+        TOKENIZERS.get().forEachWord(text, word -> words.add(word.toString()));
+        return words;
+    }
+
+    private boolean emit(WordConsumer consumer, boolean leadingEmptyWord) {
+        if (leadingEmptyWord) {
+            int wordLength = token.length;
+            token.length = 0;
+            consumer.accept(token);
+            token.length = wordLength;
+        }
+        consumer.accept(token);
+        token.reset();
+        return false;
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    @FunctionalInterface
+    public interface WordConsumer {
+        void accept(CharSequence word);
+    }
+
+    // reusable view over the lowercased characters of the current word
+    private static final class Token implements CharSequence {
+        private char[] chars = new char[32];
+        private int length;
+
+        Token reset() {
+            length = 0;
+            return this;
+        }
+
+        void append(char c) {
+            if (length == chars.length) {
+                var grown = new char[chars.length * 2];
+                System.arraycopy(chars, 0, grown, 0, length);
+                chars = grown;
+            }
+            chars[length++] = c;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of word length " + length);
+            }
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package course.kafka.cep;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Produced;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PatternTransformerTest {
+    public static final String INPUT_TOPIC = "temperature";
+    public static final String OUTPUT_TOPIC = "alerts";
+    public static final String STORE = "pattern-store";
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, Double> input;
+    private TestOutputTopic<String, String> output;
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    @DisplayName("When readings above the limit keep rising within the time, then the pattern matches once per key")
+    void matchesRisingReadings() {
+        // GIVEN
+        createDriver(Pattern.<Double>begin("above", t -> t > 40)
+                .next("rising", (previous, t) -> t > previous).times(3)
+                .within(Duration.ofSeconds(30))
+                .named("rising"));
+
+        // WHEN
+        input.pipeInput("sensor-1", 41.0, 1000);
+        input.pipeInput("sensor-2", 45.0, 1500);
+        input.pipeInput("sensor-1", 42.0, 2000);
+        input.pipeInput("sensor-2", 44.0, 2500); // breaks the run of sensor-2
+        input.pipeInput("sensor-1", 43.0, 3000);
+        input.pipeInput("sensor-2", 46.0, 3500);
+        input.pipeInput("sensor-1", 44.0, 4000);
+        input.pipeInput("sensor-1", 45.0, 5000); // the runs were discarded by the match
+        input.pipeInput("sensor-2", 47.0, 40000); // too late for the run started at 2500
+        input.pipeInput("sensor-2", 48.0, 41000);
+
+        // THEN
+        assertThat(output.readValuesToList()).containsExactly("rising:4:1000-4000");
+    }
+
+    @Test
+    @DisplayName("When a condition holds for the lasting time, then the pattern matches, and a break restarts it")
+    void matchesLastingCondition() {
+        // GIVEN
+        createDriver(Pattern.<Double>begin("diverging", d -> d > 20)
+                .lasting(Duration.ofMinutes(10))
+                .named("diverging"));
+        long minute = Duration.ofMinutes(1).toMillis();
+
+        // WHEN
+        for (int i = 0; i <= 6; i++) {
+            input.pipeInput("sensor-1", 25.0, i * minute);
+        }
+        input.pipeInput("sensor-1", 15.0, 7 * minute);
+        for (int i = 8; i <= 18; i++) {
+            input.pipeInput("sensor-1", 25.0, i * minute);
+        }
+
+        // THEN
+        assertThat(output.readValuesToList()).containsExactly("diverging:11:" + 8 * minute + "-" + 18 * minute);
+        assertThat(driver.getKeyValueStore(STORE).get("sensor-1")).isNull();
+    }
+
+    private void createDriver(Pattern<Double> pattern) {
+        StreamsBuilder builder = new StreamsBuilder();
+        PatternTransformer.addStore(builder, STORE, Serdes.String());
+        builder.stream(INPUT_TOPIC, Consumed.with(Serdes.String(), Serdes.Double()))
+                .transform(() -> new PatternTransformer<>(STORE, Serdes.Double(), pattern), STORE)
+                .mapValues(match -> match.getPattern() + ":" + match.getEvents() + ":"
+                        + match.getStartTimestamp() + "-" + match.getEndTimestamp())
+                .to(OUTPUT_TOPIC, Produced.with(Serdes.String(), Serdes.String()));
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "pattern-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:1234");
+        driver = new TopologyTestDriver(builder.build(), props);
+        input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.Double().serializer());
+        output = driver.createOutputTopic(OUTPUT_TOPIC, Serdes.String().deserializer(), Serdes.String().deserializer());
+    }
+}
@@ -0,0 +1,72 @@
+package course.kafka.consumer;
+
+import course.kafka.consumer.ConsumerGroupAutoscaler.Decision;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConsumerGroupAutoscalerTest {
+    public static final long CHECK_INTERVAL_MS = 15_000;
+
+    private ConsumerGroupAutoscaler autoscaler;
+
+    @BeforeEach
+    void setUp() {
+        var group = new TemperatureConsumerGroup("autoscaler-test", "temperature", ex -> {}, reading -> {});
+        autoscaler = new ConsumerGroupAutoscaler(group, 1, 4, Duration.ofMillis(CHECK_INTERVAL_MS),
+                10_000, 1_000, 100, 3, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        autoscaler.close();
+    }
+
+    @Test
+    @DisplayName("When the lag stays high, then members are added after the stable checks until one would be idle")
+    void scalesUpUntilMembersWouldBeIdle() {
+        // GIVEN
+        long now = 0;
+        assertThat(autoscaler.decide(50_000, 500, 2, 0, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.HOLD);
+        assertThat(autoscaler.decide(50_000, 500, 2, 0, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.HOLD);
+
+        // WHEN
+        var decision = autoscaler.decide(50_000, 500, 2, 0, now += CHECK_INTERVAL_MS);
+
+        // THEN
+        assertThat(decision).isEqualTo(Decision.SCALE_UP);
+        for (int i = 0; i < 3; i++) { // still lagging, but within the 1 minute cooldown
+            assertThat(autoscaler.decide(50_000, 500, 3, 0, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.HOLD);
+        }
+        for (int i = 0; i < 5; i++) { // a member has no partitions, so another one would not help
+            assertThat(autoscaler.decide(50_000, 500, 3, 1, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.HOLD);
+        }
+        assertThat(autoscaler.metrics().metrics()).isNotEmpty();
+    }
+
+    @Test
+    @DisplayName("When the lag is low and the members are almost idle, then members are removed down to the minimum")
+    void scalesDownToMinimum() {
+        // GIVEN
+        long now = 0;
+        for (int i = 0; i < 5; i++) { // low lag, but the members are busy keeping it low
+            assertThat(autoscaler.decide(100, 800, 2, 0, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.HOLD);
+        }
+        assertThat(autoscaler.decide(100, 20, 2, 0, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.HOLD);
+        assertThat(autoscaler.decide(100, 20, 2, 0, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.HOLD);
+
+        // WHEN
+        var decision = autoscaler.decide(100, 20, 2, 0, now += CHECK_INTERVAL_MS);
+
+        // THEN
+        assertThat(decision).isEqualTo(Decision.SCALE_DOWN);
+        for (int i = 0; i < 10; i++) { // idle, but already at the minimum
+            assertThat(autoscaler.decide(0, 0, 1, 0, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.HOLD);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package course.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeyOrderedDispatcherTest {
+    public static final String TOPIC = "temperature";
+
+    @Test
+    @DisplayName("When partitions are lost, then their progress is dropped without commit")
+    void dropsLostPartitionsWithoutCommit() throws InterruptedException {
+        // GIVEN
+        TopicPartition tp = new TopicPartition(TOPIC, 0);
+        Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+        var consumer = new MockConsumer<String, String>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+                super.commitSync(offsets);
+                committed.putAll(offsets);
+            }
+        };
+        consumer.assign(List.of(tp));
+        var release = new CountDownLatch(1);
+        var processed = new CountDownLatch(64);
+        var dispatcher = new KeyOrderedDispatcher<String, String>(consumer, record -> {
+            try {
+                if (record.offset() >= 10) release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            processed.countDown();
+        }, 2, 64);
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        for (int i = 0; i < 70; i++) { // beyond the window of 64 offsets
+            records.add(new ConsumerRecord<>(TOPIC, 0, i, "sensor-" + i % 4, "reading-" + i));
+        }
+        dispatcher.dispatch(new ConsumerRecords<>(Map.of(tp, records)));
+        assertThat(consumer.paused()).containsExactly(tp);
+
+        while (processed.getCount() > 54) Thread.sleep(1); // the first 10 offsets are committable
+
+        // WHEN
+        dispatcher.onPartitionsLost(List.of(tp));
+        release.countDown();
+        processed.await();
+        dispatcher.update();
+        dispatcher.close();
+
+        // THEN
+        assertThat(committed).isEmpty();
+    }
+
+    @Test
+    @DisplayName("When a lost partition is assigned again, then completions of the lost assignment are not committed")
+    void ignoresCompletionsOfLostAssignment() throws InterruptedException {
+        // GIVEN
+        TopicPartition tp = new TopicPartition(TOPIC, 0);
+        Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+        var consumer = new MockConsumer<String, String>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+                super.commitSync(offsets);
+                committed.putAll(offsets);
+            }
+        };
+        consumer.assign(List.of(tp));
+        var releaseLost = new CountDownLatch(1);
+        var releaseAssigned = new CountDownLatch(1);
+        var processed = new CountDownLatch(15);
+        var dispatcher = new KeyOrderedDispatcher<String, String>(consumer, record -> {
+            try {
+                if (record.value().startsWith("lost")) releaseLost.await();
+                else if (record.offset() >= 5) releaseAssigned.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            processed.countDown();
+        }, 2, 64);
+        dispatcher.dispatch(records("lost", "a")); // lanes differ for keys "a" and "b"
+        dispatcher.onPartitionsLost(List.of(tp));
+
+        // WHEN
+        dispatcher.onPartitionsAssigned(List.of(tp));
+        dispatcher.dispatch(records("assigned", "b"));
+        releaseLost.countDown();
+        processed.await(); // all lost records and the first 5 assigned ones
+        dispatcher.update();
+
+        // THEN
+        assertThat(committed.get(tp).offset()).isEqualTo(5);
+        releaseAssigned.countDown();
+        dispatcher.close();
+        assertThat(committed.get(tp).offset()).isEqualTo(10);
+    }
+
+    private static ConsumerRecords<String, String> records(String value, String key) {
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            records.add(new ConsumerRecord<>(TOPIC, 0, i, key, value + "-" + i));
+        }
+        return new ConsumerRecords<>(Map.of(new TopicPartition(TOPIC, 0), records));
+    }
+}
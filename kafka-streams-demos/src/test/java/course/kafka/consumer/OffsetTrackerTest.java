@@ -0,0 +1,46 @@
+package course.kafka.consumer;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffsetTrackerTest {
+
+    @Test
+    @DisplayName("When offsets complete out of order, then only the contiguous completed offsets are committable")
+    void commitsContiguousOffsets() {
+        // GIVEN
+        var tracker = new OffsetTracker(64);
+        for (long offset = 100; offset < 110; offset++) tracker.dispatched(offset);
+        tracker.dispatched(115); // 110 - 114 compacted away
+
+        // WHEN - THEN
+        tracker.completed(101, true);
+        tracker.completed(102, true);
+        assertThat(tracker.committable()).isEqualTo(100);
+        tracker.completed(100, true);
+        assertThat(tracker.committable()).isEqualTo(103);
+        for (long offset = 103; offset < 110; offset++) tracker.completed(offset, offset != 105);
+        assertThat(tracker.committable()).isEqualTo(105);
+        assertThat(tracker.inFlight()).isEqualTo(1);
+        assertThat(tracker.hasCapacity(105 + 63)).isTrue();
+        assertThat(tracker.hasCapacity(105 + 64)).isFalse();
+    }
+
+    @Test
+    @DisplayName("When an offset below the window completes, then it is ignored")
+    void ignoresOffsetsBelowWindow() {
+        // GIVEN
+        var tracker = new OffsetTracker(64);
+        for (long offset = 100; offset < 110; offset++) tracker.dispatched(offset);
+
+        // WHEN
+        tracker.completed(100 - 64 + 5, true); // same ring bit as 105
+
+        // THEN
+        for (long offset = 100; offset < 105; offset++) tracker.completed(offset, true);
+        assertThat(tracker.committable()).isEqualTo(105);
+        assertThat(tracker.inFlight()).isEqualTo(5);
+    }
+}
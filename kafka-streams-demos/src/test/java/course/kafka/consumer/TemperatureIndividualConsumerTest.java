@@ -4,6 +4,7 @@ import course.kafka.model.TemperatureReading;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.consumer.OffsetResetStrategy;
 import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.TopicPartition;
@@ -18,6 +19,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -111,6 +113,51 @@ class TemperatureIndividualConsumerTest {
     }
 
 
+    @Test
+    @DisplayName("When consuming in parallel, then readings of a sensor keep their order and only processed offsets are committed")
+    void consumeInParallel() {
+        // GIVEN
+        List<TemperatureReading> readings = Collections.synchronizedList(new ArrayList<>());
+        Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+                super.commitSync(offsets);
+                committed.putAll(offsets);
+            }
+        };
+        temperatureConsumer = new TemperatureIndividualConsumer(consumer, ex -> this.pollException = ex, reading -> {
+            try {
+                Thread.sleep(reading.getSensorId().equals("TempSensor01") ? 5 : 1); // blocking I/O
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            readings.add(reading);
+        }, Duration.ofMillis(POLLING_DURATION_MS), 4, 8);
+        TopicPartition tp = new TopicPartition(TOPIC, PARTITION);
+        consumer.schedulePollTask(() -> {
+            for (int i = 0; i < 20; i++) {
+                String sensorId = "TempSensor0" + (i % 4 + 1);
+                consumer.addRecord(new ConsumerRecord<>(TOPIC, PARTITION, START_OFFSET + i, sensorId,
+                        new TemperatureReading(String.valueOf(i), sensorId, i, TEMP_READING_TIMESTAMP)));
+            }
+        });
+        for (int i = 0; i < 20; i++) consumer.schedulePollTask(() -> { });
+        consumer.schedulePollTask(() -> temperatureConsumer.stop());
+        consumer.updateBeginningOffsets(Map.of(tp, START_OFFSET));
+
+        // WHEN
+        temperatureConsumer.startByAssigning(TOPIC, PARTITION);
+
+        // THEN
+        assertThat(pollException).isNull();
+        assertThat(readings).hasSize(20);
+        assertThat(readings.stream().filter(reading -> reading.getSensorId().equals("TempSensor01"))
+                .map(TemperatureReading::getValue)).containsExactly(0.0, 4.0, 8.0, 12.0, 16.0);
+        assertThat(committed.get(tp).offset()).isEqualTo(START_OFFSET + 20);
+        assertThat(consumer.closed()).isTrue();
+    }
+
     @Test
     @DisplayName("When startingBySubscribing(Topic) and WakeupException occurs, then expect consumer is canceled correctly")
     void stop() {
@@ -0,0 +1,84 @@
+package course.kafka.model;
+
+import course.kafka.serialization.DoubleStatisticsDeserializer;
+import course.kafka.serialization.DoubleStatisticsSerializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class DoubleStatisticsTest {
+    public static final String TOPIC = "temperature-statistics";
+    public static final double[] READINGS = {-12.5, 3.25, 18.0, 25.75, 31.5, 7.0, -3.125};
+
+    @Test
+    @DisplayName("When values are added, then count, sum, average, min, max and variance are computed correctly")
+    void add() {
+        // GIVEN
+        var stats = new DoubleStatistics();
+
+        // WHEN
+        for (int i = 0; i < READINGS.length; i++) {
+            stats.add(READINGS[i], 1000L + i);
+        }
+
+        // THEN
+        double sum = 0;
+        for (double reading : READINGS) sum += reading;
+        double mean = sum / READINGS.length;
+        double squares = 0;
+        for (double reading : READINGS) squares += (reading - mean) * (reading - mean);
+        assertThat(stats.getCount()).isEqualTo(READINGS.length);
+        assertThat(stats.getSum()).isCloseTo(sum, within(1e-9));
+        assertThat(stats.getAverage()).isCloseTo(mean, within(1e-12));
+        assertThat(stats.getVariance()).isCloseTo(squares / (READINGS.length - 1), within(1e-9));
+        assertThat(stats.getMin()).isEqualTo(-12.5);
+        assertThat(stats.getMax()).isEqualTo(31.5);
+        assertThat(stats.getTimestamp()).isEqualTo(1000L + READINGS.length - 1);
+    }
+
+    @Test
+    @DisplayName("When partial aggregates are merged, then result equals aggregating all values at once")
+    void merge() {
+        // GIVEN
+        var rand = new Random(42);
+        var all = new DoubleStatistics();
+        var left = new DoubleStatistics();
+        var right = new DoubleStatistics();
+        for (int i = 0; i < 1000; i++) {
+            double value = 1e6 + rand.nextGaussian();
+            all.add(value, i);
+            (i % 3 == 0 ? left : right).add(value, i);
+        }
+
+        // WHEN
+        var merged = new DoubleStatistics().merge(left).merge(right);
+
+        // THEN
+        assertThat(merged.getCount()).isEqualTo(all.getCount());
+        assertThat(merged.getAverage()).isCloseTo(all.getAverage(), within(1e-6));
+        assertThat(merged.getVariance()).isCloseTo(all.getVariance(), within(1e-6));
+        assertThat(merged.getMin()).isEqualTo(all.getMin());
+        assertThat(merged.getMax()).isEqualTo(all.getMax());
+        assertThat(merged.getTimestamp()).isEqualTo(all.getTimestamp());
+    }
+
+    @Test
+    @DisplayName("When serialized, then statistics take 48 bytes and are deserialized unchanged")
+    void serialization() {
+        // GIVEN
+        var stats = new DoubleStatistics();
+        for (double reading : READINGS) stats.add(reading, 42L);
+
+        // WHEN
+        var bytes = new DoubleStatisticsSerializer().serialize(TOPIC, stats);
+        var result = new DoubleStatisticsDeserializer().deserialize(TOPIC, bytes);
+
+        // THEN
+        assertThat(bytes).hasSize(DoubleStatistics.SERIALIZED_SIZE);
+        assertThat(result).isEqualTo(stats);
+    }
+}
@@ -0,0 +1,96 @@
+package course.kafka.model;
+
+import course.kafka.serialization.HeavyHittersDeserializer;
+import course.kafka.serialization.HeavyHittersSerializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeavyHittersTest {
+    public static final String TOPIC = "word-heavy-hitters";
+    public static final int VOCABULARY = 50_000;
+    public static final int WORDS = 200_000;
+    public static final double EPSILON = 0.001;
+    public static final double DELTA = 0.01;
+
+    @Test
+    @DisplayName("When Zipf distributed words are added, then the top words and their counts are within the error bound")
+    void topWordsWithinErrorBound() {
+        // GIVEN
+        var exact = new HashMap<String, Long>();
+        var heavyHitters = new HeavyHitters(10, EPSILON, DELTA);
+
+        // WHEN
+        for (String word : zipfWords(new Random(42))) {
+            exact.merge(word, 1L, Long::sum);
+            heavyHitters.add(word, 1);
+        }
+
+        // THEN
+        var top = heavyHitters.top();
+        assertThat(top.keySet()).containsExactlyElementsOf(exactTop(exact, 10));
+        top.forEach((word, estimate) -> assertThat(estimate)
+                .isBetween(exact.get(word), exact.get(word) + (long) (EPSILON * WORDS)));
+        assertThat(heavyHitters.memoryBytes())
+                .isEqualTo(8L * CountMinSketch.width(EPSILON) * CountMinSketch.depth(DELTA));
+    }
+
+    @Test
+    @DisplayName("When partition summaries are serialized and merged, then the top words equal those of all words")
+    void mergeAndSerialization() {
+        // GIVEN
+        var serializer = new HeavyHittersSerializer();
+        var deserializer = new HeavyHittersDeserializer();
+        var words = zipfWords(new Random(7));
+        var exact = new HashMap<String, Long>();
+        var partitions = new HeavyHitters[3];
+        for (int p = 0; p < partitions.length; p++) {
+            partitions[p] = new HeavyHitters(50, EPSILON, DELTA);
+        }
+
+        // WHEN
+        for (int i = 0; i < words.size(); i++) {
+            exact.merge(words.get(i), 1L, Long::sum);
+            partitions[i % partitions.length].add(words.get(i), 1);
+        }
+        var merged = partitions[0].emptyCopy();
+        for (var partition : partitions) {
+            merged.merge(deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, partition)));
+        }
+
+        // THEN
+        assertThat(merged.getTotal()).isEqualTo(WORDS);
+        assertThat(merged.top().keySet().stream().limit(10).collect(Collectors.toList()))
+                .containsExactlyElementsOf(exactTop(exact, 10));
+        var restored = deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, merged));
+        assertThat(restored.top()).isEqualTo(merged.top());
+    }
+
+    // rank r has probability proportional to 1 / r
+    private static List<String> zipfWords(Random rand) {
+        double[] cumulative = new double[VOCABULARY];
+        double sum = 0;
+        for (int r = 0; r < VOCABULARY; r++) {
+            sum += 1.0 / (r + 1);
+            cumulative[r] = sum;
+        }
+        List<String> words = new ArrayList<>(WORDS);
+        for (int i = 0; i < WORDS; i++) {
+            int rank = Arrays.binarySearch(cumulative, rand.nextDouble() * sum);
+            words.add("word" + (rank < 0 ? -rank - 1 : rank));
+        }
+        return words;
+    }
+
+    private static List<String> exactTop(Map<String, Long> counts, int k) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(k)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,75 @@
+package course.kafka.model;
+
+import course.kafka.serialization.QuantileSketchDeserializer;
+import course.kafka.serialization.QuantileSketchSerializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QuantileSketchTest {
+    public static final String TOPIC = "temperature-quantiles";
+    public static final double[] QUANTILES = {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99};
+
+    @Test
+    @DisplayName("When readings are added, then quantiles are within the relative accuracy of the exact ones")
+    void quantilesWithinRelativeAccuracy() {
+        // GIVEN
+        var rand = new Random(42);
+        var sketch = new QuantileSketch();
+        var values = new double[10_000];
+
+        // WHEN
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 15 + rand.nextGaussian() * 12;
+            sketch.add(values[i]);
+        }
+
+        // THEN
+        Arrays.sort(values);
+        assertThat(sketch.getCount()).isEqualTo(values.length);
+        for (double q : QUANTILES) {
+            double exact = values[(int) Math.floor(q * (values.length - 1))];
+            assertThat(Math.abs(sketch.quantile(q) - exact))
+                    .as("quantile %s", q)
+                    .isLessThanOrEqualTo(sketch.getRelativeAccuracy() * Math.abs(exact) + 1e-12);
+        }
+        assertThat(sketch.quantile(0)).isEqualTo(values[0]);
+        assertThat(sketch.quantile(1)).isEqualTo(values[values.length - 1]);
+    }
+
+    @Test
+    @DisplayName("When window sketches are merged and serialized, then quantiles equal those of a single sketch")
+    void mergeAndSerialization() {
+        // GIVEN
+        var rand = new Random(7);
+        var all = new QuantileSketch();
+        var daily = new QuantileSketch();
+        var serializer = new QuantileSketchSerializer();
+        var deserializer = new QuantileSketchDeserializer();
+
+        // WHEN
+        for (int window = 0; window < 20; window++) {
+            var windowSketch = new QuantileSketch();
+            for (int i = 0; i < 100; i++) {
+                double value = rand.nextInt(10) == 0 ? 0 : -10 + rand.nextDouble() * 50;
+                all.add(value);
+                windowSketch.add(value);
+            }
+            daily.merge(deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, windowSketch)));
+        }
+
+        // THEN
+        assertThat(daily.getCount()).isEqualTo(all.getCount());
+        for (double q : QUANTILES) {
+            assertThat(daily.quantile(q)).as("quantile %s", q).isEqualTo(all.quantile(q));
+        }
+        assertThat(serializer.serialize(TOPIC, daily)).hasSizeLessThan(2000);
+        assertThatThrownBy(() -> daily.merge(new QuantileSketch(0.02, QuantileSketch.DEFAULT_MAX_BINS)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
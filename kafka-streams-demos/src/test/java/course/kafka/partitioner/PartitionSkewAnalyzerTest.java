@@ -0,0 +1,106 @@
+package course.kafka.partitioner;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class PartitionSkewAnalyzerTest {
+    public static final double EPSILON = 1e-9;
+
+    // sends each record to the partition given by its key
+    static class KeyAsPartition implements Partitioner {
+        @Override
+        public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+            return Integer.parseInt((String) key);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void configure(Map<String, ?> configs) {
+        }
+    }
+
+    @Test
+    @DisplayName("When the load is uniform, then max/mean is 1 and the Gini coefficient is 0")
+    void uniformDistribution() {
+        // GIVEN
+        long[] counts = {25, 25, 25, 25};
+
+        // WHEN - THEN
+        assertThat(PartitionSkewReport.maxToMean(counts)).isCloseTo(1, within(EPSILON));
+        assertThat(PartitionSkewReport.gini(counts)).isCloseTo(0, within(EPSILON));
+    }
+
+    @Test
+    @DisplayName("When the load is skewed, then max/mean and the Gini coefficient match the known values")
+    void skewedDistributions() {
+        // GIVEN
+        long[] single = {0, 0, 0, 40};
+        long[] linear = {4, 1, 3, 2};
+        long[] empty = {0, 0, 0};
+
+        // WHEN - THEN
+        assertThat(PartitionSkewReport.maxToMean(single)).isCloseTo(4, within(EPSILON));
+        assertThat(PartitionSkewReport.gini(single)).isCloseTo(3.0 / 4, within(EPSILON)); // (N - 1) / N
+        assertThat(PartitionSkewReport.maxToMean(linear)).isCloseTo(1.6, within(EPSILON));
+        assertThat(PartitionSkewReport.gini(linear)).isCloseTo(0.25, within(EPSILON));
+        assertThat(PartitionSkewReport.maxToMean(empty)).isZero();
+        assertThat(PartitionSkewReport.gini(empty)).isZero();
+    }
+
+    @Test
+    @DisplayName("When records are even but their sizes are not, then only the byte skew shows it")
+    void byteSkew() {
+        // GIVEN
+        List<SampleRecord> records = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            int partition = i % 4;
+            // 1 key byte and 99 or 499 value bytes: 1000 bytes on partitions 0 to 2, 5000 bytes on partition 3
+            records.add(new SampleRecord(String.valueOf(partition), new byte[1], null,
+                    new byte[partition == 3 ? 499 : 99]));
+        }
+        var analyzer = new PartitionSkewAnalyzer("key-as-partition", KeyAsPartition::new, Map.of());
+
+        // WHEN
+        var report = analyzer.analyze(records, 4);
+
+        // THEN
+        assertThat(report.isFailed()).isFalse();
+        assertThat(report.getRecordsPerPartition()).containsExactly(10, 10, 10, 10);
+        assertThat(report.getBytesPerPartition()).containsExactly(1000, 1000, 1000, 5000);
+        assertThat(report.getRecordsMaxToMean()).isCloseTo(1, within(EPSILON));
+        assertThat(report.getRecordsGini()).isCloseTo(0, within(EPSILON));
+        assertThat(report.getBytesMaxToMean()).isCloseTo(2.5, within(EPSILON));
+        assertThat(report.getBytesGini()).isCloseTo(0.375, within(EPSILON));
+        assertThat(report.getEmptyPartitions()).isZero();
+    }
+
+    @Test
+    @DisplayName("When the partitioner returns a partition out of range, then the report is failed")
+    void partitionOutOfRange() {
+        // GIVEN
+        var records = List.of(new SampleRecord("0", new byte[1], null, null),
+                new SampleRecord("3", new byte[1], null, null));
+        var analyzer = new PartitionSkewAnalyzer("key-as-partition", KeyAsPartition::new, Map.of());
+
+        // WHEN
+        var reports = analyzer.analyzeMatrix(records, 4, 2);
+
+        // THEN
+        assertThat(reports.get(0).isFailed()).isFalse();
+        assertThat(reports.get(0).getEmptyPartitions()).isEqualTo(2);
+        assertThat(reports.get(1).isFailed()).isTrue();
+        assertThat(reports.get(1).getError()).contains("out of range");
+    }
+}
@@ -0,0 +1,239 @@
+package course.kafka.query;
+
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyQueryMetadata;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.StreamsMetadata;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.state.HostInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StateQueryServerTest {
+    public static final String INPUT_TOPIC = "word-counts";
+    public static final String STORE = "word-counts-store";
+
+    @TempDir
+    Path stateDir;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final List<HostInfo> hosts = new ArrayList<>();
+    private final List<QueryableStreams> instances = new ArrayList<>();
+    private final List<StateQueryServer> servers = new ArrayList<>();
+
+    // answers the metadata and store queries of one instance from a test driver, without a broker
+    private class QueryableStreams extends KafkaStreams {
+        final TopologyTestDriver driver;
+        final AtomicInteger storeQueries = new AtomicInteger();
+
+        QueryableStreams(String name, Map<String, Long> counts) {
+            super(topology(), props(name));
+            driver = new TopologyTestDriver(topology(), props(name + "-driver"));
+            var input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.Long().serializer());
+            counts.forEach(input::pipeInput);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T store(StoreQueryParameters<T> storeQueryParameters) {
+            storeQueries.incrementAndGet();
+            return (T) driver.getKeyValueStore(storeQueryParameters.storeName());
+        }
+
+        @Override
+        public <K> KeyQueryMetadata queryMetadataForKey(String storeName, K key, Serializer<K> keySerializer) {
+            // keys before "n" are hosted by the first instance, the others by the second one
+            return new KeyQueryMetadata(hosts.get(key.toString().compareTo("n") < 0 ? 0 : 1), Set.of(), 0);
+        }
+
+        @Override
+        public Collection<StreamsMetadata> streamsMetadataForStore(String storeName) {
+            return hosts.stream().map(HostMetadata::new).collect(Collectors.toList());
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        hosts.add(new HostInfo("localhost", freePort()));
+        hosts.add(new HostInfo("localhost", freePort()));
+        instances.add(new QueryableStreams("instance-0", Map.of("apache", 3L, "kafka", 5L)));
+        instances.add(new QueryableStreams("instance-1", Map.of("streams", 4L, "topics", 1L)));
+        for (int i = 0; i < instances.size(); i++) {
+            var server = new StateQueryServer(instances.get(i), hosts.get(i));
+            server.start();
+            servers.add(server);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        servers.forEach(StateQueryServer::stop);
+        for (var instance : instances) {
+            instance.driver.close();
+            instance.close();
+        }
+    }
+
+    @Test
+    @DisplayName("When a key is hosted by another instance, then the lookup is routed to it")
+    void routesKeyedQueries() throws Exception {
+        // WHEN
+        var routed = get(hosts.get(0), "/stores/" + STORE + "/keys/streams");
+        var local = get(hosts.get(0), "/stores/" + STORE + "/keys/streams?local=true");
+
+        // THEN
+        assertThat(routed.statusCode()).isEqualTo(200);
+        assertThat(routed.body()).isEqualTo("{\"key\":\"streams\",\"value\":4}");
+        assertThat(local.statusCode()).isEqualTo(404);
+    }
+
+    @Test
+    @DisplayName("When a hot key is looked up again within the time to live, then the store is not queried again")
+    void cachesPointLookups() throws Exception {
+        // GIVEN
+        var first = get(hosts.get(0), "/stores/" + STORE + "/keys/kafka");
+
+        // WHEN
+        var second = get(hosts.get(0), "/stores/" + STORE + "/keys/kafka");
+
+        // THEN
+        assertThat(second.body()).isEqualTo(first.body()).isEqualTo("{\"key\":\"kafka\",\"value\":5}");
+        assertThat(instances.get(0).storeQueries).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("When a range is queried, then the lines of all instances are streamed")
+    void streamsRangesOfAllInstances() throws Exception {
+        // WHEN
+        var response = get(hosts.get(1), "/stores/" + STORE + "/keys");
+
+        // THEN
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).hasValue(StateQueryServer.NDJSON_CONTENT_TYPE);
+        assertThat(response.body().lines()).containsExactlyInAnyOrder(
+                "{\"key\":\"apache\",\"value\":3}", "{\"key\":\"kafka\",\"value\":5}",
+                "{\"key\":\"streams\",\"value\":4}", "{\"key\":\"topics\",\"value\":1}");
+    }
+
+    @Test
+    @DisplayName("When an instance of a range query is down, then the query fails before streaming starts")
+    void failsRangeQueryWithUnreachableInstance() throws Exception {
+        // GIVEN
+        servers.remove(1).stop();
+
+        // WHEN
+        var response = get(hosts.get(0), "/stores/" + STORE + "/keys");
+
+        // THEN
+        assertThat(response.statusCode()).isEqualTo(502);
+        assertThat(response.body()).contains("\"error\"", "localhost:" + hosts.get(1).port());
+    }
+
+    @Test
+    @DisplayName("When a query fails unexpectedly, then it is answered with an internal error")
+    void answersUnexpectedErrors() throws Exception {
+        // WHEN - the key-value store can't be queried as a window store
+        var response = get(hosts.get(0), "/stores/" + STORE + "/windows/kafka?local=true");
+
+        // THEN
+        assertThat(response.statusCode()).isEqualTo(500);
+        assertThat(response.body()).contains("\"error\"");
+    }
+
+    private HttpResponse<String> get(HostInfo host, String path) throws Exception {
+        var uri = URI.create("http://localhost:" + host.port() + path);
+        return client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static Topology topology() {
+        final StreamsBuilder builder = new StreamsBuilder();
+        builder.table(INPUT_TOPIC, Consumed.with(Serdes.String(), Serdes.Long()), Materialized.as(STORE));
+        return builder.build();
+    }
+
+    private Properties props(String name) {
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "state-query-server-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.resolve(name).toString());
+        return props;
+    }
+
+    private static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static final class HostMetadata implements StreamsMetadata {
+        private final HostInfo hostInfo;
+
+        HostMetadata(HostInfo hostInfo) {
+            this.hostInfo = hostInfo;
+        }
+
+        @Override
+        public HostInfo hostInfo() {
+            return hostInfo;
+        }
+
+        @Override
+        public Set<String> stateStoreNames() {
+            return Set.of(STORE);
+        }
+
+        @Override
+        public Set<TopicPartition> topicPartitions() {
+            return Set.of();
+        }
+
+        @Override
+        public Set<TopicPartition> standbyTopicPartitions() {
+            return Set.of();
+        }
+
+        @Override
+        public Set<String> standbyStateStoreNames() {
+            return Set.of();
+        }
+
+        @Override
+        public String host() {
+            return hostInfo.host();
+        }
+
+        @Override
+        public int port() {
+            return hostInfo.port();
+        }
+    }
+}
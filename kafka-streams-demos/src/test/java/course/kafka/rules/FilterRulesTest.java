@@ -0,0 +1,92 @@
+package course.kafka.rules;
+
+import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.rules.FilterRule.Operator;
+import course.kafka.serialization.JsonDeserializer;
+import course.kafka.serialization.JsonSerializer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Produced;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilterRulesTest {
+    public static final String INPUT_TOPIC = "temperature";
+    public static final String OUTPUT_TOPIC = "events";
+
+    private TopologyTestDriver driver;
+
+    @AfterEach
+    void tearDown() {
+        if (driver != null) driver.close();
+    }
+
+    @Test
+    @DisplayName("When global and sensor rules are compiled, then sensor rules replace the global bound of their side")
+    void compilesSensorThresholds() {
+        // GIVEN
+        var rules = CompiledRules.compile(List.of(
+                new FilterRule(Operator.GT, -15),
+                new FilterRule(Operator.LE, 60),
+                new FilterRule(Operator.LT, 50),
+                new FilterRule(Operator.LT, 95, "tHighFrequency-01")));
+
+        // WHEN - THEN
+        assertThat(rules.test("tSensor-01", -15)).isFalse();
+        assertThat(rules.test("tSensor-01", -14.9)).isTrue();
+        assertThat(rules.test("tSensor-01", 49.9)).isTrue();
+        assertThat(rules.test("tSensor-01", 50)).isFalse();
+        assertThat(rules.test("tHighFrequency-01", 94)).isTrue();
+        assertThat(rules.test("tHighFrequency-01", -20)).isFalse();
+        assertThat(rules.test("tHighFrequency-01", Double.NaN)).isFalse();
+    }
+
+    @Test
+    @DisplayName("When rules arrive on the control topic, then the filter switches to them without a restart")
+    void appliesRulesFromTopic() {
+        // GIVEN
+        var readingSerde = Serdes.serdeFrom(
+                new JsonSerializer<TimestampedTemperatureReading>(),
+                new JsonDeserializer<>(TimestampedTemperatureReading.class));
+        StreamsBuilder builder = new StreamsBuilder();
+        var filterRules = FilterRules.addGlobalStore(builder);
+        builder.stream(INPUT_TOPIC, Consumed.with(Serdes.String(), readingSerde))
+                .filter(filterRules.validTemperatureFilter())
+                .mapValues(reading -> reading.getValue())
+                .to(OUTPUT_TOPIC, Produced.with(Serdes.String(), Serdes.Double()));
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "rules-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:1234");
+        driver = new TopologyTestDriver(builder.build(), props);
+        TestInputTopic<String, FilterRule> rules = driver.createInputTopic(FilterRules.RULES_TOPIC,
+                Serdes.String().serializer(), FilterRules.RULE_SERDE.serializer());
+        TestInputTopic<String, TimestampedTemperatureReading> input = driver.createInputTopic(INPUT_TOPIC,
+                Serdes.String().serializer(), readingSerde.serializer());
+        TestOutputTopic<String, Double> output = driver.createOutputTopic(OUTPUT_TOPIC,
+                Serdes.String().deserializer(), Serdes.Double().deserializer());
+        input.pipeInput("tSensor-01", new TimestampedTemperatureReading("tSensor-01", 70, 1000));
+
+        // WHEN
+        rules.pipeInput("max-value", new FilterRule(Operator.LT, 60));
+        rules.pipeInput("tSensor-01-max", new FilterRule(Operator.LT, 80, "tSensor-01"));
+        input.pipeInput("tSensor-01", new TimestampedTemperatureReading("tSensor-01", 70, 2000));
+        input.pipeInput("tSensor-02", new TimestampedTemperatureReading("tSensor-02", 70, 2000));
+        rules.pipeInput("tSensor-01-max", null);
+        input.pipeInput("tSensor-01", new TimestampedTemperatureReading("tSensor-01", 70, 3000));
+
+        // THEN
+        assertThat(output.readValuesToList()).containsExactly(70.0);
+        assertThat(filterRules.current().sensorCount()).isZero();
+    }
+}
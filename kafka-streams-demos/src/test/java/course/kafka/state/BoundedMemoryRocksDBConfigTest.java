@@ -0,0 +1,64 @@
+package course.kafka.state;
+
+import course.kafka.state.BoundedMemoryRocksDBConfig.Profile;
+import org.apache.kafka.streams.state.internals.BlockBasedTableConfigWithAccessibleCache;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.Options;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedMemoryRocksDBConfigTest {
+
+    @Test
+    @DisplayName("When no profile is configured for a store, then it is inferred from the store name")
+    void infersProfileFromStoreName() {
+        // GIVEN
+        Map<String, Object> configs = Map.of(BoundedMemoryRocksDBConfig.STORE_PROFILES_CONFIG,
+                "temperature-statistics:JOIN");
+
+        // WHEN - THEN
+        assertThat(BoundedMemoryRocksDBConfig.profileFor("word-counts-store", Map.of()))
+                .isEqualTo(Profile.KEY_VALUE);
+        assertThat(BoundedMemoryRocksDBConfig.profileFor("temperature-statistics-store.1650000000000", Map.of()))
+                .isEqualTo(Profile.WINDOWED_AGGREGATE);
+        assertThat(BoundedMemoryRocksDBConfig.profileFor("join-temperatures-this-join-store.1650000000000", Map.of()))
+                .isEqualTo(Profile.JOIN);
+        assertThat(BoundedMemoryRocksDBConfig.profileFor("temperature-statistics-store.1650000000000", configs))
+                .isEqualTo(Profile.JOIN);
+    }
+
+    @Test
+    @DisplayName("When stores are configured, then they share one block cache and only point lookup stores get bloom filters")
+    void sharesBlockCache() {
+        // GIVEN
+        var keyValueOptions = optionsWithTableConfig();
+        var windowOptions = optionsWithTableConfig();
+        var keyValueConfig = new BoundedMemoryRocksDBConfig();
+        var windowConfig = new BoundedMemoryRocksDBConfig();
+
+        // WHEN
+        keyValueConfig.setConfig("word-counts-store", keyValueOptions, Map.of());
+        windowConfig.setConfig("temperature-statistics-store.1650000000000", windowOptions, Map.of());
+
+        // THEN
+        var keyValueTable = (BlockBasedTableConfigWithAccessibleCache) keyValueOptions.tableFormatConfig();
+        var windowTable = (BlockBasedTableConfigWithAccessibleCache) windowOptions.tableFormatConfig();
+        assertThat(keyValueTable.blockCache()).isNotNull().isSameAs(windowTable.blockCache());
+        assertThat(keyValueTable.filterPolicy()).isNotNull();
+        assertThat(windowTable.filterPolicy()).isNull();
+        keyValueConfig.close("word-counts-store", keyValueOptions);
+        windowConfig.close("temperature-statistics-store.1650000000000", windowOptions);
+        keyValueOptions.close();
+        windowOptions.close();
+    }
+
+    // Streams hands the config setter options with this table config already set
+    private static Options optionsWithTableConfig() {
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfigWithAccessibleCache();
+        return new Options().setTableFormatConfig(tableConfig);
+    }
+}
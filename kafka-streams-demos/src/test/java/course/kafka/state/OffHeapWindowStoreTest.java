@@ -0,0 +1,106 @@
+package course.kafka.state;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.*;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+import org.apache.kafka.streams.state.WindowStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapWindowStoreTest {
+    public static final String INPUT_TOPIC = "temperature";
+    public static final String STORE_NAME = "temperature-counts-store";
+    public static final Duration WINDOW_SIZE = Duration.ofMillis(5000);
+    public static final Duration RETENTION = Duration.ofSeconds(20);
+
+    private final List<TopologyTestDriver> drivers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        drivers.forEach(TopologyTestDriver::close);
+    }
+
+    @Test
+    @DisplayName("When readings are counted in tumbling windows, then off-heap store holds the same counts as RocksDB")
+    void sameCountsAsRocksDB() throws Exception {
+        // GIVEN
+        var offHeap = createDriver(WindowStoreType.OFF_HEAP);
+        var rocksDb = createDriver(WindowStoreType.ROCKSDB);
+
+        // WHEN
+        for (var driver : List.of(offHeap, rocksDb)) {
+            var input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.Double().serializer());
+            for (int i = 0; i < 150; i++) {
+                input.pipeInput("tSensor-0" + (i % 3), 20.0 + i % 7, 100L * i);
+            }
+        }
+
+        // THEN
+        var offHeapCounts = counts(offHeap, 0, 15_000);
+        assertThat(offHeapCounts).hasSize(9).containsExactlyInAnyOrderElementsOf(counts(rocksDb, 0, 15_000));
+    }
+
+    @Test
+    @DisplayName("When stream time advances past retention, then expired windows are evicted")
+    void evictsExpiredWindows() throws Exception {
+        // GIVEN
+        var driver = createDriver(WindowStoreType.OFF_HEAP);
+        var input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.Double().serializer());
+        input.pipeInput("tSensor-01", 21.5, 1000L);
+        input.pipeInput("tSensor-01", 22.5, 2000L);
+
+        // WHEN
+        input.pipeInput("tSensor-02", 23.5, 60_000L);
+
+        // THEN
+        WindowStore<String, ValueAndTimestamp<Long>> store = driver.getTimestampedWindowStore(STORE_NAME);
+        assertThat(store.fetch("tSensor-01", 0L)).isNull();
+        assertThat(store.fetch("tSensor-02", 60_000L).value()).isEqualTo(1L);
+        assertThat(counts(driver, 0, 60_000)).hasSize(1);
+    }
+
+    private TopologyTestDriver createDriver(WindowStoreType storeType) throws Exception {
+        final StreamsBuilder builder = new StreamsBuilder();
+        builder.stream(INPUT_TOPIC, Consumed.with(Serdes.String(), Serdes.Double()))
+                .groupByKey()
+                .windowedBy(TimeWindows.ofSizeWithNoGrace(WINDOW_SIZE))
+                .count(storeType.materialized(STORE_NAME, WINDOW_SIZE, RETENTION, 64 * 1024,
+                        Serdes.String(), Serdes.Long()));
+
+        Path stateDir = Files.createTempDirectory("off-heap-window-store-test");
+        stateDir.toFile().deleteOnExit();
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "off-heap-window-store-test-" + storeType);
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        // bypass the record cache, so that reads go to the underlying store
+        props.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, 0);
+        var driver = new TopologyTestDriver(builder.build(), props);
+        drivers.add(driver);
+        return driver;
+    }
+
+    // windows of different store types are different Window classes, so they are compared by key and bounds
+    private List<KeyValue<String, Long>> counts(TopologyTestDriver driver, long from, long to) {
+        WindowStore<String, ValueAndTimestamp<Long>> store = driver.getTimestampedWindowStore(STORE_NAME);
+        var result = new ArrayList<KeyValue<String, Long>>();
+        try (var iterator = store.fetchAll(Instant.ofEpochMilli(from), Instant.ofEpochMilli(to))) {
+            iterator.forEachRemaining(entry -> result.add(KeyValue.pair(entry.key.key() + "@" +
+                    entry.key.window().start() + "/" + entry.key.window().end(), entry.value.value())));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+package course.kafka.state;
+
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.errors.ProcessorStateException;
+import org.apache.kafka.streams.processor.StateStoreContext;
+import org.apache.kafka.streams.processor.TaskId;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnapshottingKeyValueStoreTest {
+    public static final String APPLICATION_ID = "snapshotting-store-test";
+    public static final String STORE = "inmemory-word-counts";
+
+    @TempDir
+    Path taskDir;
+
+    @Test
+    @DisplayName("When the store is reopened, then its entries are loaded from the snapshot written on flush")
+    void restoresFromSnapshot() {
+        // GIVEN
+        var store = openStore();
+        store.put(bytes("kafka"), bytes("2").get());
+        store.put(bytes("streams"), bytes("1").get());
+        store.put(bytes("topics"), bytes("1").get());
+        store.delete(bytes("topics"));
+        store.flush();
+        store.close();
+
+        // WHEN
+        var reopened = openStore();
+
+        // THEN
+        assertThat(reopened.approximateNumEntries()).isEqualTo(2);
+        assertThat(reopened.get(bytes("kafka"))).isEqualTo(bytes("2").get());
+        assertThat(reopened.get(bytes("streams"))).isEqualTo(bytes("1").get());
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("When the snapshot spans several mapped windows, then all entries are written and loaded")
+    void restoresSnapshotAcrossMapWindows() {
+        // GIVEN
+        var store = openStore(16);
+        for (int i = 0; i < 100; i++) {
+            store.put(bytes("word-" + i), bytes("count-" + i).get());
+        }
+        store.flush();
+        store.close();
+
+        // WHEN
+        var reopened = openStore(16);
+
+        // THEN
+        assertThat(reopened.approximateNumEntries()).isEqualTo(100);
+        assertThat(reopened.get(bytes("word-42"))).isEqualTo(bytes("count-42").get());
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("When the snapshot is corrupted, then the store fails to open instead of serving partial state")
+    void failsOnCorruptedSnapshot() throws IOException {
+        // GIVEN
+        var store = openStore();
+        store.put(bytes("kafka"), bytes("2").get());
+        store.flush();
+        store.close();
+        var snapshot = taskDir.resolve(STORE).resolve(SnapshottingKeyValueStore.SNAPSHOT_FILE);
+        try (var channel = Files.newByteChannel(snapshot, StandardOpenOption.WRITE)) {
+            channel.position(16).write(ByteBuffer.wrap(new byte[]{42}));
+        }
+
+        // WHEN - THEN
+        assertThatThrownBy(this::openStore)
+                .isInstanceOf(ProcessorStateException.class)
+                .hasMessageContaining("Corrupted snapshot");
+    }
+
+    private SnapshottingKeyValueStore openStore() {
+        return openStore(1024 * 1024);
+    }
+
+    private SnapshottingKeyValueStore openStore(int mapWindowBytes) {
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, APPLICATION_ID);
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        StateStoreContext context = new MockProcessorContext<>(props, new TaskId(0, 0), taskDir.toFile())
+                .getStateStoreContext();
+        var store = new SnapshottingKeyValueStore(STORE, mapWindowBytes);
+        store.init(context, store);
+        return store;
+    }
+
+    private static Bytes bytes(String value) {
+        return Bytes.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
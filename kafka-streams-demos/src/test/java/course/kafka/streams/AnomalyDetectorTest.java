@@ -0,0 +1,102 @@
+package course.kafka.streams;
+
+import course.kafka.model.TemperatureAnomaly;
+import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.serialization.JsonDeserializer;
+import course.kafka.serialization.JsonSerializer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Produced;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnomalyDetectorTest {
+    public static final String INPUT_TOPIC = "temperature";
+    public static final String OUTPUT_TOPIC = "anomalies";
+    public static final String STORE = "anomaly-store";
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, TimestampedTemperatureReading> input;
+    private TestOutputTopic<String, TemperatureAnomaly> output;
+
+    @BeforeEach
+    void setUp() {
+        var readingSerde = Serdes.serdeFrom(new JsonSerializer<TimestampedTemperatureReading>(),
+                new JsonDeserializer<>(TimestampedTemperatureReading.class));
+        var anomalySerde = Serdes.serdeFrom(new JsonSerializer<TemperatureAnomaly>(),
+                new JsonDeserializer<>(TemperatureAnomaly.class));
+        StreamsBuilder builder = new StreamsBuilder();
+        AnomalyDetector.addStore(builder, STORE, Serdes.String());
+        builder.stream(INPUT_TOPIC, Consumed.with(Serdes.String(), readingSerde))
+                .transform(() -> new AnomalyDetector(STORE, 0.1, 4, 2, 10), STORE)
+                .to(OUTPUT_TOPIC, Produced.with(Serdes.String(), anomalySerde));
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "anomaly-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:1234");
+        driver = new TopologyTestDriver(builder.build(), props);
+        input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), readingSerde.serializer());
+        output = driver.createOutputTopic(OUTPUT_TOPIC, Serdes.String().deserializer(), anomalySerde.deserializer());
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    @DisplayName("When a reading is far from the moving mean of its sensor, then it is emitted as a z-score anomaly")
+    void detectsZScoreAnomaly() {
+        // GIVEN
+        for (int i = 0; i < 30; i++) {
+            pipe("tSensor-01", 20 + (i % 2 == 0 ? 0.5 : -0.5), i * 10_000L);
+            pipe("tSensor-02", 35, i * 10_000L);
+        }
+
+        // WHEN
+        pipe("tSensor-01", 30, 300_000);
+        pipe("tSensor-01", 20, 310_000);
+
+        // THEN
+        var anomalies = output.readKeyValuesToList();
+        assertThat(anomalies).hasSize(1);
+        KeyValue<String, TemperatureAnomaly> anomaly = anomalies.get(0);
+        assertThat(anomaly.key).isEqualTo("tSensor-01");
+        assertThat(anomaly.value.getType()).isEqualTo(TemperatureAnomaly.Type.Z_SCORE);
+        assertThat(anomaly.value.getZScore()).isGreaterThan(4);
+        assertThat(driver.<String, byte[]>getKeyValueStore(STORE).get("tSensor-01")).hasSize(AnomalyDetector.STATE_SIZE);
+    }
+
+    @Test
+    @DisplayName("When a reading changes faster than the maximum rate, then it is emitted even during warmup")
+    void detectsRateOfChange() {
+        // GIVEN
+        pipe("tSensor-01", 20, 0);
+        pipe("tSensor-01", 21, 1000);
+
+        // WHEN
+        pipe("tSensor-01", 26, 2000);
+
+        // THEN
+        var anomaly = output.readValue();
+        assertThat(anomaly.getType()).isEqualTo(TemperatureAnomaly.Type.RATE_OF_CHANGE);
+        assertThat(anomaly.getRatePerSecond()).isEqualTo(5.0);
+        assertThat(output.isEmpty()).isTrue();
+    }
+
+    private void pipe(String sensorId, double value, long timestamp) {
+        input.pipeInput(sensorId, new TimestampedTemperatureReading(sensorId, value, timestamp), timestamp);
+    }
+}
@@ -0,0 +1,95 @@
+package course.kafka.streams;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.Produced;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CombinerTest {
+    public static final String INPUT_TOPIC = "streams-input";
+    public static final String COMBINED_TOPIC = "combined-word-counts";
+    public static final String OUTPUT_TOPIC = "latest-word-counts";
+    public static final String COMBINER_STORE = "combiner-store";
+
+    private TopologyTestDriver driver;
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    @DisplayName("When the flush interval elapses, then one partial per key is forwarded and the totals are exact")
+    void combinesUntilFlushInterval() {
+        // GIVEN
+        createDriver(1000, Duration.ofSeconds(1));
+        var input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.String().serializer());
+        var combined = driver.createOutputTopic(COMBINED_TOPIC,
+                Serdes.String().deserializer(), Serdes.Long().deserializer());
+        var output = driver.createOutputTopic(OUTPUT_TOPIC, Serdes.String().deserializer(), Serdes.Long().deserializer());
+        List.of("kafka", "streams", "kafka", "kafka").forEach(input::pipeInput);
+        assertThat(combined.isEmpty()).isTrue();
+
+        // WHEN
+        driver.advanceWallClockTime(Duration.ofSeconds(1));
+        List.of("streams", "topics").forEach(input::pipeInput);
+        driver.advanceWallClockTime(Duration.ofSeconds(1));
+
+        // THEN
+        assertThat(combined.getQueueSize()).isEqualTo(4);
+        assertThat(output.readKeyValuesToMap()).isEqualTo(Map.of("kafka", 3L, "streams", 2L, "topics", 1L));
+        assertThat(driver.getKeyValueStore(COMBINER_STORE).approximateNumEntries()).isZero();
+    }
+
+    @Test
+    @DisplayName("When the pending keys reach the size limit, then they are flushed without punctuation")
+    void flushesOnSizeLimit() {
+        // GIVEN
+        createDriver(2, Duration.ofHours(1));
+        var input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.String().serializer());
+        var combined = driver.createOutputTopic(COMBINED_TOPIC,
+                Serdes.String().deserializer(), Serdes.Long().deserializer());
+
+        // WHEN
+        List.of("one", "one", "two", "three").forEach(input::pipeInput);
+
+        // THEN
+        assertThat(combined.readKeyValuesToList()).containsExactlyInAnyOrderElementsOf(List.of(
+                KeyValue.pair("one", 2L), KeyValue.pair("two", 1L)));
+    }
+
+    private void createDriver(int maxEntries, Duration flushInterval) {
+        final StreamsBuilder builder = new StreamsBuilder();
+        builder.addStateStore(Combiner.storeBuilder(COMBINER_STORE, Serdes.String(), Serdes.Long()));
+        var partials = builder.<String, String>stream(INPUT_TOPIC)
+                .map((key, word) -> KeyValue.pair(word, 1L))
+                .transform(() -> new Combiner<String, Long>(COMBINER_STORE, Long::sum, maxEntries, flushInterval),
+                        COMBINER_STORE);
+        partials.to(COMBINED_TOPIC, Produced.with(Serdes.String(), Serdes.Long()));
+        partials.groupByKey(Grouped.with(Serdes.String(), Serdes.Long()))
+                .reduce(Long::sum, Materialized.as("word-counts-store"))
+                .toStream()
+                .to(OUTPUT_TOPIC, Produced.with(Serdes.String(), Serdes.Long()));
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "combiner-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        driver = new TopologyTestDriver(builder.build(), props);
+    }
+}
@@ -0,0 +1,95 @@
+package course.kafka.streams;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Produced;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeduplicationTransformerTest {
+    public static final String INPUT_TOPIC = "readings";
+    public static final String OUTPUT_TOPIC = "deduplicated";
+    public static final String STORE = "ids-store";
+    public static final Duration HORIZON = Duration.ofMinutes(10);
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, String> input;
+    private TestOutputTopic<String, String> output;
+
+    @BeforeEach
+    void setUp() {
+        StreamsBuilder builder = new StreamsBuilder();
+        DeduplicationTransformer.addStore(builder, STORE, HORIZON);
+        builder.stream(INPUT_TOPIC, Consumed.with(Serdes.String(), Serdes.String()))
+                .transform(() -> new DeduplicationTransformer<String, String>(STORE,
+                        (sensorId, reading) -> reading.split(":")[0], HORIZON, 1000, 0.01), STORE)
+                .to(OUTPUT_TOPIC, Produced.with(Serdes.String(), Serdes.String()));
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "deduplication-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:1234");
+        driver = new TopologyTestDriver(builder.build(), props);
+        input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.String().serializer());
+        output = driver.createOutputTopic(OUTPUT_TOPIC, Serdes.String().deserializer(), Serdes.String().deserializer());
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    @DisplayName("When a reading id repeats within the horizon, then the duplicate is dropped and counted")
+    void dropsDuplicatesWithinHorizon() {
+        // GIVEN
+        for (int i = 0; i < 500; i++) {
+            input.pipeInput("tSensor-01", "id-" + i + ":20.5", i * 100L);
+        }
+
+        // WHEN
+        input.pipeInput("tSensor-01", "id-7:20.5", 50_000);
+        input.pipeInput("tSensor-01", "id-499:20.5", 50_100);
+        input.pipeInput("tSensor-01", "id-500:20.5", 50_200);
+
+        // THEN
+        assertThat(output.readValuesToList()).hasSize(501).endsWith("id-500:20.5");
+        assertThat(metric("duplicates-total")).isEqualTo(2.0);
+        assertThat(metric("bloom-positives-total") - metric("duplicates-total"))
+                .isEqualTo(metric("bloom-false-positives-total")).isLessThan(20);
+    }
+
+    @Test
+    @DisplayName("When a reading id repeats after the horizon, then it is forwarded again")
+    void forgetsIdsAfterHorizon() {
+        // GIVEN
+        input.pipeInput("tSensor-01", "id-1:20.5", 0);
+        input.pipeInput("tSensor-01", "id-1:20.5", 1000);
+
+        // WHEN
+        input.pipeInput("tSensor-01", "id-2:20.5", HORIZON.toMillis() * 3);
+        input.pipeInput("tSensor-01", "id-1:20.5", HORIZON.toMillis() * 3 + 1000);
+
+        // THEN
+        assertThat(output.readValuesToList()).containsExactly("id-1:20.5", "id-2:20.5", "id-1:20.5");
+    }
+
+    private double metric(String name) {
+        return driver.metrics().entrySet().stream()
+                .filter(entry -> entry.getKey().group().equals(DeduplicationTransformer.METRICS_GROUP) &&
+                        entry.getKey().name().equals(name))
+                .mapToDouble(entry -> (double) entry.getValue().metricValue())
+                .sum();
+    }
+}
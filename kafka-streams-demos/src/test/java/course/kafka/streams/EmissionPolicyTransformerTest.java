@@ -0,0 +1,143 @@
+package course.kafka.streams;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Produced;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmissionPolicyTransformerTest {
+    public static final String INPUT_TOPIC = "heating-power";
+    public static final String OUTPUT_TOPIC = "events";
+    public static final String STORE = "emission-store";
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, Double> input;
+    private TestOutputTopic<String, Double> output;
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    @DisplayName("When a key is updated within the interval, then only the latest update is emitted after the interval")
+    void rateLimitsPerKey() {
+        // GIVEN
+        createDriver(EmissionPolicy.rateLimited(Duration.ofMillis(1000)));
+
+        // WHEN
+        input.pipeInput("sensor-1", 1.0, 100);
+        input.pipeInput("sensor-1", 2.0, 200);
+        input.pipeInput("sensor-2", 5.0, 300);
+        input.pipeInput("sensor-1", 3.0, 400);
+        input.pipeInput("sensor-2", 6.0, 2100);
+
+        // THEN
+        assertThat(output.readKeyValuesToList()).containsExactly(
+                KeyValue.pair("sensor-1", 1.0), KeyValue.pair("sensor-2", 5.0),
+                KeyValue.pair("sensor-2", 6.0), KeyValue.pair("sensor-1", 3.0));
+        assertThat(metric("suppressed-total")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("When updates change less than the threshold, then they are suppressed until the change adds up")
+    void emitsOnlyChanges() {
+        // GIVEN
+        createDriver(EmissionPolicy.onChange(Double::doubleValue, 1.0));
+
+        // WHEN
+        for (int i = 0; i <= 10; i++) {
+            input.pipeInput("sensor-1", 10 + i * 0.3, i * 100L);
+        }
+
+        // THEN
+        assertThat(output.readValuesToList()).containsExactly(10.0, 10 + 4 * 0.3, 10 + 8 * 0.3);
+    }
+
+    @Test
+    @DisplayName("When stream time crosses a period boundary, then the latest update of each key in the period is emitted")
+    void emitsAtPeriodBoundaries() {
+        // GIVEN
+        createDriver(EmissionPolicy.periodic(Duration.ofMillis(1000)));
+        input.pipeInput("sensor-1", 1.0, 100);
+        input.pipeInput("sensor-2", 5.0, 500);
+        input.pipeInput("sensor-1", 2.0, 900);
+        assertThat(output.isEmpty()).isTrue();
+
+        // WHEN
+        input.pipeInput("sensor-1", 3.0, 1200);
+
+        // THEN
+        assertThat(output.readKeyValuesToList()).containsExactlyInAnyOrder(
+                KeyValue.pair("sensor-1", 2.0), KeyValue.pair("sensor-2", 5.0));
+        input.pipeInput("sensor-2", 7.0, 1500);
+        input.pipeInput("sensor-2", 8.0, 2000);
+        assertThat(output.readKeyValuesToList()).containsExactlyInAnyOrder(
+                KeyValue.pair("sensor-1", 3.0), KeyValue.pair("sensor-2", 7.0));
+    }
+
+    @Test
+    @DisplayName("When the task restarts within a period, then the updates buffered before are emitted at its boundary")
+    void emitsBufferedPeriodAfterRestart() {
+        // GIVEN
+        createDriver(EmissionPolicy.periodic(Duration.ofMillis(1000)));
+        input.pipeInput("sensor-1", 1.0, 100);
+        input.pipeInput("sensor-2", 5.0, 500);
+        Map<String, byte[]> buffered = new HashMap<>();
+        try (var iter = driver.<String, byte[]>getKeyValueStore(STORE).all()) {
+            iter.forEachRemaining(entry -> buffered.put(entry.key, entry.value));
+        }
+        driver.close();
+
+        // WHEN
+        createDriver(EmissionPolicy.periodic(Duration.ofMillis(1000)));
+        buffered.forEach(driver.<String, byte[]>getKeyValueStore(STORE)::put); // the driver does not restore state
+        input.pipeInput("sensor-1", 3.0, 1200);
+
+        // THEN
+        assertThat(output.readKeyValuesToList()).containsExactlyInAnyOrder(
+                KeyValue.pair("sensor-1", 1.0), KeyValue.pair("sensor-2", 5.0));
+        input.pipeInput("sensor-2", 8.0, 2000);
+        assertThat(output.readKeyValuesToList()).containsExactly(KeyValue.pair("sensor-1", 3.0));
+    }
+
+    private double metric(String name) {
+        return driver.metrics().entrySet().stream()
+                .filter(entry -> entry.getKey().group().equals(EmissionPolicyTransformer.METRICS_GROUP) &&
+                        entry.getKey().name().equals(name))
+                .mapToDouble(entry -> (double) entry.getValue().metricValue())
+                .sum();
+    }
+
+    private void createDriver(EmissionPolicy<Double> policy) {
+        final StreamsBuilder builder = new StreamsBuilder();
+        EmissionPolicyTransformer.addStore(builder, STORE, Serdes.String());
+        builder.stream(INPUT_TOPIC, Consumed.with(Serdes.String(), Serdes.Double()))
+                .transform(() -> new EmissionPolicyTransformer<>(STORE, Serdes.Double(), policy), STORE)
+                .to(OUTPUT_TOPIC, Produced.with(Serdes.String(), Serdes.Double()));
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "emission-policy-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        driver = new TopologyTestDriver(builder.build(), props);
+        input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.Double().serializer());
+        output = driver.createOutputTopic(OUTPUT_TOPIC, Serdes.String().deserializer(), Serdes.Double().deserializer());
+    }
+}
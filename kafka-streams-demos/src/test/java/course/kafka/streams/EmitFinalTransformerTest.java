@@ -0,0 +1,113 @@
+package course.kafka.streams;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.test.TestRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmitFinalTransformerTest {
+    public static final String INPUT_TOPIC = "temperature";
+    public static final String OUTPUT_TOPIC = "events";
+    public static final String BUFFER = "emit-final-buffer";
+    public static final long WINDOW_SIZE_MS = 1000;
+
+    private TopologyTestDriver driver;
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    @DisplayName("When results exceed the memory budget, then they are spilled and each window is emitted once in window end order")
+    void spillsAndEmitsFinalResultsInOrder() {
+        // GIVEN
+        createDriver(2048);
+        var input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.String().serializer());
+        var output = driver.createOutputTopic(OUTPUT_TOPIC, Serdes.String().deserializer(), Serdes.Long().deserializer());
+        var exact = new HashMap<String, Long>();
+
+        // WHEN - 50 sensors, each with 3 readings per window, across 5 windows
+        for (long ts = 0; ts < 5 * WINDOW_SIZE_MS; ts += WINDOW_SIZE_MS / 3) {
+            for (int sensor = 0; sensor < 50; sensor++) {
+                input.pipeInput("sensor-" + sensor, "reading", ts);
+                exact.merge("sensor-" + sensor + "@" + ts / WINDOW_SIZE_MS * WINDOW_SIZE_MS, 1L, Long::sum);
+            }
+        }
+        input.pipeInput("sensor-0", "reading", 10 * WINDOW_SIZE_MS); // advance stream time past all windows
+
+        // THEN
+        var results = output.readRecordsToList();
+        assertThat(results).hasSize(exact.size());
+        assertThat(results).extracting(TestRecord::getRecordTime).isSortedAccordingTo(Instant::compareTo);
+        assertThat(results.stream().collect(Collectors.toMap(TestRecord::key, TestRecord::value)))
+                .isEqualTo(exact);
+        assertThat(metric("spilled-total")).isGreaterThan(0.0);
+        assertThat(metric("memory-bytes")).isLessThanOrEqualTo(2048.0);
+    }
+
+    @Test
+    @DisplayName("When stream time passes a window end, then only the closed window is emitted and late readings are dropped")
+    void emitsOnlyClosedWindows() {
+        // GIVEN
+        createDriver(EmitFinalTransformer.DEFAULT_MAX_MEMORY_BYTES);
+        var input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.String().serializer());
+        var output = driver.createOutputTopic(OUTPUT_TOPIC, Serdes.String().deserializer(), Serdes.Long().deserializer());
+        input.pipeInput("sensor-1", "reading", 100);
+        input.pipeInput("sensor-1", "reading", 2500);
+
+        // WHEN
+        input.pipeInput("sensor-2", "reading", 200);
+
+        // THEN
+        assertThat(output.readKeyValuesToList()).containsExactly(KeyValue.pair("sensor-1@0", 1L));
+        assertThat(metric("memory-count")).isEqualTo(1.0);
+    }
+
+    private double metric(String name) {
+        return driver.metrics().entrySet().stream()
+                .filter(entry -> entry.getKey().group().equals(EmitFinalTransformer.METRICS_GROUP) &&
+                        entry.getKey().name().equals(name))
+                .mapToDouble(entry -> (double) entry.getValue().metricValue())
+                .sum();
+    }
+
+    private void createDriver(long maxMemoryBytes) {
+        final StreamsBuilder builder = new StreamsBuilder();
+        EmitFinalTransformer.addStores(builder, BUFFER);
+        builder.<String, String>stream(INPUT_TOPIC)
+                .groupByKey(Grouped.with(Serdes.String(), Serdes.String()))
+                .windowedBy(TimeWindows.ofSizeWithNoGrace(Duration.ofMillis(WINDOW_SIZE_MS)))
+                .count(Materialized.with(Serdes.String(), Serdes.Long()))
+                .toStream()
+                .transform(() -> new EmitFinalTransformer<>(BUFFER, Serdes.String(), Serdes.Long(), Duration.ZERO,
+                        maxMemoryBytes), EmitFinalTransformer.storeNames(BUFFER))
+                .map((window, count) -> KeyValue.pair(window.key() + "@" + window.window().start(), count))
+                .to(OUTPUT_TOPIC, Produced.with(Serdes.String(), Serdes.Long()));
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "emit-final-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, 0);
+        driver = new TopologyTestDriver(builder.build(), props);
+    }
+}
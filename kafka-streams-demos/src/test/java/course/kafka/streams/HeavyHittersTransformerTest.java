@@ -0,0 +1,55 @@
+package course.kafka.streams;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static course.kafka.streams.HeavyHittersWordCountDemo.HEAVY_HITTERS_SERDE;
+import static course.kafka.streams.HeavyHittersWordCountDemo.HEAVY_HITTERS_STORE;
+import static course.kafka.streams.HeavyHittersWordCountDemo.INPUT_TOPIC;
+import static course.kafka.streams.HeavyHittersWordCountDemo.OUTPUT_TOPIC;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeavyHittersTransformerTest {
+    private TopologyTestDriver driver;
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    @DisplayName("When lines are committed before the emit interval, then the changelog holds the summary with all their words")
+    void logsSummaryWithEachLine() {
+        // GIVEN
+        StreamsBuilder builder = new StreamsBuilder();
+        HeavyHittersWordCountDemo.buildTopology(builder);
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heavy-hitters-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        driver = new TopologyTestDriver(builder.build(), props);
+        var input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.String().serializer());
+        var output = driver.createOutputTopic(OUTPUT_TOPIC, Serdes.String().deserializer(), Serdes.String().deserializer());
+
+        // WHEN
+        input.pipeInput("Kafka streams, kafka topics");
+        input.pipeInput("kafka");
+
+        // THEN
+        var changelog = driver.createOutputTopic("heavy-hitters-test-" + HEAVY_HITTERS_STORE + "-changelog",
+                Serdes.String().deserializer(), HEAVY_HITTERS_SERDE.deserializer()).readValuesToList();
+        assertThat(changelog).isNotEmpty();
+        var summary = changelog.get(changelog.size() - 1);
+        assertThat(summary.getTotal()).isEqualTo(5);
+        assertThat(summary.estimate("kafka")).isEqualTo(3);
+        assertThat(output.isEmpty()).isTrue(); // the emit interval has not elapsed
+    }
+}
@@ -0,0 +1,78 @@
+package course.kafka.streams;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class PaneStatisticsTest {
+    public static final long ADVANCE_MS = 1000;
+    public static final int NUM_PANES = 10;
+
+    @Test
+    @DisplayName("When readings slide through the window, then statistics equal recomputing the window from scratch")
+    void matchesRecomputedWindow() {
+        // GIVEN
+        var rand = new Random(42);
+        var panes = new PaneStatistics(ADVANCE_MS, NUM_PANES);
+        List<Long> timestamps = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+
+        // WHEN
+        long time = 0;
+        for (int i = 0; i < 2000; i++) {
+            time += rand.nextInt(100);
+            // every tenth reading arrives late, but mostly still within the window
+            long timestamp = i % 10 == 0 ? time - rand.nextInt(12_000) : time;
+            double value = 20 + rand.nextGaussian() * 5;
+            if (panes.add(value, timestamp)) {
+                timestamps.add(timestamp);
+                values.add(value);
+            }
+
+            // THEN
+            long windowEnd = panes.windowEnd();
+            long count = 0;
+            double sum = 0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (int j = 0; j < values.size(); j++) {
+                long ts = timestamps.get(j);
+                if (ts >= windowEnd - NUM_PANES * ADVANCE_MS && ts < windowEnd) {
+                    count++;
+                    sum += values.get(j);
+                    min = Math.min(min, values.get(j));
+                    max = Math.max(max, values.get(j));
+                }
+            }
+            var stats = panes.statistics();
+            assertThat(stats.getCount()).isEqualTo(count);
+            assertThat(stats.getSum()).isCloseTo(sum, within(1e-6));
+            assertThat(stats.getMin()).isEqualTo(min);
+            assertThat(stats.getMax()).isEqualTo(max);
+        }
+    }
+
+    @Test
+    @DisplayName("When panes are restored from bytes, then they keep sliding like the original")
+    void restoresFromBytes() {
+        // GIVEN
+        var original = new PaneStatistics(ADVANCE_MS, NUM_PANES);
+        for (int i = 0; i < 50; i++) {
+            original.add(i, i * 200L);
+        }
+
+        // WHEN
+        var restored = PaneStatistics.fromBytes(original.toBytes(), ADVANCE_MS, NUM_PANES);
+        original.advanceTo(15_000);
+        restored.advanceTo(15_000);
+
+        // THEN
+        assertThat(restored.statistics()).isEqualTo(original.statistics());
+        assertThat(restored.statistics().getCount()).isEqualTo(25);
+        assertThat(restored.statistics().getMin()).isEqualTo(25);
+    }
+}
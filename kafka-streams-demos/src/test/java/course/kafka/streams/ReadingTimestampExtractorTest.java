@@ -0,0 +1,72 @@
+package course.kafka.streams;
+
+import course.kafka.model.DoubleStatistics;
+import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.serialization.JsonSerializer;
+import course.kafka.streams.ReadingTimestampExtractor.OnInvalid;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.streams.errors.StreamsException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReadingTimestampExtractorTest {
+    public static final long RECORD_TIME = 5000;
+    public static final long PARTITION_TIME = 4000;
+
+    @Test
+    @DisplayName("When a reading is JSON bytes, a deserialized object or binary, then its event time is extracted")
+    void extractsEventTime() {
+        // GIVEN
+        var extractor = new ReadingTimestampExtractor();
+        var binaryExtractor = new ReadingTimestampExtractor();
+        binaryExtractor.configure(Map.of(ReadingTimestampExtractor.BINARY_OFFSET_CONFIG, "40"));
+        var reading = new TimestampedTemperatureReading("tSensor-01", 21.5, 1650000000123L);
+        var statistics = new DoubleStatistics().add(21.5, 1650000000456L);
+
+        // WHEN - THEN
+        assertThat(extract(extractor, new JsonSerializer<>().serialize("temperature", reading)))
+                .isEqualTo(1650000000123L);
+        assertThat(extract(extractor, reading)).isEqualTo(1650000000123L);
+        assertThat(extract(extractor, json("{\"sensorId\":\"timestamp\", \"nested\":{\"timestamp\":1},"
+                + " \"note\":\"\\\"timestamp\\\":2\", \"timestamp\" : 1650000000789 }"))).isEqualTo(1650000000789L);
+        assertThat(extract(binaryExtractor, TemperatureStatistics.STATISTICS_SERDE.serializer().serialize("", statistics)))
+                .isEqualTo(1650000000456L);
+    }
+
+    @Test
+    @DisplayName("When the timestamp is missing or invalid, then the configured fallback policy is applied")
+    void appliesFallbackPolicy() {
+        // GIVEN
+        var partitionTime = new ReadingTimestampExtractor();
+        var recordTime = new ReadingTimestampExtractor(OnInvalid.RECORD_TIME, -1);
+        var skip = new ReadingTimestampExtractor();
+        skip.configure(Map.of(ReadingTimestampExtractor.ON_INVALID_CONFIG, "SKIP"));
+        var fail = new ReadingTimestampExtractor(OnInvalid.FAIL, -1);
+
+        // WHEN - THEN
+        assertThat(extract(partitionTime, json("{\"sensorId\":\"tSensor-01\",\"value\":21.5}")))
+                .isEqualTo(PARTITION_TIME);
+        assertThat(extract(partitionTime, json("{\"timestamp\":1.65E12}"))).isEqualTo(PARTITION_TIME);
+        assertThat(extract(recordTime, json("{\"timestamp\":\"yesterday\"}"))).isEqualTo(RECORD_TIME);
+        assertThat(extract(skip, json("{\"timestamp\":-1}"))).isNegative();
+        assertThatThrownBy(() -> extract(fail, json("not json"))).isInstanceOf(StreamsException.class);
+    }
+
+    private static long extract(ReadingTimestampExtractor extractor, Object value) {
+        return extractor.extract(new ConsumerRecord<>("temperature", 0, 42, RECORD_TIME, TimestampType.CREATE_TIME,
+                0, 0, "tSensor-01", value, new RecordHeaders(), Optional.empty()), PARTITION_TIME);
+    }
+
+    private static byte[] json(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,69 @@
+package course.kafka.streams;
+
+import course.kafka.model.DoubleStatistics;
+import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.serialization.DoubleStatisticsDeserializer;
+import course.kafka.serialization.JsonSerializer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static course.kafka.streams.SlidingStatisticsTemperatureReadings06.ADVANCE;
+import static course.kafka.streams.SlidingStatisticsTemperatureReadings06.INTERNAL_TEMP_TOPIC;
+import static course.kafka.streams.SlidingStatisticsTemperatureReadings06.OUTPUT_TOPIC;
+import static course.kafka.streams.SlidingStatisticsTemperatureReadings06.PANES_STORE;
+import static course.kafka.streams.SlidingStatisticsTemperatureReadings06.WINDOW_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingStatisticsProcessorTest {
+    public static final String SENSOR_ID = "tSensor-01";
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, TimestampedTemperatureReading> input;
+    private TestOutputTopic<String, DoubleStatistics> output;
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    @DisplayName("When readings are committed, then the changelog holds the panes with all of them")
+    void logsPanesWithEachReading() {
+        // GIVEN
+        createDriver();
+
+        // WHEN
+        for (long timestamp = 100; timestamp <= 300; timestamp += 100) {
+            input.pipeInput(SENSOR_ID, new TimestampedTemperatureReading(SENSOR_ID, timestamp / 10.0, timestamp), timestamp);
+        }
+
+        // THEN - the panes restored from the changelog close with the three readings
+        var changelog = driver.createOutputTopic("sliding-statistics-test-" + PANES_STORE + "-changelog",
+                Serdes.String().deserializer(), Serdes.ByteArray().deserializer()).readKeyValuesToMap();
+        var panes = PaneStatistics.fromBytes(changelog.get(SENSOR_ID), ADVANCE.toMillis(),
+                (int) (WINDOW_SIZE.toMillis() / ADVANCE.toMillis()));
+        panes.advanceTo(1000);
+        var statistics = panes.statistics();
+        assertThat(statistics.getCount()).isEqualTo(3);
+        assertThat(statistics.getMin()).isEqualTo(10);
+        assertThat(statistics.getMax()).isEqualTo(30);
+        assertThat(output.isEmpty()).isTrue(); // the first pane is still open
+    }
+
+    private void createDriver() {
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "sliding-statistics-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        driver = new TopologyTestDriver(SlidingStatisticsTemperatureReadings06.buildTopology(), props);
+        input = driver.createInputTopic(INTERNAL_TEMP_TOPIC, Serdes.String().serializer(), new JsonSerializer<>());
+        output = driver.createOutputTopic(OUTPUT_TOPIC, Serdes.String().deserializer(), new DoubleStatisticsDeserializer());
+    }
+}
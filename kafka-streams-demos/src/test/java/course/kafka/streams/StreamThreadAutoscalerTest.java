@@ -0,0 +1,88 @@
+package course.kafka.streams;
+
+import course.kafka.streams.StreamThreadAutoscaler.Decision;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamThreadAutoscalerTest {
+    public static final long CHECK_INTERVAL_MS = 30_000;
+
+    @TempDir
+    Path stateDir;
+
+    private KafkaStreams streams;
+    private StreamThreadAutoscaler autoscaler;
+
+    @BeforeEach
+    void setUp() {
+        final StreamsBuilder builder = new StreamsBuilder();
+        Pipe.buildTopology(builder);
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "autoscaler-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        streams = new KafkaStreams(builder.build(), props);
+        autoscaler = new StreamThreadAutoscaler(streams, 1, 4, Duration.ofMillis(CHECK_INTERVAL_MS),
+                10_000, 1_000, 0.3, 3, Duration.ofMinutes(2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        autoscaler.close();
+        streams.close();
+    }
+
+    @Test
+    @DisplayName("When the lag stays high for the stable checks, then one thread is added and the next waits for the cooldown")
+    void scalesUpAfterStableChecksAndCooldown() {
+        // GIVEN
+        long now = 0;
+        assertThat(autoscaler.decide(50_000, 0.9, 2, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.HOLD);
+        assertThat(autoscaler.decide(50_000, 0.9, 2, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.HOLD);
+
+        // WHEN
+        var decision = autoscaler.decide(50_000, 0.9, 2, now += CHECK_INTERVAL_MS);
+
+        // THEN
+        assertThat(decision).isEqualTo(Decision.SCALE_UP);
+        for (int i = 0; i < 3; i++) { // still lagging, but within the 2 minutes cooldown
+            assertThat(autoscaler.decide(50_000, 0.9, 3, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.HOLD);
+        }
+        assertThat(autoscaler.decide(50_000, 0.9, 3, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.SCALE_UP);
+        assertThat(autoscaler.metrics().metrics()).isNotEmpty();
+    }
+
+    @Test
+    @DisplayName("When the lag oscillates around the thresholds or the threads are busy, then the thread count is kept")
+    void doesNotFlap() {
+        // GIVEN
+        long now = 0;
+        long[] lags = {20_000, 500, 20_000, 500, 20_000, 500, 5_000, 5_000, 5_000};
+
+        // WHEN - THEN
+        for (long lag : lags) {
+            assertThat(autoscaler.decide(lag, 0.1, 2, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.HOLD);
+        }
+        for (int i = 0; i < 5; i++) { // low lag, but the threads are busy keeping it low
+            assertThat(autoscaler.decide(100, 0.8, 2, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.HOLD);
+        }
+        for (int i = 0; i < 5; i++) { // idle, but already at the minimum
+            assertThat(autoscaler.decide(0, 0.0, 1, now += CHECK_INTERVAL_MS)).isEqualTo(Decision.HOLD);
+        }
+    }
+}
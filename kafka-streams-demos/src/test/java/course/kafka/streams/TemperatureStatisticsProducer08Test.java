@@ -0,0 +1,67 @@
+package course.kafka.streams;
+
+import course.kafka.model.TimestampedTemperatureReading;
+import course.kafka.serialization.JsonSerializer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static course.kafka.streams.TemperatureStatisticsProducer08.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TemperatureStatisticsProducer08Test {
+    private TopologyTestDriver driver;
+
+    @BeforeEach
+    void setUp() {
+        final StreamsBuilder builder = new StreamsBuilder();
+        buildTopology(builder);
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "heating-statistics-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        driver = new TopologyTestDriver(builder.build(), props);
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    @DisplayName("When a window of readings closes, then its final statistics are written once to the statistics topic of the input")
+    void writesFinalWindowStatistics() {
+        // GIVEN
+        var internal = driver.createInputTopic(INTERNAL_TEMP_TOPIC, Serdes.String().serializer(),
+                new JsonSerializer<TimestampedTemperatureReading>());
+        var external = driver.createInputTopic(EXTERNAL_TEMP_TOPIC, Serdes.String().serializer(),
+                new JsonSerializer<TimestampedTemperatureReading>());
+        var internalStatistics = driver.createOutputTopic(INTERNAL_STATISTICS_TOPIC, Serdes.String().deserializer(),
+                TemperatureStatistics.STATISTICS_SERDE.deserializer());
+        var externalStatistics = driver.createOutputTopic(EXTERNAL_STATISTICS_TOPIC, Serdes.String().deserializer(),
+                TemperatureStatistics.STATISTICS_SERDE.deserializer());
+
+        // WHEN
+        internal.pipeInput("tSensor-1", new TimestampedTemperatureReading("tSensor-1", 20, 1000), 1000);
+        internal.pipeInput("tSensor-1", new TimestampedTemperatureReading("tSensor-1", 24, 2000), 2000);
+        internal.pipeInput("tSensor-1", new TimestampedTemperatureReading("tSensor-1", 99, 3000), 3000); // invalid
+        internal.pipeInput("tSensor-1", new TimestampedTemperatureReading("tSensor-1", 21, 6000), 6000);
+        external.pipeInput("tSensor-1", new TimestampedTemperatureReading("tSensor-1", 5, 1000), 1000);
+
+        // THEN
+        var statistics = internalStatistics.readKeyValuesToList();
+        assertThat(statistics).hasSize(1);
+        assertThat(statistics.get(0).key).isEqualTo("tSensor-1");
+        assertThat(statistics.get(0).value.getCount()).isEqualTo(2);
+        assertThat(statistics.get(0).value.getAverage()).isEqualTo(22.0);
+        assertThat(externalStatistics.isEmpty()).isTrue(); // stream time of the external topic is still in the window
+    }
+}
@@ -0,0 +1,113 @@
+package course.kafka.streams;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WordCountProcessorTest {
+    public static final String INPUT_TOPIC = "streams-input";
+    public static final String OUTPUT_TOPIC = "latest-word-counts";
+
+    private TopologyTestDriver driver;
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    @DisplayName("When the flush interval elapses, then the total of each pending word is stored and forwarded once")
+    void flushesOnPunctuation() {
+        // GIVEN
+        createDriver(Duration.ofSeconds(1), 1000);
+        var input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.String().serializer());
+        var output = driver.createOutputTopic(OUTPUT_TOPIC, Serdes.String().deserializer(), Serdes.Long().deserializer());
+        input.pipeInput("Kafka streams, kafka topics");
+        input.pipeInput("streams");
+        assertThat(output.isEmpty()).isTrue();
+
+        // WHEN
+        driver.advanceWallClockTime(Duration.ofSeconds(1));
+        input.pipeInput("kafka");
+        driver.advanceWallClockTime(Duration.ofSeconds(1));
+
+        // THEN
+        assertThat(output.readKeyValuesToMap()).isEqualTo(Map.of("kafka", 3L, "streams", 2L, "topics", 1L));
+        assertThat(driver.<String, Long>getKeyValueStore(WordCountProcessor.STORE_NAME).get("kafka")).isEqualTo(3L);
+    }
+
+    @Test
+    @DisplayName("When the pending words reach the size threshold, then they are flushed without punctuation")
+    void flushesOnSizeThreshold() {
+        // GIVEN
+        createDriver(Duration.ofHours(1), 3);
+        var input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.String().serializer());
+        var output = driver.createOutputTopic(OUTPUT_TOPIC, Serdes.String().deserializer(), Serdes.Long().deserializer());
+
+        // WHEN
+        input.pipeInput("one two one");
+        input.pipeInput("three");
+
+        // THEN
+        assertThat(output.readKeyValuesToList()).containsExactlyInAnyOrderElementsOf(List.of(
+                KeyValue.pair("one", 2L), KeyValue.pair("two", 1L), KeyValue.pair("three", 1L)));
+    }
+
+    @Test
+    @DisplayName("When the processor is closed before the flush interval elapses, then the pending words are restored and flushed")
+    void restoresPendingWordsAfterClose() {
+        // GIVEN
+        createDriver(Duration.ofSeconds(1), 1000);
+        var input = driver.createInputTopic(INPUT_TOPIC, Serdes.String().serializer(), Serdes.String().serializer());
+        input.pipeInput("Kafka streams, kafka topics");
+        var changelogTopic = driver.createOutputTopic(
+                "word-count-processor-test-" + WordCountProcessor.PENDING_STORE_NAME + "-changelog",
+                Serdes.String().deserializer(), Serdes.Long().deserializer());
+        assertThat(changelogTopic.isEmpty()).isTrue(); // the deltas are kept on heap until flushed
+
+        // WHEN
+        driver.close(); // before the punctuation fires
+        var changelog = changelogTopic.readKeyValuesToMap();
+        createDriver(Duration.ofSeconds(1), 1000);
+        KeyValueStore<String, Long> pendingStore = driver.getKeyValueStore(WordCountProcessor.PENDING_STORE_NAME);
+        changelog.forEach(pendingStore::put); // the driver does not restore state from changelogs
+        var output = driver.createOutputTopic(OUTPUT_TOPIC, Serdes.String().deserializer(), Serdes.Long().deserializer());
+        driver.advanceWallClockTime(Duration.ofSeconds(1));
+
+        // THEN
+        assertThat(changelog).isEqualTo(Map.of("kafka", 2L, "streams", 1L, "topics", 1L));
+        assertThat(output.readKeyValuesToMap()).isEqualTo(Map.of("kafka", 2L, "streams", 1L, "topics", 1L));
+    }
+
+    private void createDriver(Duration flushInterval, int maxPendingWords) {
+        final Topology topology = new Topology();
+        topology.addSource("Source", INPUT_TOPIC)
+                .addProcessor("Process", () -> new WordCountProcessor(flushInterval, maxPendingWords), "Source")
+                .addStateStore(Stores.keyValueStoreBuilder(
+                        Stores.inMemoryKeyValueStore(WordCountProcessor.STORE_NAME), Serdes.String(), Serdes.Long()),
+                        "Process")
+                .addStateStore(WordCountProcessor.pendingStoreBuilder(), "Process")
+                .addSink("Sink", OUTPUT_TOPIC, Serdes.String().serializer(), Serdes.Long().serializer(), "Process");
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "word-count-processor-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        driver = new TopologyTestDriver(topology, props);
+    }
+}
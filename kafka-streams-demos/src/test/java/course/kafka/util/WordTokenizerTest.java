@@ -0,0 +1,51 @@
+package course.kafka.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WordTokenizerTest {
+    public static final String ALPHABET = "aBz_09 .,-!?\t\n";
+
+    @Test
+    @DisplayName("When edge case text is tokenized, then words equal those of lowercase and split on non-word characters")
+    void sameAsRegexSplit() {
+        var texts = new String[]{"", " ", "!!!", "Hello", "Hello, World!", "  leading and trailing  ",
+                ",a", "a,", "snake_case and CamelCase 42", "x  y", "\tTAB\tSEPARATED\t"};
+        for (String text : texts) {
+            assertThat(WordTokenizer.words(text)).as("text '%s'", text)
+                    .containsExactly(text.toLowerCase(Locale.ROOT).split("\\W+"));
+        }
+    }
+
+    @Test
+    @DisplayName("When random ASCII text is tokenized, then words equal those of the regex split")
+    void sameAsRegexSplitOnRandomText() {
+        // GIVEN
+        var rand = new Random(42);
+        var tokenizer = new WordTokenizer();
+
+        for (int i = 0; i < 1000; i++) {
+            var text = new StringBuilder();
+            int length = rand.nextInt(40);
+            for (int j = 0; j < length; j++) {
+                text.append(ALPHABET.charAt(rand.nextInt(ALPHABET.length())));
+            }
+
+            // WHEN
+            var words = new StringBuilder();
+            tokenizer.forEachWord(text, word -> words.append(word).append('|'));
+
+            // THEN
+            var expected = new StringBuilder();
+            Arrays.stream(text.toString().toLowerCase(Locale.ROOT).split("\\W+"))
+                    .forEach(word -> expected.append(word).append('|'));
+            assertThat(words.toString()).as("text '%s'", text).isEqualTo(expected.toString());
+        }
+    }
+}
@@ -12,6 +12,7 @@ import org.iproduct.ksdemo.model.ClientData;
 import org.iproduct.ksdemo.model.Command;
 import org.iproduct.ksdemo.model.CommandAcknowledgement;
 import org.iproduct.ksdemo.model.IrrigationControllerState;
+import org.iproduct.ksdemo.model.SweepReading;
 import org.iproduct.ksdemo.service.ReactiveRobotService;
 import org.iproduct.ksdemo.service.RegisterClientService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +35,8 @@ import java.net.InetSocketAddress;
 public class KafkaStreamsRobotDemoApplication {
     public static final String SERVER_IP = "192.168.0.17";
     public static final int COAP_PORT = 5683;
+    public static final String SWEEP_DISTANCES_TOPIC = "sweepDistances";
+    public static final int ROBOT_ID = 1;
 
     @Autowired
     private KafkaTemplate<Integer, String> template;
@@ -67,6 +70,7 @@ public class KafkaStreamsRobotDemoApplication {
             server.add(new TimeResource());
             server.add(new RegisterClientResource());
             server.add(new SensorsResource());
+            server.add(new SweepResource());
 
             server.start();
             robotService.getCommands().asFlux().subscribe(commandStr -> {
@@ -179,7 +183,6 @@ public class KafkaStreamsRobotDemoApplication {
                 clientService.setDeviceIp(state.deviceId(), exchange.getSourceAddress(), exchange.getSourcePort());
                 value = mapper.writeValueAsString(state);
                 robotService.getSensorReadings().emitNext(value, FAIL_FAST);
-                template.send("sweepDistances", 1, value);
                 exchange.respond(CHANGED, value);
             } catch (Exception e) {
                 e.printStackTrace();
@@ -187,4 +190,31 @@ public class KafkaStreamsRobotDemoApplication {
             }
         }
     }
+
+    public class SweepResource extends CoapResource {
+
+        public SweepResource() {
+            // resource identifier
+            super("sweep");
+            // set display name
+            getAttributes().setTitle("Distance Sweep Resource");
+        }
+
+        @Override
+        public void handlePUT(CoapExchange exchange) {
+            try {
+                String value = exchange.getRequestText();
+                SweepReading reading = mapper.readValue(value, SweepReading.class);
+                if (!reading.isSweepReading() && !reading.isSweepEnd()) {
+                    exchange.respond(BAD_REQUEST, "Invalid sweep message");
+                    return;
+                }
+                template.send(SWEEP_DISTANCES_TOPIC, ROBOT_ID, value);
+                exchange.respond(CHANGED);
+            } catch (Exception e) {
+                log.error("Error publishing sweep reading: ", e);
+                exchange.respond(BAD_REQUEST, "Invalid String");
+            }
+        }
+    }
 }
@@ -1,7 +1,7 @@
 package org.iproduct.ksdemo.kstream;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.common.serialization.Serdes;
-import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.kstream.*;
@@ -16,7 +16,6 @@ import org.springframework.kafka.annotation.KafkaStreamsDefaultConfiguration;
 import org.springframework.kafka.config.KafkaStreamsConfiguration;
 import org.springframework.kafka.config.StreamsBuilderFactoryBeanConfigurer;
 
-import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -60,19 +59,12 @@ public class KafkaStreamsConfig {
     }
 
     @Bean
-    public KStream<Integer, String> kStream(StreamsBuilder kStreamBuilder) {
+    public KStream<Integer, String> kStream(StreamsBuilder kStreamBuilder, ObjectMapper mapper) {
+        kStreamBuilder.addStateStore(SweepAssembler.sweepStateStoreBuilder());
         KStream<Integer, String> stream = kStreamBuilder.stream("sweepDistances");
         stream
-//                .mapValues((ValueMapper<String, String>) String::toUpperCase)
-                .groupByKey(Grouped.with(Serdes.Integer(), Serdes.String()))
-                .windowedBy(SessionWindows.ofInactivityGapWithNoGrace(Duration.ofMillis(1000)))
-                .reduce((String value1, String value2) -> value1 + value2) //,  Named.as("windowStore"))
-//                .suppress(untilTimeLimit(ofMillis(200), maxBytes(1_000L).emitEarlyWhenFull()))
-//                .suppress(Suppressed.untilWindowCloses(Suppressed.BufferConfig.unbounded()))
-                .toStream()
-                .map((windowedId, value) -> new KeyValue<>(windowedId.key(), value))
-                .filter((i, s) -> s != null && s.endsWith("{\"type\":\"sweep_end\"}"))
-                .to("minSweepDistance");
+                .process(() -> new SweepAssembler(mapper), SweepAssembler.SWEEP_STATE_STORE)
+                .to("minSweepDistance", Produced.with(Serdes.Integer(), Serdes.String()));
 
         stream.print(Printed.toSysOut());
 
@@ -0,0 +1,129 @@
+package org.iproduct.ksdemo.kstream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+import org.iproduct.ksdemo.model.SweepReading;
+import org.iproduct.ksdemo.model.SweepResult;
+import org.springframework.kafka.support.serializer.JsonSerde;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Assembles the distance readings of a robot sweep into a single {@link SweepResult} with the minimum distance and
+ * its angle, emitted when the device sends {@code {"type":"sweep_end"}} (see {@link SweepReading} for the input
+ * messages, others are ignored). Each reading is parsed once and folded into a fixed size {@link SweepState} per
+ * device, so the state and its changelog do not grow with the sweep length.
+ * <p>
+ * A sweep without readings for {@link #SWEEP_INACTIVITY_GAP} is dropped, like the session window it replaces. The
+ * state of devices that stop sending is purged by a wall clock punctuation, as stream time does not advance without
+ * their records.
+ */
+@Slf4j
+public class SweepAssembler implements Processor<Integer, String, Integer, String> {
+    public static final String SWEEP_STATE_STORE = "sweep-state-store";
+    public static final Duration SWEEP_INACTIVITY_GAP = Duration.ofMillis(1000);
+
+    public record SweepState(double minDistance, double minDistanceAngle, int samples, long startTime, long lastTime) {
+        SweepState add(double angle, double distance, long time) {
+            return distance < minDistance
+                    ? new SweepState(distance, angle, samples + 1, startTime, time)
+                    : new SweepState(minDistance, minDistanceAngle, samples + 1, startTime, time);
+        }
+    }
+
+    private final ObjectMapper mapper;
+    private ProcessorContext<Integer, String> context;
+    private KeyValueStore<Integer, SweepState> sweeps;
+
+    public SweepAssembler(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    public static StoreBuilder<KeyValueStore<Integer, SweepState>> sweepStateStoreBuilder() {
+        return Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(SWEEP_STATE_STORE),
+                Serdes.Integer(), new JsonSerde<>(SweepState.class));
+    }
+
+    @Override
+    public void init(ProcessorContext<Integer, String> context) {
+        this.context = context;
+        sweeps = context.getStateStore(SWEEP_STATE_STORE);
+        context.schedule(SWEEP_INACTIVITY_GAP, PunctuationType.WALL_CLOCK_TIME, this::purgeExpired);
+    }
+
+    @Override
+    public void process(Record<Integer, String> record) {
+        if (record.key() == null || record.value() == null) return;
+        SweepReading reading;
+        try {
+            reading = mapper.readValue(record.value(), SweepReading.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Skipping invalid sweep reading from device {}: {}", record.key(), record.value());
+            return;
+        }
+
+        if (!reading.isSweepReading() && !reading.isSweepEnd()) {
+            log.debug("Skipping {} message from device {}", reading.type(), record.key());
+            return;
+        }
+
+        SweepState sweep = sweeps.get(record.key());
+        if (sweep != null && isExpired(sweep, record.timestamp())) {
+            log.debug("Dropping incomplete sweep of device {} after {} samples", record.key(), sweep.samples());
+            sweep = null;
+        }
+        if (reading.isSweepEnd()) {
+            if (sweep != null) {
+                emit(record, sweep);
+            }
+            sweeps.delete(record.key());
+        } else {
+            sweeps.put(record.key(), sweep == null
+                    ? new SweepState(reading.distance(), reading.angle(), 1, record.timestamp(), record.timestamp())
+                    : sweep.add(reading.angle(), reading.distance(), record.timestamp()));
+        }
+    }
+
+    // drops the incomplete sweeps of the devices without readings for the inactivity gap
+    private void purgeExpired(long timestamp) {
+        List<Integer> expired = new ArrayList<>();
+        try (var iter = sweeps.all()) {
+            while (iter.hasNext()) {
+                KeyValue<Integer, SweepState> entry = iter.next();
+                if (isExpired(entry.value, timestamp)) {
+                    expired.add(entry.key);
+                }
+            }
+        }
+        expired.forEach(sweeps::delete);
+        if (!expired.isEmpty()) {
+            log.debug("Dropped incomplete sweeps of devices {}", expired);
+        }
+    }
+
+    private static boolean isExpired(SweepState sweep, long timestamp) {
+        return timestamp - sweep.lastTime() > SWEEP_INACTIVITY_GAP.toMillis();
+    }
+
+    private void emit(Record<Integer, String> record, SweepState sweep) {
+        var result = new SweepResult(SweepResult.TYPE, record.key(), sweep.minDistance(), sweep.minDistanceAngle(),
+                sweep.samples(), sweep.startTime(), record.timestamp());
+        try {
+            context.forward(record.withValue(mapper.writeValueAsString(result)));
+        } catch (JsonProcessingException e) {
+            log.error("Error serializing sweep result: {}", result, e);
+        }
+    }
+}
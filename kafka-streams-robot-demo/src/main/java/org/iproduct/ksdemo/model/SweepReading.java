@@ -0,0 +1,26 @@
+package org.iproduct.ksdemo.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * A message of a distance sweep, as PUT by the robot to the {@code sweep} CoAP resource and published to
+ * {@code sweepDistances}: {@code {"type":"sweep_reading","angle":45.0,"distance":12.5}} for each measurement and
+ * {@code {"type":"sweep_end"}} once the sweep is complete.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record SweepReading(
+        String type,
+        Double angle,
+        Double distance
+) {
+    public static final String SWEEP_READING = "sweep_reading";
+    public static final String SWEEP_END = "sweep_end";
+
+    public boolean isSweepReading() {
+        return SWEEP_READING.equals(type) && angle != null && distance != null;
+    }
+
+    public boolean isSweepEnd() {
+        return SWEEP_END.equals(type);
+    }
+}
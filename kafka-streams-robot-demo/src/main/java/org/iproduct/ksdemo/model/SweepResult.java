@@ -0,0 +1,13 @@
+package org.iproduct.ksdemo.model;
+
+public record SweepResult(
+        String type,
+        int deviceId,
+        double minDistance,
+        double minDistanceAngle,
+        int samples,
+        long startTime,
+        long endTime
+) {
+    public static final String TYPE = "min_sweep_distance";
+}
@@ -0,0 +1,116 @@
+package org.iproduct.ksdemo.kstream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Produced;
+import org.iproduct.ksdemo.model.SweepResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SweepAssemblerTest {
+    public static final String INPUT_TOPIC = "sweepDistances";
+    public static final String OUTPUT_TOPIC = "minSweepDistance";
+    public static final Instant START = Instant.ofEpochMilli(1_000_000);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private TopologyTestDriver driver;
+    private TestInputTopic<Integer, String> input;
+    private TestOutputTopic<Integer, String> output;
+
+    @BeforeEach
+    void setUp() {
+        final StreamsBuilder builder = new StreamsBuilder();
+        builder.addStateStore(SweepAssembler.sweepStateStoreBuilder());
+        builder.stream(INPUT_TOPIC, Consumed.with(Serdes.Integer(), Serdes.String()))
+                .process(() -> new SweepAssembler(mapper), SweepAssembler.SWEEP_STATE_STORE)
+                .to(OUTPUT_TOPIC, Produced.with(Serdes.Integer(), Serdes.String()));
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "sweep-assembler-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        driver = new TopologyTestDriver(builder.build(), props, START);
+        input = driver.createInputTopic(INPUT_TOPIC, Serdes.Integer().serializer(), Serdes.String().serializer());
+        output = driver.createOutputTopic(OUTPUT_TOPIC, Serdes.Integer().deserializer(), Serdes.String().deserializer());
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    @DisplayName("When a sweep ends, then its minimum distance and angle are emitted")
+    void emitsMinimumDistanceOnSweepEnd() throws Exception {
+        // GIVEN
+        input.pipeInput(1, reading(0, 50.5), START);
+        input.pipeInput(1, reading(45, 12.5), START.plusMillis(100));
+        input.pipeInput(1, reading(90, 30), START.plusMillis(200));
+
+        // WHEN
+        input.pipeInput(1, "{\"type\":\"sweep_end\"}", START.plusMillis(300));
+
+        // THEN
+        var results = output.readValuesToList();
+        assertThat(results).hasSize(1);
+        SweepResult result = mapper.readValue(results.get(0), SweepResult.class);
+        assertThat(result).isEqualTo(new SweepResult(SweepResult.TYPE, 1, 12.5, 45, 3,
+                START.toEpochMilli(), START.plusMillis(300).toEpochMilli()));
+        assertThat(sweepCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("When the device sends other messages, then they are ignored")
+    void ignoresOtherMessages() {
+        // WHEN
+        input.pipeInput(1, "{\"type\":\"irrigation_state\",\"time\":1,\"deviceId\":\"1\",\"valves\":[0]}", START);
+        input.pipeInput(1, "not json", START.plusMillis(100));
+        input.pipeInput(1, "{\"type\":\"sweep_end\"}", START.plusMillis(200));
+
+        // THEN
+        assertThat(output.isEmpty()).isTrue();
+        assertThat(sweepCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("When a device stops sending within a sweep, then its sweep is purged on wall clock time")
+    void purgesSweepsOfSilentDevices() {
+        // GIVEN
+        input.pipeInput(1, reading(0, 20), START);
+        input.pipeInput(2, reading(0, 10), START);
+        assertThat(sweepCount()).isEqualTo(2);
+
+        // WHEN
+        driver.advanceWallClockTime(SweepAssembler.SWEEP_INACTIVITY_GAP.plusMillis(1));
+
+        // THEN
+        assertThat(sweepCount()).isZero();
+        input.pipeInput(1, "{\"type\":\"sweep_end\"}", START.plus(Duration.ofSeconds(2)));
+        assertThat(output.isEmpty()).isTrue();
+    }
+
+    private String reading(double angle, double distance) {
+        return String.format("{\"type\":\"sweep_reading\",\"angle\":%s,\"distance\":%s}", angle, distance);
+    }
+
+    private long sweepCount() {
+        try (var iter = driver.getKeyValueStore(SweepAssembler.SWEEP_STATE_STORE).all()) {
+            long count = 0;
+            for (; iter.hasNext(); iter.next()) count++;
+            return count;
+        }
+    }
+}